@@ -0,0 +1,94 @@
+/*
+ * Copyright 2012 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.drools.ide.common.client.modeldriven;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.drools.ide.common.client.modeldriven.brl.PortableObject;
+
+/**
+ * The completions of one fact type: its fields, methods, modifiers and enums.
+ * A summary SuggestionCompletionEngine (see
+ * SuggestionCompletionEngine.getSummary()) only knows the names of the fact
+ * types; these are added to it when a fact type is needed.
+ */
+public class FactTypeCompletions
+    implements
+    PortableObject {
+
+    private String                                 factType;
+    private ModelField[]                           fields                = new ModelField[0];
+    private List<MethodInfo>                       methodInfos           = new ArrayList<MethodInfo>();
+    private String[]                               modifiers;
+
+    /**
+     * The entries of the engine maps that are keyed by "FactType.field".
+     */
+    private Map<String, FieldAccessorsAndMutators> accessorsAndMutators  = new HashMap<String, FieldAccessorsAndMutators>();
+    private Map<String, String>                    fieldParametersType   = new HashMap<String, String>();
+    private Map<String, String[]>                  dataEnumLists         = new HashMap<String, String[]>();
+
+    public FactTypeCompletions() {
+    }
+
+    public FactTypeCompletions(String factType) {
+        this.factType = factType;
+    }
+
+    public String getFactType() {
+        return factType;
+    }
+
+    public ModelField[] getFields() {
+        return fields;
+    }
+
+    public void setFields(ModelField[] fields) {
+        this.fields = fields;
+    }
+
+    public List<MethodInfo> getMethodInfos() {
+        return methodInfos;
+    }
+
+    public void setMethodInfos(List<MethodInfo> methodInfos) {
+        this.methodInfos = methodInfos;
+    }
+
+    public String[] getModifiers() {
+        return modifiers;
+    }
+
+    public void setModifiers(String[] modifiers) {
+        this.modifiers = modifiers;
+    }
+
+    public Map<String, FieldAccessorsAndMutators> getAccessorsAndMutators() {
+        return accessorsAndMutators;
+    }
+
+    public Map<String, String> getFieldParametersType() {
+        return fieldParametersType;
+    }
+
+    public Map<String, String[]> getDataEnumLists() {
+        return dataEnumLists;
+    }
+
+}
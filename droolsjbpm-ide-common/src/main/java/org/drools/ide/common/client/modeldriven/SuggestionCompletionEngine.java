@@ -19,6 +19,7 @@ package org.drools.ide.common.client.modeldriven;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -217,6 +218,13 @@ public class SuggestionCompletionEngine
     private FactTypeFilter                          factFilter               = null;
     private boolean                                 filteringFacts           = true;
 
+    /**
+     * The fact types that only have their name in this engine, when this is
+     * a summary (see getSummary()).
+     */
+    private Set<String>                             summarisedFactTypes      = new HashSet<String>();
+    private boolean                                 summary                  = false;
+
     public SuggestionCompletionEngine() {
 
     }
@@ -964,6 +972,195 @@ public class SuggestionCompletionEngine
         this.filteringFacts = filterFacts;
     }
 
+    /**
+     * Returns a copy of this engine with the fact type names, globals, DSL
+     * sentences and annotations, but without the fields, methods and enums of
+     * the fact types (only their "this" field is kept). The completions of a
+     * fact type are added to the summary with addFactTypeCompletions().
+     */
+    public SuggestionCompletionEngine getSummary() {
+        SuggestionCompletionEngine summary = new SuggestionCompletionEngine();
+        for ( Map.Entry<String, ModelField[]> entry : this.modelFields.entrySet() ) {
+            summary.modelFields.put( entry.getKey(),
+                                     getThisFields( entry.getValue() ) );
+            summary.summarisedFactTypes.add( entry.getKey() );
+        }
+        for ( Map.Entry<String, String[]> entry : this.dataEnumLists.entrySet() ) {
+            if ( !this.modelFields.containsKey( getFactTypeOfKey( entry.getKey() ) ) ) {
+                summary.dataEnumLists.put( entry.getKey(),
+                                           entry.getValue() );
+            }
+        }
+        summary.globalTypes.putAll( this.globalTypes );
+        summary.globalCollections = this.globalCollections;
+        summary.annotationsForTypes.putAll( this.annotationsForTypes );
+        summary.modifiers = new HashMap<String, String[]>();
+        summary.conditionDSLSentences = this.conditionDSLSentences;
+        summary.actionDSLSentences = this.actionDSLSentences;
+        summary.keywordDSLItems = this.keywordDSLItems;
+        summary.anyScopeDSLItems = this.anyScopeDSLItems;
+        summary.filteringFacts = this.filteringFacts;
+        summary.summary = true;
+        return summary;
+    }
+
+    /**
+     * Returns a copy of this engine, with maps of its own: the copy can be
+     * filtered, or have fact type completions added or removed, without
+     * changing this engine. The fields, methods and enums themselves are
+     * shared.
+     */
+    public SuggestionCompletionEngine copy() {
+        SuggestionCompletionEngine copy = new SuggestionCompletionEngine();
+        copy.fieldParametersType.putAll( this.fieldParametersType );
+        copy.globalTypes.putAll( this.globalTypes );
+        if ( this.modifiers != null ) {
+            copy.modifiers = new HashMap<String, String[]>( this.modifiers );
+        }
+        copy.dataEnumLists.putAll( this.dataEnumLists );
+        copy.annotationsForTypes.putAll( this.annotationsForTypes );
+        copy.globalCollections = this.globalCollections;
+        copy.conditionDSLSentences = this.conditionDSLSentences;
+        copy.actionDSLSentences = this.actionDSLSentences;
+        copy.keywordDSLItems = this.keywordDSLItems;
+        copy.anyScopeDSLItems = this.anyScopeDSLItems;
+        copy.methodInfos.putAll( this.methodInfos );
+        copy.modelFields.putAll( this.modelFields );
+        copy.accessorsAndMutators.putAll( this.accessorsAndMutators );
+        copy.filteringFacts = this.filteringFacts;
+        copy.summarisedFactTypes.addAll( this.summarisedFactTypes );
+        copy.summary = this.summary;
+        copy.setFactTypeFilter( this.factFilter );
+        return copy;
+    }
+
+    /**
+     * Returns true if this engine was made with getSummary().
+     */
+    public boolean isSummary() {
+        return this.summary;
+    }
+
+    /**
+     * Returns the fields, methods, modifiers and enums of a fact type.
+     */
+    public FactTypeCompletions getFactTypeCompletions(String factType) {
+        FactTypeCompletions completions = new FactTypeCompletions( factType );
+        ModelField[] fields = this.modelFields.get( factType );
+        if ( fields != null ) {
+            completions.setFields( fields );
+        }
+        List<MethodInfo> infos = this.methodInfos.get( factType );
+        if ( infos != null ) {
+            completions.setMethodInfos( infos );
+        }
+        if ( this.modifiers != null ) {
+            completions.setModifiers( this.modifiers.get( factType ) );
+        }
+        for ( Map.Entry<String, FieldAccessorsAndMutators> entry : this.accessorsAndMutators.entrySet() ) {
+            if ( factType.equals( getFactTypeOfKey( entry.getKey() ) ) ) {
+                completions.getAccessorsAndMutators().put( entry.getKey(),
+                                                           entry.getValue() );
+            }
+        }
+        for ( Map.Entry<String, String> entry : this.fieldParametersType.entrySet() ) {
+            if ( factType.equals( getFactTypeOfKey( entry.getKey() ) ) ) {
+                completions.getFieldParametersType().put( entry.getKey(),
+                                                          entry.getValue() );
+            }
+        }
+        for ( Map.Entry<String, String[]> entry : this.dataEnumLists.entrySet() ) {
+            if ( factType.equals( getFactTypeOfKey( entry.getKey() ) ) ) {
+                completions.getDataEnumLists().put( entry.getKey(),
+                                                    entry.getValue() );
+            }
+        }
+        return completions;
+    }
+
+    /**
+     * Adds the completions of a fact type to a summary engine.
+     */
+    public void addFactTypeCompletions(FactTypeCompletions completions) {
+        String factType = completions.getFactType();
+        this.modelFields.put( factType,
+                              completions.getFields() );
+        this.methodInfos.put( factType,
+                              completions.getMethodInfos() );
+        if ( completions.getModifiers() != null ) {
+            if ( this.modifiers == null ) {
+                this.modifiers = new HashMap<String, String[]>();
+            }
+            this.modifiers.put( factType,
+                                completions.getModifiers() );
+        }
+        this.accessorsAndMutators.putAll( completions.getAccessorsAndMutators() );
+        this.fieldParametersType.putAll( completions.getFieldParametersType() );
+        this.dataEnumLists.putAll( completions.getDataEnumLists() );
+        this.dataEnumLookupFields = null;
+        this.summarisedFactTypes.remove( factType );
+        filterModelFields();
+    }
+
+    /**
+     * Drops the completions of a fact type, keeping its name, so that a
+     * summary engine does not grow with every fact type ever used.
+     */
+    public void removeFactTypeCompletions(String factType) {
+        ModelField[] fields = this.modelFields.get( factType );
+        if ( fields == null || isFactTypeSummarised( factType ) ) {
+            return;
+        }
+        this.modelFields.put( factType,
+                              getThisFields( fields ) );
+        this.methodInfos.remove( factType );
+        if ( this.modifiers != null ) {
+            this.modifiers.remove( factType );
+        }
+        removeKeysOfFactType( this.accessorsAndMutators,
+                              factType );
+        removeKeysOfFactType( this.fieldParametersType,
+                              factType );
+        removeKeysOfFactType( this.dataEnumLists,
+                              factType );
+        this.dataEnumLookupFields = null;
+        this.summarisedFactTypes.add( factType );
+        filterModelFields();
+    }
+
+    /**
+     * Returns true if the fields, methods and enums of the fact type are not
+     * in this engine yet.
+     */
+    public boolean isFactTypeSummarised(String factType) {
+        return this.summarisedFactTypes.contains( factType );
+    }
+
+    private static ModelField[] getThisFields(ModelField[] fields) {
+        List<ModelField> thisFields = new ArrayList<ModelField>();
+        for ( ModelField field : fields ) {
+            if ( TYPE_THIS.equals( field.getName() ) ) {
+                thisFields.add( field );
+            }
+        }
+        return thisFields.toArray( new ModelField[thisFields.size()] );
+    }
+
+    private static String getFactTypeOfKey(String key) {
+        int dot = key.indexOf( '.' );
+        return dot == -1 ? key : key.substring( 0,
+                                                dot );
+    }
+
+    private static void removeKeysOfFactType(Map<String, ? > map,
+                                             String factType) {
+        for ( Iterator<String> iterator = map.keySet().iterator(); iterator.hasNext(); ) {
+            if ( factType.equals( getFactTypeOfKey( iterator.next() ) ) ) {
+                iterator.remove();
+            }
+        }
+    }
+
     /**
      * Check whether an operator is a CEP operator
      * 
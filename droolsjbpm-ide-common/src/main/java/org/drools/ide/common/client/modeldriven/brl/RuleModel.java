@@ -18,7 +18,9 @@ package org.drools.ide.common.client.modeldriven.brl;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 public class RuleModel
     implements
@@ -705,6 +707,50 @@ public class RuleModel
         return false;
     }
 
+    /**
+     * Returns the fact types of the patterns, including the nested ones, and
+     * of the facts inserted by the actions.
+     */
+    public Set<String> getFactTypes() {
+        Set<String> factTypes = new HashSet<String>();
+
+        if ( this.lhs != null ) {
+            for ( IPattern pattern : this.lhs ) {
+                addFactTypes( pattern,
+                              factTypes );
+            }
+        }
+
+        if ( this.rhs != null ) {
+            for ( IAction action : this.rhs ) {
+                if ( action instanceof ActionInsertFact && ((ActionInsertFact) action).factType != null ) {
+                    factTypes.add( ((ActionInsertFact) action).factType );
+                }
+            }
+        }
+
+        return factTypes;
+    }
+
+    private void addFactTypes(IPattern pattern,
+                              Set<String> factTypes) {
+        if ( pattern instanceof FromAccumulateCompositeFactPattern ) {
+            addFactTypes( ((FromAccumulateCompositeFactPattern) pattern).getSourcePattern(),
+                          factTypes );
+        } else if ( pattern instanceof FromCollectCompositeFactPattern ) {
+            addFactTypes( ((FromCollectCompositeFactPattern) pattern).getRightPattern(),
+                          factTypes );
+        } else if ( pattern instanceof CompositeFactPattern && ((CompositeFactPattern) pattern).getPatterns() != null ) {
+            for ( IFactPattern factPattern : ((CompositeFactPattern) pattern).getPatterns() ) {
+                addFactTypes( factPattern,
+                              factTypes );
+            }
+        }
+        if ( pattern instanceof IFactPattern && ((IFactPattern) pattern).getFactType() != null ) {
+            factTypes.add( ((IFactPattern) pattern).getFactType() );
+        }
+    }
+
     /**
      * Is the Rule to be negated, i.e. "not ( PatternX, PatternY... )"
      * 
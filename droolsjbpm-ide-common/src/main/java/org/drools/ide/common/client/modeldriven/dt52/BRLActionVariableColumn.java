@@ -51,8 +51,16 @@ public class BRLActionVariableColumn extends ActionCol52 {
         return factType;
     }
 
+    public void setFactType(String factType) {
+        this.factType = factType;
+    }
+
     public String getFactField() {
         return factField;
     }
 
+    public void setFactField(String factField) {
+        this.factField = factField;
+    }
+
 }
@@ -46,4 +46,8 @@ public class BRLConditionVariableColumn extends ConditionCol52 {
         return factType;
     }
 
+    public void setFactType(String factType) {
+        this.factType = factType;
+    }
+
 }
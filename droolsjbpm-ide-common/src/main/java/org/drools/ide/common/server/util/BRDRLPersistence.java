@@ -74,8 +74,6 @@ public class BRDRLPersistence
 
     private static final String          WORKITEM_PREFIX = "wi";
 
-    private static final BRLPersistence  INSTANCE        = new BRDRLPersistence();
-
     //Keep a record of all variable bindings for Actions that depend on them
     protected Map<String, IFactPattern>    bindingsPatterns;
     protected Map<String, FieldConstraint> bindingsFields;
@@ -83,8 +81,12 @@ public class BRDRLPersistence
     protected BRDRLPersistence() {
     }
 
+    /**
+     * The bindings of the rule being marshalled are kept in the instance, so each call
+     * returns a new instance, not to be shared between threads.
+     */
     public static BRLPersistence getInstance() {
-        return INSTANCE;
+        return new BRDRLPersistence();
     }
 
     /*
@@ -1211,6 +1211,110 @@ public class SuggestionCompletionEngineTest {
 
     }
 
+    @Test
+    public void testSummaryAndFactTypeCompletions() {
+
+        final SuggestionCompletionEngine sce = new SuggestionCompletionEngine();
+
+        sce.setFieldsForTypes( new HashMap<String, ModelField[]>() {
+            {
+                put( "Person",
+                     new ModelField[]{
+                        new ModelField( "this",
+                                        "org.test.Person",
+                                        FIELD_CLASS_TYPE.REGULAR_CLASS,
+                                        "Person" ),
+                        new ModelField( "age",
+                                        Integer.class.getName(),
+                                        FIELD_CLASS_TYPE.REGULAR_CLASS,
+                                        SuggestionCompletionEngine.TYPE_NUMERIC ),
+                } );
+
+                put( "Vehicle",
+                     new ModelField[]{
+                        new ModelField( "make",
+                                        String.class.getName(),
+                                        FIELD_CLASS_TYPE.REGULAR_CLASS,
+                                        SuggestionCompletionEngine.TYPE_STRING ),
+                } );
+            }
+        } );
+        sce.putDataEnumList( "Person.age",
+                             new String[]{"42", "43"} );
+        sce.setGlobalVariables( new HashMap<String, String>() {
+            {
+                put( "vehicle",
+                     "Vehicle" );
+            }
+        } );
+
+        SuggestionCompletionEngine summary = sce.getSummary();
+        assertTrue( summary.isSummary() );
+        assertFalse( sce.isSummary() );
+        assertEquals( 2,
+                      summary.getFactTypes().length );
+        assertTrue( summary.isFactTypeSummarised( "Person" ) );
+        assertTrue( summary.isGlobalVariable( "vehicle" ) );
+        assertEquals( "Person",
+                      summary.getFactNameFromType( "org.test.Person" ) );
+        assertNull( summary.getFieldType( "Person",
+                                          "age" ) );
+        assertNull( summary.getEnumValues( "Person",
+                                           "age" ) );
+
+        summary.addFactTypeCompletions( sce.getFactTypeCompletions( "Person" ) );
+        assertFalse( summary.isFactTypeSummarised( "Person" ) );
+        assertTrue( summary.isFactTypeSummarised( "Vehicle" ) );
+        assertEquals( SuggestionCompletionEngine.TYPE_NUMERIC,
+                      summary.getFieldType( "Person",
+                                            "age" ) );
+        assertEquals( 2,
+                      summary.getEnumValues( "Person",
+                                             "age" ).length );
+
+        summary.removeFactTypeCompletions( "Person" );
+        assertTrue( summary.isFactTypeSummarised( "Person" ) );
+        assertNull( summary.getFieldType( "Person",
+                                          "age" ) );
+        assertNull( summary.getEnumValues( "Person",
+                                           "age" ) );
+        assertEquals( "Person",
+                      summary.getFactNameFromType( "org.test.Person" ) );
+    }
+
+    @Test
+    public void testCopyIsChangedOnItsOwn() {
+        SuggestionCompletionEngine sce = new SuggestionCompletionEngine();
+        sce.setFieldsForTypes( new HashMap<String, ModelField[]>() {
+            {
+                put( "Person",
+                     new ModelField[]{
+                        new ModelField( "age",
+                                        Integer.class.getName(),
+                                        FIELD_CLASS_TYPE.REGULAR_CLASS,
+                                        SuggestionCompletionEngine.TYPE_NUMERIC ),
+                } );
+            }
+        } );
+        sce.putDataEnumList( "Person.age",
+                             new String[]{"42", "43"} );
+
+        SuggestionCompletionEngine summary = sce.getSummary();
+        SuggestionCompletionEngine copy = summary.copy();
+        assertTrue( copy.isSummary() );
+        copy.addFactTypeCompletions( sce.getFactTypeCompletions( "Person" ) );
+        assertFalse( copy.isFactTypeSummarised( "Person" ) );
+        assertEquals( 2,
+                      copy.getEnumValues( "Person",
+                                          "age" ).length );
+
+        assertTrue( summary.isFactTypeSummarised( "Person" ) );
+        assertNull( summary.getFieldType( "Person",
+                                          "age" ) );
+        assertNull( summary.getEnumValues( "Person",
+                                           "age" ) );
+    }
+
     public static class NestedClass {
         private String name;
 
@@ -43,7 +43,9 @@ public class CmdArgsParser{
     OPTIONS_KAGENT_CHANGE_SET_FILE,
     OPTIONS_BASE_DIR,
     OPTIONS_VERBOSE,
-    OPTIONS_VERY_VERBOSE
+    OPTIONS_VERY_VERBOSE,
+    OPTIONS_THREADS,
+    OPTIONS_ERROR_REPORT_FILE
   }
   
   public CmdArgsParser(){
@@ -61,6 +63,8 @@ public class CmdArgsParser{
     map.put("-b", Parameters.OPTIONS_BASE_DIR);
     map.put("-v", Parameters.OPTIONS_VERBOSE);
     map.put("-vv", Parameters.OPTIONS_VERY_VERBOSE);
+    map.put("-t", Parameters.OPTIONS_THREADS);
+    map.put("-x", Parameters.OPTIONS_ERROR_REPORT_FILE);
   }
   
   public String getOption(Parameters parameterName){
@@ -16,11 +16,18 @@
 
 package org.jboss.drools.guvnor.importgenerator;
 
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.StringWriter;
 import java.io.UnsupportedEncodingException;
+import java.io.Writer;
 import java.text.DecimalFormat;
 import java.text.MessageFormat;
 import java.text.NumberFormat;
@@ -31,6 +38,14 @@ import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.drools.compiler.DroolsParserException;
 import org.jboss.drools.guvnor.importgenerator.CmdArgsParser.Parameters;
@@ -48,6 +63,14 @@ public class ImportFileGenerator implements Constants{
     private CmdArgsParser options=null;
     private String BASE_DIR=System.getProperty("user.dir");
     public enum PackageObjectType{ PACKAGE, PACKAGE_SNAPSHOT }
+    private static final String PACKAGES_MARKER="<!--GUVNOR_IMPORT_PACKAGES-->";
+    private static final String SNAPSHOTS_MARKER="<!--GUVNOR_IMPORT_SNAPSHOTS-->";
+    private final Map<String, String> templates=new ConcurrentHashMap<String, String>();
+    private final ThreadLocal<Map<String, MessageFormat>> compiledTemplates=new ThreadLocal<Map<String, MessageFormat>>(){
+        protected Map<String, MessageFormat> initialValue(){
+            return new HashMap<String, MessageFormat>();
+        }
+    };
   public enum RuleObjectType{ RULE, SNAPSHOT_RULE }
   
     /**
@@ -57,88 +80,124 @@ public class ImportFileGenerator implements Constants{
      * @throws Exception
      */
     public String generateImportFile(Map<String, PackageFile> packages) throws Exception {
+        StringWriter out=new StringWriter();
+        generateImportFile(packages, out);
+        return out.toString();
+    }
+
+    /**
+     * Writes the import file to <param>out</param> as the packages are compiled, instead of building it in memory.
+     * Packages are compiled and rendered in parallel by a bounded pool (see the -t option), and are written in the
+     * order they complete; the snapshots are spooled to a temporary file until the package area is written.
+     * Once written, the compiled package and the rules of each PackageFile are released.
+     * @param packages
+     * @param out
+     * @throws Exception
+     */
+    public void generateImportFile(Map<String, PackageFile> packages, Writer out) throws Exception {
         // go thru each replacer definition creating drl template replacements
         //TODO: what is the org.drools.io.RuleSetReader ??? is this what Guvnor uses this to read the .drl file parts?
-        String draftStateReferenceUUID=GeneratedData.generateUUID();
-        String categoryReferenceUUID=GeneratedData.generateUUID();
+        final String draftStateReferenceUUID=GeneratedData.generateUUID();
+        final String categoryReferenceUUID=GeneratedData.generateUUID();
+        final boolean snapshots=options.getOption(Parameters.OPTIONS_SNAPSHOT_NAME)!=null;
 
         //reporting only
-        int cok=0, cerror=0, derror=0, terror=0, total=0;
-
-        StringBuffer packageContents = new StringBuffer();
-        StringBuffer snapshotContents = new StringBuffer();
-        double i=0,pct=0;
-        for (Iterator<String> it = packages.keySet().iterator(); it.hasNext();) {
-          double newPct=(int)(++i/(double)packages.size()*100);
-          pct=newPct;
-            String packageName = (String) it.next();
-            logger.debug(new DecimalFormat("##0").format(pct)+"% - "+packageName);
-      PackageFile packageFile=packages.get(packageName);
-
-            Map<String, Object> context=new HashMap<String, Object>();
-            context.put("file", packageFile.getFile());
-            context.put("draftStateReferenceUUID", draftStateReferenceUUID);
-            context.put("categoryReferenceUUID", categoryReferenceUUID);
-            context.put("packageFile", packageFile);
-
-            //extract the rule contents
-            StringBuffer ruleContents = new StringBuffer();
-            StringBuffer snapshotRuleContents = new StringBuffer();
-            Map<String, Rule> rules=packageFile.getRules();
-            packageFile.buildPackage();
-
-            for (Iterator<String> it2 = rules.keySet().iterator(); it2.hasNext();) {
-                String ruleName=(String)it2.next();
-                Rule rule=(Rule)rules.get(ruleName);
-                context.put("rule", rule);
-                //inject the rule values into the rule template
-                ruleContents.append(MessageFormat.format(readTemplate(MessageFormat.format(TEMPLATES_RULE, packageFile.getFormat())), getRuleObjects(context/*, RuleObjectType.RULE*/)));
-
-                //inject the snapshot rule values in the the snapshot rule template
-                snapshotRuleContents.append(MessageFormat.format(readTemplate(MessageFormat.format(TEMPLATES_SNAPSHOT_RULE, packageFile.getFormat())), getRuleObjects(context/*, RuleObjectType.SNAPSHOT_RULE*/)));
-            }
-
-            //inject the rule(s) into the package into the package contents
-            String packageTemplate = readTemplate(TEMPLATES_PACKAGE);// FileIO.readAll(new FileInputStream(new File(TEMPLATES_FOLDER, TEMPLATES_PACKAGE)));
-            packageContents.append(MessageFormat.format(packageTemplate, getPackageObjects(context, ruleContents, PackageObjectType.PACKAGE)));
+        int cok=0, terror=0, total=0;
 
-            //inject the snapshot values into the snapshot contents
-            if (options.getOption(Parameters.OPTIONS_SNAPSHOT_NAME)!=null){
-              snapshotContents.append(MessageFormat.format(readTemplate(TEMPLATES_SNAPSHOT), getPackageObjects(context, snapshotRuleContents, PackageObjectType.PACKAGE_SNAPSHOT)));
-            }
-
-            //display status of each packageFile
-            total++;
-      if (packageFile.hasErrors()) {
-        terror++;
-        if (packageFile.hasCompilationErrors()){
-          cerror++;
-          logger.debugln(" - [COMPILATION/DEPENDENCY ERRORS]");
-          if ("true".equals(options.getOption(Parameters.OPTIONS_VERY_VERBOSE))){
-            logger.debugln(packageFile.getCompilationErrors().trim());
-            logger.debugln(packageFile.getDependencyErrors().trim());
-          }
-        } else if (packageFile.hasDependencyErrors()) {
-          derror++;
-          logger.debugln(" - [DEPENDENCY ERRORS]");
-          if ("true".equals(options.getOption(Parameters.OPTIONS_VERY_VERBOSE))){
-            logger.debugln(packageFile.getDependencyErrors().trim());
-          }
-        }
-      } else{
-        cok++; //increment the "total rules compiled successfully"
-        logger.debugln(" - [OK]");
-      }
-    }
-
-        //replace the placemarkers with the package data
-        String parentContents = MessageFormat.format(readTemplate(TEMPLATES_PARENT), new Object[]{
-                packageContents
+        //split the parent template around the package and snapshot areas, so they can be streamed in between
+        String parentContents = formatTemplate(TEMPLATES_PARENT, new Object[]{
+                PACKAGES_MARKER
                 ,categoryReferenceUUID
                 ,draftStateReferenceUUID
                 ,GeneratedData.getTimestamp()
-                ,getSnapshotContents(snapshotContents)
+                ,SNAPSHOTS_MARKER
                 });
+        int packagesPos=parentContents.indexOf(PACKAGES_MARKER);
+        int snapshotsPos=parentContents.indexOf(SNAPSHOTS_MARKER);
+
+        File snapshotSpool=null;
+        Writer snapshotOut=null;
+        if (snapshots){
+            snapshotSpool=File.createTempFile("guvnor-import-snapshots", ".xml");
+            snapshotOut=new BufferedWriter(new OutputStreamWriter(new FileOutputStream(snapshotSpool), FileIO.FORMAT));
+        }
+
+        int threads=getThreadCount();
+        ExecutorService executor=Executors.newFixedThreadPool(threads);
+        CompletionService<PackageResult> completionService=new ExecutorCompletionService<PackageResult>(executor);
+        //bound the packages compiled or waiting to be written, so the memory used does not grow with the estate
+        int maxPending=threads*2;
+        ErrorReport errorReport=new ErrorReport(options.getOption(Parameters.OPTIONS_ERROR_REPORT_FILE)!=null ? getFile(options.getOption(Parameters.OPTIONS_ERROR_REPORT_FILE)) : null);
+        try {
+            out.write(parentContents.substring(0, packagesPos));
+
+            Iterator<PackageFile> it=packages.values().iterator();
+            int pending=0;
+            while (it.hasNext() || pending>0){
+                while (it.hasNext() && pending<maxPending){
+                    final PackageFile packageFile=it.next();
+                    completionService.submit(new Callable<PackageResult>(){
+                        public PackageResult call() throws Exception {
+                            return renderPackage(packageFile, draftStateReferenceUUID, categoryReferenceUUID, snapshots);
+                        }
+                    });
+                    pending++;
+                }
+                PackageResult result=getResult(completionService.take());
+                pending--;
+
+                out.write(result.packageContents);
+                if (snapshots){
+                    snapshotOut.write(result.snapshotContents);
+                }
+                PackageFile packageFile=result.packageFile;
+
+                //display status of each packageFile
+                total++;
+                logger.debug("["+ total +"/"+ packages.size() +"] "+new DecimalFormat("##0").format(total/(double)packages.size()*100)+"% - "+packageFile.getName());
+                if (packageFile.hasErrors()) {
+                    terror++;
+                    if (packageFile.hasCompilationErrors()){
+                        logger.debugln(" - [COMPILATION/DEPENDENCY ERRORS]");
+                        if ("true".equals(options.getOption(Parameters.OPTIONS_VERY_VERBOSE))){
+                            logger.debugln(packageFile.getCompilationErrors().trim());
+                            logger.debugln(packageFile.getDependencyErrors().trim());
+                        }
+                    } else if (packageFile.hasDependencyErrors()) {
+                        logger.debugln(" - [DEPENDENCY ERRORS]");
+                        if ("true".equals(options.getOption(Parameters.OPTIONS_VERY_VERBOSE))){
+                            logger.debugln(packageFile.getDependencyErrors().trim());
+                        }
+                    }
+                    errorReport.write(packageFile);
+                } else{
+                    cok++; //increment the "total rules compiled successfully"
+                    logger.debugln(" - [OK]");
+                }
+
+                //the package is written, release what it holds
+                packageFile.setPkg(null);
+                packageFile.setRules(new HashMap<String, Rule>());
+            }
+
+            out.write(parentContents.substring(packagesPos + PACKAGES_MARKER.length(), snapshotsPos));
+            if (snapshots){
+                snapshotOut.close();
+                snapshotOut=null;
+                copy(snapshotSpool, out);
+            }
+            out.write(parentContents.substring(snapshotsPos + SNAPSHOTS_MARKER.length()));
+            out.flush();
+        } finally {
+            executor.shutdownNow();
+            errorReport.close();
+            if (snapshotOut!=null){
+                snapshotOut.close();
+            }
+            if (snapshotSpool!=null){
+                snapshotSpool.delete();
+            }
+        }
 
         //write a summary report
         logger.debugln("==========================");
@@ -152,8 +211,119 @@ public class ImportFileGenerator implements Constants{
         logger.debugln("                      ____");
         logger.debugln(" Total:               "+ NumberFormat.getInstance().format(total));
         logger.debugln("==========================");
+    }
 
-        return parentContents;
+    /**
+     * compiles a package and renders its package (and snapshot) xml - called from the pool threads
+     */
+    private PackageResult renderPackage(PackageFile packageFile, String draftStateReferenceUUID, String categoryReferenceUUID, boolean snapshots) throws Exception {
+        Map<String, Object> context=new HashMap<String, Object>();
+        context.put("file", packageFile.getFile());
+        context.put("draftStateReferenceUUID", draftStateReferenceUUID);
+        context.put("categoryReferenceUUID", categoryReferenceUUID);
+        context.put("packageFile", packageFile);
+
+        //extract the rule contents
+        StringBuilder ruleContents = new StringBuilder();
+        StringBuilder snapshotRuleContents = new StringBuilder();
+        Map<String, Rule> rules=packageFile.getRules();
+        packageFile.buildPackage();
+
+        String ruleTemplate=MessageFormat.format(TEMPLATES_RULE, packageFile.getFormat());
+        String snapshotRuleTemplate=MessageFormat.format(TEMPLATES_SNAPSHOT_RULE, packageFile.getFormat());
+        for (Rule rule : rules.values()) {
+            context.put("rule", rule);
+            //inject the rule values into the rule template
+            ruleContents.append(formatTemplate(ruleTemplate, getRuleObjects(context/*, RuleObjectType.RULE*/)));
+
+            //inject the snapshot rule values in the the snapshot rule template
+            if (snapshots){
+                snapshotRuleContents.append(formatTemplate(snapshotRuleTemplate, getRuleObjects(context/*, RuleObjectType.SNAPSHOT_RULE*/)));
+            }
+        }
+
+        PackageResult result=new PackageResult(packageFile);
+        //inject the rule(s) into the package into the package contents
+        result.packageContents=formatTemplate(TEMPLATES_PACKAGE, getPackageObjects(context, ruleContents, PackageObjectType.PACKAGE));
+
+        //inject the snapshot values into the snapshot contents
+        if (snapshots){
+            result.snapshotContents=formatTemplate(TEMPLATES_SNAPSHOT, getPackageObjects(context, snapshotRuleContents, PackageObjectType.PACKAGE_SNAPSHOT));
+        }
+        return result;
+    }
+
+    private PackageResult getResult(Future<PackageResult> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception){
+                throw (Exception)e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private int getThreadCount(){
+        String threads=options.getOption(Parameters.OPTIONS_THREADS);
+        if (threads!=null){
+            return Math.max(1, Integer.parseInt(threads.trim()));
+        }
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    private static void copy(File file, Writer out) throws IOException{
+        Reader in=new InputStreamReader(new FileInputStream(file), FileIO.FORMAT);
+        try {
+            char[] buffer=new char[8192];
+            int read;
+            while ((read=in.read(buffer))!=-1){
+                out.write(buffer, 0, read);
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * The rendered xml of a package, waiting to be written
+     */
+    private static class PackageResult{
+        private final PackageFile packageFile;
+        private String packageContents;
+        private String snapshotContents="";
+        private PackageResult(PackageFile packageFile){
+            this.packageFile=packageFile;
+        }
+    }
+
+    /**
+     * Appends the errors of each package to the error report file (if any) as soon as it is compiled
+     */
+    private static class ErrorReport{
+        private Writer out;
+        private ErrorReport(File file) throws IOException{
+            if (file!=null){
+                out=new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), FileIO.FORMAT));
+            }
+        }
+        private void write(PackageFile packageFile) throws IOException{
+            if (out!=null){
+                out.write("== "+packageFile.getName()+" "+packageFile.getRuleFiles()+"\n");
+                if (packageFile.hasCompilationErrors()){
+                    out.write(packageFile.getCompilationErrors());
+                }
+                if (packageFile.hasDependencyErrors()){
+                    out.write(packageFile.getDependencyErrors());
+                }
+                out.flush();
+            }
+        }
+        private void close() throws IOException{
+            if (out!=null){
+                out.close();
+            }
+        }
     }
 
   /**
@@ -164,31 +334,40 @@ public class ImportFileGenerator implements Constants{
    */
   public String generateKnowledgeAgentInitFile(Map<String, PackageFile> packages) throws Exception {
       StringBuffer kagentInitContents = new StringBuffer();
-      String kagentChildTemplate = readTemplate(TEMPLATES_KAGENT_CHILD_INIT);
       StringBuffer kagentChildContents=new StringBuffer();
       for (Iterator<String> it = packages.keySet().iterator(); it.hasNext();) {
           String packageName = (String) it.next();
           PackageFile packageFile=packages.get(packageName);
-          kagentChildContents.append(MessageFormat.format(kagentChildTemplate, new Object[]{options.getOption(Parameters.OPTIONS_KAGENT_CHANGE_SET_SERVER), packageFile.getName()+"/"+options.getOption(Parameters.OPTIONS_SNAPSHOT_NAME), "PKG"}));
+          kagentChildContents.append(formatTemplate(TEMPLATES_KAGENT_CHILD_INIT, new Object[]{options.getOption(Parameters.OPTIONS_KAGENT_CHANGE_SET_SERVER), packageFile.getName()+"/"+options.getOption(Parameters.OPTIONS_SNAPSHOT_NAME), "PKG"}));
       }
-      String kagentParentTemplate = readTemplate(TEMPLATES_KAGENT_PARENT_INIT);
-      kagentInitContents.append(MessageFormat.format(kagentParentTemplate, new Object[]{kagentChildContents.toString()}));
+      kagentInitContents.append(formatTemplate(TEMPLATES_KAGENT_PARENT_INIT, new Object[]{kagentChildContents.toString()}));
       return kagentInitContents.toString();
   }
 
 
-    private StringBuffer getSnapshotContents(StringBuffer snapshotContents){
-      if (options.getOption(Parameters.OPTIONS_SNAPSHOT_NAME)!=null){
-        return snapshotContents;
-      }
-      return new StringBuffer("");
+    private String readTemplate(String templateConst) throws FileNotFoundException{
+        String template=templates.get(templateConst);
+        if (template==null){
+            template=FileIO.readAll(new FileInputStream(new File(new File(BASE_DIR, TEMPLATES_FOLDER), templateConst)));
+            templates.put(templateConst, template);
+        }
+        return template;
     }
 
-    private String readTemplate(String templateConst) throws FileNotFoundException{
-        return FileIO.readAll(new FileInputStream(new File(new File(BASE_DIR, TEMPLATES_FOLDER), templateConst)));
+    /**
+     * formats a template, reading and compiling it once (per thread, as MessageFormat is not thread safe)
+     */
+    private String formatTemplate(String templateConst, Object[] arguments) throws FileNotFoundException{
+        Map<String, MessageFormat> formats=compiledTemplates.get();
+        MessageFormat format=formats.get(templateConst);
+        if (format==null){
+            format=new MessageFormat(readTemplate(templateConst));
+            formats.put(templateConst, format);
+        }
+        return format.format(arguments);
     }
 
-    private Object[] getPackageObjects(Map<String, Object> context, StringBuffer ruleContents, PackageObjectType type) throws UnsupportedEncodingException, DroolsParserException, IOException{
+    private Object[] getPackageObjects(Map<String, Object> context, CharSequence ruleContents, PackageObjectType type) throws UnsupportedEncodingException, DroolsParserException, IOException{
         List<String> objects=new LinkedList<String>();
         PackageFile packageFile=(PackageFile)context.get("packageFile");
         switch (type){
@@ -271,11 +450,14 @@ public class ImportFileGenerator implements Constants{
         logger.debugln("Scanning directories...");
         Map<String, PackageFile> details=PackageFile.buildPackages(options);
 
-        logger.debugln("Generating 'Guvnor import data'...");
-        String guvnorImport=generateImportFile(details);
         File guvnorImportFile=getFile(options.getOption(Parameters.OPTIONS_OUTPUT_FILE));
-        logger.debugln("Writing 'Guvnor import data to disk' ("+ guvnorImportFile.getAbsolutePath() +")");
-        FileIO.write(guvnorImport, guvnorImportFile);
+        logger.debugln("Generating 'Guvnor import data' to disk ("+ guvnorImportFile.getAbsolutePath() +")...");
+        Writer guvnorImport=new BufferedWriter(new OutputStreamWriter(new FileOutputStream(guvnorImportFile), FileIO.FORMAT));
+        try {
+            generateImportFile(details, guvnorImport);
+        } finally {
+            guvnorImport.close();
+        }
 
         if (options.getOption(Parameters.OPTIONS_KAGENT_CHANGE_SET_FILE)!=null){
           logger.debugln("Generating 'Knowledge agent changeset' data...");
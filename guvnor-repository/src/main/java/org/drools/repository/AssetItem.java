@@ -18,7 +18,10 @@ package org.drools.repository;
 
 import java.io.*;
 import java.util.Calendar;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.Set;
 
 import javax.jcr.Binary;
 import javax.jcr.Node;
@@ -45,6 +48,8 @@ public class AssetItem extends CategorisableItem {
 
     public static final String CONTENT_PROPERTY_NAME                = "drools:content";
     public static final String CONTENT_PROPERTY_BINARY_NAME         = "drools:binaryContent";
+    public static final String TYPE_CATALOGUE_PROPERTY_NAME         = "drools:typeCatalogue";
+    public static final String SYMBOLS_PROPERTY_NAME                = "drools:symbols";
     public static final String CONTENT_PROPERTY_ATTACHMENT_FILENAME = "drools:attachmentFileName";
 
     /**
@@ -61,6 +66,12 @@ public class AssetItem extends CategorisableItem {
 
     public static final String MODULE_NAME_PROPERTY                = "drools:packageName";
 
+    /**
+     * The module the asset was loaded from, when its node does not tell: the assets of a
+     * manifest snapshot are version nodes of the assets of the live module.
+     */
+    private ModuleItem module;
+
     /**
      * Constructs a AssetItem object, setting its node attribute to the specified
      * node.
@@ -89,6 +100,17 @@ public class AssetItem extends CategorisableItem {
         }
     }
 
+    /**
+     * Constructs an AssetItem that belongs to the given module, whatever module its node is in.
+     */
+    AssetItem(RulesRepository rulesRepository,
+              Node node,
+              ModuleItem module) throws RulesRepositoryException {
+        this( rulesRepository,
+              node );
+        this.module = module;
+    }
+
     public AssetItem() {
         super( null,
                null );
@@ -391,6 +413,10 @@ public class AssetItem extends CategorisableItem {
             }
             this.node.setProperty( CONTENT_PROPERTY_NAME,
                                    newRuleContent );
+            if ( this.node.hasProperty( SYMBOLS_PROPERTY_NAME ) ) {
+                //describes the previous content
+                this.node.getProperty( SYMBOLS_PROPERTY_NAME ).remove();
+            }
             return this;
         } catch ( RepositoryException e ) {
             log.error( "Unable to update the asset content",
@@ -409,6 +435,13 @@ public class AssetItem extends CategorisableItem {
             Binary is = this.node.getSession().getValueFactory().createBinary( data );
             this.node.setProperty( CONTENT_PROPERTY_BINARY_NAME,
                                    is );
+            if ( this.node.hasProperty( TYPE_CATALOGUE_PROPERTY_NAME ) ) {
+                //describes the previous content
+                this.node.getProperty( TYPE_CATALOGUE_PROPERTY_NAME ).remove();
+            }
+            if ( this.node.hasProperty( SYMBOLS_PROPERTY_NAME ) ) {
+                this.node.getProperty( SYMBOLS_PROPERTY_NAME ).remove();
+            }
             return this;
         } catch ( RepositoryException e ) {
             log.error( "Unable to update the assets binary content",
@@ -417,6 +450,90 @@ public class AssetItem extends CategorisableItem {
         }
     }
 
+    /**
+     * Stores the catalogue of the types found in the binary content (of a model jar
+     * for instance), so they can be listed without reading the content again. The
+     * catalogue is dropped when the binary content is updated.
+     */
+    public void updateTypeCatalogue(InputStream data) {
+        checkout();
+        try {
+            Binary is = this.node.getSession().getValueFactory().createBinary( data );
+            this.node.setProperty( TYPE_CATALOGUE_PROPERTY_NAME,
+                                   is );
+        } catch ( RepositoryException e ) {
+            log.error( "Unable to update the assets type catalogue",
+                       e );
+            throw new RulesRepositoryException( e );
+        }
+    }
+
+    /**
+     * @return the catalogue stored with updateTypeCatalogue(), or null if there is none
+     *         for the current binary content.
+     */
+    public InputStream getTypeCatalogue() {
+        try {
+            Node assetNode = getVersionContentNode();
+            if ( assetNode.hasProperty( TYPE_CATALOGUE_PROPERTY_NAME ) ) {
+                return assetNode.getProperty( TYPE_CATALOGUE_PROPERTY_NAME ).getBinary().getStream();
+            }
+            return null;
+        } catch ( RepositoryException e ) {
+            log.error( "Caught Exception",
+                       e );
+            throw new RulesRepositoryException( e );
+        }
+    }
+
+    /**
+     * Stores the keys of the symbols (fact types, fields...) the content refers to, so
+     * they can be indexed without reading the content again. They are dropped when the
+     * content is updated. A key must not have a line break.
+     */
+    public void updateSymbols(Collection<String> symbols) {
+        checkout();
+        StringBuilder value = new StringBuilder();
+        for ( String symbol : symbols ) {
+            if ( value.length() > 0 ) {
+                value.append( '\n' );
+            }
+            value.append( symbol );
+        }
+        try {
+            this.node.setProperty( SYMBOLS_PROPERTY_NAME,
+                                   value.toString() );
+        } catch ( RepositoryException e ) {
+            log.error( "Unable to update the assets symbols",
+                       e );
+            throw new RulesRepositoryException( e );
+        }
+    }
+
+    /**
+     * @return the symbols stored with updateSymbols(), or null if there are none for the
+     *         current content.
+     */
+    public Set<String> getSymbols() {
+        try {
+            Node assetNode = getVersionContentNode();
+            if ( !assetNode.hasProperty( SYMBOLS_PROPERTY_NAME ) ) {
+                return null;
+            }
+            Set<String> symbols = new HashSet<String>();
+            for ( String symbol : assetNode.getProperty( SYMBOLS_PROPERTY_NAME ).getString().split( "\n" ) ) {
+                if ( symbol.length() > 0 ) {
+                    symbols.add( symbol );
+                }
+            }
+            return symbols;
+        } catch ( RepositoryException e ) {
+            log.error( "Caught Exception",
+                       e );
+            throw new RulesRepositoryException( e );
+        }
+    }
+
     /**
      * Optionally set the filename to be associated with the binary content.
      */
@@ -546,7 +663,71 @@ public class AssetItem extends CategorisableItem {
             }
         }
         try {
+            String moduleUuid = getModuleIdentifier();
+            String format = getStringProperty( FORMAT_PROPERTY_NAME );
+            boolean archived = isArchived();
+            Node moduleNode = moduleUuid == null ? null : this.node.getParent().getParent();
             this.node.remove();
+            if ( moduleUuid != null ) {
+                assetsChanged( moduleNode );
+                ModuleAssetCounts.getInstance().assetRemoved( moduleUuid,
+                                                              format,
+                                                              archived );
+            }
+        } catch ( RepositoryException e ) {
+            throw new RulesRepositoryException( e );
+        }
+    }
+
+    @Override
+    public VersionableItem archiveItem(boolean data) {
+        boolean archived = isArchived();
+        super.archiveItem( data );
+        if ( archived != data ) {
+            String moduleUuid = getModuleIdentifier();
+            if ( moduleUuid != null ) {
+                ModuleAssetCounts.getInstance().assetArchived( moduleUuid,
+                                                               getStringProperty( FORMAT_PROPERTY_NAME ),
+                                                               data );
+            }
+        }
+        return this;
+    }
+
+    @Override
+    public void updateFormat(String newFormat) {
+        String oldFormat = getStringProperty( FORMAT_PROPERTY_NAME );
+        super.updateFormat( newFormat );
+        if ( !oldFormat.equals( newFormat ) ) {
+            String moduleUuid = getModuleIdentifier();
+            if ( moduleUuid != null ) {
+                ModuleAssetCounts.getInstance().formatChanged( moduleUuid,
+                                                               oldFormat,
+                                                               newFormat,
+                                                               isArchived() );
+            }
+        }
+    }
+
+    /**
+     * @return the UUID of the module node holding this asset, or null for a historical version.
+     */
+    /**
+     * Marks the module as modified when one of its assets is removed or moved away, as
+     * nothing else under it changes (incremental backups rely on this).
+     */
+    static void assetsChanged(Node moduleNode) throws RepositoryException {
+        checkout( moduleNode );
+        moduleNode.setProperty( LAST_MODIFIED_PROPERTY_NAME,
+                                Calendar.getInstance() );
+    }
+
+    private String getModuleIdentifier() {
+        if ( isHistoricalVersion() ) {
+            return null;
+        }
+        try {
+            return this.node.getParent().getParent().getIdentifier();
         } catch ( RepositoryException e ) {
             throw new RulesRepositoryException( e );
         }
@@ -580,6 +761,9 @@ public class AssetItem extends CategorisableItem {
     public ModuleItem getModule() {
 
         try {
+            if ( this.module != null ) {
+                return this.module;
+            }
             if ( this.isHistoricalVersion() ) {
                 return this.rulesRepository.loadModule( this.getModuleName() );
             }
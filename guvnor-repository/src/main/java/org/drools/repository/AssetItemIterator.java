@@ -34,6 +34,7 @@ public class AssetItemIterator
 
     protected NodeIterator it;
     protected RulesRepository rulesRepository;
+    protected ModuleItem module;
 
     public AssetItemIterator(NodeIterator nodes,
                              RulesRepository repo) {
@@ -41,9 +42,21 @@ public class AssetItemIterator
         this.rulesRepository = repo;
     }
 
+    /**
+     * @param module the module the assets belong to, whatever module their nodes are in.
+     */
+    AssetItemIterator(NodeIterator nodes,
+                      RulesRepository repo,
+                      ModuleItem module) {
+        this(nodes,
+                repo);
+        this.module = module;
+    }
+
     public AssetItemIterator(AssetItemIterator assetItemIterator) {
         this.it = assetItemIterator.it;
         this.rulesRepository = assetItemIterator.rulesRepository;
+        this.module = assetItemIterator.module;
     }
 
     public boolean hasNext() {
@@ -52,7 +65,8 @@ public class AssetItemIterator
 
     public AssetItem next() {
         return new AssetItem(rulesRepository,
-                it.nextNode());
+                it.nextNode(),
+                module);
     }
 
     public void remove() {
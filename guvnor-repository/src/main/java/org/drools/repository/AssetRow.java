@@ -0,0 +1,199 @@
+/*
+ * Copyright 2012 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.drools.repository;
+
+import java.util.Calendar;
+import java.util.Map;
+
+import javax.jcr.ItemNotFoundException;
+import javax.jcr.Node;
+import javax.jcr.Property;
+import javax.jcr.PropertyIterator;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.Value;
+
+/**
+ * The columns of an asset shown in the asset lists, read from the asset node in one
+ * pass over the properties it needs, instead of one lookup per column through an
+ * {@link AssetItem}. See {@link ModuleItem#listAssetRows(String[], boolean, int, int)}.
+ */
+public class AssetRow {
+
+    static final String[] PROPERTY_NAMES = {
+            VersionableItem.TITLE_PROPERTY_NAME,
+            VersionableItem.FORMAT_PROPERTY_NAME,
+            VersionableItem.DESCRIPTION_PROPERTY_NAME,
+            VersionableItem.STATE_PROPERTY_NAME,
+            VersionableItem.CREATOR_PROPERTY_NAME,
+            VersionableItem.LAST_CONTRIBUTOR_PROPERTY_NAME,
+            VersionableItem.LAST_MODIFIED_PROPERTY_NAME,
+            VersionableItem.CATEGORY_PROPERTY_NAME,
+            VersionableItem.SOURCE_PROPERTY_NAME,
+            AssetItem.DISABLED_PROPERTY_NAME,
+            "jcr:created"};
+
+    private String uuid;
+    private String name = "";
+    private String format = "";
+    private String description = "";
+    private String stateName = "";
+    private String creator = "";
+    private Calendar createdDate;
+    private String lastContributor = "";
+    private Calendar lastModified;
+    private String categorySummary = "";
+    private String externalSource = "";
+    private boolean disabled = false;
+
+    /**
+     * @param names the names of the states and categories resolved so far, by UUID, as
+     *              many rows of a page share them.
+     */
+    AssetRow(Node node,
+             Map<String, String> names) throws RepositoryException {
+        this.uuid = node.getIdentifier();
+        Session session = node.getSession();
+        PropertyIterator properties = node.getProperties(PROPERTY_NAMES);
+        while (properties.hasNext()) {
+            Property property = properties.nextProperty();
+            String propertyName = property.getName();
+            if (VersionableItem.TITLE_PROPERTY_NAME.equals(propertyName)) {
+                name = property.getString();
+            } else if (VersionableItem.FORMAT_PROPERTY_NAME.equals(propertyName)) {
+                format = property.getString();
+            } else if (VersionableItem.DESCRIPTION_PROPERTY_NAME.equals(propertyName)) {
+                description = property.getString();
+            } else if (VersionableItem.STATE_PROPERTY_NAME.equals(propertyName)) {
+                String stateUuid = property.getString();
+                stateName = resolveName(session,
+                        stateUuid,
+                        names);
+                if (stateName == null) {
+                    stateName = "";
+                }
+            } else if (VersionableItem.CREATOR_PROPERTY_NAME.equals(propertyName)) {
+                creator = property.getString();
+            } else if (VersionableItem.LAST_CONTRIBUTOR_PROPERTY_NAME.equals(propertyName)) {
+                lastContributor = property.getString();
+            } else if (VersionableItem.LAST_MODIFIED_PROPERTY_NAME.equals(propertyName)) {
+                lastModified = property.getDate();
+            } else if (VersionableItem.CATEGORY_PROPERTY_NAME.equals(propertyName)) {
+                categorySummary = summarizeCategories(session,
+                        property.isMultiple() ? property.getValues() : new Value[]{property.getValue()},
+                        names);
+            } else if (VersionableItem.SOURCE_PROPERTY_NAME.equals(propertyName)) {
+                externalSource = property.getString();
+            } else if (AssetItem.DISABLED_PROPERTY_NAME.equals(propertyName)) {
+                disabled = property.getBoolean();
+            } else if ("jcr:created".equals(propertyName)) {
+                createdDate = property.getDate();
+            }
+        }
+    }
+
+    /**
+     * The same summary as {@link CategorisableItem#getCategorySummary()}.
+     */
+    private static String summarizeCategories(Session session,
+                                              Value[] values,
+                                              Map<String, String> names) throws RepositoryException {
+        StringBuilder summary = new StringBuilder();
+        int count = 0;
+        for (Value value : values) {
+            String categoryName = resolveName(session,
+                    value.getString(),
+                    names);
+            if (categoryName == null) {
+                continue;
+            }
+            count++;
+            if (count == 4) {
+                summary.append("...");
+                break;
+            }
+            summary.append(categoryName).append(' ');
+        }
+        return summary.toString();
+    }
+
+    private static String resolveName(Session session,
+                                      String uuid,
+                                      Map<String, String> names) throws RepositoryException {
+        if (names.containsKey(uuid)) {
+            return names.get(uuid);
+        }
+        String name;
+        try {
+            name = session.getNodeByIdentifier(uuid).getName();
+        } catch (ItemNotFoundException e) {
+            // removed
+            name = null;
+        }
+        names.put(uuid,
+                name);
+        return name;
+    }
+
+    public String getUUID() {
+        return uuid;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getFormat() {
+        return format;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public String getStateName() {
+        return stateName;
+    }
+
+    public String getCreator() {
+        return creator;
+    }
+
+    public Calendar getCreatedDate() {
+        return createdDate;
+    }
+
+    public String getLastContributor() {
+        return lastContributor;
+    }
+
+    public Calendar getLastModified() {
+        return lastModified;
+    }
+
+    public String getCategorySummary() {
+        return categorySummary;
+    }
+
+    public String getExternalSource() {
+        return externalSource;
+    }
+
+    public boolean isDisabled() {
+        return disabled;
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2012 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.drools.repository;
+
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import javax.jcr.Node;
+import javax.jcr.NodeIterator;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+
+/**
+ * Iterates over the frozen version nodes referenced by the entries of a snapshot
+ * manifest, loading each node only when it is reached.
+ */
+class ManifestNodeIterator
+        implements
+        NodeIterator {
+
+    private final Session session;
+    private final List<SnapshotManifest.Entry> entries;
+    private int position = 0;
+
+    ManifestNodeIterator(Session session,
+                         List<SnapshotManifest.Entry> entries) {
+        this.session = session;
+        this.entries = entries;
+    }
+
+    public Node nextNode() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        SnapshotManifest.Entry entry = entries.get(position++);
+        try {
+            return session.getNodeByIdentifier(entry.getNodeIdentifier());
+        } catch (RepositoryException e) {
+            throw new RulesRepositoryException("Unable to load version of asset [" + entry.getName() + "] from the snapshot manifest",
+                    e);
+        }
+    }
+
+    public Object next() {
+        return nextNode();
+    }
+
+    public boolean hasNext() {
+        return position < entries.size();
+    }
+
+    public void skip(long skipNum) {
+        if (position + skipNum > entries.size()) {
+            throw new NoSuchElementException();
+        }
+        position += skipNum;
+    }
+
+    public long getSize() {
+        return entries.size();
+    }
+
+    public long getPosition() {
+        return position;
+    }
+
+    public void remove() {
+        throw new UnsupportedOperationException("You can't remove an asset from a snapshot manifest.");
+    }
+}
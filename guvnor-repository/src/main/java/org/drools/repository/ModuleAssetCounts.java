@@ -0,0 +1,241 @@
+/*
+ * Copyright 2012 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.drools.repository;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.jcr.Node;
+import javax.jcr.RepositoryException;
+import javax.jcr.Value;
+import javax.jcr.query.Query;
+import javax.jcr.query.QueryResult;
+import javax.jcr.query.Row;
+import javax.jcr.query.RowIterator;
+
+/**
+ * Keeps the number of assets of each format in a module, so the asset lists can be
+ * counted without running (and sorting) a query over the whole module.
+ *
+ * The counts of a module are read with one query over the format and archive flag of
+ * its assets the first time they are needed, and are then kept up to date as assets are
+ * added, removed, archived or change format. Changes that move assets in bulk (a copy,
+ * a move to another module, an import) drop the counts of the modules concerned. The
+ * counts of a module are read again after "guvnor.assetCounts.maxAge" milliseconds (10
+ * minutes by default), which bounds how long changes made in another way (another
+ * cluster node, changes that were never saved) may be missed. At most
+ * "guvnor.assetCounts.cacheSize" modules (1000 by default) are kept.
+ */
+public class ModuleAssetCounts {
+
+    private static final ModuleAssetCounts INSTANCE = new ModuleAssetCounts(Integer.getInteger("guvnor.assetCounts.cacheSize",
+            1000),
+            Long.getLong("guvnor.assetCounts.maxAge",
+                    10 * 60 * 1000));
+
+    private final long maxAge;
+    private final Map<String, Counts> modules;
+
+    ModuleAssetCounts(final int cacheSize,
+                      long maxAge) {
+        this.maxAge = maxAge;
+        this.modules = new LinkedHashMap<String, Counts>(16,
+                0.75f,
+                true) {
+            private static final long serialVersionUID = 510l;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Counts> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    public static ModuleAssetCounts getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @param formats        the formats to count, or null for all of them.
+     * @param excludeFormats true to count the assets that are not of the given formats.
+     * @return the number of assets of the module that are not archived.
+     */
+    public long countAssets(ModuleItem module,
+                            String[] formats,
+                            boolean excludeFormats) {
+        Counts counts = getCounts(module);
+        synchronized (counts) {
+            if (formats == null) {
+                return counts.total;
+            }
+            long count = 0;
+            for (String format : formats) {
+                long[] formatCounts = counts.formats.get(format);
+                if (formatCounts != null) {
+                    count += formatCounts[0];
+                }
+            }
+            return excludeFormats ? counts.total - count : count;
+        }
+    }
+
+    private Counts getCounts(ModuleItem module) {
+        String moduleUuid = module.getUUID();
+        synchronized (modules) {
+            Counts counts = modules.get(moduleUuid);
+            if (counts != null && (maxAge <= 0 || System.currentTimeMillis() - counts.loaded < maxAge)) {
+                return counts;
+            }
+        }
+        Counts counts = loadCounts(module);
+        synchronized (modules) {
+            modules.put(moduleUuid,
+                    counts);
+        }
+        return counts;
+    }
+
+    private Counts loadCounts(ModuleItem module) {
+        try {
+            Node node = module.getNode();
+            String sql = "SELECT " + VersionableItem.FORMAT_PROPERTY_NAME + ", " + VersionableItem.CONTENT_PROPERTY_ARCHIVE_FLAG
+                    + " FROM " + AssetItem.ASSET_NODE_TYPE_NAME
+                    + " WHERE jcr:path LIKE '" + node.getPath() + "/" + ModuleItem.ASSET_FOLDER_NAME + "[%]/%'";
+            Query query = node.getSession().getWorkspace().getQueryManager().createQuery(sql,
+                    Query.SQL);
+            QueryResult result = query.execute();
+            Counts counts = new Counts();
+            RowIterator rows = result.getRows();
+            while (rows.hasNext()) {
+                Row row = rows.nextRow();
+                Value format = row.getValue(VersionableItem.FORMAT_PROPERTY_NAME);
+                Value archived = row.getValue(VersionableItem.CONTENT_PROPERTY_ARCHIVE_FLAG);
+                counts.add(format == null ? VersionableItem.DEFAULT_CONTENT_FORMAT : format.getString(),
+                        archived != null && archived.getBoolean(),
+                        1);
+            }
+            return counts;
+        } catch (RepositoryException e) {
+            throw new RulesRepositoryException(e);
+        }
+    }
+
+    /**
+     * Applies a change to the counts of a module, if they are loaded.
+     */
+    private void update(String moduleUuid,
+                        String format,
+                        boolean archived,
+                        int delta) {
+        Counts counts;
+        synchronized (modules) {
+            counts = modules.get(moduleUuid);
+        }
+        if (counts != null) {
+            synchronized (counts) {
+                counts.add(format,
+                        archived,
+                        delta);
+            }
+        }
+    }
+
+    void assetAdded(String moduleUuid,
+                    String format) {
+        update(moduleUuid,
+                format,
+                false,
+                1);
+    }
+
+    void assetRemoved(String moduleUuid,
+                      String format,
+                      boolean archived) {
+        update(moduleUuid,
+                format,
+                archived,
+                -1);
+    }
+
+    void assetArchived(String moduleUuid,
+                       String format,
+                       boolean archived) {
+        update(moduleUuid,
+                format,
+                !archived,
+                -1);
+        update(moduleUuid,
+                format,
+                archived,
+                1);
+    }
+
+    void formatChanged(String moduleUuid,
+                       String oldFormat,
+                       String newFormat,
+                       boolean archived) {
+        update(moduleUuid,
+                oldFormat,
+                archived,
+                -1);
+        update(moduleUuid,
+                newFormat,
+                archived,
+                1);
+    }
+
+    /**
+     * Drops the counts of a module, which are read again when they are needed.
+     */
+    public void invalidate(String moduleUuid) {
+        synchronized (modules) {
+            modules.remove(moduleUuid);
+        }
+    }
+
+    public void invalidateAll() {
+        synchronized (modules) {
+            modules.clear();
+        }
+    }
+
+    /**
+     * The counts of a module: per format, the assets that are not archived and those that are.
+     */
+    private static class Counts {
+
+        private final long loaded = System.currentTimeMillis();
+        private final Map<String, long[]> formats = new HashMap<String, long[]>();
+        private long total = 0;
+
+        private void add(String format,
+                         boolean archived,
+                         int delta) {
+            long[] formatCounts = formats.get(format);
+            if (formatCounts == null) {
+                formatCounts = new long[2];
+                formats.put(format,
+                        formatCounts);
+            }
+            formatCounts[archived ? 1 : 0] += delta;
+            if (!archived) {
+                total += delta;
+            }
+        }
+    }
+}
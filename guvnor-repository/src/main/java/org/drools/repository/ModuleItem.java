@@ -62,9 +62,19 @@ public class ModuleItem extends VersionableItem {
     public static final String WORKSPACE_PROPERTY_NAME = "drools:workspace";
     public static final String DEPENDENCIES_PROPERTY_NAME = "drools:dependencies";
 
+    /**
+     * Set on manifest snapshots, which refer to asset versions instead of holding copies of the assets.
+     * See {@link SnapshotManifest}.
+     */
+    public static final String SNAPSHOT_MANIFEST_PROPERTY_NAME = "drools:snapshotManifest";
+
     private static final String COMPILED_PACKAGE_PROPERTY_NAME = "drools:compiledPackage";
     private final String BINARY_UP_TO_DATE = "drools:binaryUpToDate";
 
+    // A snapshot never changes, so its manifest is only parsed once
+    private SnapshotManifest snapshotManifest;
+    private boolean snapshotManifestLoaded = false;
+
     /**
      * Constructs an object of type ModuleItem corresponding the specified
      * node
@@ -103,6 +113,19 @@ public class ModuleItem extends VersionableItem {
         return super.getName();
     }
 
+    @Override
+    public void updateTitle(String title) throws RulesRepositoryException {
+        super.updateTitle(title);
+        rulesRepository.moduleChanged(this);
+    }
+
+    @Override
+    public VersionableItem archiveItem(boolean data) {
+        super.archiveItem(data);
+        rulesRepository.moduleChanged(this);
+        return this;
+    }
+
     /**
      * @return true if this module is actually a snapshot.
      */
@@ -114,6 +137,71 @@ public class ModuleItem extends VersionableItem {
         }
     }
 
+    /**
+     * @return true if this module is a snapshot that refers to asset versions through a manifest,
+     *         rather than holding its own copy of the assets.
+     */
+    public boolean isManifestSnapshot() {
+        try {
+            return this.node.hasProperty(SNAPSHOT_MANIFEST_PROPERTY_NAME);
+        } catch (RepositoryException e) {
+            throw new RulesRepositoryException(e);
+        }
+    }
+
+    /**
+     * @return the manifest of a manifest snapshot, or null if this module is not one.
+     */
+    public SnapshotManifest getSnapshotManifest() {
+        if (!snapshotManifestLoaded) {
+            if (isManifestSnapshot()) {
+                snapshotManifest = new SnapshotManifest(getStringPropertyArray(SNAPSHOT_MANIFEST_PROPERTY_NAME));
+            }
+            snapshotManifestLoaded = true;
+        }
+        return snapshotManifest;
+    }
+
+    /**
+     * @return this module if it is a manifest snapshot, as the module its assets belong to
+     *         is not the one their version nodes tell. Null otherwise.
+     */
+    private ModuleItem getManifestModule() {
+        return getSnapshotManifest() != null ? this : null;
+    }
+
+    /**
+     * Describes the assets of this module (archived ones included) with a manifest, so
+     * modules can be compared without loading every asset by name.
+     * This is the stored manifest for a manifest snapshot, otherwise it is built from the
+     * asset nodes in a single pass, with the asset nodes as content nodes.
+     */
+    public SnapshotManifest getAssetManifest() {
+        SnapshotManifest manifest = getSnapshotManifest();
+        if (manifest != null) {
+            return manifest;
+        }
+        manifest = new SnapshotManifest();
+        try {
+            NodeIterator assetNodes = getVersionContentNode().getNode(ASSET_FOLDER_NAME).getNodes();
+            while (assetNodes.hasNext()) {
+                AssetItem asset = new AssetItem(this.rulesRepository,
+                        assetNodes.nextNode());
+                Calendar lastModified = asset.getLastModified();
+                manifest.add(new SnapshotManifest.Entry(asset.getName(),
+                        asset.getUUID(),
+                        asset.getUUID(),
+                        asset.getFormat(),
+                        asset.getVersionNumber(),
+                        lastModified == null ? 0 : lastModified.getTimeInMillis(),
+                        asset.isArchived()));
+            }
+        } catch (RepositoryException e) {
+            throw new RulesRepositoryException(e);
+        }
+        return manifest;
+    }
+
     /**
      * Set this to indicate if the binary is up to date, or not.
      */
@@ -174,6 +262,7 @@ public class ModuleItem extends VersionableItem {
         this.updateStringArrayProperty(workspace,
                 WORKSPACE_PROPERTY_NAME,
                 false);
+        rulesRepository.moduleChanged(this);
     }
 
     /**
@@ -197,6 +286,7 @@ public class ModuleItem extends VersionableItem {
             this.updateStringArrayProperty(newWorkspaces,
                     WORKSPACE_PROPERTY_NAME,
                     false);
+            rulesRepository.moduleChanged(this);
         }
     }
 
@@ -218,6 +308,7 @@ public class ModuleItem extends VersionableItem {
             this.updateStringArrayProperty(existingWorkspaceList.toArray(new String[existingWorkspaceList.size()]),
                     WORKSPACE_PROPERTY_NAME,
                     false);
+            rulesRepository.moduleChanged(this);
         }
     }
 
@@ -289,6 +380,8 @@ public class ModuleItem extends VersionableItem {
                     assetNode);
 
             asset.updateState(StateItem.DRAFT_STATE_NAME);
+            ModuleAssetCounts.getInstance().assetAdded(this.node.getIdentifier(),
+                    format != null ? format : AssetItem.DEFAULT_CONTENT_FORMAT);
 
             if (initialCategory != null) {
                 asset.addCategory(initialCategory);
@@ -333,6 +426,7 @@ public class ModuleItem extends VersionableItem {
                     false);
 
             Node assetNode = assetsFolder.getNode(globalAssetItem.getName());
+            ModuleAssetCounts.getInstance().invalidate(this.node.getIdentifier());
 
             return new AssetItem(this.rulesRepository,
                     assetNode);
@@ -379,6 +473,7 @@ public class ModuleItem extends VersionableItem {
         try {
             log.info("USER:" + getCurrentUserName() + " REMOVEING module [" + getName() + "]");
             this.node.remove();
+            ModuleSummaryIndex.getInstance().invalidate();
         } catch (RepositoryException e) {
             throw new RulesRepositoryException("Was not able to delete module.",
                     e);
@@ -394,10 +489,9 @@ public class ModuleItem extends VersionableItem {
     public String[] getDependencies() {
         Map<String, String> result = new HashMap<String, String>();
         try {
-            Node content = getVersionContentNode();
-            Iterator<AssetItem> assets = new AssetItemIterator(content.getNode(
-                    ASSET_FOLDER_NAME).getNodes(),
-                    this.rulesRepository);
+            Iterator<AssetItem> assets = new AssetItemIterator(getAssetNodes(),
+                    this.rulesRepository,
+                    getManifestModule());
             while (assets.hasNext()) {
                 AssetItem asset = assets.next();
 
@@ -610,16 +704,69 @@ public class ModuleItem extends VersionableItem {
      */
     public Iterator<AssetItem> getAssets() {
         try {
-            Node content = getVersionContentNode();
-            return new VersionedAssetItemIterator(content.getNode(ASSET_FOLDER_NAME).getNodes(),
+            return new VersionedAssetItemIterator(getAssetNodes(),
                     this.rulesRepository,
-                    this.getDependencies());
+                    this.getDependencies(),
+                    getManifestModule());
         } catch (RepositoryException e) {
             throw new RulesRepositoryException(e);
         }
 
     }
 
+    /**
+     * The asset nodes of this module: the children of the asset folder, or the
+     * version nodes listed in the manifest for a manifest snapshot.
+     */
+    private NodeIterator getAssetNodes() throws RepositoryException {
+        SnapshotManifest manifest = getSnapshotManifest();
+        if (manifest != null) {
+            return new ManifestNodeIterator(node.getSession(),
+                    manifest.getEntries());
+        }
+        return getVersionContentNode().getNode(ASSET_FOLDER_NAME).getNodes();
+    }
+
+    /**
+     * Lists the assets of a manifest snapshot, sorted by name as the queries are.
+     *
+     * @param formats        the formats to filter on, or null for all formats.
+     * @param excludeFormats true to list the assets that are not of the given formats.
+     * @param archived       true or false to only list archived or not archived assets, null to list both.
+     */
+    private AssetItemIterator listManifestAssets(SnapshotManifest manifest,
+                                                 String[] formats,
+                                                 boolean excludeFormats,
+                                                 Boolean archived) {
+        Set<String> formatSet = formats == null ? null : new HashSet<String>(Arrays.asList(formats));
+        List<SnapshotManifest.Entry> entries = new ArrayList<SnapshotManifest.Entry>();
+        for (SnapshotManifest.Entry entry : manifest.getEntries()) {
+            if (archived != null && archived.booleanValue() != entry.isArchived()) {
+                continue;
+            }
+            if (formatSet != null && formatSet.contains(entry.getFormat()) == excludeFormats) {
+                continue;
+            }
+            entries.add(entry);
+        }
+        Collections.sort(entries,
+                new Comparator<SnapshotManifest.Entry>() {
+                    public int compare(SnapshotManifest.Entry e1,
+                                       SnapshotManifest.Entry e2) {
+                        return e1.getName().compareTo(e2.getName());
+                    }
+                });
+        try {
+            return new VersionedAssetItemIterator(new ManifestNodeIterator(node.getSession(),
+                    entries),
+                    this.rulesRepository,
+                    this.getDependencies(),
+                    this);
+        } catch (RepositoryException e) {
+            throw new RulesRepositoryException(e);
+        }
+    }
+
     /**
      * This will query any assets stored under this module. For example, you
      * can pass in <code>"drools:format = 'drl'"</code> to get a list of only a
@@ -630,6 +777,16 @@ public class ModuleItem extends VersionableItem {
      */
     public AssetItemIterator queryAssets(String fieldPredicates,
                                          boolean seekArchived) {
+        SnapshotManifest manifest = getSnapshotManifest();
+        if (manifest != null) {
+            if (fieldPredicates.length() > 0) {
+                throw new RulesRepositoryException("Unable to query the assets of snapshot [" + getSnapshotName() + "]: manifest snapshots only support listing by format.");
+            }
+            return listManifestAssets(manifest,
+                    null,
+                    false,
+                    seekArchived ? null : Boolean.FALSE);
+        }
         try {
             String sql;
             if (isHistoricalVersion()) {
@@ -683,6 +840,13 @@ public class ModuleItem extends VersionableItem {
     }
 
     public AssetItemIterator listArchivedAssets() {
+        SnapshotManifest manifest = getSnapshotManifest();
+        if (manifest != null) {
+            return listManifestAssets(manifest,
+                    null,
+                    false,
+                    Boolean.TRUE);
+        }
         return queryAssets(AssetItem.CONTENT_PROPERTY_ARCHIVE_FLAG + " = 'true'",
                 true);
     }
@@ -710,35 +874,135 @@ public class ModuleItem extends VersionableItem {
      * This will load an iterator for assets of the given format type.
      */
     public AssetItemIterator listAssetsByFormat(String... formats) {
+        SnapshotManifest manifest = getSnapshotManifest();
+        if (manifest != null) {
+            return listManifestAssets(manifest,
+                    formats,
+                    false,
+                    Boolean.FALSE);
+        }
 
+        return queryAssets(formatPredicate(formats,
+                false));
+    }
+
+    public AssetItemIterator listAssetsNotOfFormat(String[] formats) {
+        SnapshotManifest manifest = getSnapshotManifest();
+        if (manifest != null) {
+            return listManifestAssets(manifest,
+                    formats,
+                    true,
+                    Boolean.FALSE);
+        }
+        return queryAssets(formatPredicate(formats,
+                true));
+    }
+
+    private static String formatPredicate(String[] formats,
+                                          boolean excludeFormats) {
         if (formats.length == 1) {
-            return queryAssets(FORMAT_PROPERTY_NAME + "='" + formats[0] + "'");
-        } else {
-            StringBuilder predicateBuilder = new StringBuilder(" ( ");
-            for (int i = 0; i < formats.length; i++) {
-                predicateBuilder.append(FORMAT_PROPERTY_NAME).append("='").append(formats[i]).append("'");
-                if (i != formats.length - 1) {
-                    predicateBuilder.append(" OR ");
-                }
+            return (excludeFormats ? "not " : "") + FORMAT_PROPERTY_NAME + "='" + formats[0] + "'";
+        }
+        StringBuilder predicateBuilder = new StringBuilder(excludeFormats ? "not ( " : " ( ");
+        for (int i = 0; i < formats.length; i++) {
+            predicateBuilder.append(FORMAT_PROPERTY_NAME).append("='").append(formats[i]).append("'");
+            if (i != formats.length - 1) {
+                predicateBuilder.append(" OR ");
             }
-            predicateBuilder.append(" ) ");
-            return queryAssets(predicateBuilder.toString());
         }
+        predicateBuilder.append(" ) ");
+        return predicateBuilder.toString();
     }
 
-    public AssetItemIterator listAssetsNotOfFormat(String[] formats) {
-        if (formats.length == 1) {
-            return queryAssets("not drools:format='" + formats[0] + "'");
-        } else {
-            StringBuilder predicateBuilder = new StringBuilder("not ( ");
-            for (int i = 0; i < formats.length; i++) {
-                predicateBuilder.append("drools:format='").append(formats[i]).append("'");
-                if (!(i == formats.length - 1)) {
-                    predicateBuilder.append(" OR ");
+    /**
+     * Counts the assets of this module that are not archived, optionally of (or not of) some
+     * formats. The counts of the head version of a module are kept up to date as its assets
+     * change (see {@link ModuleAssetCounts}), so this does not run a query.
+     *
+     * @param formats        the formats to count, or null for all of them.
+     * @param excludeFormats true to count the assets that are not of the given formats.
+     */
+    public long getAssetCount(String[] formats,
+                              boolean excludeFormats) {
+        if (getSnapshotManifest() == null && !isHistoricalVersion() && !isSnapshot()) {
+            return ModuleAssetCounts.getInstance().countAssets(this,
+                    formats,
+                    excludeFormats);
+        }
+        AssetItemIterator it = listAssets(formats,
+                excludeFormats);
+        long size = it.getSize();
+        if (size < 0) {
+            size = 0;
+            while (it.hasNext()) {
+                it.next();
+                size++;
+            }
+        }
+        return size;
+    }
+
+    private AssetItemIterator listAssets(String[] formats,
+                                         boolean excludeFormats) {
+        if (formats == null) {
+            return queryAssets("");
+        }
+        return excludeFormats ? listAssetsNotOfFormat(formats) : listAssetsByFormat(formats);
+    }
+
+    /**
+     * Reads a page of the assets of this module that are not archived, sorted by title, with
+     * only the columns the asset lists show. Unlike queryAssets(), the query does not ask for
+     * its exact size (see getAssetCount()), and the rows are read from the nodes directly.
+     *
+     * @param formats        the formats to list, or null for all of them.
+     * @param excludeFormats true to list the assets that are not of the given formats.
+     * @param maxRows        the maximum number of rows, or -1 for all the rows after skip.
+     */
+    public List<AssetRow> listAssetRows(String[] formats,
+                                        boolean excludeFormats,
+                                        int skip,
+                                        int maxRows) {
+        List<AssetRow> rows = new ArrayList<AssetRow>();
+        Map<String, String> names = new HashMap<String, String>();
+        try {
+            if (getSnapshotManifest() != null || isHistoricalVersion()) {
+                AssetItemIterator it = listAssets(formats,
+                        excludeFormats);
+                it.skip(skip);
+                while (it.hasNext() && (maxRows < 0 || rows.size() < maxRows)) {
+                    rows.add(new AssetRow(it.next().getVersionContentNode(),
+                            names));
+                }
+                return rows;
+            }
+
+            String sql = "SELECT * FROM " + AssetItem.ASSET_NODE_TYPE_NAME
+                    + " WHERE jcr:path LIKE '" + node.getPath() + "/" + ASSET_FOLDER_NAME + "[%]/%'";
+            if (formats != null) {
+                sql += " AND " + formatPredicate(formats,
+                        excludeFormats);
+            }
+            sql += " AND " + AssetItem.CONTENT_PROPERTY_ARCHIVE_FLAG + " = 'false'";
+            sql += " ORDER BY " + AssetItem.TITLE_PROPERTY_NAME;
+
+            Query q = node.getSession().getWorkspace().getQueryManager().createQuery(sql,
+                    Query.SQL);
+            NodeIterator it = q.execute().getNodes();
+            if (skip > 0) {
+                try {
+                    it.skip(skip);
+                } catch (NoSuchElementException e) {
+                    return rows;
                 }
             }
-            predicateBuilder.append(" ) ");
-            return queryAssets(predicateBuilder.toString());
+            while (it.hasNext() && (maxRows < 0 || rows.size() < maxRows)) {
+                rows.add(new AssetRow(it.nextNode(),
+                        names));
+            }
+            return rows;
+        } catch (RepositoryException e) {
+            throw new RulesRepositoryException(e);
         }
     }
 
@@ -747,6 +1011,17 @@ public class ModuleItem extends VersionableItem {
      */
     public AssetItem loadAsset(String name) {
         try {
+            SnapshotManifest manifest = getSnapshotManifest();
+            if (manifest != null) {
+                SnapshotManifest.Entry entry = manifest.getEntry(name);
+                if (entry == null) {
+                    throw new RulesRepositoryException("Snapshot [" + getSnapshotName() + "] does not contain asset [" + name + "]");
+                }
+                return new AssetItem(
+                        this.rulesRepository,
+                        node.getSession().getNodeByIdentifier(entry.getNodeIdentifier()),
+                        this);
+            }
             Node content = getVersionContentNode();
             return new AssetItem(
                     this.rulesRepository,
@@ -778,6 +1053,10 @@ public class ModuleItem extends VersionableItem {
      * Returns true if this module contains an asset of the given name.
      */
     public boolean containsAsset(String name) {
+        SnapshotManifest manifest = getSnapshotManifest();
+        if (manifest != null) {
+            return manifest.getEntry(name) != null;
+        }
         Node content;
         try {
             content = getVersionContentNode();
@@ -1041,6 +1320,43 @@ public class ModuleItem extends VersionableItem {
         }
     }
 
+    /**
+     * Opens the compiled binary of this module for reading, without loading it in
+     * memory. The caller must close the stream.
+     *
+     * @return the stream, or null if the module has not been built.
+     */
+    public InputStream getCompiledPackageStream() {
+        try {
+            Node ruleNode = getVersionContentNode();
+            if (ruleNode.hasProperty(COMPILED_PACKAGE_PROPERTY_NAME)) {
+                return ruleNode.getProperty(COMPILED_PACKAGE_PROPERTY_NAME).getBinary().getStream();
+            }
+            return null;
+        } catch (RepositoryException e) {
+            log.error(e.getMessage(),
+                    e);
+            throw new RulesRepositoryException(e);
+        }
+    }
+
+    /**
+     * @return the size of the compiled binary in bytes, or -1 if the module has not been built.
+     */
+    public long getCompiledPackageSize() {
+        try {
+            Node ruleNode = getVersionContentNode();
+            if (ruleNode.hasProperty(COMPILED_PACKAGE_PROPERTY_NAME)) {
+                return ruleNode.getProperty(COMPILED_PACKAGE_PROPERTY_NAME).getLength();
+            }
+            return -1;
+        } catch (RepositoryException e) {
+            log.error(e.getMessage(),
+                    e);
+            throw new RulesRepositoryException(e);
+        }
+    }
+
     /**
      * This is a convenience method for returning the binary data as a byte
      * array.
@@ -1123,8 +1439,10 @@ public class ModuleItem extends VersionableItem {
         ruleSubPackageNode.setProperty(ModuleItem.CONTENT_PROPERTY_ARCHIVE_FLAG,
                 false);
 
-        return new ModuleItem(this.rulesRepository,
+        ModuleItem subModule = new ModuleItem(this.rulesRepository,
                 ruleSubPackageNode);
+        rulesRepository.moduleChanged(subModule);
+        return subModule;
     }
 
     /**
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2012 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.drools.repository;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * What the module tree shows of a module: its name, archive flag, workspaces and
+ * sub-modules. Summaries are kept by the {@link ModuleSummaryIndex} and never change;
+ * a change to a module replaces its summary.
+ */
+public class ModuleSummary {
+
+    private final String uuid;
+    private final String name;
+    private final boolean archived;
+    private final String[] workspaces;
+    private final String parentUuid;
+    private List<ModuleSummary> subModules = Collections.emptyList();
+
+    ModuleSummary(String uuid,
+                  String name,
+                  boolean archived,
+                  String[] workspaces,
+                  String parentUuid) {
+        this.uuid = uuid;
+        this.name = name;
+        this.archived = archived;
+        this.workspaces = workspaces;
+        this.parentUuid = parentUuid;
+    }
+
+    /**
+     * @return a copy without the sub-modules, to build a new tree from.
+     */
+    ModuleSummary copy() {
+        return new ModuleSummary(uuid,
+                name,
+                archived,
+                workspaces,
+                parentUuid);
+    }
+
+    void setSubModules(List<ModuleSummary> subModules) {
+        this.subModules = Collections.unmodifiableList(subModules);
+    }
+
+    public String getUUID() {
+        return uuid;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public boolean isArchived() {
+        return archived;
+    }
+
+    public String[] getWorkspaces() {
+        return workspaces.clone();
+    }
+
+    public boolean isInWorkspace(String workspace) {
+        for (String w : workspaces) {
+            if (w.equals(workspace)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the UUID of the module this one is nested in, or null for a top level module.
+     */
+    public String getParentUUID() {
+        return parentUuid;
+    }
+
+    /**
+     * @return the sub-modules, sorted by name.
+     */
+    public List<ModuleSummary> getSubModules() {
+        return subModules;
+    }
+}
@@ -0,0 +1,253 @@
+/*
+ * Copyright 2012 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.drools.repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.jcr.Node;
+import javax.jcr.NodeIterator;
+import javax.jcr.Property;
+import javax.jcr.RepositoryException;
+import javax.jcr.Value;
+
+/**
+ * Keeps a {@link ModuleSummary} of every module, so the module tree can be listed,
+ * filtered by workspace and paged through without loading each module.
+ *
+ * The summaries are read with one walk over the module nodes the first time they are
+ * needed, and are then kept up to date as modules are created, renamed, archived or
+ * change workspaces, once these changes are saved (see RulesRepository.save() and
+ * checkin()). Changes that add or remove modules in bulk (a copy, a removal, an
+ * import) drop the summaries. They are read again after "guvnor.moduleSummaries.maxAge"
+ * milliseconds (10 minutes by default), which bounds how long changes made in another
+ * way (another cluster node, changes that were never saved) may be missed.
+ */
+public class ModuleSummaryIndex {
+
+    private static final ModuleSummaryIndex INSTANCE = new ModuleSummaryIndex(Long.getLong("guvnor.moduleSummaries.maxAge",
+            10 * 60 * 1000));
+
+    private static final Comparator<ModuleSummary> BY_NAME = new Comparator<ModuleSummary>() {
+        public int compare(ModuleSummary s1,
+                           ModuleSummary s2) {
+            return s1.getName().compareTo(s2.getName());
+        }
+    };
+
+    private final long maxAge;
+    private Summaries summaries;
+
+    ModuleSummaryIndex(long maxAge) {
+        this.maxAge = maxAge;
+    }
+
+    public static ModuleSummaryIndex getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @return the top level modules, sorted by name, including the archived ones. The
+     *         global area is left out, as {@link ModuleIterator} does.
+     */
+    public List<ModuleSummary> listModules(RulesRepository repository) {
+        try {
+            Node area = repository.getAreaNode(RulesRepository.MODULE_AREA);
+            String areaId = area.getIdentifier();
+            synchronized (this) {
+                if (summaries != null && summaries.areaId.equals(areaId)
+                        && (maxAge <= 0 || System.currentTimeMillis() - summaries.loaded < maxAge)) {
+                    return summaries.modules;
+                }
+            }
+            Summaries loaded = load(area);
+            synchronized (this) {
+                summaries = loaded;
+            }
+            return loaded.modules;
+        } catch (RepositoryException e) {
+            throw new RulesRepositoryException(e);
+        }
+    }
+
+    private Summaries load(Node area) throws RepositoryException {
+        List<ModuleSummary> all = new ArrayList<ModuleSummary>();
+        collect(area,
+                null,
+                all);
+        return new Summaries(area.getIdentifier(),
+                System.currentTimeMillis(),
+                all);
+    }
+
+    private void collect(Node folder,
+                         String parentUuid,
+                         List<ModuleSummary> all) throws RepositoryException {
+        NodeIterator nodes = folder.getNodes();
+        while (nodes.hasNext()) {
+            Node node = nodes.nextNode();
+            if (RulesRepository.GLOBAL_AREA.equals(node.getName())
+                    || !node.getPrimaryNodeType().getName().equals(ModuleItem.MODULE_TYPE_NAME)) {
+                continue;
+            }
+            ModuleSummary summary = readSummary(node,
+                    parentUuid);
+            all.add(summary);
+            if (node.hasNode(RulesRepository.MODULE_AREA)) {
+                collect(node.getNode(RulesRepository.MODULE_AREA),
+                        summary.getUUID(),
+                        all);
+            }
+        }
+    }
+
+    private static ModuleSummary readSummary(Node node,
+                                             String parentUuid) throws RepositoryException {
+        String name = node.hasProperty(VersionableItem.TITLE_PROPERTY_NAME)
+                ? node.getProperty(VersionableItem.TITLE_PROPERTY_NAME).getString() : node.getName();
+        boolean archived = node.hasProperty(VersionableItem.CONTENT_PROPERTY_ARCHIVE_FLAG)
+                && node.getProperty(VersionableItem.CONTENT_PROPERTY_ARCHIVE_FLAG).getBoolean();
+        String[] workspaces = new String[0];
+        if (node.hasProperty(ModuleItem.WORKSPACE_PROPERTY_NAME)) {
+            Property property = node.getProperty(ModuleItem.WORKSPACE_PROPERTY_NAME);
+            Value[] values = property.isMultiple() ? property.getValues() : new Value[]{property.getValue()};
+            workspaces = new String[values.length];
+            for (int i = 0; i < values.length; i++) {
+                workspaces[i] = values[i].getString();
+            }
+        }
+        return new ModuleSummary(node.getIdentifier(),
+                name,
+                archived,
+                workspaces,
+                parentUuid);
+    }
+
+    /**
+     * Reads the summary of a module again after it was created, renamed, archived or
+     * changed workspaces and saved, if the summaries are loaded.
+     */
+    void moduleChanged(ModuleItem module) {
+        Summaries current;
+        synchronized (this) {
+            current = summaries;
+        }
+        if (current == null || module.isHistoricalVersion()) {
+            return;
+        }
+        try {
+            Node node = module.getNode();
+            Node folder = node.getParent();
+            String parentUuid;
+            if (folder.getIdentifier().equals(current.areaId)) {
+                parentUuid = null;
+            } else if (current.byUuid.containsKey(folder.getParent().getIdentifier())) {
+                parentUuid = folder.getParent().getIdentifier();
+            } else {
+                // a snapshot, or a module of another repository
+                return;
+            }
+            if (RulesRepository.GLOBAL_AREA.equals(node.getName())) {
+                return;
+            }
+            ModuleSummary summary = readSummary(node,
+                    parentUuid);
+            synchronized (this) {
+                if (summaries != null && summaries.areaId.equals(current.areaId)) {
+                    summaries = summaries.with(summary);
+                }
+            }
+        } catch (RepositoryException e) {
+            throw new RulesRepositoryException(e);
+        }
+    }
+
+    /**
+     * Drops the summaries, which are read again when they are needed.
+     */
+    public synchronized void invalidate() {
+        summaries = null;
+    }
+
+    /**
+     * The summaries of all the modules of a repository, linked into a tree.
+     */
+    private static class Summaries {
+
+        private final String areaId;
+        private final long loaded;
+        private final Map<String, ModuleSummary> byUuid = new LinkedHashMap<String, ModuleSummary>();
+        private final List<ModuleSummary> modules;
+
+        private Summaries(String areaId,
+                          long loaded,
+                          Collection<ModuleSummary> all) {
+            this.areaId = areaId;
+            this.loaded = loaded;
+            Map<String, List<ModuleSummary>> children = new HashMap<String, List<ModuleSummary>>();
+            List<ModuleSummary> topLevel = new ArrayList<ModuleSummary>();
+            for (ModuleSummary summary : all) {
+                byUuid.put(summary.getUUID(),
+                        summary);
+                if (summary.getParentUUID() == null) {
+                    topLevel.add(summary);
+                } else {
+                    List<ModuleSummary> siblings = children.get(summary.getParentUUID());
+                    if (siblings == null) {
+                        siblings = new ArrayList<ModuleSummary>();
+                        children.put(summary.getParentUUID(),
+                                siblings);
+                    }
+                    siblings.add(summary);
+                }
+            }
+            for (Map.Entry<String, List<ModuleSummary>> entry : children.entrySet()) {
+                ModuleSummary parent = byUuid.get(entry.getKey());
+                if (parent != null) {
+                    Collections.sort(entry.getValue(),
+                            BY_NAME);
+                    parent.setSubModules(entry.getValue());
+                }
+            }
+            Collections.sort(topLevel,
+                    BY_NAME);
+            this.modules = Collections.unmodifiableList(topLevel);
+        }
+
+        /**
+         * @return new summaries where the given one is added or replaces the one with the same UUID.
+         */
+        private Summaries with(ModuleSummary changed) {
+            Map<String, ModuleSummary> all = new LinkedHashMap<String, ModuleSummary>();
+            for (ModuleSummary summary : byUuid.values()) {
+                all.put(summary.getUUID(),
+                        summary.copy());
+            }
+            all.put(changed.getUUID(),
+                    changed);
+            return new Summaries(areaId,
+                    loaded,
+                    all.values());
+        }
+    }
+}
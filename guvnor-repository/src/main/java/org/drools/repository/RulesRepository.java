@@ -16,6 +16,10 @@
 
 package org.drools.repository;
 
+import org.drools.repository.backup.ManifestSnapshotExportFilter;
+import org.drools.repository.backup.RepositoryBackupReader;
+import org.drools.repository.backup.RepositoryBackupWriter;
+import org.drools.repository.backup.RepositoryImporter;
 import org.drools.repository.events.StorageEventManager;
 import org.drools.repository.migration.MigrateDroolsPackage;
 import org.drools.repository.utils.NodeUtils;
@@ -36,9 +40,14 @@ import javax.jcr.RepositoryException;
 import javax.jcr.Session;
 import javax.jcr.query.Query;
 import javax.jcr.query.QueryResult;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.sax.SAXTransformerFactory;
+import javax.xml.transform.sax.TransformerHandler;
+import javax.xml.transform.stream.StreamResult;
 import java.io.*;
 import java.util.*;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
 
 /**
@@ -79,6 +88,12 @@ public class RulesRepository {
 
     private static final Logger log = LoggerFactory.getLogger(RulesRepository.class);
 
+    /**
+     * When true, snapshots are created as manifest snapshots (see {@link SnapshotManifest})
+     * instead of full copies of the module.
+     */
+    private static final boolean MANIFEST_SNAPSHOTS = Boolean.getBoolean("guvnor.snapshot.manifest");
+
     /**
      * The name of the module area of the repository
      */
@@ -125,6 +140,12 @@ public class RulesRepository {
 
     private final Session session;
 
+    /**
+     * The modules whose summary changed since the session was last saved, by UUID. The
+     * {@link ModuleSummaryIndex} is only told once the changes are saved.
+     */
+    private final Map<String, ModuleItem> changedModules = new LinkedHashMap<String, ModuleItem>();
+
     boolean initialized = false;
 
     /**
@@ -393,7 +414,9 @@ public class RulesRepository {
             String destPath = this.getAreaNode(MODULE_AREA).getPath() + "/" + destinationModule + "/" + ModuleItem.ASSET_FOLDER_NAME + "/" + safeDestinationName;
             this.session.getWorkspace().copy(sourcePath,
                     destPath);
-            AssetItem dest = loadModule(destinationModule).loadAsset(safeDestinationName);
+            ModuleItem destination = loadModule(destinationModule);
+            ModuleAssetCounts.getInstance().invalidate(destination.getUUID());
+            AssetItem dest = destination.loadAsset(safeDestinationName);
             //            if (dest.getContent() != null ) {
             //                dest.updateContent( dest.getContent().replaceAll( source.getName(), dest.getName() ) );
             //            }
@@ -561,9 +584,25 @@ public class RulesRepository {
     /**
      * This will copy the module to the snapshot area. Creating a copy for
      * deployment, etc.
+     * The snapshot is a manifest snapshot if the "guvnor.snapshot.manifest"
+     * system property is set to true.
      */
     public void createModuleSnapshot(String moduleName,
                                       String snapshotName) {
+        createModuleSnapshot(moduleName,
+                snapshotName,
+                MANIFEST_SNAPSHOTS);
+    }
+
+    /**
+     * This will create a snapshot of the module in the snapshot area.
+     *
+     * @param manifest if true, the snapshot only refers to the current version of each asset
+     *                 (see {@link SnapshotManifest}), otherwise the whole module is copied.
+     */
+    public void createModuleSnapshot(String moduleName,
+                                      String snapshotName,
+                                      boolean manifest) {
         log.debug("Creating snapshot for [" + moduleName + "] called [" + snapshotName + "]");
         try {
             Node snaps = this.getAreaNode(MODULE_SNAPSHOT_AREA);
@@ -579,8 +618,14 @@ public class RulesRepository {
             Node moduleNode = this.getAreaNode(MODULE_AREA).getNode(moduleName);
 
             long start = System.currentTimeMillis();
-            this.session.getWorkspace().copy(moduleNode.getPath(),
-                    newName);
+            if (manifest) {
+                createManifestSnapshot(moduleNode,
+                        snaps.getNode(nodePath),
+                        snapshotName);
+            } else {
+                this.session.getWorkspace().copy(moduleNode.getPath(),
+                        newName);
+            }
             log.debug("Time taken for snap: " + (System.currentTimeMillis() - start));
 
         } catch (RepositoryException e) {
@@ -590,6 +635,77 @@ public class RulesRepository {
         }
     }
 
+    /**
+     * Creates a snapshot node holding the module properties (including the compiled binary)
+     * and a manifest of the frozen version of each asset, instead of copies of the assets.
+     * Assets with changes that were not checked in, or that were never checked in, are copied
+     * into the snapshot as they are, so taking a snapshot does not create versions of the assets.
+     */
+    private void createManifestSnapshot(Node moduleNode,
+                                        Node snapshotFolder,
+                                        String snapshotName) throws RepositoryException {
+        Node snapshotNode = snapshotFolder.addNode(snapshotName,
+                ModuleItem.MODULE_TYPE_NAME);
+        PropertyIterator properties = moduleNode.getProperties();
+        while (properties.hasNext()) {
+            Property property = properties.nextProperty();
+            if (property.getDefinition().isProtected()) {
+                continue;
+            }
+            if (property.isMultiple()) {
+                snapshotNode.setProperty(property.getName(),
+                        property.getValues());
+            } else {
+                snapshotNode.setProperty(property.getName(),
+                        property.getValue());
+            }
+        }
+        Node snapshotAssets = snapshotNode.addNode(ModuleItem.ASSET_FOLDER_NAME,
+                "drools:versionableAssetFolder");
+        // The copies need a saved node to go to
+        save();
+
+        try {
+            SnapshotManifest manifest = new SnapshotManifest();
+            NodeIterator assetNodes = moduleNode.getNode(ModuleItem.ASSET_FOLDER_NAME).getNodes();
+            while (assetNodes.hasNext()) {
+                Node assetNode = assetNodes.nextNode();
+                AssetItem asset = new AssetItem(this,
+                        assetNode);
+                Node contentNode;
+                if (assetNode.isCheckedOut() || !hasCheckedInVersion(assetNode)) {
+                    String copyPath = snapshotAssets.getPath() + "/" + assetNode.getName();
+                    this.session.getWorkspace().copy(assetNode.getPath(),
+                            copyPath);
+                    contentNode = this.session.getNode(copyPath);
+                } else {
+                    contentNode = VersionableItem.getVersionManager(assetNode).getBaseVersion(assetNode.getPath()).getFrozenNode();
+                }
+                Calendar lastModified = asset.getLastModified();
+                manifest.add(new SnapshotManifest.Entry(assetNode.getName(),
+                        assetNode.getIdentifier(),
+                        contentNode.getIdentifier(),
+                        asset.getFormat(),
+                        asset.getVersionNumber(),
+                        lastModified == null ? 0 : lastModified.getTimeInMillis(),
+                        asset.isArchived()));
+            }
+
+            snapshotNode.setProperty(ModuleItem.SNAPSHOT_MANIFEST_PROPERTY_NAME,
+                    manifest.encode());
+            save();
+        } catch (RepositoryException e) {
+            this.session.refresh(false);
+            snapshotNode.remove();
+            save();
+            throw e;
+        }
+    }
+
+    private boolean hasCheckedInVersion(Node node) throws RepositoryException {
+        return !VersionableItem.getVersionManager(node).getBaseVersion(node.getPath()).getName().equals("jcr:rootVersion");
+    }
+
     /**
      * This will remove the specified snapshot.
      */
@@ -857,6 +973,7 @@ public class RulesRepository {
 
             ModuleItem item = new ModuleItem(this,
                     moduleNode);
+            moduleChanged(item);
             item.checkin("Initial");
 
             if (StorageEventManager.hasSaveEvent()) {
@@ -1229,11 +1346,20 @@ public class RulesRepository {
                 numRowsToReturn);
     }
 
+    /**
+     * Writes the system view of the repository to the stream. Manifest snapshots are written
+     * as copies of the asset versions they refer to, as the export does not hold the versions.
+     */
     public void exportRepositoryToStream(OutputStream output) {
         try {
             session.refresh(false);
-            session.exportSystemView("/" + RULES_REPOSITORY_NAME,
-                    output,
+            TransformerHandler serializer = ((SAXTransformerFactory) TransformerFactory.newInstance()).newTransformerHandler();
+            serializer.setResult(new StreamResult(output));
+            String exportPath = "/" + RULES_REPOSITORY_NAME;
+            session.exportSystemView(exportPath,
+                    new ManifestSnapshotExportFilter(session,
+                            exportPath,
+                            serializer),
                     false,
                     false);
         } catch (Exception e) {
@@ -1244,19 +1370,117 @@ public class RulesRepository {
 
     }
 
+    /**
+     * Writes a backup of the repository, with every binary stored once, to the stream as it
+     * is read from the repository. See {@link RepositoryBackupWriter} for the format.
+     *
+     * @param since the id of an earlier backup to only back up the modules and snapshots
+     *              changed since then, or 0 for a full backup.
+     * @return the id of this backup.
+     */
+    public long exportRepositoryBackup(OutputStream output,
+                                       long since) {
+        long id = System.currentTimeMillis();
+        exportRepositoryBackup(output,
+                since,
+                id);
+        return id;
+    }
+
+    /**
+     * Same as {@link #exportRepositoryBackup(OutputStream, long)}, with an id chosen by the
+     * caller, so it can be handed out before the backup is written.
+     *
+     * @param id the id of this backup: the time it is taken at, see System.currentTimeMillis().
+     */
+    public void exportRepositoryBackup(OutputStream output,
+                                       long since,
+                                       long id) {
+        try {
+            new RepositoryBackupWriter(session,
+                    id).write(output,
+                    since);
+        } catch (RepositoryException e) {
+            log.error(e.getMessage(),
+                    e);
+            throw new RulesRepositoryException(e);
+        } catch (IOException e) {
+            log.error(e.getMessage(),
+                    e);
+            throw new RulesRepositoryException(e);
+        }
+    }
+
+    /**
+     * Restores a backup written by {@link #exportRepositoryBackup(OutputStream, long)}.
+     * A full backup replaces the repository, an incremental one is applied on top of it.
+     */
+    public void importRepositoryBackup(InputStream input) {
+        try {
+            ZipInputStream zin = new ZipInputStream(input);
+            importRepositoryBackup(zin,
+                    zin.getNextEntry());
+        } catch (IOException e) {
+            log.error(e.getMessage(),
+                    e);
+            throw new RulesRepositoryException(e);
+        }
+    }
+
+    /**
+     * @param firstEntry the current entry of the zip stream, which is the first entry of the backup.
+     */
+    public void importRepositoryBackup(ZipInputStream input,
+                                       ZipEntry firstEntry) {
+        try {
+            new RepositoryBackupReader(session).read(input,
+                    firstEntry);
+            ModuleAssetCounts.getInstance().invalidateAll();
+            ModuleSummaryIndex.getInstance().invalidate();
+            MigrateDroolsPackage mig = new MigrateDroolsPackage();
+            if (mig.needsMigration(this)) {
+                mig.migrate(this);
+            }
+        } catch (RepositoryException e) {
+            log.error(e.getMessage(),
+                    e);
+            throw new RulesRepositoryException("Repository error when restoring the backup.",
+                    e);
+        } catch (IOException e) {
+            log.error(e.getMessage(),
+                    e);
+            throw new RulesRepositoryException(e);
+        }
+    }
+
     //TODO: This does not work.
     public byte[] exportModuleFromRepository(String moduleName) throws IOException,
             PathNotFoundException,
             RepositoryException {
 
         ByteArrayOutputStream bout = new ByteArrayOutputStream();
-        ZipOutputStream zout = new ZipOutputStream(bout);
+        exportModuleFromRepository(moduleName,
+                bout);
+        return bout.toByteArray();
+    }
+
+    /**
+     * Writes the module as a zip holding its system view, straight to the stream.
+     */
+    public void exportModuleFromRepository(String moduleName,
+                                           OutputStream output) throws IOException,
+            PathNotFoundException,
+            RepositoryException {
+        ZipOutputStream zout = new ZipOutputStream(output);
 
         zout.putNextEntry(new ZipEntry("repository_export.xml"));
-        zout.write(dumpModuleFromRepositoryXml(moduleName));
+        session.refresh(false);
+        session.exportSystemView("/" + RULES_REPOSITORY_NAME + "/" + MODULE_AREA + "/" + moduleName,
+                zout,
+                false,
+                false);
         zout.closeEntry();
         zout.finish();
-        return bout.toByteArray();
     }
 
     public byte[] dumpModuleFromRepositoryXml(String moduleName) throws PathNotFoundException,
@@ -1281,6 +1505,8 @@ public class RulesRepository {
                     in,
                     ImportUUIDBehavior.IMPORT_UUID_CREATE_NEW);
             session.save();
+            ModuleAssetCounts.getInstance().invalidateAll();
+            ModuleSummaryIndex.getInstance().invalidate();
         } catch (RepositoryException e) {
             throw new RulesRepositoryException(e);
         } catch (IOException e) {
@@ -1290,19 +1516,14 @@ public class RulesRepository {
 
     /**
      * Clean and import the repository. Will run any needed migrations as
-     * well.
+     * well. The modules are imported and saved in batches, and an interrupted
+     * import of the same export is resumed, see {@link RepositoryImporter}.
      */
     public void importRulesRepositoryFromStream(InputStream instream) {
         try {
-            new RulesRepositoryAdministrator(this.session).clearRulesRepository();
-            this.session.getWorkspace().importXML("/",
-                    instream,
-                    ImportUUIDBehavior.IMPORT_UUID_COLLISION_THROW);
-            session.save();
-            MigrateDroolsPackage mig = new MigrateDroolsPackage();
-            if (mig.needsMigration(this)) {
-                mig.migrate(this);
-            }
+            new RepositoryImporter(this).importRepository(instream);
+            ModuleAssetCounts.getInstance().invalidateAll();
+            ModuleSummaryIndex.getInstance().invalidate();
         } catch (ItemExistsException e) {
             String message = "Item already exists. At least two items with the path: " + e.getLocalizedMessage();
             log.error(message,
@@ -1323,22 +1544,29 @@ public class RulesRepository {
 
     public void importPackageToRepository(byte[] byteArray,
                                           boolean importAsNew) {
-        try {
-            if (importAsNew) {
-                this.session.getWorkspace().importXML("/" + RULES_REPOSITORY_NAME + "/" + MODULE_AREA + "/",
-                        new ByteArrayInputStream(byteArray),
-                        ImportUUIDBehavior.IMPORT_UUID_CREATE_NEW);
-
-            } else {
+        importPackageToRepository(new ByteArrayInputStream(byteArray),
+                importAsNew);
+    }
 
-                this.session.getWorkspace().importXML("/" + RULES_REPOSITORY_NAME + "/" + MODULE_AREA + "/",
-                        new ByteArrayInputStream(byteArray),
-                        ImportUUIDBehavior.IMPORT_UUID_COLLISION_REPLACE_EXISTING);
-            }
-            session.save();
+    /**
+     * Imports the export of a module as it is read from the stream. If the
+     * repository needs a migration, only the imported module is migrated, and the
+     * repository is marked as migrated once no other module needs it.
+     */
+    public void importPackageToRepository(InputStream in,
+                                          boolean importAsNew) {
+        try {
+            String moduleName = new RepositoryImporter(this).importModule(in,
+                    importAsNew ? ImportUUIDBehavior.IMPORT_UUID_CREATE_NEW : ImportUUIDBehavior.IMPORT_UUID_COLLISION_REPLACE_EXISTING);
+            ModuleAssetCounts.getInstance().invalidateAll();
+            ModuleSummaryIndex.getInstance().invalidate();
             MigrateDroolsPackage mig = new MigrateDroolsPackage();
-            if (mig.needsMigration(this)) {
-                mig.migrate(this);
+            if (moduleName != null && mig.needsMigration(this)) {
+                mig.migrateModule(this,
+                        moduleName);
+                if (mig.isEveryModuleMigrated(this)) {
+                    mig.markMigrated(this);
+                }
             }
         } catch (RepositoryException e) {
             log.error(e.getMessage(),
@@ -1365,23 +1593,64 @@ public class RulesRepository {
      *         aLL the modules, only returning latest versions, by default.
      */
     public ModuleIterator listModules() {
-        Node folderNode = this.getAreaNode(MODULE_AREA);
-
         try {
-            synchronized (RulesRepository.class) {
-                if (!folderNode.hasNode(DEFAULT_PACKAGE)) {
-                    createModule(DEFAULT_PACKAGE,
-                            "The default rule package");
-                    folderNode = this.getAreaNode(MODULE_AREA);
-                }
-            }
             return new ModuleIterator(this,
-                    folderNode.getNodes());
+                    getModuleAreaWithDefaultModule().getNodes());
         } catch (RepositoryException e) {
             throw new RulesRepositoryException(e);
         }
     }
 
+    /**
+     * Lists the modules from the {@link ModuleSummaryIndex}, without loading them.
+     *
+     * @return the top level modules, archived or not, sorted by name. The
+     *         sub-modules are reached from their parent.
+     */
+    public List<ModuleSummary> listModuleSummaries() {
+        try {
+            getModuleAreaWithDefaultModule();
+        } catch (RepositoryException e) {
+            throw new RulesRepositoryException(e);
+        }
+        return ModuleSummaryIndex.getInstance().listModules(this);
+    }
+
+    /**
+     * Records that a module was created, renamed, archived or changed workspaces, for the
+     * {@link ModuleSummaryIndex} to read its summary again once it is saved.
+     */
+    void moduleChanged(ModuleItem module) {
+        changedModules.put(module.getUUID(),
+                module);
+    }
+
+    /**
+     * Tells the {@link ModuleSummaryIndex} about the changed modules, after the session
+     * was saved.
+     */
+    void modulesSaved() {
+        if (changedModules.isEmpty()) {
+            return;
+        }
+        for (ModuleItem module : changedModules.values()) {
+            ModuleSummaryIndex.getInstance().moduleChanged(module);
+        }
+        changedModules.clear();
+    }
+
+    private Node getModuleAreaWithDefaultModule() throws RepositoryException {
+        Node folderNode = this.getAreaNode(MODULE_AREA);
+        synchronized (RulesRepository.class) {
+            if (!folderNode.hasNode(DEFAULT_PACKAGE)) {
+                createModule(DEFAULT_PACKAGE,
+                        "The default rule package");
+                folderNode = this.getAreaNode(MODULE_AREA);
+            }
+        }
+        return folderNode;
+    }
+
     /**
      * @return The JCR session that this repository is using.
      */
@@ -1395,6 +1664,7 @@ public class RulesRepository {
     public void save() {
         try {
             this.session.save();
+            modulesSaved();
         } catch (InvalidItemStateException e) {
             String message = "Your operation was failed because it conflicts with a change made through another user. Please try again.";
             log.error("Caught Exception",
@@ -1411,6 +1681,20 @@ public class RulesRepository {
 
     }
 
+    /**
+     * Checks in the given assets with one comment, saving all their pending changes at
+     * once. This is cheaper than checking them in one by one when many assets change
+     * together, and the checkin listeners hear about them as one change.
+     *
+     * @param assets  The assets to check in. They must have been checked out.
+     * @param comment The checkin comment of all the new versions.
+     */
+    public void checkinAssets(Collection<AssetItem> assets,
+                              String comment) {
+        VersionableItem.checkin(assets,
+                comment);
+    }
+
     /**
      * This moves an asset from one module to another, preserving history
      * etc etc.
@@ -1426,11 +1710,17 @@ public class RulesRepository {
             AssetItem item = loadAssetByUUID(uuid);
 
             String sourcePath = item.node.getPath();
-            String destPath = loadModule(newModule).node.getPath() + "/" + ModuleItem.ASSET_FOLDER_NAME + "/" + item.getName();
+            ModuleItem destination = loadModule(newModule);
+            String destPath = destination.node.getPath() + "/" + ModuleItem.ASSET_FOLDER_NAME + "/" + item.getName();
+            Node sourceModuleNode = item.node.getParent().getParent();
+            String sourceModuleUuid = sourceModuleNode.getIdentifier();
 
             this.session.move(sourcePath,
                     destPath);
+            AssetItem.assetsChanged(sourceModuleNode);
             this.session.save();
+            ModuleAssetCounts.getInstance().invalidate(sourceModuleUuid);
+            ModuleAssetCounts.getInstance().invalidate(destination.getUUID());
 
             item.checkout();
             item.node.setProperty(AssetItem.MODULE_NAME_PROPERTY,
@@ -1854,6 +2144,7 @@ public class RulesRepository {
             }
 
             save();
+            ModuleSummaryIndex.getInstance().invalidate();
 
             return newModuleItem.getUUID();
         } catch (RepositoryException e) {
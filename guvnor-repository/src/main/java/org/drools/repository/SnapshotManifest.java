@@ -0,0 +1,161 @@
+/*
+ * Copyright 2012 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.drools.repository;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The list of asset versions a manifest snapshot is made of. Instead of
+ * holding a copy of every asset, a manifest snapshot refers to the frozen
+ * version node of each asset as it was when the snapshot was taken. Only the
+ * assets with changes that were not checked in yet are copied into the snapshot.
+ *
+ * The manifest is stored on the snapshot node as a multi valued string
+ * property, one value per asset. The values are separated by '|', which is
+ * not allowed in JCR names.
+ */
+public class SnapshotManifest {
+
+    private static final String SEPARATOR = "|";
+
+    private final List<Entry> entries = new ArrayList<Entry>();
+    private final Map<String, Entry> entriesByName = new HashMap<String, Entry>();
+
+    public SnapshotManifest() {
+    }
+
+    public SnapshotManifest(String[] encodedEntries) {
+        for ( String encodedEntry : encodedEntries ) {
+            add( Entry.decode( encodedEntry ) );
+        }
+    }
+
+    public void add(Entry entry) {
+        entries.add( entry );
+        entriesByName.put( entry.getName(),
+                           entry );
+    }
+
+    public List<Entry> getEntries() {
+        return Collections.unmodifiableList( entries );
+    }
+
+    /**
+     * @return the entry of the asset with the given name, or null if the snapshot does not contain it.
+     */
+    public Entry getEntry(String assetName) {
+        return entriesByName.get( assetName );
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public String[] encode() {
+        String[] result = new String[entries.size()];
+        for ( int i = 0; i < entries.size(); i++ ) {
+            result[i] = entries.get( i ).encode();
+        }
+        return result;
+    }
+
+    public static class Entry {
+
+        private final String name;
+        private final String assetUUID;
+        private final String nodeIdentifier;
+        private final String format;
+        private final long versionNumber;
+        private final long lastModified;
+        private final boolean archived;
+
+        public Entry(String name,
+                     String assetUUID,
+                     String nodeIdentifier,
+                     String format,
+                     long versionNumber,
+                     long lastModified,
+                     boolean archived) {
+            this.name = name;
+            this.assetUUID = assetUUID;
+            this.nodeIdentifier = nodeIdentifier;
+            this.format = format;
+            this.versionNumber = versionNumber;
+            this.lastModified = lastModified;
+            this.archived = archived;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return the UUID of the asset in the module the snapshot was taken from.
+         */
+        public String getAssetUUID() {
+            return assetUUID;
+        }
+
+        /**
+         * @return the identifier of the node holding the asset content: for a manifest snapshot, the frozen
+         *         node (nt:frozenNode) of the referenced version, or the copy of the asset kept in the snapshot
+         *         when it had changes that were not checked in. The asset node otherwise.
+         */
+        public String getNodeIdentifier() {
+            return nodeIdentifier;
+        }
+
+        public String getFormat() {
+            return format;
+        }
+
+        public long getVersionNumber() {
+            return versionNumber;
+        }
+
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        public boolean isArchived() {
+            return archived;
+        }
+
+        String encode() {
+            return name + SEPARATOR + assetUUID + SEPARATOR + nodeIdentifier + SEPARATOR + format + SEPARATOR + versionNumber + SEPARATOR + archived + SEPARATOR + lastModified;
+        }
+
+        static Entry decode(String encodedEntry) {
+            String[] values = encodedEntry.split( "\\" + SEPARATOR,
+                                                  -1 );
+            if ( values.length < 6 ) {
+                throw new RulesRepositoryException( "Invalid snapshot manifest entry [" + encodedEntry + "]" );
+            }
+            return new Entry( values[0],
+                              values[1],
+                              values[2],
+                              values[3],
+                              Long.parseLong( values[4] ),
+                              values.length > 6 ? Long.parseLong( values[6] ) : 0,
+                              Boolean.parseBoolean( values[5] ) );
+        }
+    }
+}
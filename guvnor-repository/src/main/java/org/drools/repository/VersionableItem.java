@@ -18,6 +18,7 @@ package org.drools.repository;
 
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 
@@ -571,21 +572,47 @@ public abstract class VersionableItem extends Item {
         checkInAssetIfNecessary(false);
         try {
 
-            this.node.setProperty( LAST_MODIFIED_PROPERTY_NAME, Calendar.getInstance() );
-            this.node.setProperty( CHECKIN_COMMENT, comment );
-            this.node.setProperty( LAST_CONTRIBUTOR_PROPERTY_NAME, this.node.getSession().getUserID() );
-            long nextVersion = getVersionNumber() + 1;
-            this.node.setProperty( VERSION_NUMBER_PROPERTY_NAME,  nextVersion );
+            setCheckinProperties( comment );
             this.node.getSession().save();
+            if ( this.rulesRepository != null ) {
+                this.rulesRepository.modulesSaved();
+            }
             
-            getVersionManager(this.node).checkin(this.node.getPath());
+            createVersion();
+            StorageEventManager.doCheckinEvents(this);
 
-            if (StorageEventManager.hasSaveEvent()) {
-                if (this instanceof AssetItem) {
-                    StorageEventManager.getSaveEvent().onAssetCheckin((AssetItem) this);
-                }
+        } catch ( RepositoryException e ) {
+            throw new RulesRepositoryException( "Unable to checkin.",
+                                                e );
+        }
+    }
+
+    /**
+     * Checks in several assets with the same comment. The changes of all of them are
+     * saved at once before each of them gets its new version, and the checkin listeners
+     * are told about them in one go (see {@link org.drools.repository.events.BatchCheckinEvent}).
+     * Unlike {@link #checkin(String)}, this does not apply to modules.
+     */
+    static void checkin(Collection<AssetItem> assets,
+                        String comment) {
+        if ( assets.isEmpty() ) {
+            return;
+        }
+        try {
+            for ( AssetItem asset : assets ) {
+                asset.checkIsUpdateable();
+                asset.setCheckinProperties( comment );
             }
-            StorageEventManager.doCheckinEvents(this);
+            AssetItem first = assets.iterator().next();
+            first.getNode().getSession().save();
+            if ( first.rulesRepository != null ) {
+                first.rulesRepository.modulesSaved();
+            }
+
+            for ( AssetItem asset : assets ) {
+                asset.createVersion();
+            }
+            StorageEventManager.doCheckinEvents( assets );
 
         } catch ( RepositoryException e ) {
             throw new RulesRepositoryException( "Unable to checkin.",
@@ -593,6 +620,27 @@ public abstract class VersionableItem extends Item {
         }
     }
 
+    private void setCheckinProperties(String comment) throws RepositoryException {
+        this.node.setProperty( LAST_MODIFIED_PROPERTY_NAME, Calendar.getInstance() );
+        this.node.setProperty( CHECKIN_COMMENT, comment );
+        this.node.setProperty( LAST_CONTRIBUTOR_PROPERTY_NAME, this.node.getSession().getUserID() );
+        long nextVersion = getVersionNumber() + 1;
+        this.node.setProperty( VERSION_NUMBER_PROPERTY_NAME,  nextVersion );
+    }
+
+    /**
+     * Versions the saved state of the node, and lets the save event know.
+     */
+    private void createVersion() throws RepositoryException {
+        getVersionManager(this.node).checkin(this.node.getPath());
+
+        if (StorageEventManager.hasSaveEvent()) {
+            if (this instanceof AssetItem) {
+                StorageEventManager.getSaveEvent().onAssetCheckin((AssetItem) this);
+            }
+        }
+    }
+
 	/*
 	 * When we make a version of package (check in the package), we need to know
 	 * the exact version number of child assets that this package contains. If
@@ -52,11 +52,23 @@ public class VersionedAssetItemIterator extends AssetItemIterator {
         }        
     }
 
+    VersionedAssetItemIterator(NodeIterator nodes,
+                               RulesRepository repo,
+                               String[] dependencies,
+                               ModuleItem module) {
+        this(nodes, repo, dependencies);
+        this.module = module;
+    }
+
     public AssetItem next() {
         AssetItem ai = super.next();
         if(returnAssetsWithVersionsSpecifiedByDependencies && dependencyVersionMap.get(ai.getName()) != null) {
             String version = dependencyVersionMap.get(ai.getName());
-            return loadAssetWithVersion(ai, version);
+            AssetItem versioned = loadAssetWithVersion(ai, version);
+            if (module != null && versioned != ai) {
+                return new AssetItem(rulesRepository, versioned.getNode(), module);
+            }
+            return versioned;
         }
         return ai;
     }
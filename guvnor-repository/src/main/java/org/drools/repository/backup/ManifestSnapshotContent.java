@@ -0,0 +1,132 @@
+/*
+ * Copyright 2012 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.drools.repository.backup;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.jcr.Node;
+import javax.jcr.NodeIterator;
+import javax.jcr.Property;
+import javax.jcr.PropertyIterator;
+import javax.jcr.RepositoryException;
+import javax.jcr.Value;
+
+import org.drools.repository.ModuleItem;
+import org.drools.repository.SnapshotManifest;
+
+/**
+ * A manifest snapshot (see {@link SnapshotManifest}) refers to version nodes, which are kept in the
+ * version storage that backups and exports leave out. So a manifest snapshot is written as a copy
+ * snapshot: the version nodes it refers to are written in its asset folder as asset nodes, and the
+ * manifest itself is left out.
+ */
+class ManifestSnapshotContent {
+
+    static final String FROZEN_NODE_TYPE = "nt:frozenNode";
+    static final String FROZEN_PRIMARY_TYPE = "jcr:frozenPrimaryType";
+    static final String FROZEN_MIXIN_TYPES = "jcr:frozenMixinTypes";
+    static final String FROZEN_UUID = "jcr:frozenUuid";
+
+    // The properties of a version node that are not properties of the asset
+    private static final List<String> VERSION_PROPERTIES = Arrays.asList("jcr:primaryType",
+            "jcr:mixinTypes",
+            "jcr:uuid",
+            FROZEN_PRIMARY_TYPE,
+            FROZEN_MIXIN_TYPES,
+            FROZEN_UUID);
+
+    private ManifestSnapshotContent() {
+    }
+
+    static boolean isManifest(Property property) throws RepositoryException {
+        return ModuleItem.SNAPSHOT_MANIFEST_PROPERTY_NAME.equals(property.getName());
+    }
+
+    /**
+     * @return the version nodes to write in the node, by asset name, if the node is the asset folder
+     *         of a manifest snapshot. The copies of assets the snapshot holds are not in there, as they
+     *         are children of the asset folder already.
+     */
+    static Map<String, Node> getVersionNodes(Node node) throws RepositoryException {
+        Map<String, Node> result = new LinkedHashMap<String, Node>();
+        if (!ModuleItem.ASSET_FOLDER_NAME.equals(node.getName()) || node.getDepth() == 0
+                || !node.getParent().hasProperty(ModuleItem.SNAPSHOT_MANIFEST_PROPERTY_NAME)) {
+            return result;
+        }
+        Value[] values = node.getParent().getProperty(ModuleItem.SNAPSHOT_MANIFEST_PROPERTY_NAME).getValues();
+        String[] encodedEntries = new String[values.length];
+        for (int i = 0; i < values.length; i++) {
+            encodedEntries[i] = values[i].getString();
+        }
+        for (SnapshotManifest.Entry entry : new SnapshotManifest(encodedEntries).getEntries()) {
+            Node content = node.getSession().getNodeByIdentifier(entry.getNodeIdentifier());
+            if (content.isNodeType(FROZEN_NODE_TYPE)) {
+                result.put(entry.getName(),
+                        content);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the properties of the asset a version node holds, without the type and identifier
+     *         properties of the version node.
+     */
+    static List<Property> getAssetProperties(Node versionNode) throws RepositoryException {
+        List<Property> result = new ArrayList<Property>();
+        PropertyIterator properties = versionNode.getProperties();
+        while (properties.hasNext()) {
+            Property property = properties.nextProperty();
+            if (!VERSION_PROPERTIES.contains(property.getName())) {
+                result.add(property);
+            }
+        }
+        return result;
+    }
+
+    static String[] getMixinTypes(Node versionNode) throws RepositoryException {
+        if (!versionNode.hasProperty(FROZEN_MIXIN_TYPES)) {
+            return new String[0];
+        }
+        Value[] values = versionNode.getProperty(FROZEN_MIXIN_TYPES).getValues();
+        String[] result = new String[values.length];
+        for (int i = 0; i < values.length; i++) {
+            result[i] = values[i].getString();
+        }
+        return result;
+    }
+
+    /**
+     * @return the frozen child nodes of a version node. Versioned children only refer to the version
+     *         history of the child, which is not part of the asset content.
+     */
+    static List<Node> getChildren(Node versionNode) throws RepositoryException {
+        List<Node> result = new ArrayList<Node>();
+        NodeIterator children = versionNode.getNodes();
+        while (children.hasNext()) {
+            Node child = children.nextNode();
+            if (child.isNodeType(FROZEN_NODE_TYPE)) {
+                result.add(child);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,261 @@
+/*
+ * Copyright 2012 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.drools.repository.backup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.UUID;
+
+import javax.jcr.Binary;
+import javax.jcr.Node;
+import javax.jcr.Property;
+import javax.jcr.PropertyType;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.Value;
+import javax.xml.bind.DatatypeConverter;
+
+import org.drools.repository.ModuleItem;
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+import org.xml.sax.helpers.XMLFilterImpl;
+
+/**
+ * Sits between {@link Session#exportSystemView(String, ContentHandler, boolean, boolean)} and the
+ * handler writing the export, to write manifest snapshots as copy snapshots (see {@link ManifestSnapshotContent}),
+ * so an export can be imported in a repository that does not have the versions they refer to.
+ */
+public class ManifestSnapshotExportFilter extends XMLFilterImpl {
+
+    private final Session session;
+    private final String exportParentPath;
+    // The paths of the nodes being exported, innermost last
+    private final LinkedList<String> paths = new LinkedList<String>();
+    // The depth of the element inside the manifest property being left out, 0 when not in it
+    private int skippedDepth = 0;
+
+    /**
+     * @param exportPath the path of the node that is exported.
+     */
+    public ManifestSnapshotExportFilter(Session session,
+                                        String exportPath,
+                                        ContentHandler handler) {
+        this.session = session;
+        this.exportParentPath = exportPath.substring(0,
+                exportPath.lastIndexOf('/') + 1);
+        setContentHandler(handler);
+    }
+
+    @Override
+    public void startElement(String uri,
+                             String localName,
+                             String qName,
+                             Attributes atts) throws SAXException {
+        if (skippedDepth > 0) {
+            skippedDepth++;
+            return;
+        }
+        if (RepositoryBackupWriter.SV_URI.equals(uri)) {
+            String name = atts.getValue(RepositoryBackupWriter.SV_URI,
+                    "name");
+            if ("node".equals(localName)) {
+                paths.add(paths.isEmpty() ? exportParentPath + name : paths.getLast() + "/" + name);
+            } else if ("property".equals(localName) && ModuleItem.SNAPSHOT_MANIFEST_PROPERTY_NAME.equals(name)) {
+                skippedDepth = 1;
+                return;
+            }
+        }
+        super.startElement(uri,
+                localName,
+                qName,
+                atts);
+    }
+
+    @Override
+    public void endElement(String uri,
+                           String localName,
+                           String qName) throws SAXException {
+        if (skippedDepth > 0) {
+            skippedDepth--;
+            return;
+        }
+        if (RepositoryBackupWriter.SV_URI.equals(uri) && "node".equals(localName)) {
+            String path = paths.removeLast();
+            if (path.endsWith("/" + ModuleItem.ASSET_FOLDER_NAME)) {
+                try {
+                    for (Map.Entry<String, Node> versionNode : ManifestSnapshotContent.getVersionNodes(session.getNode(path)).entrySet()) {
+                        writeVersionNode(versionNode.getKey(),
+                                versionNode.getValue());
+                    }
+                } catch (RepositoryException e) {
+                    throw new SAXException("Unable to export the assets of the snapshot at " + path,
+                            e);
+                }
+            }
+        }
+        super.endElement(uri,
+                localName,
+                qName);
+    }
+
+    @Override
+    public void characters(char[] ch,
+                           int start,
+                           int length) throws SAXException {
+        if (skippedDepth == 0) {
+            super.characters(ch,
+                    start,
+                    length);
+        }
+    }
+
+    @Override
+    public void ignorableWhitespace(char[] ch,
+                                    int start,
+                                    int length) throws SAXException {
+        if (skippedDepth == 0) {
+            super.ignorableWhitespace(ch,
+                    start,
+                    length);
+        }
+    }
+
+    /**
+     * Writes a version node as the asset node it is a version of, with a new identifier
+     * as the asset itself is in the export too.
+     */
+    private void writeVersionNode(String name,
+                                  Node versionNode) throws RepositoryException,
+            SAXException {
+        super.startElement(RepositoryBackupWriter.SV_URI,
+                "node",
+                "sv:node",
+                nameAttribute(name));
+        writeProperty("jcr:primaryType",
+                PropertyType.NAME,
+                false,
+                new String[]{versionNode.getProperty(ManifestSnapshotContent.FROZEN_PRIMARY_TYPE).getString()});
+        String[] mixinTypes = ManifestSnapshotContent.getMixinTypes(versionNode);
+        if (mixinTypes.length > 0) {
+            writeProperty("jcr:mixinTypes",
+                    PropertyType.NAME,
+                    true,
+                    mixinTypes);
+        }
+        if (versionNode.hasProperty(ManifestSnapshotContent.FROZEN_UUID)) {
+            writeProperty("jcr:uuid",
+                    PropertyType.STRING,
+                    false,
+                    new String[]{UUID.randomUUID().toString()});
+        }
+        for (Property property : ManifestSnapshotContent.getAssetProperties(versionNode)) {
+            Value[] values = property.isMultiple() ? property.getValues() : new Value[]{property.getValue()};
+            String[] strings = new String[values.length];
+            for (int i = 0; i < values.length; i++) {
+                strings[i] = property.getType() == PropertyType.BINARY ? encode(values[i].getBinary()) : values[i].getString();
+            }
+            writeProperty(property.getName(),
+                    property.getType(),
+                    property.isMultiple(),
+                    strings);
+        }
+        for (Node child : ManifestSnapshotContent.getChildren(versionNode)) {
+            writeVersionNode(child.getName(),
+                    child);
+        }
+        super.endElement(RepositoryBackupWriter.SV_URI,
+                "node",
+                "sv:node");
+    }
+
+    private void writeProperty(String name,
+                               int type,
+                               boolean multiple,
+                               String[] values) throws SAXException {
+        AttributesImpl atts = nameAttribute(name);
+        atts.addAttribute(RepositoryBackupWriter.SV_URI,
+                "type",
+                "sv:type",
+                "CDATA",
+                PropertyType.nameFromValue(type));
+        if (multiple) {
+            atts.addAttribute(RepositoryBackupWriter.SV_URI,
+                    "multiple",
+                    "sv:multiple",
+                    "CDATA",
+                    "true");
+        }
+        super.startElement(RepositoryBackupWriter.SV_URI,
+                "property",
+                "sv:property",
+                atts);
+        for (String value : values) {
+            super.startElement(RepositoryBackupWriter.SV_URI,
+                    "value",
+                    "sv:value",
+                    new AttributesImpl());
+            super.characters(value.toCharArray(),
+                    0,
+                    value.length());
+            super.endElement(RepositoryBackupWriter.SV_URI,
+                    "value",
+                    "sv:value");
+        }
+        super.endElement(RepositoryBackupWriter.SV_URI,
+                "property",
+                "sv:property");
+    }
+
+    private AttributesImpl nameAttribute(String name) {
+        AttributesImpl atts = new AttributesImpl();
+        atts.addAttribute(RepositoryBackupWriter.SV_URI,
+                "name",
+                "sv:name",
+                "CDATA",
+                name);
+        return atts;
+    }
+
+    private String encode(Binary binary) throws RepositoryException,
+            SAXException {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            InputStream in = binary.getStream();
+            try {
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    out.write(buffer,
+                            0,
+                            read);
+                }
+            } finally {
+                in.close();
+            }
+            return DatatypeConverter.printBase64Binary(out.toByteArray());
+        } catch (IOException e) {
+            throw new SAXException(e);
+        } finally {
+            binary.dispose();
+        }
+    }
+}
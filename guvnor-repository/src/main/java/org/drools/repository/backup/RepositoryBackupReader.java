@@ -0,0 +1,409 @@
+/*
+ * Copyright 2012 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.drools.repository.backup;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import javax.jcr.ImportUUIDBehavior;
+import javax.jcr.Node;
+import javax.jcr.NodeIterator;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+
+import org.drools.repository.RulesRepository;
+import org.drools.repository.RulesRepositoryAdministrator;
+import org.drools.repository.RulesRepositoryException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.XMLFilterImpl;
+
+/**
+ * Restores a backup written by {@link RepositoryBackupWriter}, reading it as a stream.
+ * Binaries are spooled to a temporary folder as they come, and every unit is imported
+ * with a content handler of the workspace as soon as its entry is read, with the binary
+ * values put back in place of their hash.
+ *
+ * A full backup replaces the whole repository. An incremental backup is applied on top
+ * of the repository: the units it holds replace the existing ones, and the units that
+ * are not listed in the backup any more are removed. An existing unit is removed and
+ * its replacement imported through the session, and both are saved together, so a
+ * unit that fails to import is left as it was.
+ */
+public class RepositoryBackupReader {
+
+    private static final Logger log = LoggerFactory.getLogger(RepositoryBackupReader.class);
+
+    private static final Pattern HASH_PATTERN = Pattern.compile("[0-9a-f]{40}");
+
+    private final Session session;
+
+    public RepositoryBackupReader(Session session) {
+        this.session = session;
+    }
+
+    public void read(InputStream input) throws RepositoryException,
+            IOException {
+        ZipInputStream zin = new ZipInputStream(input);
+        read(zin,
+                zin.getNextEntry());
+    }
+
+    /**
+     * @param firstEntry the current entry of the zip stream, which must be the backup properties.
+     */
+    public void read(ZipInputStream zin,
+                     ZipEntry firstEntry) throws RepositoryException,
+            IOException {
+        if (firstEntry == null || !RepositoryBackupWriter.PROPERTIES_ENTRY.equals(firstEntry.getName())) {
+            throw new RulesRepositoryException("Not a repository backup: " + RepositoryBackupWriter.PROPERTIES_ENTRY + " must come first.");
+        }
+        Properties properties = new Properties();
+        properties.load(zin);
+        if (!RepositoryBackupWriter.FORMAT_VERSION.equals(properties.getProperty("format"))) {
+            throw new RulesRepositoryException("Unsupported repository backup format [" + properties.getProperty("format") + "]");
+        }
+        boolean incremental = Long.parseLong(properties.getProperty("since",
+                "0")) > 0;
+        log.info("Restoring " + (incremental ? "incremental" : "full") + " backup " + properties.getProperty("id"));
+
+        File binaryFolder = createTemporaryFolder();
+        try {
+            if (!incremental) {
+                new RulesRepositoryAdministrator(session).clearRulesRepository();
+            }
+            for (ZipEntry entry = zin.getNextEntry(); entry != null; entry = zin.getNextEntry()) {
+                String name = entry.getName();
+                if (name.equals(RepositoryBackupWriter.SKELETON_ENTRY)) {
+                    if (!session.getRootNode().hasNode(RulesRepository.RULES_REPOSITORY_NAME)) {
+                        importXml(session.getWorkspace().getImportContentHandler("/",
+                                ImportUUIDBehavior.IMPORT_UUID_COLLISION_THROW),
+                                "/",
+                                zin,
+                                binaryFolder);
+                    }
+                } else if (name.startsWith(RepositoryBackupWriter.BINARY_ENTRY_PREFIX)) {
+                    spool(zin,
+                            binaryFile(binaryFolder,
+                                    name.substring(RepositoryBackupWriter.BINARY_ENTRY_PREFIX.length())));
+                } else if (name.startsWith(RepositoryBackupWriter.NODES_ENTRY_PREFIX) && name.endsWith(".xml")) {
+                    importUnit(name,
+                            zin,
+                            incremental,
+                            binaryFolder);
+                } else if (name.equals(RepositoryBackupWriter.UNITS_ENTRY) && incremental) {
+                    removeMissingUnits(readUnitPaths(zin));
+                }
+            }
+            session.save();
+        } finally {
+            File[] files = binaryFolder.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    file.delete();
+                }
+            }
+            binaryFolder.delete();
+        }
+    }
+
+    private void importUnit(String entryName,
+                            InputStream in,
+                            boolean incremental,
+                            File binaryFolder) throws RepositoryException,
+            IOException {
+        String path = entryName.substring(RepositoryBackupWriter.NODES_ENTRY_PREFIX.length(),
+                entryName.length() - ".xml".length());
+        int separator = path.indexOf('/');
+        if (separator <= 0 || path.indexOf('/',
+                separator + 1) != -1) {
+            throw new RulesRepositoryException("Invalid repository backup entry [" + entryName + "]");
+        }
+        String parentPath = "/" + RulesRepository.RULES_REPOSITORY_NAME + "/" + path.substring(0,
+                separator);
+        if (!incremental) {
+            importXml(session.getWorkspace().getImportContentHandler(parentPath,
+                    ImportUUIDBehavior.IMPORT_UUID_COLLISION_THROW),
+                    parentPath,
+                    in,
+                    binaryFolder);
+            return;
+        }
+
+        String unitPath = "/" + RulesRepository.RULES_REPOSITORY_NAME + "/" + path;
+        boolean saved = false;
+        try {
+            if (session.itemExists(unitPath)) {
+                session.getNode(unitPath).remove();
+            }
+            importXml(session.getImportContentHandler(parentPath,
+                    ImportUUIDBehavior.IMPORT_UUID_COLLISION_REMOVE_EXISTING),
+                    parentPath,
+                    in,
+                    binaryFolder);
+            session.save();
+            saved = true;
+        } finally {
+            if (!saved) {
+                // Keeps the unit that was there
+                session.refresh(false);
+            }
+        }
+    }
+
+    private void importXml(ContentHandler importHandler,
+                           String parentPath,
+                           InputStream in,
+                           File binaryFolder) throws RepositoryException,
+            IOException {
+        try {
+            SAXParserFactory factory = SAXParserFactory.newInstance();
+            factory.setNamespaceAware(true);
+            XMLReader reader = factory.newSAXParser().getXMLReader();
+            BinaryValueFilter filter = new BinaryValueFilter(binaryFolder);
+            filter.setContentHandler(importHandler);
+            reader.setContentHandler(filter);
+            reader.parse(new InputSource(new UnclosableInputStream(in)));
+        } catch (ParserConfigurationException e) {
+            throw new RulesRepositoryException(e);
+        } catch (SAXException e) {
+            throw new RulesRepositoryException("Unable to restore " + parentPath + " from the repository backup",
+                    e);
+        }
+    }
+
+    private void removeMissingUnits(Set<String> unitPaths) throws RepositoryException {
+        List<Node> removed = new ArrayList<Node>();
+        NodeIterator areas = session.getRootNode().getNode(RulesRepository.RULES_REPOSITORY_NAME).getNodes();
+        while (areas.hasNext()) {
+            NodeIterator units = areas.nextNode().getNodes();
+            while (units.hasNext()) {
+                Node unit = units.nextNode();
+                if (!unitPaths.contains(unit.getPath())) {
+                    removed.add(unit);
+                }
+            }
+        }
+        for (Node unit : removed) {
+            log.debug("Removing " + unit.getPath() + ", which is not in the repository backup");
+            unit.remove();
+        }
+    }
+
+    private Set<String> readUnitPaths(InputStream in) throws IOException {
+        Set<String> unitPaths = new HashSet<String>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in,
+                "UTF-8"));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.length() > 0) {
+                unitPaths.add(line);
+            }
+        }
+        return unitPaths;
+    }
+
+    private static File binaryFile(File binaryFolder,
+                                   String hash) {
+        if (!HASH_PATTERN.matcher(hash).matches()) {
+            throw new RulesRepositoryException("Invalid binary hash [" + hash + "] in the repository backup");
+        }
+        return new File(binaryFolder,
+                hash);
+    }
+
+    private void spool(InputStream in,
+                       File file) throws IOException {
+        OutputStream out = new FileOutputStream(file);
+        try {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer,
+                        0,
+                        read);
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    private File createTemporaryFolder() throws IOException {
+        File folder = File.createTempFile("guvnor-backup",
+                "");
+        if (!folder.delete() || !folder.mkdir()) {
+            throw new IOException("Unable to create temporary folder " + folder);
+        }
+        return folder;
+    }
+
+    /**
+     * Passes the system view on to the import handler, replacing the hash in the values of
+     * binary properties with the base64 encoded content of the binary.
+     */
+    private static class BinaryValueFilter extends XMLFilterImpl {
+
+        private static final char[] BASE64 = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+
+        private final File binaryFolder;
+        private boolean binaryProperty = false;
+        private StringBuilder hash = null;
+
+        private BinaryValueFilter(File binaryFolder) {
+            this.binaryFolder = binaryFolder;
+        }
+
+        @Override
+        public void startElement(String uri,
+                                 String localName,
+                                 String qName,
+                                 Attributes atts) throws SAXException {
+            if (RepositoryBackupWriter.SV_URI.equals(uri)) {
+                if ("property".equals(localName)) {
+                    binaryProperty = "Binary".equals(atts.getValue(RepositoryBackupWriter.SV_URI,
+                            "type"));
+                } else if ("value".equals(localName) && binaryProperty) {
+                    hash = new StringBuilder();
+                }
+            }
+            super.startElement(uri,
+                    localName,
+                    qName,
+                    atts);
+        }
+
+        @Override
+        public void characters(char[] ch,
+                               int start,
+                               int length) throws SAXException {
+            if (hash != null) {
+                hash.append(ch,
+                        start,
+                        length);
+            } else {
+                super.characters(ch,
+                        start,
+                        length);
+            }
+        }
+
+        @Override
+        public void endElement(String uri,
+                               String localName,
+                               String qName) throws SAXException {
+            if (hash != null && RepositoryBackupWriter.SV_URI.equals(uri) && "value".equals(localName)) {
+                writeBinary(hash.toString().trim());
+                hash = null;
+            }
+            super.endElement(uri,
+                    localName,
+                    qName);
+        }
+
+        private void writeBinary(String hash) throws SAXException {
+            try {
+                InputStream in = new FileInputStream(binaryFile(binaryFolder,
+                        hash));
+                try {
+                    // A multiple of 3 bytes, so the chunks can be encoded one by one
+                    byte[] buffer = new byte[3 * 4096];
+                    char[] encoded = new char[4 * 4096];
+                    int length;
+                    while ((length = fill(in,
+                            buffer)) > 0) {
+                        super.characters(encoded,
+                                0,
+                                encode(buffer,
+                                        length,
+                                        encoded));
+                    }
+                } finally {
+                    in.close();
+                }
+            } catch (IOException e) {
+                throw new SAXException("Unable to read binary " + hash + " of the repository backup",
+                        e);
+            } catch (RulesRepositoryException e) {
+                throw new SAXException(e);
+            }
+        }
+
+        private static int fill(InputStream in,
+                                byte[] buffer) throws IOException {
+            int length = 0;
+            int read;
+            while (length < buffer.length && (read = in.read(buffer,
+                    length,
+                    buffer.length - length)) != -1) {
+                length += read;
+            }
+            return length;
+        }
+
+        private static int encode(byte[] data,
+                                  int length,
+                                  char[] out) {
+            int o = 0;
+            for (int i = 0; i < length; i += 3) {
+                int b0 = data[i] & 0xFF;
+                int b1 = i + 1 < length ? data[i + 1] & 0xFF : 0;
+                int b2 = i + 2 < length ? data[i + 2] & 0xFF : 0;
+                out[o++] = BASE64[b0 >> 2];
+                out[o++] = BASE64[((b0 & 0x3) << 4) | (b1 >> 4)];
+                out[o++] = i + 1 < length ? BASE64[((b1 & 0xF) << 2) | (b2 >> 6)] : '=';
+                out[o++] = i + 2 < length ? BASE64[b2 & 0x3F] : '=';
+            }
+            return o;
+        }
+    }
+
+    /**
+     * The XML parser closes its input when it is done, which must not close the zip stream.
+     */
+    private static class UnclosableInputStream extends FilterInputStream {
+
+        private UnclosableInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
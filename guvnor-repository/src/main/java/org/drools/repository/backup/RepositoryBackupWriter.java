@@ -0,0 +1,522 @@
+/*
+ * Copyright 2012 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.drools.repository.backup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.UUID;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import javax.jcr.Binary;
+import javax.jcr.Node;
+import javax.jcr.NodeIterator;
+import javax.jcr.Property;
+import javax.jcr.PropertyIterator;
+import javax.jcr.PropertyType;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.Value;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.drools.repository.RulesRepository;
+import org.drools.repository.VersionableItem;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes a backup of the rules repository as a zip, streamed entry by entry:
+ * <ul>
+ * <li>backup.properties: the backup id (its start time) and the id of the backup it is incremental to.</li>
+ * <li>repository.xml: the repository node and its area nodes, without their children.</li>
+ * <li>binaries/&lt;sha1&gt;: every binary value, stored once per content hash.</li>
+ * <li>nodes/&lt;area&gt;/&lt;name&gt;.xml: one entry per child of an area (a module, the snapshots of a module, a category...),
+ * in JCR system view, with the hash of the binary values instead of their content.
+ * The binaries of a unit always come before it, so the backup can be restored as it is read.
+ * Manifest snapshots are written as copy snapshots, see {@link ManifestSnapshotContent}.</li>
+ * <li>units.txt: the paths of all the units in the repository, so a restore knows which ones were removed.</li>
+ * </ul>
+ * An incremental backup only holds the modules and snapshots that changed since an earlier backup,
+ * judged by the last modified dates of their nodes and the creation date of their versionable nodes.
+ * Removing or moving an asset away updates the last modified date of its module, so the module is
+ * written again without it.
+ * The other areas are small and are always written in full.
+ */
+public class RepositoryBackupWriter {
+
+    private static final Logger log = LoggerFactory.getLogger(RepositoryBackupWriter.class);
+
+    public static final String PROPERTIES_ENTRY = "backup.properties";
+    public static final String SKELETON_ENTRY = "repository.xml";
+    public static final String BINARY_ENTRY_PREFIX = "binaries/";
+    public static final String NODES_ENTRY_PREFIX = "nodes/";
+    public static final String UNITS_ENTRY = "units.txt";
+
+    static final String FORMAT_VERSION = "1";
+    static final String SV_URI = "http://www.jcp.org/jcr/sv/1.0";
+
+    private final Session session;
+    private final long id;
+
+    private final Set<String> writtenBinaries = new HashSet<String>();
+    // Property path and value index, hash of the binary value
+    private final Map<String, String> binaryHashes = new HashMap<String, String>();
+
+    private int writtenUnits = 0;
+    private int skippedUnits = 0;
+
+    public RepositoryBackupWriter(Session session) {
+        this(session,
+                System.currentTimeMillis());
+    }
+
+    /**
+     * @param id the id of the backup: the time it is taken at, which must not be after the
+     *           repository is read.
+     */
+    public RepositoryBackupWriter(Session session,
+                                  long id) {
+        this.session = session;
+        this.id = id;
+    }
+
+    /**
+     * @return the id of this backup, to be used as "since" for the next incremental backup.
+     */
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * @param since the id of an earlier backup to only write what changed since then, or 0 for a full backup.
+     */
+    public void write(OutputStream output,
+                      long since) throws RepositoryException,
+            IOException {
+        session.refresh(false);
+        Node repositoryNode = session.getRootNode().getNode(RulesRepository.RULES_REPOSITORY_NAME);
+
+        ZipOutputStream zout = new ZipOutputStream(output);
+        writeProperties(zout,
+                since);
+
+        binaryHashes.clear();
+        writeBinaries(zout,
+                repositoryNode,
+                1);
+        zout.putNextEntry(new ZipEntry(SKELETON_ENTRY));
+        writeXml(zout,
+                repositoryNode,
+                1);
+        zout.closeEntry();
+
+        List<String> unitPaths = new ArrayList<String>();
+        NodeIterator areas = repositoryNode.getNodes();
+        while (areas.hasNext()) {
+            Node area = areas.nextNode();
+            NodeIterator units = area.getNodes();
+            while (units.hasNext()) {
+                Node unit = units.nextNode();
+                unitPaths.add(unit.getPath());
+                if (since > 0 && isIncremental(area) && !isModifiedSince(unit,
+                        since,
+                        0)) {
+                    skippedUnits++;
+                    continue;
+                }
+                writeUnit(zout,
+                        area.getName(),
+                        unit);
+            }
+        }
+
+        zout.putNextEntry(new ZipEntry(UNITS_ENTRY));
+        Writer writer = new OutputStreamWriter(zout,
+                "UTF-8");
+        for (String unitPath : unitPaths) {
+            writer.write(unitPath);
+            writer.write('\n');
+        }
+        writer.flush();
+        zout.closeEntry();
+        zout.finish();
+
+        log.info("Backup " + id + " written: " + writtenUnits + " units, " + skippedUnits + " unchanged units skipped, "
+                + writtenBinaries.size() + " binaries in " + (System.currentTimeMillis() - id) + " ms");
+    }
+
+    private void writeProperties(ZipOutputStream zout,
+                                 long since) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("format",
+                FORMAT_VERSION);
+        properties.setProperty("id",
+                String.valueOf(id));
+        properties.setProperty("since",
+                String.valueOf(since));
+        zout.putNextEntry(new ZipEntry(PROPERTIES_ENTRY));
+        properties.store(zout,
+                "Guvnor repository backup");
+        zout.closeEntry();
+    }
+
+    private boolean isIncremental(Node area) throws RepositoryException {
+        return RulesRepository.MODULE_AREA.equals(area.getName())
+                || RulesRepository.MODULE_SNAPSHOT_AREA.equals(area.getName());
+    }
+
+    /**
+     * A node is modified if it, or one of its descendants, was modified since the given time.
+     * New modules and snapshots are found through the creation date of the version history
+     * of the nodes at the top of the unit, as a copied snapshot keeps the dates of its module.
+     */
+    private boolean isModifiedSince(Node node,
+                                    long since,
+                                    int depth) throws RepositoryException {
+        if (node.hasProperty(VersionableItem.LAST_MODIFIED_PROPERTY_NAME)
+                && node.getProperty(VersionableItem.LAST_MODIFIED_PROPERTY_NAME).getDate().getTimeInMillis() > since) {
+            return true;
+        }
+        if (depth < 2 && node.isNodeType("mix:versionable")
+                && VersionableItem.getVersionManager(node).getVersionHistory(node.getPath()).getRootVersion().getCreated().getTimeInMillis() > since) {
+            return true;
+        }
+        NodeIterator children = node.getNodes();
+        while (children.hasNext()) {
+            if (isModifiedSince(children.nextNode(),
+                    since,
+                    depth + 1)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void writeUnit(ZipOutputStream zout,
+                           String areaName,
+                           Node unit) throws RepositoryException,
+            IOException {
+        binaryHashes.clear();
+        writeBinaries(zout,
+                unit,
+                Integer.MAX_VALUE);
+        zout.putNextEntry(new ZipEntry(NODES_ENTRY_PREFIX + areaName + "/" + unit.getName() + ".xml"));
+        writeXml(zout,
+                unit,
+                Integer.MAX_VALUE);
+        zout.closeEntry();
+        writtenUnits++;
+    }
+
+    /**
+     * Writes the binary values of the node and its descendants that are not in the backup yet,
+     * and remembers the hash of every value for the system view.
+     */
+    private void writeBinaries(ZipOutputStream zout,
+                               Node node,
+                               int depth) throws RepositoryException,
+            IOException {
+        PropertyIterator properties = node.getProperties();
+        while (properties.hasNext()) {
+            Property property = properties.nextProperty();
+            if (property.getType() != PropertyType.BINARY) {
+                continue;
+            }
+            Value[] values = property.isMultiple() ? property.getValues() : new Value[]{property.getValue()};
+            for (int i = 0; i < values.length; i++) {
+                Binary binary = values[i].getBinary();
+                try {
+                    String hash = hash(binary);
+                    if (writtenBinaries.add(hash)) {
+                        zout.putNextEntry(new ZipEntry(BINARY_ENTRY_PREFIX + hash));
+                        copy(binary,
+                                zout);
+                        zout.closeEntry();
+                    }
+                    binaryHashes.put(property.getPath() + "#" + i,
+                            hash);
+                } finally {
+                    binary.dispose();
+                }
+            }
+        }
+        if (depth > 0) {
+            NodeIterator children = node.getNodes();
+            while (children.hasNext()) {
+                writeBinaries(zout,
+                        children.nextNode(),
+                        depth - 1);
+            }
+            for (Node versionNode : ManifestSnapshotContent.getVersionNodes(node).values()) {
+                writeBinaries(zout,
+                        versionNode,
+                        depth - 1);
+            }
+        }
+    }
+
+    private String hash(Binary binary) throws RepositoryException,
+            IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        InputStream in = new DigestInputStream(binary.getStream(),
+                digest);
+        try {
+            byte[] buffer = new byte[8192];
+            while (in.read(buffer) != -1) {
+                // Only reading to compute the digest
+            }
+        } finally {
+            in.close();
+        }
+        StringBuilder hash = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hash.append(Character.forDigit((b >> 4) & 0xF,
+                    16));
+            hash.append(Character.forDigit(b & 0xF,
+                    16));
+        }
+        return hash.toString();
+    }
+
+    private void copy(Binary binary,
+                      OutputStream out) throws RepositoryException,
+            IOException {
+        InputStream in = binary.getStream();
+        try {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer,
+                        0,
+                        read);
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    private void writeXml(OutputStream out,
+                          Node node,
+                          int depth) throws RepositoryException,
+            IOException {
+        try {
+            XMLStreamWriter writer = XMLOutputFactory.newInstance().createXMLStreamWriter(out,
+                    "UTF-8");
+            writer.writeStartDocument("UTF-8",
+                    "1.0");
+            writeNode(writer,
+                    node,
+                    depth,
+                    true);
+            writer.writeEndDocument();
+            // Does not close the zip stream
+            writer.close();
+        } catch (XMLStreamException e) {
+            throw new IOException("Unable to write the system view of " + node.getPath() + ": " + e.getMessage());
+        }
+    }
+
+    private void writeNode(XMLStreamWriter writer,
+                           Node node,
+                           int depth,
+                           boolean declareNamespaces) throws RepositoryException,
+            XMLStreamException {
+        writer.writeStartElement("sv",
+                "node",
+                SV_URI);
+        if (declareNamespaces) {
+            writer.writeNamespace("sv",
+                    SV_URI);
+            for (String prefix : session.getNamespacePrefixes()) {
+                if (prefix.length() > 0 && !"xml".equals(prefix) && !"sv".equals(prefix)) {
+                    writer.writeNamespace(prefix,
+                            session.getNamespaceURI(prefix));
+                }
+            }
+        }
+        writer.writeAttribute("sv",
+                SV_URI,
+                "name",
+                node.getName());
+
+        for (Property property : getProperties(node)) {
+            if (!ManifestSnapshotContent.isManifest(property)) {
+                writeProperty(writer,
+                        property);
+            }
+        }
+
+        if (depth > 0) {
+            NodeIterator children = node.getNodes();
+            while (children.hasNext()) {
+                writeNode(writer,
+                        children.nextNode(),
+                        depth - 1,
+                        false);
+            }
+            for (Map.Entry<String, Node> versionNode : ManifestSnapshotContent.getVersionNodes(node).entrySet()) {
+                writeVersionNode(writer,
+                        versionNode.getKey(),
+                        versionNode.getValue());
+            }
+        }
+        writer.writeEndElement();
+    }
+
+    /**
+     * Writes a version node a manifest snapshot refers to as the asset node it is a version of,
+     * with a new identifier as the asset itself is in the backup too.
+     */
+    private void writeVersionNode(XMLStreamWriter writer,
+                                  String name,
+                                  Node versionNode) throws RepositoryException,
+            XMLStreamException {
+        writer.writeStartElement("sv",
+                "node",
+                SV_URI);
+        writer.writeAttribute("sv",
+                SV_URI,
+                "name",
+                name);
+        writeProperty(writer,
+                "jcr:primaryType",
+                PropertyType.NAME,
+                false,
+                new String[]{versionNode.getProperty(ManifestSnapshotContent.FROZEN_PRIMARY_TYPE).getString()});
+        String[] mixinTypes = ManifestSnapshotContent.getMixinTypes(versionNode);
+        if (mixinTypes.length > 0) {
+            writeProperty(writer,
+                    "jcr:mixinTypes",
+                    PropertyType.NAME,
+                    true,
+                    mixinTypes);
+        }
+        if (versionNode.hasProperty(ManifestSnapshotContent.FROZEN_UUID)) {
+            writeProperty(writer,
+                    "jcr:uuid",
+                    PropertyType.STRING,
+                    false,
+                    new String[]{UUID.randomUUID().toString()});
+        }
+        for (Property property : ManifestSnapshotContent.getAssetProperties(versionNode)) {
+            writeProperty(writer,
+                    property);
+        }
+        for (Node child : ManifestSnapshotContent.getChildren(versionNode)) {
+            writeVersionNode(writer,
+                    child.getName(),
+                    child);
+        }
+        writer.writeEndElement();
+    }
+
+    /**
+     * The properties of the node, with jcr:primaryType, jcr:mixinTypes and jcr:uuid first
+     * as the system view requires.
+     */
+    private List<Property> getProperties(Node node) throws RepositoryException {
+        List<Property> result = new ArrayList<Property>();
+        List<String> firstProperties = Arrays.asList("jcr:primaryType",
+                "jcr:mixinTypes",
+                "jcr:uuid");
+        for (String name : firstProperties) {
+            if (node.hasProperty(name)) {
+                result.add(node.getProperty(name));
+            }
+        }
+        PropertyIterator properties = node.getProperties();
+        while (properties.hasNext()) {
+            Property property = properties.nextProperty();
+            if (!firstProperties.contains(property.getName())) {
+                result.add(property);
+            }
+        }
+        return result;
+    }
+
+    private void writeProperty(XMLStreamWriter writer,
+                               Property property) throws RepositoryException,
+            XMLStreamException {
+        Value[] values = property.isMultiple() ? property.getValues() : new Value[]{property.getValue()};
+        String[] strings = new String[values.length];
+        for (int i = 0; i < values.length; i++) {
+            if (property.getType() == PropertyType.BINARY) {
+                strings[i] = binaryHashes.get(property.getPath() + "#" + i);
+            } else {
+                strings[i] = values[i].getString();
+            }
+        }
+        writeProperty(writer,
+                property.getName(),
+                property.getType(),
+                property.isMultiple(),
+                strings);
+    }
+
+    private void writeProperty(XMLStreamWriter writer,
+                               String name,
+                               int type,
+                               boolean multiple,
+                               String[] values) throws XMLStreamException {
+        writer.writeStartElement("sv",
+                "property",
+                SV_URI);
+        writer.writeAttribute("sv",
+                SV_URI,
+                "name",
+                name);
+        writer.writeAttribute("sv",
+                SV_URI,
+                "type",
+                PropertyType.nameFromValue(type));
+        if (multiple) {
+            writer.writeAttribute("sv",
+                    SV_URI,
+                    "multiple",
+                    "true");
+        }
+        for (String value : values) {
+            writer.writeStartElement("sv",
+                    "value",
+                    SV_URI);
+            writer.writeCharacters(value);
+            writer.writeEndElement();
+        }
+        writer.writeEndElement();
+    }
+}
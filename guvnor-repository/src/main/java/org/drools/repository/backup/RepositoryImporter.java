@@ -0,0 +1,657 @@
+/*
+ * Copyright 2012 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.drools.repository.backup;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.jcr.ImportUUIDBehavior;
+import javax.jcr.Node;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+
+import org.drools.repository.RulesRepository;
+import org.drools.repository.RulesRepositoryAdministrator;
+import org.drools.repository.RulesRepositoryException;
+import org.drools.repository.migration.MigrateDroolsPackage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+import org.xml.sax.helpers.XMLFilterImpl;
+
+/**
+ * Imports a repository export (the system view of the rules repository node) in chunks,
+ * so an import of any size only holds a bounded batch of changes in the session.
+ *
+ * The export is spooled to a temporary file and read twice: the first pass imports the
+ * repository node with every area except the modules and the snapshots, in one save.
+ * The second pass imports the modules and the snapshots of the modules one by one, each
+ * with its own content handler, and saves once a batch is big enough
+ * ("guvnor.import.batchUnits" modules, 20 by default, or "guvnor.import.batchBytes" bytes
+ * of XML, 8 MB by default). Drools 4 modules are migrated as they are imported.
+ *
+ * A checkpoint node at the root of the workspace records the import in progress, keyed
+ * by the SHA-1 of the export. If an import is interrupted, importing the same export
+ * again resumes it: the repository is not cleared, and the modules that were saved
+ * already are skipped. They are migrated again, as an import may have been interrupted
+ * between the save of a module and its migration (migrating a module twice does nothing).
+ * The checkpoint is removed once the import is complete.
+ */
+public class RepositoryImporter {
+
+    private static final Logger log = LoggerFactory.getLogger(RepositoryImporter.class);
+
+    public static final String CHECKPOINT_NODE = "drools.import.checkpoint";
+
+    private static final String SOURCE_PROPERTY = "source";
+    private static final String PHASE_PROPERTY = "phase";
+    private static final String UNITS_PROPERTY = "units";
+    private static final String PHASE_SKELETON = "skeleton";
+    private static final String PHASE_UNITS = "units";
+
+    private static final String[] CHUNKED_AREAS = {RulesRepository.MODULE_AREA, RulesRepository.MODULE_SNAPSHOT_AREA};
+
+    private final RulesRepository repository;
+    private final Session session;
+    private final int batchUnits;
+    private final long batchBytes;
+
+    private MigrateDroolsPackage migration = null;
+    private CountingInputStream input = null;
+
+    private long totalBytes;
+    private long importedUnits;
+    private long skippedUnits;
+
+    public RepositoryImporter(RulesRepository repository) {
+        this(repository,
+                Integer.getInteger("guvnor.import.batchUnits",
+                        20),
+                Long.getLong("guvnor.import.batchBytes",
+                        8 * 1024 * 1024));
+    }
+
+    public RepositoryImporter(RulesRepository repository,
+                              int batchUnits,
+                              long batchBytes) {
+        this.repository = repository;
+        this.session = repository.getSession();
+        this.batchUnits = Math.max(1,
+                batchUnits);
+        this.batchBytes = batchBytes;
+    }
+
+    /**
+     * Replaces the repository with the export read from the stream, or resumes the import
+     * of the same export if it was interrupted.
+     */
+    public void importRepository(InputStream input) throws RepositoryException,
+            IOException {
+        File file = File.createTempFile("guvnor-import",
+                ".xml");
+        try {
+            String source = spool(input,
+                    file);
+            importRepository(file,
+                    source);
+        } finally {
+            file.delete();
+        }
+    }
+
+    private void importRepository(File file,
+                                  String source) throws RepositoryException,
+            IOException {
+        totalBytes = file.length();
+        importedUnits = 0;
+        skippedUnits = 0;
+
+        Node checkpoint = loadCheckpoint(source);
+        if (checkpoint == null) {
+            new RulesRepositoryAdministrator(session).clearRulesRepository();
+            checkpoint = session.getRootNode().addNode(CHECKPOINT_NODE,
+                    "nt:unstructured");
+            checkpoint.setProperty(SOURCE_PROPERTY,
+                    source);
+            checkpoint.setProperty(PHASE_PROPERTY,
+                    PHASE_SKELETON);
+            checkpoint.setProperty(UNITS_PROPERTY,
+                    0);
+            log.info("Importing the repository (" + totalBytes + " bytes)");
+        } else {
+            log.info("Resuming the import of the repository (" + totalBytes + " bytes), "
+                    + checkpoint.getProperty(UNITS_PROPERTY).getLong() + " modules were imported already");
+        }
+
+        if (PHASE_SKELETON.equals(checkpoint.getProperty(PHASE_PROPERTY).getString())) {
+            parse(file,
+                    new SkeletonHandler(session.getImportContentHandler("/",
+                            ImportUUIDBehavior.IMPORT_UUID_COLLISION_THROW)));
+            checkpoint.setProperty(PHASE_PROPERTY,
+                    PHASE_UNITS);
+            session.save();
+        }
+
+        if (new MigrateDroolsPackage().needsMigration(repository)) {
+            migration = new MigrateDroolsPackage();
+        }
+
+        UnitHandler unitHandler = new UnitHandler(checkpoint);
+        parse(file,
+                unitHandler);
+        unitHandler.saveBatch();
+
+        if (migration != null && (importedUnits > 0 || skippedUnits > 0)) {
+            migration.markMigrated(repository);
+        }
+        checkpoint.remove();
+        session.save();
+        log.info("Imported the repository: " + importedUnits + " modules imported, " + skippedUnits
+                + " imported already");
+    }
+
+    /**
+     * Imports the export of a single module straight into the workspace, as it is read.
+     *
+     * @return the name of the module.
+     */
+    public String importModule(InputStream input,
+                               int uuidBehavior) throws RepositoryException,
+            IOException {
+        ModuleNameHandler handler = new ModuleNameHandler(session.getWorkspace().getImportContentHandler("/" + RulesRepository.RULES_REPOSITORY_NAME + "/" + RulesRepository.MODULE_AREA,
+                uuidBehavior));
+        parse(input,
+                handler);
+        return handler.moduleName;
+    }
+
+    /**
+     * @return the checkpoint of an interrupted import of the same export, or null. The checkpoint
+     *         of the import of another export is dropped.
+     */
+    private Node loadCheckpoint(String source) throws RepositoryException {
+        if (!session.getRootNode().hasNode(CHECKPOINT_NODE)) {
+            return null;
+        }
+        Node checkpoint = session.getRootNode().getNode(CHECKPOINT_NODE);
+        if (checkpoint.hasProperty(SOURCE_PROPERTY) && source.equals(checkpoint.getProperty(SOURCE_PROPERTY).getString())) {
+            return checkpoint;
+        }
+        log.info("Discarding the checkpoint of the import of another repository export");
+        checkpoint.remove();
+        session.save();
+        return null;
+    }
+
+    /**
+     * @return the number of modules (and snapshots of modules) imported by the last import.
+     */
+    public long getImportedUnits() {
+        return importedUnits;
+    }
+
+    /**
+     * @return the number of modules skipped by the last import, as they were imported already.
+     */
+    public long getSkippedUnits() {
+        return skippedUnits;
+    }
+
+    private void parse(File file,
+                       ContentHandler handler) throws RepositoryException,
+            IOException {
+        input = new CountingInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            parse(input,
+                    handler);
+        } finally {
+            input.close();
+            input = null;
+        }
+    }
+
+    private void parse(InputStream in,
+                       ContentHandler handler) throws RepositoryException,
+            IOException {
+        try {
+            SAXParserFactory factory = SAXParserFactory.newInstance();
+            factory.setNamespaceAware(true);
+            XMLReader reader = factory.newSAXParser().getXMLReader();
+            reader.setContentHandler(handler);
+            reader.parse(new InputSource(in));
+        } catch (ParserConfigurationException e) {
+            throw new RulesRepositoryException(e);
+        } catch (SAXException e) {
+            if (e.getException() instanceof RepositoryException) {
+                throw (RepositoryException) e.getException();
+            }
+            throw new RulesRepositoryException("Unable to import the repository",
+                    e);
+        }
+    }
+
+    /**
+     * Copies the stream to the file.
+     *
+     * @return the SHA-1 of the content, which identifies the export for the checkpoint.
+     */
+    private String spool(InputStream in,
+                         File file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RulesRepositoryException(e);
+        }
+        OutputStream out = new FileOutputStream(file);
+        try {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer,
+                        0,
+                        read);
+                digest.update(buffer,
+                        0,
+                        read);
+            }
+        } finally {
+            out.close();
+        }
+        StringBuilder hash = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hash.append(Integer.toHexString((b & 0xFF) | 0x100).substring(1));
+        }
+        return hash.toString();
+    }
+
+    private static boolean isChunkedArea(String name) {
+        for (String area : CHUNKED_AREAS) {
+            if (area.equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Follows the depth of the system view: the repository node is at depth 1, the areas at
+     * depth 2 and the modules at depth 3. Keeps the namespace mappings of the document, so they
+     * can be declared again to each content handler a part of the document is passed on to.
+     */
+    private static abstract class SystemViewHandler extends DefaultHandler {
+
+        protected final List<String[]> prefixMappings = new ArrayList<String[]>();
+        protected int depth = 0;
+        protected String area = null;
+
+        @Override
+        public void startPrefixMapping(String prefix,
+                                       String uri) throws SAXException {
+            if (depth == 0) {
+                prefixMappings.add(new String[]{prefix, uri});
+            }
+        }
+
+        protected boolean isNode(String uri,
+                                 String localName) {
+            return RepositoryBackupWriter.SV_URI.equals(uri) && "node".equals(localName);
+        }
+
+        protected void startPrefixMappings(ContentHandler handler) throws SAXException {
+            for (String[] mapping : prefixMappings) {
+                handler.startPrefixMapping(mapping[0],
+                        mapping[1]);
+            }
+        }
+
+        protected void endPrefixMappings(ContentHandler handler) throws SAXException {
+            for (String[] mapping : prefixMappings) {
+                handler.endPrefixMapping(mapping[0]);
+            }
+        }
+    }
+
+    /**
+     * Passes everything but the modules and snapshots on to the import handler.
+     */
+    private static class SkeletonHandler extends SystemViewHandler {
+
+        private final ContentHandler importHandler;
+        private int skippedDepth = 0;
+
+        private SkeletonHandler(ContentHandler importHandler) {
+            this.importHandler = importHandler;
+        }
+
+        @Override
+        public void startDocument() throws SAXException {
+            importHandler.startDocument();
+        }
+
+        @Override
+        public void startPrefixMapping(String prefix,
+                                       String uri) throws SAXException {
+            super.startPrefixMapping(prefix,
+                    uri);
+            if (skippedDepth == 0) {
+                importHandler.startPrefixMapping(prefix,
+                        uri);
+            }
+        }
+
+        @Override
+        public void endPrefixMapping(String prefix) throws SAXException {
+            if (skippedDepth == 0) {
+                importHandler.endPrefixMapping(prefix);
+            }
+        }
+
+        @Override
+        public void startElement(String uri,
+                                 String localName,
+                                 String qName,
+                                 Attributes atts) throws SAXException {
+            depth++;
+            if (skippedDepth == 0 && isNode(uri,
+                    localName)) {
+                if (depth == 2) {
+                    area = atts.getValue(RepositoryBackupWriter.SV_URI,
+                            "name");
+                } else if (depth == 3 && isChunkedArea(area)) {
+                    skippedDepth = depth;
+                }
+            }
+            if (skippedDepth == 0) {
+                importHandler.startElement(uri,
+                        localName,
+                        qName,
+                        atts);
+            }
+        }
+
+        @Override
+        public void endElement(String uri,
+                               String localName,
+                               String qName) throws SAXException {
+            if (skippedDepth == 0) {
+                importHandler.endElement(uri,
+                        localName,
+                        qName);
+            } else if (depth == skippedDepth) {
+                skippedDepth = 0;
+            }
+            depth--;
+        }
+
+        @Override
+        public void characters(char[] ch,
+                               int start,
+                               int length) throws SAXException {
+            if (skippedDepth == 0) {
+                importHandler.characters(ch,
+                        start,
+                        length);
+            }
+        }
+
+        @Override
+        public void endDocument() throws SAXException {
+            importHandler.endDocument();
+        }
+    }
+
+    /**
+     * Imports the modules and snapshots one by one, each with its own import handler, and
+     * saves them in batches along with the checkpoint.
+     */
+    private class UnitHandler extends SystemViewHandler {
+
+        private final Node checkpoint;
+
+        private ContentHandler importHandler = null;
+        private String unitName = null;
+        private int unitDepth = 0;
+        private boolean skipping = false;
+
+        private int pendingUnits = 0;
+        private long batchStart = 0;
+
+        private UnitHandler(Node checkpoint) {
+            this.checkpoint = checkpoint;
+        }
+
+        @Override
+        public void startElement(String uri,
+                                 String localName,
+                                 String qName,
+                                 Attributes atts) throws SAXException {
+            depth++;
+            if (unitDepth == 0 && isNode(uri,
+                    localName)) {
+                if (depth == 2) {
+                    area = atts.getValue(RepositoryBackupWriter.SV_URI,
+                            "name");
+                } else if (depth == 3 && isChunkedArea(area)) {
+                    startUnit(atts.getValue(RepositoryBackupWriter.SV_URI,
+                            "name"));
+                }
+            }
+            if (importHandler != null) {
+                importHandler.startElement(uri,
+                        localName,
+                        qName,
+                        atts);
+            }
+        }
+
+        @Override
+        public void endElement(String uri,
+                               String localName,
+                               String qName) throws SAXException {
+            if (importHandler != null) {
+                importHandler.endElement(uri,
+                        localName,
+                        qName);
+            }
+            if (unitDepth > 0 && depth == unitDepth) {
+                endUnit();
+            }
+            depth--;
+        }
+
+        @Override
+        public void characters(char[] ch,
+                               int start,
+                               int length) throws SAXException {
+            if (importHandler != null) {
+                importHandler.characters(ch,
+                        start,
+                        length);
+            }
+        }
+
+        private void startUnit(String name) throws SAXException {
+            unitDepth = depth;
+            unitName = name;
+            String parentPath = "/" + RulesRepository.RULES_REPOSITORY_NAME + "/" + area;
+            try {
+                skipping = session.itemExists(parentPath + "/" + name);
+                if (skipping) {
+                    skippedUnits++;
+                    return;
+                }
+                importHandler = session.getImportContentHandler(parentPath,
+                        ImportUUIDBehavior.IMPORT_UUID_COLLISION_THROW);
+            } catch (RepositoryException e) {
+                throw new SAXException(e);
+            }
+            importHandler.startDocument();
+            startPrefixMappings(importHandler);
+        }
+
+        private void endUnit() throws SAXException {
+            if (skipping) {
+                try {
+                    migrate();
+                } catch (RepositoryException e) {
+                    throw new SAXException(e);
+                }
+            } else {
+                endPrefixMappings(importHandler);
+                importHandler.endDocument();
+                importHandler = null;
+                importedUnits++;
+                pendingUnits++;
+                try {
+                    migrate();
+                    if (pendingUnits >= batchUnits || input.getCount() - batchStart >= batchBytes) {
+                        saveBatch();
+                    }
+                } catch (RepositoryException e) {
+                    throw new SAXException(e);
+                }
+            }
+            unitDepth = 0;
+            unitName = null;
+            skipping = false;
+        }
+
+        private void migrate() throws RepositoryException {
+            if (migration == null) {
+                return;
+            }
+            // The migration checks the assets in, which saves the batch. A unit imported
+            // already may have been saved without being migrated, the migration skips the others
+            session.save();
+            if (RulesRepository.MODULE_AREA.equals(area)) {
+                migration.migrateModule(repository,
+                        unitName);
+            } else {
+                migration.migrateModuleSnapshots(repository,
+                        unitName);
+            }
+        }
+
+        private void saveBatch() throws RepositoryException {
+            checkpoint.setProperty(UNITS_PROPERTY,
+                    checkpoint.getProperty(UNITS_PROPERTY).getLong() + pendingUnits);
+            session.save();
+            pendingUnits = 0;
+            batchStart = input == null ? totalBytes : input.getCount();
+            log.info("Imported " + importedUnits + " modules, " + skippedUnits + " imported already ("
+                    + (totalBytes == 0 ? 100 : batchStart * 100 / totalBytes) + "% of the repository export read)");
+        }
+    }
+
+    /**
+     * Passes the export of a module on to the import handler, keeping the name of the module.
+     */
+    private static class ModuleNameHandler extends XMLFilterImpl {
+
+        private String moduleName = null;
+        private int depth = 0;
+
+        private ModuleNameHandler(ContentHandler importHandler) {
+            setContentHandler(importHandler);
+        }
+
+        @Override
+        public void startElement(String uri,
+                                 String localName,
+                                 String qName,
+                                 Attributes atts) throws SAXException {
+            if (depth++ == 0) {
+                moduleName = atts.getValue(RepositoryBackupWriter.SV_URI,
+                        "name");
+            }
+            super.startElement(uri,
+                    localName,
+                    qName,
+                    atts);
+        }
+
+        @Override
+        public void endElement(String uri,
+                               String localName,
+                               String qName) throws SAXException {
+            depth--;
+            super.endElement(uri,
+                    localName,
+                    qName);
+        }
+    }
+
+    private static class CountingInputStream extends FilterInputStream {
+
+        private long count = 0;
+
+        private CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b,
+                        int off,
+                        int len) throws IOException {
+            int read = super.read(b,
+                    off,
+                    len);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+
+        private long getCount() {
+            return count;
+        }
+    }
+}
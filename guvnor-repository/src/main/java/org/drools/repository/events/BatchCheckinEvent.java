@@ -0,0 +1,29 @@
+/*
+ * Copyright 2012 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.drools.repository.events;
+
+import java.util.Collection;
+
+import org.drools.repository.AssetItem;
+
+/**
+ * A checkin listener that can handle the assets checked in together at once
+ * (see RulesRepository.checkinAssets), instead of being called once per asset.
+ */
+public interface BatchCheckinEvent extends CheckinEvent {
+    public void afterCheckin(Collection<AssetItem> items);
+}
@@ -16,8 +16,9 @@
 
 package org.drools.repository.events;
 
-import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.drools.repository.AssetItem;
 import org.drools.repository.VersionableItem;
@@ -28,7 +29,8 @@ import org.drools.repository.VersionableItem;
 public class StorageEventManager {
 
 
-    static List<CheckinEvent> checkinEvents = new ArrayList<CheckinEvent>();
+    // Registered and removed while other threads check in
+    static List<CheckinEvent> checkinEvents = new CopyOnWriteArrayList<CheckinEvent>();
     static LoadEvent le = loadEvent();
     static SaveEvent se = saveEvent();
 
@@ -81,7 +83,18 @@ public class StorageEventManager {
     public static void registerCheckinEvent(CheckinEvent ev) {
         checkinEvents.add(ev);
     }
-    
+
+    /**
+     * Removes a listener registered with {@link #registerCheckinEvent(CheckinEvent)}, leaving the others.
+     */
+    public static void removeCheckinEvent(CheckinEvent ev) {
+        checkinEvents.remove(ev);
+    }
+
+    /**
+     * Removes all the checkin listeners. Owners of a listener remove only theirs, with
+     * {@link #removeCheckinEvent(CheckinEvent)}.
+     */
     public static void removeListeners() {
         checkinEvents.clear();
     }
@@ -97,4 +110,20 @@ public class StorageEventManager {
             }
         }
     }
+
+    /**
+     * Process the checkin event listeners for assets checked in together: the listeners
+     * that are a BatchCheckinEvent are called once for all of them, the others once per asset.
+     */
+    public static void doCheckinEvents(Collection<AssetItem> assets) {
+        for (CheckinEvent e : checkinEvents) {
+            if (e instanceof BatchCheckinEvent) {
+                ((BatchCheckinEvent) e).afterCheckin(assets);
+            } else {
+                for (AssetItem asset : assets) {
+                    e.afterCheckin(asset);
+                }
+            }
+        }
+    }
 }
@@ -47,22 +47,66 @@ public class MigrateDroolsPackage {
             performed = true;
             ModuleItem pkg = (ModuleItem) pkgs.next();
             migratePackage(pkg);
+            migrateModuleSnapshots(repo, pkg.getName());
+        }
+
+
+
+        if (performed) {
+            markMigrated(repo);
+            log.info("AUTO MIGRATION: drools.package migration completed.");
+        }
+    }
+
+    /**
+     * Migrates a single module, so an import can migrate the modules one by one as they come.
+     * The repository must be marked with markMigrated() once all of them are done.
+     */
+    public void migrateModule(RulesRepository repo, String moduleName) {
+        migratePackage(repo.loadModule(moduleName));
+    }
 
+    /**
+     * Migrates the snapshots of a single module.
+     */
+    public void migrateModuleSnapshots(RulesRepository repo, String moduleName) {
+        String[] snaps = repo.listModuleSnapshots(moduleName);
+        if (snaps != null) {
+            for (int i = 0; i < snaps.length; i++) {
+                ModuleItem snap = repo.loadModuleSnapshot(moduleName, snaps[i]);
+                migratePackage(snap);
+            }
+        }
+    }
+
+    /**
+     * @return true if every module and module snapshot is migrated already, so the repository
+     *         can be marked with markMigrated().
+     */
+    public boolean isEveryModuleMigrated(RulesRepository repo) {
+        ModuleIterator pkgs = repo.listModules();
+        while (pkgs.hasNext()) {
+            ModuleItem pkg = (ModuleItem) pkgs.next();
+            if (!pkg.containsAsset("drools")) {
+                return false;
+            }
             String[] snaps = repo.listModuleSnapshots(pkg.getName());
             if (snaps != null) {
                 for (int i = 0; i < snaps.length; i++) {
-                    ModuleItem snap = repo.loadModuleSnapshot(pkg.getName(), snaps[i]);
-                    migratePackage(snap);
+                    if (!repo.loadModuleSnapshot(pkg.getName(), snaps[i]).containsAsset("drools")) {
+                        return false;
+                    }
                 }
             }
         }
+        return true;
+    }
 
-
-
-        if (performed) {
-            repo.getSession().getRootNode().getNode(RulesRepository.RULES_REPOSITORY_NAME).addNode("drools.package.migrated", "nt:folder");
+    public void markMigrated(RulesRepository repo) throws RepositoryException {
+        Node root = repo.getSession().getRootNode().getNode(RulesRepository.RULES_REPOSITORY_NAME);
+        if (!root.hasNode("drools.package.migrated")) {
+            root.addNode("drools.package.migrated", "nt:folder");
             repo.save();
-            log.info("AUTO MIGRATION: drools.package migration completed.");
         }
     }
 
@@ -18,7 +18,10 @@ package org.drools.repository;
 
 import java.io.ByteArrayInputStream;
 import java.io.InputStream;
+import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 
@@ -28,6 +31,7 @@ import javax.jcr.version.VersionIterator;
 import org.junit.Test;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.fail;
@@ -92,6 +96,31 @@ public class AssetItemTest extends RepositoryTestCase {
 
     }
 
+    @Test
+    public void testSymbolsAreDroppedWithTheContent() throws Exception {
+        RulesRepository repo = getRepo();
+        AssetItem asset = repo.loadDefaultModule().addAsset("testSymbols", "");
+        asset.updateContent("rule content");
+        asset.checkin("");
+        assertNull(asset.getSymbols());
+
+        asset.updateSymbols(Arrays.asList("type:Person", "field:Person.age"));
+        asset.getNode().getSession().save();
+        assertEquals(new HashSet<String>(Arrays.asList("type:Person", "field:Person.age")), asset.getSymbols());
+
+        asset.updateSymbols(Collections.<String>emptySet());
+        assertTrue(asset.getSymbols().isEmpty());
+
+        asset.updateContent("other content");
+        asset.checkin("");
+        assertNull(asset.getSymbols());
+
+        asset.updateSymbols(Arrays.asList("type:Person"));
+        asset.updateBinaryContentAttachment(new ByteArrayInputStream("binary content".getBytes()));
+        asset.checkin("");
+        assertNull(asset.getSymbols());
+    }
+
     @Test
     public void testGetPackageItem() throws Exception {
         RulesRepository repo = getRepo();
@@ -16,6 +16,8 @@
 
 package org.drools.repository;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
@@ -274,6 +276,112 @@ public class ModuleItemTest extends RepositoryTestCase {
         assertEquals("BOO2", res[1]);
     }
 
+    @Test
+    public void testPackageManifestSnapshot() throws Exception {
+        RulesRepository repo = getRepo();
+
+        ModuleItem pkg = repo.createModule( "testPackageManifestSnapshot", "this is something" );
+
+        AssetItem it1 = pkg.addAsset( "testManifest1", "la" );
+        AssetItem it2 = pkg.addAsset( "testManifest2", "la" );
+        it1.updateContent( "new content" );
+        it1.updateFormat( "drl" );
+        it1.checkin( "c" );
+        it2.updateContent( "more content" );
+        it2.updateFormat( "function" );
+        it2.checkin( "c" );
+        pkg.updateCompiledPackage( new java.io.ByteArrayInputStream( "binary".getBytes() ) );
+        repo.save();
+
+        long ver1 = it1.getVersionNumber();
+
+        repo.createModuleSnapshot( "testPackageManifestSnapshot", "PROD 1.0", true );
+
+        ModuleItem snapshot = repo.loadModuleSnapshot( "testPackageManifestSnapshot", "PROD 1.0" );
+        assertTrue( snapshot.isSnapshot() );
+        assertTrue( snapshot.isManifestSnapshot() );
+        assertFalse( pkg.isManifestSnapshot() );
+        assertEquals( "PROD 1.0", snapshot.getSnapshotName() );
+        assertEquals( "testPackageManifestSnapshot", snapshot.getName() );
+        assertEquals( "binary", new String( snapshot.getCompiledPackageBytes() ) );
+        assertEquals( 2, snapshot.getSnapshotManifest().size() );
+
+        //changes on the main line are not seen by the snapshot
+        it1.updateContent( "XXX" );
+        it1.checkin( "X" );
+        AssetItem it3 = pkg.addAsset( "testManifest3", "x" );
+        it3.updateFormat( "drl" );
+        it3.checkin( "a" );
+
+        snapshot = repo.loadModuleSnapshot( "testPackageManifestSnapshot", "PROD 1.0" );
+        assertEquals( 2, iteratorToList( snapshot.getAssets() ).size() );
+        assertEquals( 1, iteratorToList( snapshot.listAssetsByFormat( "drl" ) ).size() );
+        assertEquals( 1, iteratorToList( snapshot.listAssetsNotOfFormat( new String[] {"drl"} ) ).size() );
+        assertEquals( 2, iteratorToList( snapshot.queryAssets( "" ) ).size() );
+
+        assertTrue( snapshot.containsAsset( "testManifest1" ) );
+        assertFalse( snapshot.containsAsset( "testManifest3" ) );
+        AssetItem snapshotAsset = snapshot.loadAsset( "testManifest1" );
+        assertEquals( "new content", snapshotAsset.getContent() );
+        assertEquals( ver1, snapshotAsset.getVersionNumber() );
+
+        //old style snapshots are still full copies
+        repo.createModuleSnapshot( "testPackageManifestSnapshot", "PROD 2.0", false );
+        ModuleItem copy = repo.loadModuleSnapshot( "testPackageManifestSnapshot", "PROD 2.0" );
+        assertFalse( copy.isManifestSnapshot() );
+        assertEquals( 3, iteratorToList( copy.getAssets() ).size() );
+
+        String[] res = repo.listModuleSnapshots( "testPackageManifestSnapshot" );
+        assertEquals( 2, res.length );
+    }
+
+    @Test
+    public void testManifestSnapshotDoesNotCheckInAssets() throws Exception {
+        RulesRepository repo = getRepo();
+
+        ModuleItem pkg = repo.createModule( "testManifestSnapshotNoCheckin", "desc" );
+        AssetItem versioned = pkg.addAsset( "versioned", "la" );
+        versioned.updateContent( "checked in" );
+        versioned.checkin( "c" );
+        versioned.updateContent( "draft" );
+        AssetItem unversioned = pkg.addAsset( "unversioned", "la" );
+        unversioned.updateContent( "never checked in" );
+        repo.save();
+        long version = versioned.getVersionNumber();
+
+        repo.createModuleSnapshot( "testManifestSnapshotNoCheckin", "SNAP", true );
+
+        AssetItem live = repo.loadModule( "testManifestSnapshotNoCheckin" ).loadAsset( "versioned" );
+        assertEquals( version, live.getVersionNumber() );
+        assertTrue( live.getNode().isCheckedOut() );
+
+        ModuleItem snapshot = repo.loadModuleSnapshot( "testManifestSnapshotNoCheckin", "SNAP" );
+        assertEquals( "draft", snapshot.loadAsset( "versioned" ).getContent() );
+        assertEquals( "never checked in", snapshot.loadAsset( "unversioned" ).getContent() );
+    }
+
+    @Test
+    public void testManifestSnapshotAssetsBelongToTheSnapshot() throws Exception {
+        RulesRepository repo = getRepo();
+
+        ModuleItem pkg = repo.createModule( "testManifestSnapshotModule", "desc" );
+        AssetItem asset = pkg.addAsset( "asset", "la" );
+        asset.updateFormat( "drl" );
+        asset.checkin( "c" );
+
+        repo.createModuleSnapshot( "testManifestSnapshotModule", "SNAP", true );
+        ModuleItem snapshot = repo.loadModuleSnapshot( "testManifestSnapshotModule", "SNAP" );
+
+        ModuleItem module = snapshot.loadAsset( "asset" ).getModule();
+        assertTrue( module.isSnapshot() );
+        assertEquals( "SNAP", module.getSnapshotName() );
+
+        Iterator<AssetItem> assets = snapshot.getAssets();
+        assertEquals( "SNAP", assets.next().getModule().getSnapshotName() );
+        assets = snapshot.listAssetsByFormat( "drl" );
+        assertEquals( "SNAP", assets.next().getModule().getSnapshotName() );
+    }
+
     @Test
     public void testLoadRulePackageItem() {
 
@@ -1070,6 +1178,75 @@ public class ModuleItemTest extends RepositoryTestCase {
         assertEquals("version 2", ai.getCheckinComment()); 
     }
     
+    @Test
+    public void testAssetCountsAndRows() throws Exception {
+        RulesRepository repo = getRepo();
+        ModuleItem pkg = repo.createModule( "testAssetCountsAndRows", "" );
+        pkg.addAsset( "b", "" ).updateFormat( "drl" );
+        pkg.addAsset( "a", "" ).updateFormat( "drl" );
+        pkg.addAsset( "c", "" ).updateFormat( "xls" );
+        repo.save();
+
+        assertEquals(3, pkg.getAssetCount( null, false ));
+        assertEquals(2, pkg.getAssetCount( new String[] {"drl"}, false ));
+        assertEquals(1, pkg.getAssetCount( new String[] {"drl"}, true ));
+
+        AssetItem d = pkg.addAsset( "d", "" );
+        d.updateFormat( "xls" );
+        repo.save();
+        assertEquals(2, pkg.getAssetCount( new String[] {"xls"}, false ));
+
+        d.archiveItem( true );
+        repo.save();
+        assertEquals(1, pkg.getAssetCount( new String[] {"xls"}, false ));
+        assertEquals(3, pkg.getAssetCount( null, false ));
+
+        pkg.loadAsset( "c" ).updateFormat( "drl" );
+        repo.save();
+        assertEquals(3, pkg.getAssetCount( new String[] {"drl"}, false ));
+        assertEquals(0, pkg.getAssetCount( new String[] {"xls"}, false ));
+
+        pkg.loadAsset( "b" ).remove();
+        repo.save();
+        assertEquals(2, pkg.getAssetCount( new String[] {"drl"}, false ));
+
+        ModuleAssetCounts.getInstance().invalidate( pkg.getUUID() );
+        assertEquals(2, pkg.getAssetCount( new String[] {"drl"}, false ));
+
+        List<AssetRow> rows = pkg.listAssetRows( new String[] {"drl"}, false, 0, -1 );
+        assertEquals(2, rows.size());
+        assertEquals("a", rows.get( 0 ).getName());
+        assertEquals("drl", rows.get( 0 ).getFormat());
+        assertEquals(pkg.loadAsset( "a" ).getUUID(), rows.get( 0 ).getUUID());
+        assertEquals("c", rows.get( 1 ).getName());
+
+        rows = pkg.listAssetRows( null, false, 1, 1 );
+        assertEquals(1, rows.size());
+        assertEquals("c", rows.get( 0 ).getName());
+    }
+
+    @Test
+    public void testCompiledPackageStream() throws Exception {
+        RulesRepository repo = getRepo();
+        ModuleItem pkg = repo.createModule( "testCompiledPackageStream", "" );
+        assertNull(pkg.getCompiledPackageStream());
+        assertEquals(-1, pkg.getCompiledPackageSize());
+
+        pkg.updateCompiledPackage( new ByteArrayInputStream( "binary".getBytes() ) );
+        repo.save();
+
+        assertEquals(6, pkg.getCompiledPackageSize());
+        InputStream in = pkg.getCompiledPackageStream();
+        try {
+            byte[] bytes = new byte[6];
+            assertEquals(6, in.read( bytes ));
+            assertEquals(-1, in.read());
+            assertEquals("binary", new String( bytes ));
+        } finally {
+            in.close();
+        }
+    }
+
     static class MockAssetItem extends AssetItem {
         private long version;
 
@@ -24,6 +24,7 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.security.MessageDigest;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.HashMap;
@@ -31,6 +32,9 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
 
 import javax.jcr.ImportUUIDBehavior;
 import javax.jcr.Node;
@@ -42,11 +46,14 @@ import javax.jcr.SimpleCredentials;
 import javax.jcr.Workspace;
 
 import org.drools.repository.RulesRepository.DateQuery;
+import org.drools.repository.backup.RepositoryBackupWriter;
+import org.drools.repository.backup.RepositoryImporter;
 import org.drools.repository.migration.MigrateDroolsPackage;
 
 import org.junit.Test;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.fail;
@@ -615,6 +622,74 @@ public class RulesRepositoryTest extends RepositoryTestCase {
         assertFalse( foundGlobalArea );
     }
 
+    @Test
+    public void testListModuleSummaries() throws Exception {
+        RulesRepository repo = getRepo();
+        ModuleItem module = repo.createModule( "testListModuleSummaries",
+                                               "desc" );
+        // loads the summaries, which are then kept up to date
+        assertNotNull( findSummary( repo.listModuleSummaries(),
+                                    "testListModuleSummaries" ) );
+        assertNull( findSummary( repo.listModuleSummaries(),
+                                 RulesRepository.GLOBAL_AREA ) );
+
+        repo.createModule( "testListModuleSummariesNew",
+                           "desc" );
+        module.createSubModule( "testListModuleSummariesSub" );
+        module.addWorkspace( "testListModuleSummariesWs" );
+        module.archiveItem( true );
+        // not until the changes are saved
+        assertFalse( findSummary( repo.listModuleSummaries(),
+                                  "testListModuleSummaries" ).isArchived() );
+        module.checkin( "archived" );
+
+        ModuleSummary summary = findSummary( repo.listModuleSummaries(),
+                                             "testListModuleSummaries" );
+        assertTrue( summary.isArchived() );
+        assertTrue( summary.isInWorkspace( "testListModuleSummariesWs" ) );
+        assertEquals( 1,
+                      summary.getSubModules().size() );
+        assertEquals( "testListModuleSummariesSub",
+                      summary.getSubModules().get( 0 ).getName() );
+        assertEquals( module.getUUID(),
+                      summary.getSubModules().get( 0 ).getParentUUID() );
+        assertNotNull( findSummary( repo.listModuleSummaries(),
+                                    "testListModuleSummariesNew" ) );
+
+        repo.renameModule( module.getUUID(),
+                           "testListModuleSummariesRenamed" );
+        assertNull( findSummary( repo.listModuleSummaries(),
+                                 "testListModuleSummaries" ) );
+        assertEquals( module.getUUID(),
+                      findSummary( repo.listModuleSummaries(),
+                                   "testListModuleSummariesRenamed" ).getUUID() );
+
+        // the same as reading them again
+        List<ModuleSummary> kept = repo.listModuleSummaries();
+        ModuleSummaryIndex.getInstance().invalidate();
+        List<ModuleSummary> read = repo.listModuleSummaries();
+        assertEquals( kept.size(),
+                      read.size() );
+        for ( int i = 0; i < kept.size(); i++ ) {
+            assertEquals( kept.get( i ).getUUID(),
+                          read.get( i ).getUUID() );
+            assertEquals( kept.get( i ).isArchived(),
+                          read.get( i ).isArchived() );
+            assertEquals( kept.get( i ).getSubModules().size(),
+                          read.get( i ).getSubModules().size() );
+        }
+    }
+
+    private ModuleSummary findSummary(List<ModuleSummary> summaries,
+                                      String name) {
+        for ( ModuleSummary summary : summaries ) {
+            if ( summary.getName().equals( name ) ) {
+                return summary;
+            }
+        }
+        return null;
+    }
+
     @Test
     public void testFindAssetsByState() throws Exception {
         RulesRepository repo = getRepo();
@@ -1142,6 +1217,210 @@ public class RulesRepositoryTest extends RepositoryTestCase {
         assertTrue(repo.containsModule("testImportExport"));
     }
 
+    @Test
+    public void testImportResumesFromCheckpoint() throws Exception {
+        RulesRepository repo = getRepo();
+        repo.createModule( "testImportResumeA",
+                           "desc" ).addAsset( "asset",
+                                              "desc" ).checkin( "" );
+        repo.createModule( "testImportResumeB",
+                           "desc" );
+
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        repo.exportRepositoryToStream( bout );
+        byte[] export = bout.toByteArray();
+
+        RepositoryImporter importer = new RepositoryImporter( repo,
+                                                              1,
+                                                              0 );
+        importer.importRepository( new ByteArrayInputStream( export ) );
+        assertTrue( repo.containsModule( "testImportResumeA" ) );
+        assertTrue( repo.containsModule( "testImportResumeB" ) );
+        assertFalse( repo.getSession().getRootNode().hasNode( RepositoryImporter.CHECKPOINT_NODE ) );
+        long modules = importer.getImportedUnits();
+
+        // An import of the same export that was interrupted after module A
+        repo.loadModule( "testImportResumeB" ).remove();
+        Node checkpoint = repo.getSession().getRootNode().addNode( RepositoryImporter.CHECKPOINT_NODE,
+                                                                   "nt:unstructured" );
+        checkpoint.setProperty( "source",
+                                sha1( export ) );
+        checkpoint.setProperty( "phase",
+                                "units" );
+        checkpoint.setProperty( "units",
+                                modules - 1 );
+        repo.save();
+
+        importer.importRepository( new ByteArrayInputStream( export ) );
+        assertEquals( 1,
+                      importer.getImportedUnits() );
+        assertEquals( modules - 1,
+                      importer.getSkippedUnits() );
+        assertTrue( repo.containsModule( "testImportResumeB" ) );
+        assertTrue( repo.loadModule( "testImportResumeA" ).containsAsset( "asset" ) );
+        assertFalse( repo.getSession().getRootNode().hasNode( RepositoryImporter.CHECKPOINT_NODE ) );
+    }
+
+    private static String sha1(byte[] data) throws Exception {
+        StringBuilder hash = new StringBuilder();
+        for ( byte b : MessageDigest.getInstance( "SHA-1" ).digest( data ) ) {
+            hash.append( Integer.toHexString( (b & 0xFF) | 0x100 ).substring( 1 ) );
+        }
+        return hash.toString();
+    }
+
+    @Test
+    public void testRepositoryBackup() throws Exception {
+        RulesRepository repo = getRepo();
+
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        long fullBackupId = repo.exportRepositoryBackup( bout,
+                                                         0 );
+        byte[] fullBackup = bout.toByteArray();
+
+        ModuleItem module = repo.createModule( "testRepositoryBackup",
+                                               "desc" );
+        AssetItem asset = module.addAsset( "model",
+                                           "desc" );
+        asset.updateBinaryContentAttachment( new ByteArrayInputStream( "jar content".getBytes() ) );
+        asset.checkin( "binary" );
+        AssetItem copy = module.addAsset( "modelCopy",
+                                          "desc" );
+        copy.updateBinaryContentAttachment( new ByteArrayInputStream( "jar content".getBytes() ) );
+        copy.checkin( "same binary" );
+
+        bout = new ByteArrayOutputStream();
+        repo.exportRepositoryBackup( bout,
+                                     fullBackupId );
+        byte[] incrementalBackup = bout.toByteArray();
+
+        int binaries = 0;
+        ZipInputStream zin = new ZipInputStream( new ByteArrayInputStream( incrementalBackup ) );
+        for ( ZipEntry entry = zin.getNextEntry(); entry != null; entry = zin.getNextEntry() ) {
+            if ( entry.getName().startsWith( RepositoryBackupWriter.BINARY_ENTRY_PREFIX ) ) {
+                binaries++;
+            }
+        }
+        assertEquals( 1,
+                      binaries );
+
+        repo.importRepositoryBackup( new ByteArrayInputStream( fullBackup ) );
+        assertFalse( repo.containsModule( "testRepositoryBackup" ) );
+
+        repo.importRepositoryBackup( new ByteArrayInputStream( incrementalBackup ) );
+        assertTrue( repo.containsModule( "testRepositoryBackup" ) );
+        assertEquals( "jar content",
+                      new String( repo.loadModule( "testRepositoryBackup" ).loadAsset( "model" ).getBinaryContentAsBytes() ) );
+    }
+
+    @Test
+    public void testRemovedAssetStaysRemovedAfterIncrementalRestore() throws Exception {
+        RulesRepository repo = getRepo();
+
+        ModuleItem module = repo.createModule( "testRemovedAssetBackup",
+                                               "desc" );
+        module.addAsset( "kept",
+                         "desc" ).checkin( "c" );
+        module.addAsset( "removed",
+                         "desc" ).checkin( "c" );
+        repo.save();
+
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        long fullBackupId = repo.exportRepositoryBackup( bout,
+                                                         0 );
+        byte[] fullBackup = bout.toByteArray();
+
+        Thread.sleep( 10 );
+        repo.loadModule( "testRemovedAssetBackup" ).loadAsset( "removed" ).remove();
+        repo.save();
+
+        bout = new ByteArrayOutputStream();
+        repo.exportRepositoryBackup( bout,
+                                     fullBackupId );
+        byte[] incrementalBackup = bout.toByteArray();
+
+        repo.importRepositoryBackup( new ByteArrayInputStream( fullBackup ) );
+        assertTrue( repo.loadModule( "testRemovedAssetBackup" ).containsAsset( "removed" ) );
+
+        repo.importRepositoryBackup( new ByteArrayInputStream( incrementalBackup ) );
+        assertTrue( repo.loadModule( "testRemovedAssetBackup" ).containsAsset( "kept" ) );
+        assertFalse( repo.loadModule( "testRemovedAssetBackup" ).containsAsset( "removed" ) );
+    }
+
+    @Test
+    public void testFailedIncrementalRestoreKeepsTheUnit() throws Exception {
+        RulesRepository repo = getRepo();
+
+        ModuleItem module = repo.createModule( "testFailedIncrementalRestore",
+                                               "desc" );
+        AssetItem asset = module.addAsset( "rule",
+                                           "desc" );
+        asset.updateContent( "content" );
+        asset.checkin( "c" );
+
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        ZipOutputStream zout = new ZipOutputStream( bout );
+        zout.putNextEntry( new ZipEntry( RepositoryBackupWriter.PROPERTIES_ENTRY ) );
+        zout.write( "format=1\nid=2\nsince=1\n".getBytes( "UTF-8" ) );
+        zout.closeEntry();
+        zout.putNextEntry( new ZipEntry( RepositoryBackupWriter.NODES_ENTRY_PREFIX + RulesRepository.MODULE_AREA + "/testFailedIncrementalRestore.xml" ) );
+        zout.write( "<sv:node xmlns:sv=\"http://www.jcp.org/jcr/sv/1.0\" sv:name=\"testFailedIncrementalRestore\">".getBytes( "UTF-8" ) );
+        zout.closeEntry();
+        zout.finish();
+
+        try {
+            repo.importRepositoryBackup( new ByteArrayInputStream( bout.toByteArray() ) );
+            fail( "The unit can not be read" );
+        } catch ( RulesRepositoryException e ) {
+            assertNotNull( e.getMessage() );
+        }
+
+        assertTrue( repo.containsModule( "testFailedIncrementalRestore" ) );
+        assertEquals( "content",
+                      repo.loadModule( "testFailedIncrementalRestore" ).loadAsset( "rule" ).getContent() );
+    }
+
+    @Test
+    public void testManifestSnapshotsAreBackedUpAsCopies() throws Exception {
+        RulesRepository repo = getRepo();
+
+        ModuleItem module = repo.createModule( "testManifestSnapshotBackup",
+                                               "desc" );
+        AssetItem asset = module.addAsset( "rule",
+                                           "desc" );
+        asset.updateContent( "snapshot content" );
+        asset.checkin( "c" );
+        repo.createModuleSnapshot( "testManifestSnapshotBackup",
+                                   "SNAP",
+                                   true );
+        asset.updateContent( "later content" );
+        asset.checkin( "c" );
+
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        repo.exportRepositoryBackup( bout,
+                                     0 );
+        byte[] backup = bout.toByteArray();
+        bout = new ByteArrayOutputStream();
+        repo.exportRepositoryToStream( bout );
+        byte[] export = bout.toByteArray();
+
+        repo.importRepositoryBackup( new ByteArrayInputStream( backup ) );
+        ModuleItem snapshot = repo.loadModuleSnapshot( "testManifestSnapshotBackup",
+                                                       "SNAP" );
+        assertFalse( snapshot.isManifestSnapshot() );
+        assertEquals( "snapshot content",
+                      snapshot.loadAsset( "rule" ).getContent() );
+        assertEquals( "later content",
+                      repo.loadModule( "testManifestSnapshotBackup" ).loadAsset( "rule" ).getContent() );
+
+        repo.importRulesRepositoryFromStream( new ByteArrayInputStream( export ) );
+        snapshot = repo.loadModuleSnapshot( "testManifestSnapshotBackup",
+                                            "SNAP" );
+        assertFalse( snapshot.isManifestSnapshot() );
+        assertEquals( "snapshot content",
+                      snapshot.loadAsset( "rule" ).getContent() );
+    }
+
      /*
      * https://jira.jboss.org/browse/MODE-883
      */
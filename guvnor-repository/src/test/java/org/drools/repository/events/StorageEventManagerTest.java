@@ -23,12 +23,18 @@ import org.drools.repository.AssetItem;
 import org.junit.After;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
 
 public class StorageEventManagerTest extends RepositoryTestCase {
 
@@ -126,4 +132,75 @@ public class StorageEventManagerTest extends RepositoryTestCase {
         assertSame(asset, x[0]);
     }
 
+    @Test
+    public void testRemoveCheckinListener() throws Exception {
+        StorageEventManager.le = null;
+        StorageEventManager.se = null;
+        StorageEventManager.removeListeners();
+
+        final List<AssetItem> kept = new ArrayList<AssetItem>();
+        final List<AssetItem> removed = new ArrayList<AssetItem>();
+        CheckinEvent keptListener = new CheckinEvent() {
+            public void afterCheckin(AssetItem item) {
+                kept.add(item);
+            }
+        };
+        CheckinEvent removedListener = new CheckinEvent() {
+            public void afterCheckin(AssetItem item) {
+                removed.add(item);
+            }
+        };
+        StorageEventManager.registerCheckinEvent(keptListener);
+        StorageEventManager.registerCheckinEvent(removedListener);
+        StorageEventManager.removeCheckinEvent(removedListener);
+
+        RulesRepository repo = getRepo();
+        AssetItem asset = repo.loadDefaultModule().addAsset("testRemoveCheckinListener", "");
+        asset.updateContent("boo");
+        asset.checkin("");
+        StorageEventManager.removeListeners();
+
+        assertEquals(1, kept.size());
+        assertEquals(0, removed.size());
+    }
+
+    @Test
+    public void testBatchCheckinListener() throws Exception {
+        StorageEventManager.le = null;
+        StorageEventManager.se = null;
+        StorageEventManager.removeListeners();
+
+        final List<Collection<AssetItem>> batches = new ArrayList<Collection<AssetItem>>();
+        final List<AssetItem> single = new ArrayList<AssetItem>();
+        StorageEventManager.registerCheckinEvent(new BatchCheckinEvent() {
+            public void afterCheckin(AssetItem item) {
+                fail("The batch should be handled at once");
+            }
+
+            public void afterCheckin(Collection<AssetItem> items) {
+                batches.add(items);
+            }
+        });
+        StorageEventManager.registerCheckinEvent(new CheckinEvent() {
+            public void afterCheckin(AssetItem item) {
+                single.add(item);
+            }
+        });
+        RulesRepository repo = getRepo();
+        ModuleItem pkg = repo.loadDefaultModule();
+        AssetItem first = pkg.addAsset("testBatchCheckinListener1", "");
+        AssetItem second = pkg.addAsset("testBatchCheckinListener2", "");
+        first.updateContent("boo");
+        second.updateContent("whee");
+        repo.checkinAssets(Arrays.asList(first, second), "batch");
+        StorageEventManager.removeListeners();
+
+        assertEquals(1, batches.size());
+        assertEquals(2, batches.get(0).size());
+        assertEquals(2, single.size());
+        assertEquals(1, first.getVersionNumber());
+        assertEquals("batch", second.getCheckinComment());
+        assertEquals("whee", pkg.loadAsset("testBatchCheckinListener2").getContent());
+    }
+
 }
@@ -70,4 +70,23 @@ public class MigrateDroolsPackageTest extends RepositoryTestCase {
         assertEquals("some header", as.getContent());
     }
 
+    @Test
+    public void testIsEveryModuleMigrated() throws Exception {
+        RulesRepository repo = getRepo();
+        MigrateDroolsPackage mig = new MigrateDroolsPackage();
+        mig.migrate(repo);
+        assertTrue(mig.isEveryModuleMigrated(repo));
+
+        repo.createModule("testIsEveryModuleMigrated1", "");
+        repo.createModule("testIsEveryModuleMigrated2", "");
+        repo.save();
+        assertFalse(mig.isEveryModuleMigrated(repo));
+
+        mig.migrateModule(repo, "testIsEveryModuleMigrated1");
+        assertFalse(mig.isEveryModuleMigrated(repo));
+
+        mig.migrateModule(repo, "testIsEveryModuleMigrated2");
+        assertTrue(mig.isEveryModuleMigrated(repo));
+    }
+
 }
@@ -213,6 +213,7 @@ public class MultiViewEditor extends GuvnorEditor {
                                             final SimplePanel content,
                                             final Asset asset) {
     	eventBus.fireEvent(new RefreshModuleDataModelEvent(asset.getMetaData().getModuleName(),
+                asset,
                 new Command() {
 
                     public void execute() {
@@ -77,6 +77,7 @@ public class AssetEditorActivity extends Activity {
         return new GenericCallback<Asset>() {
             public void onSuccess(final Asset ruleAsset) {
             	eventBus.fireEvent(new RefreshModuleDataModelEvent(ruleAsset.metaData.moduleName,
+            	        ruleAsset,
             	        createOnRefreshModuleDataModelCompletion( loading,
                                 ruleAsset )));
             }
@@ -1,5 +1,7 @@
 package org.drools.guvnor.client.explorer;
 
+import org.drools.guvnor.client.rpc.Asset;
+
 import com.google.gwt.event.shared.EventHandler;
 import com.google.gwt.event.shared.GwtEvent;
 import com.google.gwt.user.client.Command;
@@ -14,6 +16,7 @@ public class RefreshModuleDataModelEvent extends GwtEvent<RefreshModuleDataModel
     public static Type<RefreshModuleDataModelEvent.Handler> TYPE = new Type<RefreshModuleDataModelEvent.Handler>();
 
     private final String moduleName;
+    private Asset asset = null;
     private Command callbackCommand = null;
 
     public RefreshModuleDataModelEvent(String moduleName, Command callbackCommand) {
@@ -21,9 +24,22 @@ public class RefreshModuleDataModelEvent extends GwtEvent<RefreshModuleDataModel
         this.callbackCommand = callbackCommand;
     }
 
+    /**
+     * @param asset the asset that is about to be edited, so that the data
+     *        model it needs can be loaded with the module data model.
+     */
+    public RefreshModuleDataModelEvent(String moduleName, Asset asset, Command callbackCommand) {
+        this(moduleName, callbackCommand);
+        this.asset = asset;
+    }
+
     public String getModuleName() {
         return moduleName;
     }
+
+    public Asset getAsset() {
+        return asset;
+    }
     
     public Command getCallbackCommand() {
     	return callbackCommand;
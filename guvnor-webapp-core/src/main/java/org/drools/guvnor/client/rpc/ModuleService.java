@@ -35,6 +35,17 @@ public interface ModuleService
      */
     public Module[] listModules(String workspace);
 
+    /**
+     * As {@link #listModules(String)}, one page of top level modules (with their
+     * sub-modules) at a time.
+     *
+     * @param start   the index of the first top level module to return.
+     * @param numRows the number of top level modules to return, or -1 for all of them.
+     */
+    public Module[] listModules(String workspace,
+                                int start,
+                                int numRows);
+
     /**
      * This returns a list of archived modules.
      */
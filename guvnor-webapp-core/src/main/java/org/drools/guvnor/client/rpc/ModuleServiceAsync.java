@@ -23,6 +23,7 @@ public interface ModuleServiceAsync {
     /** Generated by AsyncInterfaceGenerator hackery */
     public void listModules(java.lang.String p0, AsyncCallback<org.drools.guvnor.client.rpc.Module[]> cb);
     public void listModules(AsyncCallback<org.drools.guvnor.client.rpc.Module[]> cb);
+    public void listModules(java.lang.String p0, int p1, int p2, AsyncCallback<org.drools.guvnor.client.rpc.Module[]> cb);
     public void listArchivedModules(AsyncCallback<org.drools.guvnor.client.rpc.Module[]> cb);
     public void loadGlobalModule(AsyncCallback<org.drools.guvnor.client.rpc.Module> cb);
     public void createModule(java.lang.String p0, java.lang.String p1, String p2, AsyncCallback<java.lang.String> cb);
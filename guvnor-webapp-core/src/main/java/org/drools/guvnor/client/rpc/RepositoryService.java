@@ -22,6 +22,7 @@ import java.util.Map;
 import java.util.Set;
 
 import org.drools.guvnor.client.widgets.tables.AbstractPagedTable;
+import org.drools.ide.common.client.modeldriven.FactTypeCompletions;
 import org.drools.ide.common.client.modeldriven.SuggestionCompletionEngine;
 import org.drools.ide.common.shared.workitems.PortableWorkDefinition;
 
@@ -181,6 +182,20 @@ public interface RepositoryService
      */
     public SuggestionCompletionEngine loadSuggestionCompletionEngine(String packageName) throws SerializationException;
 
+    /**
+     * Loads the names of the fact types, the globals and the DSL sentences of
+     * the package, without the fields, methods and enums of the fact types.
+     * These are loaded with loadFactTypeCompletions when needed.
+     */
+    public SuggestionCompletionEngine loadSuggestionCompletionEngineSummary(String packageName) throws SerializationException;
+
+    /**
+     * Loads the fields, methods and enums of the given fact types, and of the
+     * fact types of their fields.
+     */
+    public FactTypeCompletions[] loadFactTypeCompletions(String packageName,
+                                                         String[] factTypes) throws SerializationException;
+
     /**
      * return custom selector names
      */
@@ -217,6 +232,15 @@ public interface RepositoryService
     public String[] loadDropDownExpression(String[] valuePairs,
                                            String expression);
 
+    /**
+     * Resolves several drop down expressions in one call: the values of
+     * expressions[i] are interpolated with valuePairs[i].
+     *
+     * @see #loadDropDownExpression(String[], String)
+     */
+    public String[][] loadDropDownExpressions(String[][] valuePairs,
+                                              String[] expressions);
+
     /**
      * Runs a full text search using JCR.
      * 
@@ -55,11 +55,14 @@ public interface RepositoryServiceAsync {
     public void renameState(java.lang.String p0, java.lang.String p1, AsyncCallback cb);
     public void removeState(java.lang.String p0, AsyncCallback cb);
     public void loadSuggestionCompletionEngine(java.lang.String p0, AsyncCallback<org.drools.ide.common.client.modeldriven.SuggestionCompletionEngine> cb);
+    public void loadSuggestionCompletionEngineSummary(java.lang.String p0, AsyncCallback<org.drools.ide.common.client.modeldriven.SuggestionCompletionEngine> cb);
+    public void loadFactTypeCompletions(java.lang.String p0, java.lang.String[] p1, AsyncCallback<org.drools.ide.common.client.modeldriven.FactTypeCompletions[]> cb);
     public void getCustomSelectors(AsyncCallback<java.lang.String[]> cb);
     public void showLog(org.drools.guvnor.client.rpc.PageRequest p0, AsyncCallback<org.drools.guvnor.client.rpc.PageResponse<org.drools.guvnor.client.rpc.LogPageRow>> cb);
     public void showLog(AsyncCallback<org.drools.guvnor.client.rpc.LogEntry[]> cb);
     public void cleanLog(AsyncCallback cb);
     public void loadDropDownExpression(java.lang.String[] p0, java.lang.String p1, AsyncCallback<java.lang.String[]> cb);
+    public void loadDropDownExpressions(java.lang.String[][] p0, java.lang.String[] p1, AsyncCallback<java.lang.String[][]> cb);
     public void queryFullText(org.drools.guvnor.client.rpc.QueryPageRequest p0, AsyncCallback<org.drools.guvnor.client.rpc.PageResponse<org.drools.guvnor.client.rpc.QueryPageRow>> cb);
     public void queryMetaData(org.drools.guvnor.client.rpc.QueryMetadataPageRequest p0, AsyncCallback<org.drools.guvnor.client.rpc.PageResponse<org.drools.guvnor.client.rpc.QueryPageRow>> cb);
     public void queryMetaData(org.drools.guvnor.client.rpc.MetaDataQuery[] p0, java.util.Date p1, java.util.Date p2, java.util.Date p3, java.util.Date p4, boolean p5, int p6, int p7, AsyncCallback<org.drools.guvnor.client.rpc.TableDataResult> cb);
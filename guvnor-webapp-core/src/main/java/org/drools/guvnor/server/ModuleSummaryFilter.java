@@ -0,0 +1,42 @@
+/*
+ * Copyright 2012 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.drools.guvnor.server;
+
+import org.drools.guvnor.server.security.ModuleNameType;
+import org.drools.repository.ModuleSummary;
+import org.jboss.seam.security.Identity;
+
+/**
+ * Checks the permissions on the modules of a listing by their name, so the modules do
+ * not have to be loaded.
+ */
+public class ModuleSummaryFilter extends AbstractFilter<ModuleSummary> {
+
+    public ModuleSummaryFilter(Identity identity) {
+        super( ModuleSummary.class,
+               identity );
+    }
+
+    @Override
+    protected boolean checkPermission(final ModuleSummary summary,
+                                      final String action) {
+        return identity.hasPermission( new ModuleNameType( summary.getName() ),
+                                       action );
+    }
+
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2012 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.drools.guvnor.server;
+
+import java.lang.reflect.Method;
+
+import org.drools.guvnor.server.metrics.RequestMetrics;
+
+import com.google.gwt.user.server.rpc.RPCRequest;
+import com.google.gwt.user.server.rpc.RemoteServiceServlet;
+
+/**
+ * A GWT RPC servlet that names the request measured by the MetricsFilter after
+ * the RPC method, and counts the exceptions returned to the client as errors.
+ * The parameters are never recorded, as some of them are credentials.
+ */
+public class MonitoredRemoteServiceServlet extends RemoteServiceServlet {
+
+    private static final long serialVersionUID = 510l;
+
+    @Override
+    protected void onAfterRequestDeserialized(RPCRequest rpcRequest) {
+        super.onAfterRequestDeserialized( rpcRequest );
+        Method method = rpcRequest.getMethod();
+        RequestMetrics.getInstance().setOperation( "rpc:" + method.getDeclaringClass().getSimpleName() + "." + method.getName() );
+    }
+
+    @Override
+    protected void onAfterResponseSerialized(String serializedResponse) {
+        super.onAfterResponseSerialized( serializedResponse );
+        if ( serializedResponse != null && serializedResponse.startsWith( "//EX" ) ) {
+            RequestMetrics.getInstance().markError();
+        }
+    }
+
+}
@@ -24,7 +24,6 @@ import org.drools.guvnor.server.builder.BRMSPackageBuilder;
 import org.drools.guvnor.server.builder.DSLLoader;
 import org.drools.guvnor.server.builder.PageResponseBuilder;
 import org.drools.guvnor.server.builder.pagerow.ArchivedAssetPageRowBuilder;
-import org.drools.guvnor.server.builder.pagerow.AssetPageRowBuilder;
 import org.drools.guvnor.server.builder.pagerow.QuickFindPageRowBuilder;
 import org.drools.guvnor.server.cache.RuleBaseCache;
 import org.drools.guvnor.server.contenthandler.ContentHandler;
@@ -437,7 +436,7 @@ public class RepositoryAssetOperations {
             BRMSPackageBuilder builder = new BRMSPackageBuilder();
             // now we load up the DSL files
             ModuleItem moduleItem = rulesRepository.loadModule(asset.getMetaData().getModuleName());
-            builder.setDSLFiles(DSLLoader.loadDSLMappingFiles(moduleItem));
+            builder.setDSL(DSLLoader.loadCompiledDSL(moduleItem));
             if (asset.getMetaData().isBinary()) {
                 AssetItem item = rulesRepository.loadAssetByUUID(
                         asset.getUuid());
@@ -467,21 +466,35 @@ public class RepositoryAssetOperations {
                 + request.getPackageUuid() + ")");
         long start = System.currentTimeMillis();
 
-        AssetItemIterator iterator = getAssetIterator( request );
+        String[] formats = getRequestedFormats( request );
+        boolean excludeFormats = isExcludeFormats( request );
+        ModuleItem packageItem = rulesRepository.loadModuleByUUID( request.getPackageUuid() );
 
-        // Populate response
-        long totalRowsCount = iterator.getSize();
+        // Populate response. One more row than the page is read, to tell whether it is the last
+        // one: the count is only displayed, it may lag behind the assets
+        long totalRowsCount = packageItem.getAssetCount( formats,
+                                                         excludeFormats );
+        Integer pageSize = request.getPageSize();
+        List<AssetRow> assetRows = packageItem.listAssetRows( formats,
+                                                              excludeFormats,
+                                                              request.getStartRowIndex(),
+                                                              pageSize == null ? -1 : pageSize + 1 );
+        boolean lastPage = pageSize == null || assetRows.size() <= pageSize;
+        if ( !lastPage ) {
+            assetRows = assetRows.subList( 0,
+                                           pageSize );
+        }
 
-        List<AssetPageRow> rowList = new AssetPageRowBuilder()
-                .withPageRequest(request)
-                .withIdentity(identity)
-                .withContent(iterator)
-                .build();
+        AssetPageRowPopulator assetPageRowPopulator = new AssetPageRowPopulator();
+        List<AssetPageRow> rowList = new ArrayList<AssetPageRow>( assetRows.size() );
+        for ( AssetRow assetRow : assetRows ) {
+            rowList.add( assetPageRowPopulator.populateFrom( assetRow ) );
+        }
 
         PageResponse<AssetPageRow> response = new PageResponseBuilder<AssetPageRow>()
                 .withStartRowIndex(request.getStartRowIndex())
                 .withPageRowList(rowList)
-                .withLastPage(!iterator.hasNext())
+                .withLastPage(lastPage)
                 .buildWithTotalRowCount(totalRowsCount);
         
         long methodDuration = System.currentTimeMillis() - start;
@@ -657,32 +670,35 @@ public class RepositoryAssetOperations {
         log.debug( "Counting assets in packageUuid (" + request.getPackageUuid() + ")" );
         long start = System.currentTimeMillis();
 
-        AssetItemIterator iterator = getAssetIterator( request );
+        String[] formats = getRequestedFormats( request );
+        ModuleItem packageItem = rulesRepository.loadModuleByUUID( request.getPackageUuid() );
+        long count = packageItem.getAssetCount( formats,
+                                                isExcludeFormats( request ) );
 
         long methodDuration = System.currentTimeMillis() - start;
         log.debug( "Counted assets in packageUuid ("
                    + request.getPackageUuid() + ") in " + methodDuration + " ms." );
-        return iterator.getSize();
+        return count;
     }
-    
-    private AssetItemIterator getAssetIterator(AssetPageRequest request) {
-        ModuleItem packageItem = rulesRepository.loadModuleByUUID( request.getPackageUuid() );
 
-        AssetItemIterator iterator;
+    /**
+     * @return the formats to list (or not to list, see isExcludeFormats()), or null for all of them.
+     */
+    private String[] getRequestedFormats(AssetPageRequest request) {
         if ( request.getFormatInList() != null ) {
             if ( request.getFormatIsRegistered() != null ) {
                 throw new IllegalArgumentException( "Combining formatInList and formatIsRegistered is not yet supported." );
             }
-            iterator = packageItem.listAssetsByFormat( request.getFormatInList() );
-
-        } else {
-            if ( request.getFormatIsRegistered() != null && request.getFormatIsRegistered().equals( Boolean.FALSE ) ) {
-                iterator = packageItem.listAssetsNotOfFormat( registeredFormats );
-            } else {
-                iterator = packageItem.queryAssets( "" );
-            }
+            return request.getFormatInList().toArray( new String[request.getFormatInList().size()] );
+        }
+        if ( isExcludeFormats( request ) ) {
+            return registeredFormats;
         }
-        return iterator;
+        return null;
+    }
+
+    private boolean isExcludeFormats(AssetPageRequest request) {
+        return request.getFormatInList() == null && Boolean.FALSE.equals( request.getFormatIsRegistered() );
     }
 
     private void push(String messageType,
@@ -53,6 +53,8 @@ import org.drools.repository.RulesRepository;
 import org.drools.repository.RulesRepositoryException;
 import org.drools.repository.VersionableItem;
 import org.jboss.seam.remoting.annotations.WebRemote;
+import org.drools.guvnor.server.security.ModuleUUIDType;
+import org.drools.guvnor.server.security.RoleType;
 import org.jboss.seam.security.Identity;
 import org.jboss.seam.security.annotations.LoggedIn;
 
@@ -87,6 +89,15 @@ public class RepositoryAssetService
         return rulesRepository;
     }
 
+    /**
+     * @return true if the user has a package.readonly role or higher on the module, and so
+     *         may read all of its assets.
+     */
+    public boolean isModuleReadable(String moduleUuid) {
+        return identity.hasPermission(new ModuleUUIDType(moduleUuid),
+                RoleType.PACKAGE_READONLY.getName());
+    }
+
     /**
      * This actually does the hard work of loading up an asset based on its
      * format.
@@ -16,6 +16,7 @@
 package org.drools.guvnor.server;
 
 import com.google.gwt.user.client.rpc.SerializationException;
+import org.apache.commons.io.output.DeferredFileOutputStream;
 import org.drools.RuleBase;
 import org.drools.RuleBaseConfiguration;
 import org.drools.RuleBaseFactory;
@@ -29,6 +30,7 @@ import org.drools.guvnor.server.builder.ModuleAssemblerConfiguration;
 import org.drools.guvnor.server.builder.PackageDRLAssembler;
 import org.drools.guvnor.server.builder.pagerow.SnapshotComparisonPageRowBuilder;
 import org.drools.guvnor.server.cache.RuleBaseCache;
+import org.drools.guvnor.server.cache.SnapshotDiffCache;
 import org.drools.guvnor.server.security.RoleType;
 import org.drools.guvnor.server.util.*;
 import org.drools.repository.*;
@@ -41,9 +43,13 @@ import javax.inject.Named;
 
 import javax.jcr.PathNotFoundException;
 import javax.jcr.RepositoryException;
+import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.ObjectOutput;
 import java.util.*;
 
@@ -62,6 +68,13 @@ public class RepositoryModuleOperations {
      */
     private static final int MAX_ASSETS_TO_SHOW_IN_MODULE_LIST = 5000;
 
+    /**
+     * Size in bytes above which a compiled module is spilled to a temporary file while it is
+     * stored, set with the "guvnor.build.binaryMemoryThreshold" system property (1 MB).
+     */
+    private static final int COMPILED_BINARY_MEMORY_THRESHOLD = Integer.getInteger( "guvnor.build.binaryMemoryThreshold",
+                                                                                    1024 * 1024 );
+
     @Inject
     private RulesRepository rulesRepository;
 
@@ -74,63 +87,88 @@ public class RepositoryModuleOperations {
         this.rulesRepository = repository;
     }
 
+    /**
+     * Lists the modules from the module summaries kept by the repository (see
+     * {@link ModuleSummaryIndex}), without loading each module.
+     *
+     * @param archive          true to list the archived modules instead of the others.
+     * @param workspace        the workspace the top level modules must belong to, or null.
+     * @param filter           the read permission check, by the module summary, or null if all
+     *                         the modules may be read.
+     * @param start            the index of the first top level module to return.
+     * @param numRows          the number of top level modules to return, or -1 for all of them.
+     * @return the top level modules, sorted by name, with their sub-modules.
+     */
     protected Module[] listModules(boolean archive,
-                                               String workspace,
-                                               RepositoryFilter filter) {
+                                   String workspace,
+                                   RepositoryFilter filter,
+                                   int start,
+                                   int numRows) {
         List<Module> result = new ArrayList<Module>();
-        ModuleIterator modules = rulesRepository.listModules();
-        handleIterateModules( archive,
-                workspace,
-                filter,
-                result,
-                modules );
-
-        sortModules( result );
+        int skipped = 0;
+        for (ModuleSummary summary : rulesRepository.listModuleSummaries()) {
+            if ( numRows >= 0 && result.size() >= numRows ) {
+                break;
+            }
+            if ( !isModuleListed( archive,
+                                  workspace,
+                                  filter,
+                                  summary ) ) {
+                continue;
+            }
+            if ( skipped < start ) {
+                skipped++;
+                continue;
+            }
+            result.add( toModule( summary,
+                                  archive,
+                                  filter ) );
+        }
         return result.toArray( new Module[result.size()] );
     }
 
-    private void handleIterateModules(boolean archive,
-                                       String workspace,
-                                       RepositoryFilter filter,
-                                       List<Module> result,
-                                       ModuleIterator modules) {
-        modules.setArchivedIterator( archive );
-        while (modules.hasNext()) {
-            ModuleItem packageItem = modules.next();
-
-            Module data = new Module();
-            data.setUuid( packageItem.getUUID() );
-            data.setName( packageItem.getName() );
-            data.setArchived( packageItem.isArchived() );
-            data.setWorkspaces( packageItem.getWorkspaces() );
-            handleIsModuleListed( archive,
-                    workspace,
-                    filter,
-                    result,
-                    data );
-
-            data.subModules = listSubModules( packageItem,
-                    archive,
-                    null,
-                    filter );
-
+    protected Module[] listModules(boolean archive,
+                                   String workspace,
+                                   RepositoryFilter filter) {
+        return listModules( archive,
+                            workspace,
+                            filter,
+                            0,
+                            -1 );
+    }
+
+    private Module toModule(ModuleSummary summary,
+                            boolean archive,
+                            RepositoryFilter filter) {
+        Module data = new Module();
+        data.setUuid( summary.getUUID() );
+        data.setName( summary.getName() );
+        data.setArchived( summary.isArchived() );
+        data.setWorkspaces( summary.getWorkspaces() );
+
+        List<Module> children = new ArrayList<Module>();
+        for (ModuleSummary subModule : summary.getSubModules()) {
+            if ( isModuleListed( archive,
+                                 null,
+                                 filter,
+                                 subModule ) ) {
+                children.add( toModule( subModule,
+                                        archive,
+                                        filter ) );
+            }
         }
+        data.subModules = children.toArray( new Module[children.size()] );
+        return data;
     }
 
-    private Module[] listSubModules(ModuleItem parentModule,
-                                                boolean archive,
-                                                String workspace,
-                                                RepositoryFilter filter) {
-        List<Module> children = new LinkedList<Module>();
-
-        handleIterateModules( archive,
-                workspace,
-                filter,
-                children,
-                parentModule.listSubModules() );
-
-        sortModules( children );
-        return children.toArray( new Module[children.size()] );
+    private boolean isModuleListed(boolean archive,
+                                   String workspace,
+                                   RepositoryFilter filter,
+                                   ModuleSummary summary) {
+        return summary.isArchived() == archive
+                && (workspace == null || summary.isInWorkspace( workspace ))
+                && (filter == null || filter.accept( summary,
+                                                     RoleType.PACKAGE_READONLY.getName() ));
     }
 
     void sortModules(List<Module> result) {
@@ -145,33 +183,6 @@ public class RepositoryModuleOperations {
                 } );
     }
 
-    private void handleIsModuleListed(boolean archive,
-                                        String workspace,
-                                        RepositoryFilter filter,
-                                        List<Module> result,
-                                        Module data) {
-        if ( !archive && (filter == null || filter.accept( data,
-                RoleType.PACKAGE_READONLY.getName() )) && (workspace == null || isWorkspace( workspace,
-                data.getWorkspaces() )) ) {
-            result.add( data );
-        } else if ( archive && data.isArchived() && (filter == null || filter.accept( data,
-                RoleType.PACKAGE_READONLY.getName() )) && (workspace == null || isWorkspace( workspace,
-                data.getWorkspaces() )) ) {
-            result.add( data );
-        }
-    }
-
-    private boolean isWorkspace(String workspace,
-                                String[] workspaces) {
-
-        for (String w : workspaces) {
-            if ( w.equals( workspace ) ) {
-                return true;
-            }
-        }
-        return false;
-    }
-
     protected Module loadGlobalModule() {
         ModuleItem item = rulesRepository.loadGlobalArea();
 
@@ -526,9 +537,25 @@ public class RepositoryModuleOperations {
     }
 
     private void updateModuleBinaries(ModuleItem item, ModuleAssembler modulegeAssembler) throws DetailedSerializationException {
+        // the compiled module is spilled to a temporary file once it grows past the
+        // threshold, and read back as a stream, so a large module is never held in memory
+        DeferredFileOutputStream compiledPackage = new DeferredFileOutputStream( COMPILED_BINARY_MEMORY_THRESHOLD,
+                                                                                 "guvnor-module",
+                                                                                 ".pkg",
+                                                                                 null );
         try {
-            byte[] compiledPackageByte = modulegeAssembler.getCompiledBinary();
-            item.updateCompiledPackage( new ByteArrayInputStream(compiledPackageByte) );            
+            try {
+                modulegeAssembler.writeCompiledBinary( compiledPackage );
+            } finally {
+                compiledPackage.close();
+            }
+
+            InputStream in = openCompiledBinary( compiledPackage );
+            try {
+                item.updateCompiledPackage( in );
+            } finally {
+                in.close();
+            }
             item.updateBinaryUpToDate( true );
 
             //REVISIT: This should be handled by PackageAssembler internally
@@ -536,9 +563,13 @@ public class RepositoryModuleOperations {
                 RuleBase ruleBase = RuleBaseFactory.newRuleBase(
                     new RuleBaseConfiguration( getClassLoaders( (PackageAssembler)modulegeAssembler ) )
                 );
-                Package binPkg = (Package) DroolsStreamUtils.streamIn( compiledPackageByte );
-
-                ruleBase.addPackage( binPkg );
+                in = openCompiledBinary( compiledPackage );
+                try {
+                    Package binPkg = (Package) DroolsStreamUtils.streamIn( in );
+                    ruleBase.addPackage( binPkg );
+                } finally {
+                    in.close();
+                }
             }
 
             rulesRepository.save();
@@ -547,7 +578,19 @@ public class RepositoryModuleOperations {
             log.error( "An error occurred building the module [" + item.getName() + "]: " + e.getMessage() );
             throw new DetailedSerializationException( "An error occurred building the module.",
                     e.getMessage() );
+        } finally {
+            File file = compiledPackage.getFile();
+            if ( file != null && file.exists() && !file.delete() ) {
+                file.deleteOnExit();
+            }
+        }
+    }
+
+    private InputStream openCompiledBinary(DeferredFileOutputStream compiledPackage) throws IOException {
+        if ( compiledPackage.isInMemory() ) {
+            return new ByteArrayInputStream( compiledPackage.getData() );
         }
+        return new BufferedInputStream( new FileInputStream( compiledPackage.getFile() ) );
     }
 
     private ModuleAssemblerConfiguration createConfiguration(String buildMode, String statusOperator, String statusDescriptionValue, boolean enableStatusSelector, String categoryOperator, String category, boolean enableCategorySelector, String selectorConfigName) {
@@ -663,14 +706,22 @@ public class RepositoryModuleOperations {
     protected SnapshotDiffs compareSnapshots(String moduleName,
                                              String firstSnapshotName,
                                              String secondSnapshotName) {
-        SnapshotDiffs diffs = new SnapshotDiffs();
-        List<SnapshotDiff> list = new ArrayList<SnapshotDiff>();
-
         ModuleItem leftModule = rulesRepository.loadModuleSnapshot( moduleName,
                 firstSnapshotName );
         ModuleItem rightModule = rulesRepository.loadModuleSnapshot( moduleName,
                 secondSnapshotName );
 
+        SnapshotDiffCache cache = SnapshotDiffCache.getInstance();
+        SnapshotDiffs diffs = cache.get( leftModule.getUUID(),
+                rightModule.getUUID() );
+        if ( diffs != null ) {
+            return diffs;
+        }
+
+        diffs = new SnapshotDiffs();
+        String leftUUID = leftModule.getUUID();
+        String rightUUID = rightModule.getUUID();
+
         // Older one has to be on the left.
         if ( isRightOlderThanLeft( leftModule,
                 rightModule ) ) {
@@ -685,88 +736,14 @@ public class RepositoryModuleOperations {
             diffs.rightName = secondSnapshotName;
         }
 
-        Iterator<AssetItem> leftExistingIter = leftModule.getAssets();
-        while (leftExistingIter.hasNext()) {
-            AssetItem left = leftExistingIter.next();
-            if ( isModuleItemDeleted( rightModule,
-                    left ) ) {
-                SnapshotDiff diff = new SnapshotDiff();
-
-                diff.name = left.getName();
-                diff.diffType = SnapshotDiff.TYPE_DELETED;
-                diff.leftUuid = left.getUUID();
-
-                list.add( diff );
-            }
-        }
-
-        Iterator<AssetItem> rightExistingIter = rightModule.getAssets();
-        while (rightExistingIter.hasNext()) {
-            AssetItem right = rightExistingIter.next();
-            AssetItem left = null;
-            if ( right != null && leftModule.containsAsset( right.getName() ) ) {
-                left = leftModule.loadAsset( right.getName() );
-            }
-
-            // Asset is deleted or added
-            if ( right == null || left == null ) {
-                SnapshotDiff diff = new SnapshotDiff();
-
-                if ( left == null ) {
-                    diff.name = right.getName();
-                    diff.diffType = SnapshotDiff.TYPE_ADDED;
-                    diff.rightUuid = right.getUUID();
-                }
-
-                list.add( diff );
-            } else if ( isAssetArchivedOrRestored( right,
-                    left ) ) { // Has the asset
-                // been archived
-                // or restored
-                SnapshotDiff diff = new SnapshotDiff();
-
-                diff.name = right.getName();
-                diff.leftUuid = left.getUUID();
-                diff.rightUuid = right.getUUID();
-
-                if ( left.isArchived() ) {
-                    diff.diffType = SnapshotDiff.TYPE_RESTORED;
-                } else {
-                    diff.diffType = SnapshotDiff.TYPE_ARCHIVED;
-                }
-
-                list.add( diff );
-            } else if ( isAssetItemUpdated( right,
-                    left ) ) { // Has the asset been
-                // updated
-                SnapshotDiff diff = new SnapshotDiff();
-
-                diff.name = right.getName();
-                diff.leftUuid = left.getUUID();
-                diff.rightUuid = right.getUUID();
-                diff.diffType = SnapshotDiff.TYPE_UPDATED;
-
-                list.add( diff );
-            }
-        }
-
+        List<SnapshotDiff> list = new SnapshotComparator().compare( leftModule.getAssetManifest(),
+                rightModule.getAssetManifest() );
         diffs.diffs = list.toArray( new SnapshotDiff[list.size()] );
-        return diffs;
-    }
-
-    private boolean isAssetArchivedOrRestored(AssetItem right,
-                                              AssetItem left) {
-        return right.isArchived() != left.isArchived();
-    }
 
-    private boolean isAssetItemUpdated(AssetItem right,
-                                       AssetItem left) {
-        return right.getLastModified().compareTo( left.getLastModified() ) != 0;
-    }
-
-    private boolean isModuleItemDeleted(ModuleItem rightModuleItem,
-                                         AssetItem left) {
-        return !rightModuleItem.containsAsset( left.getName() );
+        cache.put( leftUUID,
+                rightUUID,
+                diffs );
+        return diffs;
     }
 
     private boolean isRightOlderThanLeft(ModuleItem leftModuleItem,
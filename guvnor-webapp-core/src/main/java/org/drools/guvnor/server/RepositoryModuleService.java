@@ -16,19 +16,17 @@
 package org.drools.guvnor.server;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
-import java.util.jar.JarEntry;
-import java.util.jar.JarInputStream;
 
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
 import javax.inject.Named;
 
-import org.apache.commons.io.IOUtils;
 import org.drools.ClockType;
 import org.drools.RuleBase;
 import org.drools.RuleBaseConfiguration;
@@ -59,7 +57,7 @@ import org.drools.guvnor.client.rpc.ValidatedResponse;
 import org.drools.guvnor.server.builder.AuditLogReporter;
 import org.drools.guvnor.server.builder.ClassLoaderBuilder;
 import org.drools.guvnor.server.cache.RuleBaseCache;
-import org.drools.guvnor.server.contenthandler.ModelContentHandler;
+import org.drools.guvnor.server.contenthandler.TypeCatalogue;
 import org.drools.guvnor.server.util.LoggingHelper;
 import org.drools.ide.common.client.modeldriven.testing.Scenario;
 import org.drools.ide.common.shared.workitems.PortableWorkDefinition;
@@ -68,7 +66,6 @@ import org.drools.lang.descr.TypeDeclarationDescr;
 import org.drools.repository.AssetItem;
 import org.drools.repository.AssetItemIterator;
 import org.drools.repository.ModuleItem;
-import org.drools.repository.RepositoryFilter;
 import org.drools.repository.RulesRepository;
 import org.drools.repository.RulesRepositoryException;
 import org.drools.rule.Package;
@@ -127,11 +124,24 @@ public class RepositoryModuleService
     @WebRemote
     @LoggedIn
     public Module[] listModules(String workspace) {
-        RepositoryFilter pf = new ModuleFilter( identity );
-        return repositoryModuleOperations.listModules(
-                                                         false,
-                                                         workspace,
-                                                         pf );
+        return repositoryModuleOperations.listModules( false,
+                                                       workspace,
+                                                       new ModuleSummaryFilter( identity ) );
+    }
+
+    /**
+     * As {@link #listModules(String)}, one page of top level modules at a time.
+     */
+    @WebRemote
+    @LoggedIn
+    public Module[] listModules(String workspace,
+                                int start,
+                                int numRows) {
+        return repositoryModuleOperations.listModules( false,
+                                                       workspace,
+                                                       new ModuleSummaryFilter( identity ),
+                                                       start,
+                                                       numRows );
     }
 
     @WebRemote
@@ -143,10 +153,9 @@ public class RepositoryModuleService
     @WebRemote
     @LoggedIn
     public Module[] listArchivedModules(String workspace) {
-        return repositoryModuleOperations.listModules(
-                                                         true,
-                                                         workspace,
-                                                         new ModuleFilter( identity ) );
+        return repositoryModuleOperations.listModules( true,
+                                                       workspace,
+                                                       new ModuleSummaryFilter( identity ) );
     }
 
     public Module loadGlobalModule() {
@@ -451,15 +460,12 @@ public class RepositoryModuleService
         AssetItemIterator it = pkg.listAssetsByFormat( AssetFormats.MODEL,
                                                        AssetFormats.DRL_MODEL );
 
-        JarInputStream jis = null;
-
         try {
             while ( it.hasNext() ) {
                 AssetItem asset = it.next();
                 if ( !asset.isArchived() ) {
                     if ( asset.getFormat().equals( AssetFormats.MODEL ) ) {
-                        jis = typesForModel( res,
-                                             asset );
+                        res.addAll( TypeCatalogue.load( asset ).getClassNames() );
                     } else {
                         typesForOthers( res,
                                         asset );
@@ -472,8 +478,6 @@ public class RepositoryModuleService
             log.error( "Unable to read the jar files in the package: " + e.getMessage() );
             throw new DetailedSerializationException( "Unable to read the jar files in the package.",
                                                       e.getMessage() );
-        } finally {
-            IOUtils.closeQuietly( jis );
         }
 
     }
@@ -492,28 +496,6 @@ public class RepositoryModuleService
         return item.getDependencies();
     }
 
-    private JarInputStream typesForModel(List<String> res,
-                                         AssetItem asset) throws IOException {
-        if ( !asset.isBinary() ) {
-            return null;
-        }
-        if ( asset.getBinaryContentAttachment() == null ) {
-            return null;
-        }
-
-        JarInputStream jis;
-        jis = new JarInputStream( asset.getBinaryContentAttachment() );
-        JarEntry entry = null;
-        while ( (entry = jis.getNextJarEntry()) != null ) {
-            if ( !entry.isDirectory() ) {
-                if ( entry.getName().endsWith( ".class" ) ) {
-                    res.add( ModelContentHandler.convertPathToName( entry.getName() ) );
-                }
-            }
-        }
-        return jis;
-    }
-
     private void typesForOthers(List<String> res,
                                 AssetItem asset) {
         // its delcared model
@@ -686,9 +668,17 @@ public class RepositoryModuleService
                                         ClassLoader classloader) throws IOException,
                                                                 ClassNotFoundException {
         RuleBase rulebase = RuleBaseFactory.newRuleBase( new RuleBaseConfiguration( classloader ) );
-        Package bin = (Package) DroolsStreamUtils.streamIn( item.getCompiledPackageBytes(),
-                                                            classloader );
-        rulebase.addPackage( bin );
+        InputStream in = item.getCompiledPackageStream();
+        if ( in == null ) {
+            throw new IllegalStateException( "The module [" + item.getName() + "] has not been built." );
+        }
+        try {
+            Package bin = (Package) DroolsStreamUtils.streamIn( in,
+                                                                classloader );
+            rulebase.addPackage( bin );
+        } finally {
+            in.close();
+        }
         return rulebase;
     }
 
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2012 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.drools.guvnor.server;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import org.drools.guvnor.server.refactoring.ModuleRefactoring;
+import org.drools.guvnor.server.refactoring.RefactoringChangeSet;
+import org.drools.guvnor.server.util.LoggingHelper;
+import org.drools.repository.RulesRepository;
+import org.drools.repository.RulesRepositoryException;
+import org.jboss.seam.security.annotations.LoggedIn;
+
+import com.google.gwt.user.client.rpc.SerializationException;
+
+/**
+ * Renames fact types and fields across the assets of a module, see
+ * {@link ModuleRefactoring}. A rename is previewed as a change set, which is applied
+ * once it has been reviewed.
+ *
+ * This is a server side API: it is not exposed through GWT RPC nor REST, and the
+ * {@link RefactoringChangeSet} is not GWT serializable.
+ */
+@ApplicationScoped
+public class RepositoryRefactoringService {
+
+    private static final LoggingHelper log = LoggingHelper.getLogger( RepositoryRefactoringService.class );
+
+    @Inject
+    private RulesRepository            rulesRepository;
+
+    @Inject
+    private ServiceSecurity            serviceSecurity;
+
+    @LoggedIn
+    public RefactoringChangeSet previewFactTypeRename(String moduleUuid,
+                                                      String factType,
+                                                      String newName) throws SerializationException {
+        serviceSecurity.checkSecurityIsPackageDeveloperWithPackageUuid( moduleUuid );
+        try {
+            return new ModuleRefactoring( rulesRepository ).previewFactTypeRename( moduleUuid,
+                                                                                   factType,
+                                                                                   newName );
+        } catch ( IllegalArgumentException e ) {
+            throw new SerializationException( e.getMessage() );
+        }
+    }
+
+    @LoggedIn
+    public RefactoringChangeSet previewFieldRename(String moduleUuid,
+                                                   String factType,
+                                                   String field,
+                                                   String newName) throws SerializationException {
+        serviceSecurity.checkSecurityIsPackageDeveloperWithPackageUuid( moduleUuid );
+        try {
+            return new ModuleRefactoring( rulesRepository ).previewFieldRename( moduleUuid,
+                                                                                factType,
+                                                                                field,
+                                                                                newName );
+        } catch ( IllegalArgumentException e ) {
+            throw new SerializationException( e.getMessage() );
+        }
+    }
+
+    /**
+     * Checks in all the assets of the change set, unless one of them was checked in
+     * since it was previewed.
+     */
+    @LoggedIn
+    public void applyChangeSet(RefactoringChangeSet changeSet,
+                               String comment) throws SerializationException {
+        serviceSecurity.checkSecurityIsPackageDeveloperWithPackageUuid( changeSet.getModuleUuid() );
+        try {
+            new ModuleRefactoring( rulesRepository ).apply( changeSet,
+                                                            comment );
+        } catch ( RulesRepositoryException e ) {
+            log.error( "Unable to apply the refactoring of " + changeSet.getSymbol() + ": " + e.getMessage() );
+            throw new SerializationException( e.getMessage() );
+        }
+    }
+}
@@ -34,13 +34,11 @@ import org.drools.ide.common.shared.workitems.PortableWorkDefinition;
 import org.drools.repository.RulesRepositoryException;
 import org.jboss.seam.security.AuthorizationException;
 
-import com.google.gwt.user.server.rpc.RemoteServiceServlet;
-
 /**
  * GWT RPC service endpoint for Repository service. A place to hang some exception handling mainly.
  * This passes on all requests unmolested to the underlying ServiceImplemention class.
  */
-public class RepositoryServiceServlet extends RemoteServiceServlet
+public class RepositoryServiceServlet extends MonitoredRemoteServiceServlet
         implements
         RepositoryService,
         AssetService,
@@ -162,6 +160,10 @@ public class RepositoryServiceServlet extends RemoteServiceServlet
         return moduleService.listModules();
     }
 
+    public org.drools.guvnor.client.rpc.Module[] listModules(java.lang.String p0, int p1, int p2) {
+        return moduleService.listModules( p0, p1, p2 );
+    }
+
     public org.drools.guvnor.client.rpc.Module[] listArchivedModules() {
         return moduleService.listArchivedModules();
     }
@@ -617,6 +619,16 @@ public class RepositoryServiceServlet extends RemoteServiceServlet
         return serviceImplementation.loadSuggestionCompletionEngine( p0 );
     }
 
+    public org.drools.ide.common.client.modeldriven.SuggestionCompletionEngine loadSuggestionCompletionEngineSummary(java.lang.String p0) throws com.google.gwt.user.client.rpc.SerializationException {
+        return serviceImplementation.loadSuggestionCompletionEngineSummary( p0 );
+    }
+
+    public org.drools.ide.common.client.modeldriven.FactTypeCompletions[] loadFactTypeCompletions(java.lang.String p0,
+                                                                                                  java.lang.String[] p1) throws com.google.gwt.user.client.rpc.SerializationException {
+        return serviceImplementation.loadFactTypeCompletions( p0,
+                p1 );
+    }
+
     public java.lang.String[] getCustomSelectors() throws com.google.gwt.user.client.rpc.SerializationException {
         return serviceImplementation.getCustomSelectors();
     }
@@ -639,6 +651,12 @@ public class RepositoryServiceServlet extends RemoteServiceServlet
                 p1 );
     }
 
+    public java.lang.String[][] loadDropDownExpressions(java.lang.String[][] p0,
+                                                        java.lang.String[] p1) {
+        return serviceImplementation.loadDropDownExpressions( p0,
+                p1 );
+    }
+
     public org.drools.guvnor.client.rpc.PageResponse queryFullText(org.drools.guvnor.client.rpc.QueryPageRequest p0) throws com.google.gwt.user.client.rpc.SerializationException {
         return serviceImplementation.queryFullText( p0 );
     }
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2012 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.drools.guvnor.server;
+
+import java.util.Set;
+import java.util.TreeSet;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import org.drools.guvnor.server.refactoring.ModuleSymbolIndex;
+import org.drools.guvnor.server.refactoring.Symbols;
+import org.drools.guvnor.server.util.LoggingHelper;
+import org.drools.repository.ModuleItem;
+import org.drools.repository.RulesRepository;
+import org.jboss.seam.security.annotations.LoggedIn;
+
+/**
+ * Tells where the fact types, fields, globals and DSL sentences of a module are used,
+ * from the {@link ModuleSymbolIndex}. Symbols are given by their key, see
+ * {@link Symbols}, and assets by their UUID.
+ *
+ * This is a server side API: it is not exposed through GWT RPC nor REST.
+ */
+@ApplicationScoped
+public class RepositorySymbolService {
+
+    private static final LoggingHelper log = LoggingHelper.getLogger( RepositorySymbolService.class );
+
+    @Inject
+    private RulesRepository            rulesRepository;
+
+    @Inject
+    private ServiceSecurity            serviceSecurity;
+
+    /**
+     * @return the assets of the module that refer to the symbol.
+     */
+    @LoggedIn
+    public String[] findSymbolUsage(String moduleUuid,
+                                    String symbol) {
+        serviceSecurity.checkSecurityPackageReadOnlyWithPackageUuid( moduleUuid );
+        ModuleItem module = rulesRepository.loadModuleByUUID( moduleUuid );
+        return toArray( ModuleSymbolIndex.getInstance().getAssetsReferringTo( module,
+                                                                              symbol ) );
+    }
+
+    /**
+     * @return the assets of the module a change to the symbol impacts, for a fact type
+     *         those that refer to one of its fields too.
+     */
+    @LoggedIn
+    public String[] findSymbolImpact(String moduleUuid,
+                                     String symbol) {
+        serviceSecurity.checkSecurityPackageReadOnlyWithPackageUuid( moduleUuid );
+        ModuleItem module = rulesRepository.loadModuleByUUID( moduleUuid );
+        return toArray( ModuleSymbolIndex.getInstance().getAssetsImpactedBy( module,
+                                                                             symbol ) );
+    }
+
+    /**
+     * @return the fact types, fields, globals and DSL sentences the module declares that
+     *         none of its assets refer to.
+     */
+    @LoggedIn
+    public String[] findUnusedSymbols(String moduleUuid) {
+        serviceSecurity.checkSecurityPackageReadOnlyWithPackageUuid( moduleUuid );
+        ModuleItem module = rulesRepository.loadModuleByUUID( moduleUuid );
+        Set<String> declared = Symbols.getDeclaredSymbols( new SuggestionCompletionEngineLoaderInitializer().loadCachedFor( module ) );
+        return toArray( ModuleSymbolIndex.getInstance().getUnusedSymbols( module,
+                                                                          declared ) );
+    }
+
+    /**
+     * Extracts the symbols of all the assets of the module again.
+     */
+    @LoggedIn
+    public void rebuildSymbolIndex(String moduleUuid) {
+        serviceSecurity.checkSecurityIsPackageAdminWithPackageUuid( moduleUuid );
+        ModuleItem module = rulesRepository.loadModuleByUUID( moduleUuid );
+        log.info( "Rebuilding the symbol index of module [" + module.getName() + "]" );
+        ModuleSymbolIndex.getInstance().rebuild( module );
+    }
+
+    private static String[] toArray(Set<String> values) {
+        return new TreeSet<String>( values ).toArray( new String[values.size()] );
+    }
+}
@@ -16,7 +16,6 @@
 
 package org.drools.guvnor.server;
 
-import com.google.gwt.user.server.rpc.RemoteServiceServlet;
 import org.drools.guvnor.client.configurations.Capability;
 import org.drools.guvnor.client.rpc.SecurityService;
 import org.drools.guvnor.client.rpc.UserSecurityContext;
@@ -32,7 +31,7 @@ import java.util.List;
 /**
  * Wrapper for GWT RPC.
  */
-public class SecurityServiceServlet extends RemoteServiceServlet implements SecurityService {
+public class SecurityServiceServlet extends MonitoredRemoteServiceServlet implements SecurityService {
 
     private static final LoggingHelper log = LoggingHelper.getLogger(SecurityServiceServlet.class);
 
@@ -24,6 +24,7 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -76,9 +77,12 @@ import org.drools.guvnor.server.security.RoleType;
 import org.drools.guvnor.server.security.RoleTypes;
 import org.drools.guvnor.server.selector.SelectorManager;
 import org.drools.guvnor.server.util.DateUtil;
+import org.drools.guvnor.server.util.DropDownExpressionResolver;
 import org.drools.guvnor.server.util.HtmlCleaner;
 import org.drools.guvnor.server.util.LoggingHelper;
 import org.drools.guvnor.server.util.TableDisplayHandler;
+import org.drools.ide.common.client.modeldriven.FactTypeCompletions;
+import org.drools.ide.common.client.modeldriven.ModelField;
 import org.drools.ide.common.client.modeldriven.SuggestionCompletionEngine;
 import org.drools.ide.common.client.modeldriven.dt52.GuidedDecisionTable52;
 import org.drools.ide.common.shared.workitems.PortableBooleanParameterDefinition;
@@ -115,8 +119,6 @@ import org.jboss.seam.remoting.annotations.WebRemote;
 import org.jboss.seam.security.Identity;
 import org.jboss.seam.security.annotations.LoggedIn;
 import org.jbpm.process.workitem.WorkDefinitionImpl;
-import org.mvel2.MVEL;
-import org.mvel2.templates.TemplateRuntime;
 
 import com.google.gwt.user.client.rpc.SerializationException;
 
@@ -517,7 +519,7 @@ public class ServiceImplementation
         SuggestionCompletionEngine suggestionCompletionEngine = null;
         try {
             ModuleItem packageItem = rulesRepository.loadModule( packageName );
-            suggestionCompletionEngine = new SuggestionCompletionEngineLoaderInitializer().loadFor( packageItem );
+            suggestionCompletionEngine = new SuggestionCompletionEngineLoaderInitializer().loadCachedFor( packageItem );
         } catch ( RulesRepositoryException e ) {
             log.error( "An error occurred loadSuggestionCompletionEngine: " + e.getMessage() );
             throw new SerializationException( e.getMessage() );
@@ -525,6 +527,45 @@ public class ServiceImplementation
         return suggestionCompletionEngine;
     }
 
+    @WebRemote
+    @LoggedIn
+    public SuggestionCompletionEngine loadSuggestionCompletionEngineSummary(String packageName) throws SerializationException {
+        SuggestionCompletionEngine engine = loadSuggestionCompletionEngine( packageName );
+        //small models are cheaper to send in one go
+        if ( engine.getModelFields().size() <= Integer.getInteger( "guvnor.sce.summaryThreshold",
+                                                                   100 ) ) {
+            return engine;
+        }
+        return engine.getSummary();
+    }
+
+    @WebRemote
+    @LoggedIn
+    public FactTypeCompletions[] loadFactTypeCompletions(String packageName,
+                                                         String[] factTypes) throws SerializationException {
+        SuggestionCompletionEngine engine = loadSuggestionCompletionEngine( packageName );
+
+        //the fact types of the fields are needed to show expressions on them
+        Set<String> types = new LinkedHashSet<String>();
+        for ( String factType : factTypes ) {
+            ModelField[] fields = engine.getModelFields().get( factType );
+            if ( fields != null && types.add( factType ) ) {
+                for ( ModelField field : fields ) {
+                    String fieldFactType = engine.getFactNameFromType( field.getClassName() );
+                    if ( fieldFactType != null ) {
+                        types.add( fieldFactType );
+                    }
+                }
+            }
+        }
+
+        List<FactTypeCompletions> result = new ArrayList<FactTypeCompletions>();
+        for ( String factType : types ) {
+            result.add( engine.getFactTypeCompletions( factType ) );
+        }
+        return result.toArray( new FactTypeCompletions[result.size()] );
+    }
+
     @WebRemote
     @LoggedIn
     public String[] getCustomSelectors() throws SerializationException {
@@ -599,35 +640,23 @@ public class ServiceImplementation
     @LoggedIn
     public String[] loadDropDownExpression(String[] valuePairs,
                                            String expression) {
-        Map<String, String> context = new HashMap<String, String>();
+        return DropDownExpressionResolver.getInstance().resolve( valuePairs,
+                                                                 expression );
+    }
 
-        for ( String valuePair : valuePairs ) {
-            if ( valuePair == null ) {
-                return new String[0];
-            }
-            String[] pair = valuePair.split( "=" );
-            context.put( pair[0],
-                         pair[1] );
+    @WebRemote
+    @LoggedIn
+    public String[][] loadDropDownExpressions(String[][] valuePairs,
+                                              String[] expressions) {
+        if ( valuePairs.length != expressions.length ) {
+            throw new IllegalArgumentException( "valuePairs and expressions must have the same length." );
         }
-        // first interpolate the pairs
-        expression = (String) TemplateRuntime.eval( expression,
-                                                    context );
-
-        // now we can eval it for real...
-        Object result = MVEL.eval( expression );
-        if ( result instanceof String[] ) {
-            return (String[]) result;
-        } else if ( result instanceof List ) {
-            List l = (List) result;
-            String[] xs = new String[l.size()];
-            for ( int i = 0; i < xs.length; i++ ) {
-                Object el = l.get( i );
-                xs[i] = el.toString();
-            }
-            return xs;
-        } else {
-            return null;
+        String[][] result = new String[expressions.length][];
+        for ( int i = 0; i < expressions.length; i++ ) {
+            result[i] = DropDownExpressionResolver.getInstance().resolve( valuePairs[i],
+                                                                          expressions[i] );
         }
+        return result;
     }
 
     /**
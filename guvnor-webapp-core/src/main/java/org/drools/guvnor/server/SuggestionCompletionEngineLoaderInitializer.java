@@ -15,14 +15,78 @@
  */
 package org.drools.guvnor.server;
 
+import java.util.Calendar;
+import java.util.Iterator;
+
 import org.drools.guvnor.client.common.AssetFormats;
 import org.drools.guvnor.server.builder.ClassLoaderBuilder;
+import org.drools.guvnor.server.cache.SuggestionCompletionEngineCache;
 import org.drools.guvnor.server.util.BRMSSuggestionCompletionLoader;
 import org.drools.ide.common.client.modeldriven.SuggestionCompletionEngine;
+import org.drools.repository.AssetItem;
 import org.drools.repository.ModuleItem;
 
 public class SuggestionCompletionEngineLoaderInitializer {
 
+    /**
+     * Returns the engine of the module from SuggestionCompletionEngineCache,
+     * loading it if the assets it is built from have changed. The returned
+     * engine is a copy, which the caller may change.
+     */
+    protected SuggestionCompletionEngine loadCachedFor(final ModuleItem packageItem) {
+        String signature = getSignature(packageItem);
+        SuggestionCompletionEngineCache cache = SuggestionCompletionEngineCache.getInstance();
+        SuggestionCompletionEngine result = cache.get(packageItem.getUUID(),
+                signature);
+        if (result == null) {
+            result = loadFor(packageItem);
+            cache.put(packageItem.getUUID(),
+                    signature,
+                    result.copy());
+        }
+        return result;
+    }
+
+    /**
+     * The versions of the assets an engine is built from: the header, the
+     * model jars, the declarative models, the enums and the DSLs.
+     */
+    String getSignature(final ModuleItem packageItem) {
+        StringBuilder signature = new StringBuilder();
+        if (packageItem.containsAsset("drools")) {
+            appendVersion(signature,
+                    packageItem.loadAsset("drools"));
+        }
+        appendVersions(signature,
+                packageItem.listAssetsWithVersionsSpecifiedByDependenciesByFormat(AssetFormats.MODEL));
+        appendVersions(signature,
+                packageItem.listAssetsByFormat(AssetFormats.DRL_MODEL));
+        appendVersions(signature,
+                packageItem.listAssetsByFormat(AssetFormats.ENUMERATION));
+        appendVersions(signature,
+                packageItem.listAssetsWithVersionsSpecifiedByDependenciesByFormat(AssetFormats.DSL));
+        return signature.toString();
+    }
+
+    private void appendVersions(final StringBuilder signature,
+                                final Iterator<AssetItem> assets) {
+        signature.append('|');
+        while (assets.hasNext()) {
+            appendVersion(signature,
+                    assets.next());
+        }
+    }
+
+    private void appendVersion(final StringBuilder signature,
+                               final AssetItem asset) {
+        Calendar lastModified = asset.getLastModified();
+        signature.append(asset.getUUID())
+                .append(':').append(asset.getVersionNumber())
+                .append(':').append(lastModified == null ? 0 : lastModified.getTimeInMillis())
+                .append(':').append(asset.getDisabled())
+                .append(';');
+    }
+
     protected SuggestionCompletionEngine loadFor(final ModuleItem packageItem) {
         SuggestionCompletionEngine result = null;
         ClassLoader originalCL = Thread.currentThread().getContextClassLoader();
@@ -17,16 +17,18 @@
 package org.drools.guvnor.server;
 
 import com.google.gwt.user.client.rpc.SerializationException;
-import com.google.gwt.user.server.rpc.RemoteServiceServlet;
 import org.drools.guvnor.client.rpc.AnalysisReport;
 import org.drools.guvnor.client.rpc.Asset;
 import org.drools.guvnor.client.rpc.VerificationService;
 import org.drools.guvnor.server.contenthandler.ContentHandler;
 import org.drools.guvnor.server.contenthandler.ContentManager;
 import org.drools.guvnor.server.util.LoggingHelper;
+import org.drools.guvnor.server.verification.AnalysisReportStore;
 import org.drools.guvnor.server.verification.AssetVerifier;
 import org.drools.guvnor.server.verification.PackageVerifier;
 import org.drools.guvnor.server.verification.VerifierConfigurationFactory;
+import org.drools.guvnor.server.verification.VerifierPool;
+import org.drools.guvnor.server.verification.VerifierResourceCache;
 import org.drools.repository.AssetItem;
 import org.drools.repository.RulesRepository;
 import org.drools.verifier.Verifier;
@@ -41,13 +43,17 @@ import org.drools.guvnor.client.rpc.WorkingSetConfigData;
 import org.drools.guvnor.server.verification.TemporalBRLAssetVerifier;
 import org.drools.repository.ModuleItem;
 
-public class VerificationServiceImplementation extends RemoteServiceServlet implements VerificationService {
+public class VerificationServiceImplementation extends MonitoredRemoteServiceServlet implements VerificationService {
 
     private static final long serialVersionUID = 510l;
 
     private static final LoggingHelper log = LoggingHelper.getLogger(ServiceImplementation.class);
 
-    private final Verifier defaultVerifier = VerifierBuilderFactory.newVerifierBuilder().newVerifier();
+    private final VerifierPool verifierPool = VerifierPool.getInstance();
+
+    private final VerifierResourceCache verifierResourceCache = VerifierResourceCache.getInstance();
+
+    private final AnalysisReportStore analysisReportStore = AnalysisReportStore.getInstance();
     
     @Inject
     protected ServiceSecurity serviceSecurity;
@@ -63,16 +69,43 @@ public class VerificationServiceImplementation extends RemoteServiceServlet impl
     public AnalysisReport analysePackage(String packageUUID) throws SerializationException {
         serviceSecurity.checkSecurityIsPackageDeveloperWithPackageUuid( packageUUID );
 
-        AnalysisReport report = new PackageVerifier(
-                defaultVerifier,
-                rulesRepository.loadModuleByUUID(packageUUID)
-        ).verify();
+        ModuleItem moduleItem = rulesRepository.loadModuleByUUID(packageUUID);
+
+        AnalysisReport report = analysisReportStore.get(moduleItem);
+        if (report != null) {
+            return report;
+        }
+
+        long generation = analysisReportStore.getGeneration(moduleItem);
+        Verifier verifier = checkoutVerifier();
+        try {
+            report = new PackageVerifier(
+                    verifier,
+                    moduleItem,
+                    verifierResourceCache
+            ).verify();
+        } catch (RuntimeException e) {
+            verifierPool.discard(verifier);
+            throw e;
+        }
+        verifierPool.release(verifier);
 
-        defaultVerifier.flushKnowledgeSession();
+        analysisReportStore.put(moduleItem,
+                generation,
+                report);
 
         return report;
     }
 
+    private Verifier checkoutVerifier() throws SerializationException {
+        try {
+            return verifierPool.checkout();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SerializationException("Interrupted while waiting for a verifier");
+        }
+    }
+
     @WebRemote
     @LoggedIn
     public AnalysisReport verifyAsset(Asset asset,
@@ -139,7 +172,8 @@ public class VerificationServiceImplementation extends RemoteServiceServlet impl
     private AssetVerifier getAssetVerifier(VerifierConfiguration verifierConfiguration, AssetItem assetItem) throws SerializationException {
         return new AssetVerifier(
                 VerifierBuilderFactory.newVerifierBuilder().newVerifier(verifierConfiguration),
-                assetItem);
+                assetItem,
+                verifierResourceCache);
     }
     
     private TemporalBRLAssetVerifier getTemporalBRLAssetVerifier(VerifierConfiguration verifierConfiguration, Asset ruleAsset) throws SerializationException {
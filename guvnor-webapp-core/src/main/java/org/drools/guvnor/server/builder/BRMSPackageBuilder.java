@@ -20,7 +20,6 @@ import org.drools.builder.conf.DefaultPackageNameOption;
 import org.drools.compiler.PackageBuilder;
 import org.drools.compiler.PackageBuilderConfiguration;
 import org.drools.guvnor.client.common.AssetFormats;
-import org.drools.lang.dsl.DSLMappingFile;
 import org.drools.lang.dsl.DSLTokenizedMappingFile;
 import org.drools.lang.dsl.DefaultExpander;
 import org.drools.repository.AssetItem;
@@ -32,7 +31,6 @@ import org.jbpm.bpmn2.xml.BPMNDISemanticModule;
 import org.jbpm.bpmn2.xml.BPMNSemanticModule;
 
 import java.io.IOException;
-import java.util.Collections;
 import java.util.List;
 import java.util.Properties;
 
@@ -43,7 +41,7 @@ import java.util.Properties;
  */
 public class BRMSPackageBuilder extends PackageBuilder {
 
-    private List<DSLTokenizedMappingFile> dslFiles;
+    private CompiledDSL dsl;
     private DefaultExpander expander;
 
     /**
@@ -77,11 +75,19 @@ public class BRMSPackageBuilder extends PackageBuilder {
     }
 
     public void setDSLFiles(List<DSLTokenizedMappingFile> files) {
-        this.dslFiles = files;
+        setDSL(new CompiledDSL(files));
+    }
+
+    /**
+     * Uses DSLs parsed before, usually by DSLLoader.
+     */
+    public void setDSL(CompiledDSL dsl) {
+        this.dsl = dsl;
+        this.expander = null;
     }
 
     public List<DSLTokenizedMappingFile> getDSLMappingFiles() {
-        return Collections.unmodifiableList(this.dslFiles);
+        return this.dsl.getMappingFiles();
     }
 
     public static Properties getProperties(AssetItemIterator assetItemIterator, String packageName) {
@@ -150,7 +156,7 @@ public class BRMSPackageBuilder extends PackageBuilder {
      * Returns true if this package uses a DSL.
      */
     public boolean hasDSL() {
-        return this.dslFiles != null && this.dslFiles.size() > 0;
+        return this.dsl != null && !this.dsl.isEmpty();
     }
 
     /**
@@ -158,12 +164,17 @@ public class BRMSPackageBuilder extends PackageBuilder {
      */
     public DefaultExpander getDSLExpander() {
         if (this.expander == null) {
-            expander = new DefaultExpander();
-            for (DSLMappingFile file : this.dslFiles) {
-                expander.addDSLMapping(file.getMapping());
-            }
+            expander = this.dsl.newExpander();
         }
         return expander;
     }
 
+    /**
+     * Returns a new expander for the given source, that only tries the DSL
+     * sentences that can match it, and only holds the errors of this source.
+     */
+    public DefaultExpander getDSLExpander(String source) {
+        return this.dsl.newExpander(source);
+    }
+
 }
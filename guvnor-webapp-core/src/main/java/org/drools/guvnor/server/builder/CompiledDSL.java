@@ -0,0 +1,202 @@
+/*
+ * Copyright 2012 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.drools.guvnor.server.builder;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.drools.lang.dsl.DSLMappingEntry;
+import org.drools.lang.dsl.DSLTokenizedMappingFile;
+import org.drools.lang.dsl.DefaultDSLMapping;
+import org.drools.lang.dsl.DefaultExpander;
+
+/**
+ * The parsed DSL files of a module, with the parse errors of the DSL assets
+ * that could not be loaded, and an index of the mapping entries by the first
+ * word of their sentence.
+ *
+ * A DefaultExpander tries every entry against every line, and keeps the errors
+ * of what it expanded. Instead of sharing one, newExpander(source) builds a
+ * fresh expander that only holds the entries that can match the source: those
+ * whose first word appears in it (or in the expansion of another candidate, as
+ * expansions are expanded again), plus the keyword entries and the entries
+ * that do not start with a plain word. Entries keep their order in the DSL
+ * files, so the expansion is the same as with all the entries.
+ *
+ * Instances are immutable once built, and are shared by the builds that use
+ * the same versions of the DSL assets (see DSLLoader).
+ */
+public class CompiledDSL {
+
+    private final List<DSLTokenizedMappingFile> mappingFiles;
+    private final Map<String, List<String>> errors;
+
+    private final List<DSLMappingEntry> entries = new ArrayList<DSLMappingEntry>();
+    private final BitSet alwaysIncluded = new BitSet();
+    private final Map<String, List<Integer>> entriesByFirstWord = new HashMap<String, List<Integer>>();
+
+    public CompiledDSL(List<DSLTokenizedMappingFile> mappingFiles) {
+        this(mappingFiles,
+                Collections.<String, List<String>>emptyMap());
+    }
+
+    CompiledDSL(List<DSLTokenizedMappingFile> mappingFiles,
+                Map<String, List<String>> errors) {
+        this.mappingFiles = Collections.unmodifiableList(new ArrayList<DSLTokenizedMappingFile>(mappingFiles));
+        this.errors = Collections.unmodifiableMap(new LinkedHashMap<String, List<String>>(errors));
+        index();
+    }
+
+    private void index() {
+        for (DSLTokenizedMappingFile file : mappingFiles) {
+            for (DSLMappingEntry entry : file.getMapping().getEntries()) {
+                int position = entries.size();
+                entries.add(entry);
+
+                String firstWord = firstWord(entry.getMappingKey());
+                if (firstWord == null || DSLMappingEntry.KEYWORD.equals(entry.getSection())) {
+                    alwaysIncluded.set(position);
+                } else {
+                    List<Integer> positions = entriesByFirstWord.get(firstWord);
+                    if (positions == null) {
+                        positions = new ArrayList<Integer>();
+                        entriesByFirstWord.put(firstWord,
+                                positions);
+                    }
+                    positions.add(position);
+                }
+            }
+        }
+    }
+
+    /**
+     * The first word of a mapping sentence, lower cased, or null if the
+     * sentence does not start with a plain word (a variable, a regular
+     * expression...), in which case the entry is always a candidate.
+     */
+    static String firstWord(String mappingKey) {
+        if (mappingKey == null) {
+            return null;
+        }
+        int start = 0;
+        while (start < mappingKey.length()
+                && (Character.isWhitespace(mappingKey.charAt(start)) || mappingKey.charAt(start) == '-')) {
+            start++;
+        }
+        int end = start;
+        while (end < mappingKey.length() && isWordPart(mappingKey.charAt(end))) {
+            end++;
+        }
+        if (end == start) {
+            return null;
+        }
+        if (end < mappingKey.length() && mappingKey.charAt(end) == '\\') {
+            // an escape, the word may go on as a pattern
+            return null;
+        }
+        return mappingKey.substring(start,
+                end).toLowerCase();
+    }
+
+    private static boolean isWordPart(char c) {
+        return Character.isLetterOrDigit(c) || c == '_';
+    }
+
+    public List<DSLTokenizedMappingFile> getMappingFiles() {
+        return mappingFiles;
+    }
+
+    /**
+     * @return the parse errors, keyed by the UUID of the DSL asset.
+     */
+    public Map<String, List<String>> getErrors() {
+        return errors;
+    }
+
+    public boolean isEmpty() {
+        return mappingFiles.isEmpty();
+    }
+
+    public int getEntryCount() {
+        return entries.size();
+    }
+
+    /**
+     * An expander with all the mapping entries.
+     */
+    public DefaultExpander newExpander() {
+        BitSet all = new BitSet();
+        all.set(0,
+                entries.size());
+        return newExpander(all);
+    }
+
+    /**
+     * An expander with the mapping entries that can match the given source.
+     */
+    public DefaultExpander newExpander(String source) {
+        return newExpander(selectCandidates(source));
+    }
+
+    BitSet selectCandidates(String source) {
+        BitSet candidates = (BitSet) alwaysIncluded.clone();
+        Map<String, List<Integer>> remaining = new HashMap<String, List<Integer>>(entriesByFirstWord);
+
+        StringBuilder initial = new StringBuilder(source == null ? "" : source);
+        for (int position = alwaysIncluded.nextSetBit(0); position >= 0; position = alwaysIncluded.nextSetBit(position + 1)) {
+            String value = entries.get(position).getMappingValue();
+            if (value != null) {
+                initial.append('\n').append(value);
+            }
+        }
+        String text = initial.toString().toLowerCase();
+        while (text.length() > 0 && !remaining.isEmpty()) {
+            StringBuilder expansions = new StringBuilder();
+            for (Iterator<Map.Entry<String, List<Integer>>> iterator = remaining.entrySet().iterator(); iterator.hasNext();) {
+                Map.Entry<String, List<Integer>> word = iterator.next();
+                if (text.contains(word.getKey())) {
+                    iterator.remove();
+                    for (Integer position : word.getValue()) {
+                        candidates.set(position);
+                        String value = entries.get(position).getMappingValue();
+                        if (value != null) {
+                            expansions.append(value).append('\n');
+                        }
+                    }
+                }
+            }
+            text = expansions.toString().toLowerCase();
+        }
+        return candidates;
+    }
+
+    private DefaultExpander newExpander(BitSet positions) {
+        DefaultDSLMapping mapping = new DefaultDSLMapping();
+        for (int position = positions.nextSetBit(0); position >= 0; position = positions.nextSetBit(position + 1)) {
+            mapping.addEntry(entries.get(position));
+        }
+        DefaultExpander expander = new DefaultExpander();
+        expander.addDSLMapping(mapping);
+        return expander;
+    }
+}
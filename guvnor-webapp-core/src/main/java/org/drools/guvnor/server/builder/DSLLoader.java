@@ -10,18 +10,36 @@ import org.drools.repository.RulesRepositoryException;
 import java.io.IOException;
 import java.io.StringReader;
 import java.util.ArrayList;
+import java.util.Calendar;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 public class DSLLoader {
 
+    private static final BRMSPackageBuilder.DSLErrorEvent IGNORE_ERRORS = new BRMSPackageBuilder.DSLErrorEvent() {
+        public void recordError(AssetItem asset,
+                                String message) {
+            // ignore at this point...
+        }
+    };
+
+    /**
+     * The parsed DSLs, by the versions of the DSL assets they come from. The
+     * number of entries is set with "guvnor.dsl.cacheSize" (100 by default).
+     */
+    private static final Map<String, CompiledDSL> CACHE = new LinkedHashMap<String, CompiledDSL>(16, 0.75f, true) {
+        private final int maxSize = Integer.getInteger("guvnor.dsl.cacheSize", 100);
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CompiledDSL> eldest) {
+            return size() > maxSize;
+        }
+    };
+
     public static List<DSLTokenizedMappingFile> loadDSLMappingFiles(ModuleItem packageItem) {
-        return loadDSLMappingFiles(packageItem, new BRMSPackageBuilder.DSLErrorEvent() {
-            public void recordError(AssetItem asset,
-                                    String message) {
-                // ignore at this point...
-            }
-        });
+        return loadDSLMappingFiles(packageItem, IGNORE_ERRORS);
     }
 
     public static List<DSLTokenizedMappingFile> loadDSLMappingFiles(ModuleItem packageItem,
@@ -30,45 +48,97 @@ public class DSLLoader {
     }
 
     static List<DSLTokenizedMappingFile> loadDSLMappingFiles(Iterator<AssetItem> assetItemIterator, BRMSPackageBuilder.DSLErrorEvent dslErrorEvent) {
-        List<DSLTokenizedMappingFile> result = new ArrayList<DSLTokenizedMappingFile>();
+        return loadCompiledDSL(assetItemIterator, dslErrorEvent).getMappingFiles();
+    }
+
+    public static CompiledDSL loadCompiledDSL(ModuleItem packageItem) {
+        return loadCompiledDSL(packageItem.listAssetsWithVersionsSpecifiedByDependenciesByFormat(AssetFormats.DSL), IGNORE_ERRORS);
+    }
 
+    /**
+     * Parses the enabled DSL assets, or reuses what was parsed for the same
+     * versions of them. The cache key is made of the UUID, version and last
+     * modified date of each asset, so a changed DSL is parsed again and the
+     * old entry just ages out of the cache.
+     */
+    public static CompiledDSL loadCompiledDSL(Iterator<AssetItem> assetItemIterator, BRMSPackageBuilder.DSLErrorEvent dslErrorEvent) {
+        List<AssetItem> assets = new ArrayList<AssetItem>();
+        StringBuilder key = new StringBuilder();
         while (assetItemIterator.hasNext()) {
-            addAsset(dslErrorEvent, result, assetItemIterator.next());
+            AssetItem assetItem = assetItemIterator.next();
+            if (!assetItem.getDisabled()) {
+                assets.add(assetItem);
+                Calendar lastModified = assetItem.getLastModified();
+                key.append(assetItem.getUUID())
+                        .append(':').append(assetItem.getVersionNumber())
+                        .append(':').append(lastModified == null ? 0 : lastModified.getTimeInMillis())
+                        .append(';');
+            }
+        }
+
+        CompiledDSL compiledDSL;
+        synchronized (CACHE) {
+            compiledDSL = CACHE.get(key.toString());
+        }
+        if (compiledDSL == null) {
+            compiledDSL = compile(assets);
+            synchronized (CACHE) {
+                CACHE.put(key.toString(), compiledDSL);
+            }
+        }
+
+        for (AssetItem assetItem : assets) {
+            List<String> errors = compiledDSL.getErrors().get(assetItem.getUUID());
+            if (errors != null) {
+                for (String error : errors) {
+                    dslErrorEvent.recordError(assetItem, error);
+                }
+            }
         }
+        return compiledDSL;
+    }
 
-        return result;
+    public static void clearCache() {
+        synchronized (CACHE) {
+            CACHE.clear();
+        }
     }
 
-    private static void addAsset(BRMSPackageBuilder.DSLErrorEvent dslErrorEvent,
-                                 List<DSLTokenizedMappingFile> result,
-                                 AssetItem assetItem) {
-        if (!assetItem.getDisabled()) {
+    private static CompiledDSL compile(List<AssetItem> assets) {
+        List<DSLTokenizedMappingFile> result = new ArrayList<DSLTokenizedMappingFile>();
+        Map<String, List<String>> errors = new LinkedHashMap<String, List<String>>();
+
+        for (AssetItem assetItem : assets) {
             DSLTokenizedMappingFile file = new DSLTokenizedMappingFile();
             try {
                 if (file.parseAndLoad(new StringReader(assetItem.getContent()))) {
                     result.add(file);
                 } else {
-                    logErrors(dslErrorEvent, assetItem, file);
+                    errors.put(assetItem.getUUID(), describeErrors(file));
                 }
 
             } catch (IOException e) {
                 throw new RulesRepositoryException(e);
             }
         }
+
+        return new CompiledDSL(result, errors);
     }
 
-    private static void logErrors(BRMSPackageBuilder.DSLErrorEvent dslErrorEvent, AssetItem assetItem, DSLTokenizedMappingFile file) {
+    private static List<String> describeErrors(DSLTokenizedMappingFile file) {
+        List<String> messages = new ArrayList<String>();
         for (Object o : file.getErrors()) {
         	
         	if(o instanceof DSLMappingParseException){
 	            DSLMappingParseException dslMappingParseException = (DSLMappingParseException) o;
-	            dslErrorEvent.recordError(assetItem, "Line " + dslMappingParseException.getLine() + " : " + dslMappingParseException.getMessage());
+	            messages.add("Line " + dslMappingParseException.getLine() + " : " + dslMappingParseException.getMessage());
         	}else if(o instanceof Exception){
         		Exception excp = (Exception)o;
-        		dslErrorEvent.recordError(assetItem, "Exception "+ excp.getClass()+" "+ excp.getMessage()+" "+excp.getCause());
+        		messages.add("Exception "+ excp.getClass()+" "+ excp.getMessage()+" "+excp.getCause());
         	}else{
-        		dslErrorEvent.recordError(assetItem, "Uncategorized error "+o);
+        		messages.add("Uncategorized error "+o);
         	}
         }
+        return messages;
     }
-}
\ No newline at end of file
+}
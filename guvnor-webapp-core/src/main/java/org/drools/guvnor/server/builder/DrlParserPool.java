@@ -0,0 +1,172 @@
+/*
+ * Copyright 2012 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.drools.guvnor.server.builder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.drools.compiler.DrlParser;
+import org.drools.compiler.DroolsError;
+import org.drools.compiler.DroolsParserException;
+import org.drools.lang.descr.PackageDescr;
+import org.drools.repository.RulesRepositoryException;
+
+/**
+ * Parses DRL into package descriptors, spreading large groups of DRL over a few worker
+ * threads. Only the DRL is handed to the workers: the content of the assets has to be read
+ * by the caller, as repository sessions can not be shared between threads.
+ *
+ * The workers are started for each group and stopped once it is parsed, so no thread is
+ * left behind when the application is undeployed. "guvnor.builder.parserThreads" sets the
+ * number of workers (the number of processors by default). Groups of less than
+ * "guvnor.builder.parallelParseThreshold" DRL (8 by default) are parsed by the calling
+ * thread.
+ */
+class DrlParserPool {
+
+    private static final DrlParserPool INSTANCE = new DrlParserPool( Integer.getInteger( "guvnor.builder.parserThreads",
+                                                                                         Runtime.getRuntime().availableProcessors() ),
+                                                                     Integer.getInteger( "guvnor.builder.parallelParseThreshold",
+                                                                                         8 ) );
+
+    private final AtomicInteger   count = new AtomicInteger();
+    private final int             threads;
+    private final int             threshold;
+
+    DrlParserPool(int threads,
+                  int threshold) {
+        this.threads = threads;
+        this.threshold = threshold;
+    }
+
+    public static DrlParserPool getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @return the result of parsing each DRL, in the same order.
+     */
+    List<ParsedDrl> parse(List<String> drls) {
+        List<ParsedDrl> results = new ArrayList<ParsedDrl>( drls.size() );
+        if ( threads <= 1 || drls.size() < threshold ) {
+            for ( String drl : drls ) {
+                results.add( parse( drl ) );
+            }
+            return results;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool( Math.min( threads,
+                                                                           drls.size() ),
+                                                                 new ThreadFactory() {
+                                                                     public Thread newThread(Runnable runnable) {
+                                                                         Thread thread = new Thread( runnable,
+                                                                                                     "guvnor-drl-parser-" + count.incrementAndGet() );
+                                                                         thread.setDaemon( true );
+                                                                         return thread;
+                                                                     }
+                                                                 } );
+        List<Future<ParsedDrl>> futures = new ArrayList<Future<ParsedDrl>>( drls.size() );
+        for ( final String drl : drls ) {
+            futures.add( executor.submit( new Callable<ParsedDrl>() {
+                public ParsedDrl call() {
+                    return parse( drl );
+                }
+            } ) );
+        }
+        try {
+            for ( Future<ParsedDrl> future : futures ) {
+                results.add( future.get() );
+            }
+        } catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new RulesRepositoryException( "Interrupted while parsing the assets.",
+                                                e );
+        } catch ( ExecutionException e ) {
+            throw new RulesRepositoryException( "Unexpected error when parsing the assets.",
+                                                e.getCause() );
+        } finally {
+            executor.shutdownNow();
+        }
+        return results;
+    }
+
+    static ParsedDrl parse(String drl) {
+        DrlParser parser = new DrlParser();
+        try {
+            PackageDescr descr = parser.parse( drl );
+            List<String> errors = new ArrayList<String>();
+            for ( DroolsError error : parser.getErrors() ) {
+                errors.add( error.getMessage() );
+            }
+            if ( descr == null && errors.isEmpty() ) {
+                errors.add( "Parser returned a null Package" );
+            }
+            return new ParsedDrl( descr,
+                                  errors,
+                                  null );
+        } catch ( DroolsParserException e ) {
+            return new ParsedDrl( null,
+                                  Collections.<String> emptyList(),
+                                  e );
+        }
+    }
+
+    /**
+     * The package descriptor of a DRL, or why it could not be parsed.
+     */
+    static class ParsedDrl {
+
+        private final PackageDescr          descr;
+        private final List<String>          errors;
+        private final DroolsParserException exception;
+
+        ParsedDrl(PackageDescr descr,
+                  List<String> errors,
+                  DroolsParserException exception) {
+            this.descr = descr;
+            this.errors = errors;
+            this.exception = exception;
+        }
+
+        public PackageDescr getDescr() {
+            return descr;
+        }
+
+        /**
+         * @return the messages of the parser errors, none if the DRL parsed.
+         */
+        public List<String> getErrors() {
+            return errors;
+        }
+
+        /**
+         * @return the exception the parser failed with, null if it did not.
+         */
+        public DroolsParserException getException() {
+            return exception;
+        }
+    }
+}
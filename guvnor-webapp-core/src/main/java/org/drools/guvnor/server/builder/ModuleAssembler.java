@@ -16,6 +16,7 @@
 
 package org.drools.guvnor.server.builder;
 
+import java.io.OutputStream;
 import java.util.List;
 
 /**
@@ -37,6 +38,12 @@ public interface ModuleAssembler {
 
     public byte[] getCompiledBinary();
 
+    /**
+     * Serializes the compiled module straight into the stream, so a large module
+     * does not have to be held in memory as a byte array. The stream is not closed.
+     */
+    public void writeCompiledBinary(OutputStream out);
+
     public boolean hasErrors();
     
     public List<ContentAssemblyError> getErrors();
@@ -20,6 +20,7 @@ import org.drools.common.DroolsObjectOutputStream;
 import org.drools.guvnor.client.common.AssetFormats;
 import org.drools.guvnor.client.rpc.DetailedSerializationException;
 import org.drools.guvnor.server.selector.AssetSelector;
+import org.drools.guvnor.server.selector.MultipleAssetSelector;
 import org.drools.guvnor.server.selector.BuiltInSelector;
 import org.drools.guvnor.server.selector.SelectorManager;
 import org.drools.guvnor.server.util.LoggingHelper;
@@ -33,7 +34,11 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectOutput;
+import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
 
 /**
  * This assembles packages in the BRMS into binary package objects, and deals
@@ -84,32 +89,53 @@ public class PackageAssembler extends PackageAssemblerBase {
     }
 
     private void loadAllButDRLAssets(StringBuilder includedAssets) {
+        List<AssetItem> candidates = new ArrayList<AssetItem>();
         Iterator<AssetItem> iterator = getAllAssets();
         while (iterator.hasNext()) {
             AssetItem asset = iterator.next();
-            if (!asset.getFormat().equals(AssetFormats.DRL) && assetCanBeAdded(asset)) {
-                addAsset(includedAssets, asset);
+            if (!asset.getFormat().equals(AssetFormats.DRL) && !asset.isArchived()) {
+                candidates.add(asset);
             }
         }
+        addAllowedAssets(includedAssets, candidates);
     }
 
     private void loadDRLAssets(StringBuilder includedAssets) {
+        List<AssetItem> candidates = new ArrayList<AssetItem>();
         Iterator<AssetItem> drlAssetItemIterator = getAssetItemIterator(AssetFormats.DRL);
         while (drlAssetItemIterator.hasNext()) {
             AssetItem asset = drlAssetItemIterator.next();
-            if (assetCanBeAdded(asset)) {
-                addAsset(includedAssets, asset);
+            if (!asset.isArchived()) {
+                candidates.add(asset);
             }
         }
+        addAllowedAssets(includedAssets, candidates);
     }
 
-    private void addAsset(StringBuilder includedAssets, AssetItem asset) {
-        buildAsset(asset);
-        includedAssets.append(asset.getName()).append(", ");
-    }
+    /**
+     * Builds the assets the selector allows, asking a MultipleAssetSelector once for all of them.
+     */
+    private void addAllowedAssets(StringBuilder includedAssets, List<AssetItem> candidates) {
+        List<AssetItem> allowedAssets = new ArrayList<AssetItem>();
+        if (selector instanceof MultipleAssetSelector) {
+            Set<String> allowed = ((MultipleAssetSelector) selector).getAllowedAssets(candidates);
+            for (AssetItem asset : candidates) {
+                if (allowed.contains(asset.getUUID())) {
+                    allowedAssets.add(asset);
+                }
+            }
+        } else {
+            for (AssetItem asset : candidates) {
+                if (selector.isAssetAllowed(asset)) {
+                    allowedAssets.add(asset);
+                }
+            }
+        }
 
-    private boolean assetCanBeAdded(AssetItem asset) {
-        return !asset.isArchived() && (selector.isAssetAllowed(asset));
+        buildAssets(allowedAssets);
+        for (AssetItem asset : allowedAssets) {
+            includedAssets.append(asset.getName()).append(", ");
+        }
     }
 
     private boolean setUpSelector() {
@@ -131,14 +157,12 @@ public class PackageAssembler extends PackageAssemblerBase {
     }
 
     private AssetSelector setUpBuiltInSelector() {
-        BuiltInSelector builtInSelector = (BuiltInSelector) SelectorManager.getInstance().getSelector(SelectorManager.BUILT_IN_SELECTOR);
-        builtInSelector.setStatusOperator(configuration.getStatusOperator());
-        builtInSelector.setStatus(configuration.getStatusDescriptionValue());
-        builtInSelector.setEnableStatusSelector(configuration.isEnableStatusSelector());
-        builtInSelector.setCategory(configuration.getCategoryValue());
-        builtInSelector.setCategoryOperator(configuration.getCategoryOperator());
-        builtInSelector.setEnableCategorySelector(configuration.isEnableCategorySelector());
-        return builtInSelector;
+        return new BuiltInSelector(configuration.getStatusOperator(),
+                configuration.getStatusDescriptionValue(),
+                configuration.isEnableStatusSelector(),
+                configuration.getCategoryOperator(),
+                configuration.getCategoryValue(),
+                configuration.isEnableCategorySelector());
     }
 
     /**
@@ -153,19 +177,21 @@ public class PackageAssembler extends PackageAssemblerBase {
     
     public byte[] getCompiledBinary() {
         ByteArrayOutputStream bout = new ByteArrayOutputStream();
-        ObjectOutput out;
+        writeCompiledBinary( bout );
+        return bout.toByteArray();
+    }
+
+    public void writeCompiledBinary(OutputStream out) {
         try {
-            out = new DroolsObjectOutputStream( bout );
-            out.writeObject( getBinaryPackage() );
-            out.flush();
-            out.close();       
+            ObjectOutput objectOut = new DroolsObjectOutputStream( out );
+            objectOut.writeObject( getBinaryPackage() );
+            // not closed, as that would close the stream of the caller
+            objectOut.flush();
         } catch (IOException e) {
-            e.printStackTrace();
             log.error( "An error occurred building the module [" + moduleItem.getName() + "]: " + e.getMessage() );
             throw new RulesRepositoryException( "An error occurred building the module.",
                     e );
         }
-        return bout.toByteArray();
     }
     
     /**
@@ -17,17 +17,33 @@
 package org.drools.guvnor.server.builder;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringTokenizer;
 
 import org.drools.compiler.DroolsError;
 import org.drools.compiler.DroolsParserException;
 import org.drools.guvnor.client.common.AssetFormats;
 import org.drools.guvnor.server.contenthandler.ContentHandler;
 import org.drools.guvnor.server.contenthandler.ContentManager;
+import org.drools.guvnor.server.builder.DrlParserPool.ParsedDrl;
 import org.drools.guvnor.server.contenthandler.ICompilable;
+import org.drools.guvnor.server.contenthandler.ICompilableAsDRL;
 import org.drools.guvnor.server.util.DroolsHeader;
+import org.drools.lang.descr.FunctionDescr;
+import org.drools.lang.descr.FunctionImportDescr;
+import org.drools.lang.descr.GlobalDescr;
+import org.drools.lang.descr.ImportDescr;
 import org.drools.lang.descr.PackageDescr;
+import org.drools.lang.descr.RuleDescr;
 import org.drools.repository.AssetItem;
 import org.drools.repository.ModuleItem;
 import org.drools.repository.RulesRepositoryException;
@@ -59,6 +75,10 @@ abstract class PackageAssemblerBase extends AssemblerBase {
         //NOT_IMPLEMENTED
         return null;
     }
+
+    public void writeCompiledBinary(OutputStream out) {
+        //NOT_IMPLEMENTED
+    }
     
     /**
      * Builds assets that are "rule" assets (ie things that are not functions
@@ -82,6 +102,184 @@ abstract class PackageAssemblerBase extends AssemblerBase {
         }
     }
 
+    /**
+     * Builds the given assets. The DRL of the ones that are compiled as DRL is parsed in
+     * parallel and compiled at once, before the other assets are built one by one.
+     */
+    protected void buildAssets(List<AssetItem> assets) {
+        List<AssetItem> drlAssets = new ArrayList<AssetItem>();
+        List<String> drls = new ArrayList<String>();
+        List<AssetItem> otherAssets = new ArrayList<AssetItem>();
+        for ( AssetItem asset : assets ) {
+            ContentHandler contentHandler = ContentManager.getHandler( asset.getFormat() );
+            if ( contentHandler instanceof ICompilableAsDRL ) {
+                if ( !asset.getDisabled() ) {
+                    String drl = ((ICompilableAsDRL) contentHandler).getCompiledDRL( builder,
+                                                                                   asset );
+                    if ( !isEmpty( drl ) ) {
+                        drlAssets.add( asset );
+                        drls.add( drl );
+                    }
+                }
+            } else {
+                otherAssets.add( asset );
+            }
+        }
+
+        buildDrlAssets( drlAssets,
+                        drls );
+        for ( AssetItem asset : otherAssets ) {
+            buildAsset( asset );
+        }
+    }
+
+    private void buildDrlAssets(List<AssetItem> assets,
+                                List<String> drls) {
+        if ( assets.isEmpty() ) {
+            return;
+        }
+
+        List<ParsedDrl> parsedDrls = DrlParserPool.getInstance().parse( drls );
+        Map<String, PackageDescr> merged = new LinkedHashMap<String, PackageDescr>();
+        Map<String, List<Integer>> mergedAssets = new HashMap<String, List<Integer>>();
+        for ( int i = 0; i < assets.size(); i++ ) {
+            AssetItem asset = assets.get( i );
+            ParsedDrl parsed = parsedDrls.get( i );
+            if ( parsed.getException() != null ) {
+                errorLogger.addError( asset,
+                                      parsed.getException().getMessage() );
+                throw new RulesRepositoryException( parsed.getException() );
+            }
+            if ( !parsed.getErrors().isEmpty() ) {
+                for ( String error : parsed.getErrors() ) {
+                    errorLogger.addError( asset,
+                                          error );
+                }
+                continue;
+            }
+
+            String key = "package:" + parsed.getDescr().getName();
+            if ( isMergeable( parsed.getDescr(),
+                              drls.get( i ) ) && !hasRuleNamesOf( merged.get( key ),
+                                                                   parsed.getDescr() ) ) {
+                merge( merged,
+                       key,
+                       parsed.getDescr() );
+            } else {
+                // Added on its own, so its rules replace the ones of the same name, as when each asset was added
+                key = asset.getUUID();
+                merged.put( key,
+                            parsed.getDescr() );
+            }
+            List<Integer> indexes = mergedAssets.get( key );
+            if ( indexes == null ) {
+                indexes = new ArrayList<Integer>();
+                mergedAssets.put( key,
+                                  indexes );
+            }
+            indexes.add( i );
+        }
+
+        for ( Map.Entry<String, PackageDescr> entry : merged.entrySet() ) {
+            builder.addPackage( entry.getValue() );
+            if ( !builder.hasErrors() ) {
+                continue;
+            }
+
+            List<Integer> indexes = mergedAssets.get( entry.getKey() );
+            if ( indexes.size() == 1 ) {
+                logErrors( assets.get( indexes.get( 0 ) ) );
+                continue;
+            }
+
+            // If the assets compiled together had errors we need to add them one by one to find out which ones are bad.
+            // Their rules replace the ones of the same name that were just added.
+            builder.clearErrors();
+            for ( Integer index : indexes ) {
+                try {
+                    addDrl( drls.get( index ) );
+                } catch ( DroolsParserException e ) {
+                    errorLogger.addError( assets.get( index ),
+                                          "Parser exception: " + e.getMessage() );
+                } catch ( IOException e ) {
+                    errorLogger.addError( assets.get( index ),
+                                          "IOException: " + e.getMessage() );
+                }
+
+                if ( builder.hasErrors() ) {
+                    logErrors( assets.get( index ) );
+                }
+            }
+        }
+    }
+
+    /**
+     * @return true if the merged package already has a rule named as one of the rules
+     *         of the given package, which would make the merged package fail to build.
+     */
+    private boolean hasRuleNamesOf(PackageDescr merged,
+                                   PackageDescr descr) {
+        if ( merged == null ) {
+            return false;
+        }
+        Set<String> names = new HashSet<String>();
+        for ( RuleDescr rule : merged.getRules() ) {
+            names.add( rule.getName() );
+        }
+        for ( RuleDescr rule : descr.getRules() ) {
+            if ( names.contains( rule.getName() ) ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Package attributes apply to the rules of their own DRL only, and declarations are
+     * built before anything else of their DRL, so those are never merged with other DRL.
+     */
+    private boolean isMergeable(PackageDescr descr,
+                                String drl) {
+        if ( !descr.getAttributes().isEmpty() ) {
+            return false;
+        }
+        StringTokenizer st = new StringTokenizer( drl,
+                                                  "\n\r" );
+        while ( st.hasMoreTokens() ) {
+            String[] words = st.nextToken().trim().split( "\\s" );
+            if ( words.length > 0 && words[0].equals( "declare" ) ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void merge(Map<String, PackageDescr> merged,
+                       String key,
+                       PackageDescr descr) {
+        PackageDescr target = merged.get( key );
+        if ( target == null ) {
+            target = new PackageDescr( descr.getName() );
+            merged.put( key,
+                        target );
+        }
+        for ( ImportDescr importDescr : descr.getImports() ) {
+            target.addImport( importDescr );
+        }
+        for ( FunctionImportDescr functionImport : descr.getFunctionImports() ) {
+            target.addFunctionImport( functionImport );
+        }
+        for ( GlobalDescr global : descr.getGlobals() ) {
+            target.addGlobal( global );
+        }
+        for ( FunctionDescr function : descr.getFunctions() ) {
+            target.addFunction( function );
+        }
+        for ( RuleDescr rule : descr.getRules() ) {
+            target.addRule( rule );
+        }
+    }
+
     private void compile(AssetItem asset,
                          ICompilable contentHandler) throws DroolsParserException,
                                                     IOException {
@@ -133,7 +331,7 @@ abstract class PackageAssemblerBase extends AssemblerBase {
     }
     
     protected void loadDSLFiles() {
-        builder.setDSLFiles(DSLLoader.loadDSLMappingFiles(getAssetItemIterator(AssetFormats.DSL),
+        builder.setDSL(DSLLoader.loadCompiledDSL(getAssetItemIterator(AssetFormats.DSL),
                 new BRMSPackageBuilder.DSLErrorEvent() {
                     public void recordError(AssetItem asset,
                                             String message) {
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2012 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.drools.guvnor.server.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.drools.guvnor.client.rpc.SnapshotDiffs;
+
+/**
+ * Keeps the last snapshot comparisons, so paging through a comparison does
+ * not compare the snapshots again for every page.
+ *
+ * Comparisons are keyed by the UUIDs of the two snapshot nodes. A snapshot
+ * that is replaced gets a new node, so a stale comparison is never returned;
+ * it just ages out of the cache. The number of comparisons kept is set with
+ * "guvnor.snapshot.diff.cacheSize" (50 by default).
+ */
+public class SnapshotDiffCache {
+
+    private static final SnapshotDiffCache instance = new SnapshotDiffCache( Integer.getInteger( "guvnor.snapshot.diff.cacheSize",
+                                                                                                50 ) );
+
+    private final Map<String, SnapshotDiffs> diffs;
+
+    public SnapshotDiffCache(final int maxSize) {
+        this.diffs = new LinkedHashMap<String, SnapshotDiffs>( 16,
+                                                               0.75f,
+                                                               true ) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, SnapshotDiffs> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    public static SnapshotDiffCache getInstance() {
+        return instance;
+    }
+
+    public synchronized SnapshotDiffs get(final String firstSnapshotUUID,
+                                          final String secondSnapshotUUID) {
+        return this.diffs.get( key( firstSnapshotUUID,
+                                    secondSnapshotUUID ) );
+    }
+
+    public synchronized void put(final String firstSnapshotUUID,
+                                 final String secondSnapshotUUID,
+                                 final SnapshotDiffs snapshotDiffs) {
+        this.diffs.put( key( firstSnapshotUUID,
+                             secondSnapshotUUID ),
+                        snapshotDiffs );
+    }
+
+    public synchronized int size() {
+        return this.diffs.size();
+    }
+
+    public synchronized void clearCache() {
+        this.diffs.clear();
+    }
+
+    private String key(final String firstSnapshotUUID,
+                       final String secondSnapshotUUID) {
+        return firstSnapshotUUID + "/" + secondSnapshotUUID;
+    }
+}
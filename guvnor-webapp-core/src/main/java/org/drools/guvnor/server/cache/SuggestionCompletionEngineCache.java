@@ -0,0 +1,105 @@
+/*
+ * Copyright 2012 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.drools.guvnor.server.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.drools.ide.common.client.modeldriven.SuggestionCompletionEngine;
+
+/**
+ * Keeps the last SuggestionCompletionEngines built, so the engine of a module
+ * is not rebuilt from its jars, declarations and enums for every editor that
+ * is opened.
+ *
+ * Engines are keyed by module UUID, and stored with the signature of the
+ * assets they were built from (see
+ * SuggestionCompletionEngineLoaderInitializer): an engine is only returned
+ * for the same signature, so a changed model is loaded again. The number of
+ * modules kept is set with "guvnor.sce.cacheSize" (20 by default).
+ *
+ * Every caller gets its own copy of the cached engine (see
+ * SuggestionCompletionEngine.copy()), so it can be filtered or have fact type
+ * completions added while other requests use the same module.
+ */
+public class SuggestionCompletionEngineCache {
+
+    private static final SuggestionCompletionEngineCache instance = new SuggestionCompletionEngineCache( Integer.getInteger( "guvnor.sce.cacheSize",
+                                                                                                                            20 ) );
+
+    private final Map<String, Entry> engines;
+
+    public SuggestionCompletionEngineCache(final int maxSize) {
+        this.engines = new LinkedHashMap<String, Entry>( 16,
+                                                         0.75f,
+                                                         true ) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    public static SuggestionCompletionEngineCache getInstance() {
+        return instance;
+    }
+
+    /**
+     * @return a copy of the engine of the module, or null if there is none for
+     *         this signature.
+     */
+    public synchronized SuggestionCompletionEngine get(final String moduleUUID,
+                                                       final String signature) {
+        Entry entry = this.engines.get( moduleUUID );
+        if ( entry == null || !entry.signature.equals( signature ) ) {
+            return null;
+        }
+        return entry.engine.copy();
+    }
+
+    public synchronized void put(final String moduleUUID,
+                                 final String signature,
+                                 final SuggestionCompletionEngine engine) {
+        this.engines.put( moduleUUID,
+                          new Entry( signature,
+                                     engine ) );
+    }
+
+    public synchronized void remove(final String moduleUUID) {
+        this.engines.remove( moduleUUID );
+    }
+
+    public synchronized int size() {
+        return this.engines.size();
+    }
+
+    public synchronized void clearCache() {
+        this.engines.clear();
+    }
+
+    private static class Entry {
+
+        private final String                     signature;
+        private final SuggestionCompletionEngine engine;
+
+        private Entry(final String signature,
+                      final SuggestionCompletionEngine engine) {
+            this.signature = signature;
+            this.engine = engine;
+        }
+    }
+}
@@ -31,6 +31,11 @@ public abstract class BaseXStreamContentHandler<T extends PortableObject> extend
 
     private static final XStream xt = new XStream(new DomDriver());
 
+    /**
+     * The instance is shared by every handler and thread. XStream is thread safe for
+     * marshalling once configured, so it must not be configured (aliases, converters...)
+     * after this class is initialised.
+     */
     protected XStream getXStream() {
         return xt;
     }
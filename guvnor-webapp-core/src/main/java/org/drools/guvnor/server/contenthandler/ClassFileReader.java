@@ -0,0 +1,219 @@
+/*
+ * Copyright 2012 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.drools.guvnor.server.contenthandler;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.drools.guvnor.server.contenthandler.TypeCatalogue.MemberInfo;
+import org.drools.guvnor.server.contenthandler.TypeCatalogue.TypeInfo;
+
+/**
+ * Reads what the {@link TypeCatalogue} keeps of a class straight from its class file,
+ * so the class does not have to be loaded (nor the classes it depends on to be found).
+ */
+class ClassFileReader {
+
+    private static final int MAGIC = 0xCAFEBABE;
+
+    private final DataInputStream in;
+    private String[] utf8;
+    private int[] classNames;
+
+    private ClassFileReader(InputStream in) {
+        this.in = new DataInputStream( in );
+    }
+
+    static TypeInfo read(InputStream in) throws IOException {
+        return new ClassFileReader( in ).readClass();
+    }
+
+    private TypeInfo readClass() throws IOException {
+        if ( in.readInt() != MAGIC ) {
+            throw new IOException( "Not a class file" );
+        }
+        in.readUnsignedShort(); // minor version
+        in.readUnsignedShort(); // major version
+        readConstantPool();
+
+        TypeInfo type = new TypeInfo();
+        type.access = in.readUnsignedShort();
+        type.name = className( in.readUnsignedShort() );
+        type.superName = className( in.readUnsignedShort() );
+        int interfaceCount = in.readUnsignedShort();
+        type.interfaces = new String[interfaceCount];
+        for ( int i = 0; i < interfaceCount; i++ ) {
+            type.interfaces[i] = className( in.readUnsignedShort() );
+        }
+        type.fields = readMembers();
+        type.methods = readMembers();
+        type.signature = readAttributes( type.annotations );
+        return type;
+    }
+
+    private void readConstantPool() throws IOException {
+        int count = in.readUnsignedShort();
+        utf8 = new String[count];
+        classNames = new int[count];
+        for ( int i = 1; i < count; i++ ) {
+            int tag = in.readUnsignedByte();
+            switch ( tag ) {
+                case 1 : // Utf8
+                    utf8[i] = in.readUTF();
+                    break;
+                case 7 : // Class
+                    classNames[i] = in.readUnsignedShort();
+                    break;
+                case 5 : // Long
+                case 6 : // Double
+                    skip( 8 );
+                    i++;
+                    break;
+                case 3 : // Integer
+                case 4 : // Float
+                case 9 : // Fieldref
+                case 10 : // Methodref
+                case 11 : // InterfaceMethodref
+                case 12 : // NameAndType
+                case 17 : // Dynamic
+                case 18 : // InvokeDynamic
+                    skip( 4 );
+                    break;
+                case 15 : // MethodHandle
+                    skip( 3 );
+                    break;
+                case 8 : // String
+                case 16 : // MethodType
+                case 19 : // Module
+                case 20 : // Package
+                    skip( 2 );
+                    break;
+                default :
+                    throw new IOException( "Unknown constant pool tag " + tag );
+            }
+        }
+    }
+
+    private List<MemberInfo> readMembers() throws IOException {
+        int count = in.readUnsignedShort();
+        List<MemberInfo> members = new ArrayList<MemberInfo>( count );
+        for ( int i = 0; i < count; i++ ) {
+            MemberInfo member = new MemberInfo();
+            member.access = in.readUnsignedShort();
+            member.name = utf8[in.readUnsignedShort()];
+            member.descriptor = utf8[in.readUnsignedShort()];
+            member.signature = readAttributes( member.annotations );
+            members.add( member );
+        }
+        return members;
+    }
+
+    /**
+     * Reads the attributes of a class or member, adding the types of its annotations.
+     * 
+     * @return the generic signature, if any
+     */
+    private String readAttributes(List<String> annotations) throws IOException {
+        String signature = null;
+        int count = in.readUnsignedShort();
+        for ( int i = 0; i < count; i++ ) {
+            String name = utf8[in.readUnsignedShort()];
+            int length = in.readInt();
+            if ( "Signature".equals( name ) ) {
+                signature = utf8[in.readUnsignedShort()];
+            } else if ( "RuntimeVisibleAnnotations".equals( name ) ) {
+                int annotationCount = in.readUnsignedShort();
+                for ( int j = 0; j < annotationCount; j++ ) {
+                    annotations.add( typeName( utf8[in.readUnsignedShort()] ) );
+                    skipAnnotationValues();
+                }
+            } else {
+                skip( length );
+            }
+        }
+        return signature;
+    }
+
+    private void skipAnnotationValues() throws IOException {
+        int pairCount = in.readUnsignedShort();
+        for ( int i = 0; i < pairCount; i++ ) {
+            in.readUnsignedShort(); // name
+            skipElementValue();
+        }
+    }
+
+    private void skipElementValue() throws IOException {
+        int tag = in.readUnsignedByte();
+        switch ( tag ) {
+            case 'e' :
+                skip( 4 );
+                break;
+            case '@' :
+                in.readUnsignedShort();
+                skipAnnotationValues();
+                break;
+            case '[' :
+                int count = in.readUnsignedShort();
+                for ( int i = 0; i < count; i++ ) {
+                    skipElementValue();
+                }
+                break;
+            default :
+                // constants and classes
+                skip( 2 );
+        }
+    }
+
+    private void skip(int length) throws IOException {
+        while ( length > 0 ) {
+            int skipped = in.skipBytes( length );
+            if ( skipped <= 0 ) {
+                if ( in.read() < 0 ) {
+                    throw new EOFException();
+                }
+                skipped = 1;
+            }
+            length -= skipped;
+        }
+    }
+
+    private String className(int index) {
+        if ( index == 0 ) {
+            // java.lang.Object has no super class
+            return null;
+        }
+        return utf8[classNames[index]].replace( '/',
+                                                '.' );
+    }
+
+    /**
+     * @return the class name of a field descriptor such as "Ljavax/persistence/Entity;".
+     */
+    private static String typeName(String descriptor) {
+        if ( descriptor.startsWith( "L" ) && descriptor.endsWith( ";" ) ) {
+            descriptor = descriptor.substring( 1,
+                                               descriptor.length() - 1 );
+        }
+        return descriptor.replace( '/',
+                                   '.' );
+    }
+
+}
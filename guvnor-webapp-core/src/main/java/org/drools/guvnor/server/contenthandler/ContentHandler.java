@@ -27,6 +27,9 @@ import java.util.Map;
 
 /**
  * All content handlers must implement this, and be registered in content_types.properties
+ *
+ * A single instance of each handler is shared by all threads (see {@link ContentManager}),
+ * so implementations must not keep state between calls.
  */
 public abstract class ContentHandler {
 
@@ -22,28 +22,32 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Properties;
 
 /**
  * This configures the content handlers based on a props file.
+ *
+ * The handlers are created once and shared by every request, so the registry is never
+ * changed after it is loaded and the handlers themselves must not keep any per-asset state.
  */
 public class ContentManager {
 
     private static final Logger log = LoggerFactory.getLogger(ContentManager.class);
     private static final String CONTENT_CONFIG_PROPERTIES = "/contenthandler.properties";
-    private static ContentManager INSTANCE;
+    private static final ContentHandler DEFAULT_HANDLER = new DefaultContentHandler();
 
     /**
      * This is a map of the contentHandlers to use.
      */
-    private final Map<String, ContentHandler> contentHandlers = new HashMap<String, ContentHandler>();
-
+    private final Map<String, ContentHandler> contentHandlers;
 
     @SuppressWarnings("rawtypes")
     ContentManager(String configPath) {
         log.debug("Loading content properties");
+        Map<String, ContentHandler> handlers = new HashMap<String, ContentHandler>();
         Properties props = new Properties();
         InputStream in = null;
         try {
@@ -53,17 +57,21 @@ public class ContentManager {
                 String contentHandler = (String) o;
                 String val = props.getProperty(contentHandler);
 
-                contentHandlers.put(contentHandler, loadContentHandlerImplementation(val));
+                ContentHandler handler = loadContentHandlerImplementation(val);
+                if (handler != null) {
+                    handlers.put(contentHandler, handler);
+                }
             }
         } catch (IOException e) {
             log.error("UNABLE to load content handlers. Ahem, nothing will actually work. Ignore subsequent errors until this is resolved.", e);
         } finally {
             IOUtils.closeQuietly(in);
         }
+        contentHandlers = Collections.unmodifiableMap(handlers);
     }
 
     /**
-     * Return the content handlers.
+     * Return the content handlers, keyed by format. The map can not be modified.
      */
     public Map<String, ContentHandler> getContentHandlers() {
 
@@ -89,22 +97,24 @@ public class ContentManager {
 
     }
 
+    /**
+     * In some cases letting the classloader load the handlers with this class means that
+     * it will fail, as the classes aren't yet available. So the instance is only created
+     * on the first call, by the class loading of the holder, which the JVM runs exactly
+     * once and makes visible to every thread.
+     */
+    private static class InstanceHolder {
+        private static final ContentManager INSTANCE = new ContentManager(CONTENT_CONFIG_PROPERTIES);
+    }
+
     public static ContentManager getInstance() {
-        if (INSTANCE == null) {
-            //have to do this annoying thing, as in some cases, letting the classloader
-            //load it up means that it will fail as the classes aren't yet available.
-            //so have to use this nasty anti-pattern here. Sorry.
-            synchronized (ContentManager.class) {
-                ContentManager.INSTANCE = new ContentManager(CONTENT_CONFIG_PROPERTIES);
-            }
-        }
-        return INSTANCE;
+        return InstanceHolder.INSTANCE;
     }
 
     public static ContentHandler getHandler(String format) {
         ContentHandler h = ContentManager.getInstance().getContentHandlers().get(format);
         if (h == null)
-            h = new DefaultContentHandler();//throw new IllegalArgumentException("Unable to handle the content type: " + format);
+            h = DEFAULT_HANDLER;//throw new IllegalArgumentException("Unable to handle the content type: " + format);
         return h;
     }
 }
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2012 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.drools.guvnor.server.contenthandler;
+
+import org.drools.guvnor.server.builder.BRMSPackageBuilder;
+import org.drools.repository.AssetItem;
+
+/**
+ * This indicates that compiling an asset only hands its DRL over to the package builder,
+ * so a package assembler may parse that DRL itself, along with the DRL of other assets,
+ * instead of calling {@link #compile}.
+ */
+public interface ICompilableAsDRL
+        extends
+        ICompilable {
+
+    /**
+     * @return the DRL the asset is compiled from (after any DSL expansion), null or blank
+     *         if there is nothing to compile.
+     */
+    public String getCompiledDRL(BRMSPackageBuilder builder,
+                                 AssetItem asset);
+
+}
@@ -17,19 +17,14 @@
 package org.drools.guvnor.server.contenthandler;
 
 import java.io.IOException;
-import java.lang.reflect.Modifier;
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.jar.JarEntry;
-import java.util.jar.JarInputStream;
 import java.util.regex.Pattern;
 
 import org.drools.guvnor.client.rpc.Asset;
-import org.drools.guvnor.server.builder.ClassLoaderBuilder;
+import org.drools.guvnor.server.contenthandler.TypeCatalogue.TypeInfo;
 import org.drools.guvnor.server.util.DroolsHeader;
 import org.drools.repository.AssetItem;
 import org.drools.repository.ModuleItem;
@@ -63,7 +58,12 @@ public class ModelContentHandler extends ContentHandler
         ModuleItem pkg = asset.getModule();
         StringBuilder header = createNewHeader( DroolsHeader.getDroolsHeader( pkg ) );
 
-        Set<String> imports = getImportsFromJar( asset );
+        //Read the jar once, the catalogue is saved with the package below
+        TypeCatalogue catalogue = TypeCatalogue.fromJar( asset.getBinaryContentAttachment() );
+        catalogue.store( asset );
+
+        Set<String> imports = getImports( catalogue,
+                                          asset.getModuleName() );
 
         for ( String importLine : imports ) {
             Pattern pattern = Pattern.compile( "\\b" + importLine.replace( ".",
@@ -84,7 +84,8 @@ public class ModelContentHandler extends ContentHandler
         ModuleItem pkg = item.getModule();
         StringBuilder header = createNewHeader( DroolsHeader.getDroolsHeader( pkg ) );
 
-        Set<String> imports = getImportsFromJar( item );
+        Set<String> imports = getImports( TypeCatalogue.load( item ),
+                                          item.getModuleName() );
 
         for ( String importLine : imports ) {
             String importLineWithLineEnd = importLine + "\n";
@@ -121,38 +122,24 @@ public class ModelContentHandler extends ContentHandler
         return buf;
     }
 
-    private Set<String> getImportsFromJar(AssetItem assetItem) throws IOException {
+    private Set<String> getImports(TypeCatalogue catalogue,
+                                   String assetPackageName) {
 
         Set<String> imports = new HashSet<String>();
         Map<String, String> nonCollidingImports = new HashMap<String, String>();
-        String assetPackageName = assetItem.getModuleName();
-
-        //Setup class-loader to check for class visibility
-        JarInputStream cljis = new JarInputStream( assetItem.getBinaryContentAttachment() );
-        List<JarInputStream> jarInputStreams = new ArrayList<JarInputStream>();
-        jarInputStreams.add( cljis );
-        ClassLoaderBuilder clb = new ClassLoaderBuilder( jarInputStreams );
-        ClassLoader cl = clb.buildClassLoader();
-
-        //Reset stream to read classes
-        JarInputStream jis = new JarInputStream( assetItem.getBinaryContentAttachment() );
-        JarEntry entry = null;
 
         //Get Class names from JAR, only the first occurrence of a given Class leaf name will be inserted. Thus 
         //"org.apache.commons.lang.NumberUtils" will be imported but "org.apache.commons.lang.math.NumberUtils"
         //will not, assuming it follows later in the JAR structure.
-        while ( (entry = jis.getNextJarEntry()) != null ) {
-            if ( !entry.isDirectory() ) {
-                if ( entry.getName().endsWith( ".class" ) && entry.getName().indexOf( '$' ) == -1 && !entry.getName().endsWith( "package-info.class" ) ) {
-                    String fullyQualifiedName = convertPathToName( entry.getName() );
-                    if ( isClassVisible( cl,
-                                         fullyQualifiedName,
-                                         assetPackageName ) ) {
-                        String leafName = getLeafName( fullyQualifiedName );
-                        if(!nonCollidingImports.containsKey( leafName )) {
-                        nonCollidingImports.put( leafName,
-                                                 fullyQualifiedName );
-                        }
+        for ( TypeInfo type : catalogue.getTypes() ) {
+            String fullyQualifiedName = type.getName();
+            if ( !type.isInnerClass() && !fullyQualifiedName.endsWith( "package-info" ) ) {
+                if ( isClassVisible( type,
+                                     assetPackageName ) ) {
+                    String leafName = getLeafName( fullyQualifiedName );
+                    if(!nonCollidingImports.containsKey( leafName )) {
+                    nonCollidingImports.put( leafName,
+                                             fullyQualifiedName );
                     }
                 }
             }
@@ -176,24 +163,9 @@ public class ModelContentHandler extends ContentHandler
     }
 
     //Only import public classes; or those in the same package as the Asset
-    private boolean isClassVisible(ClassLoader cl,
-                                   String className,
+    private boolean isClassVisible(TypeInfo type,
                                    String assetPackageName) {
-        try {
-            Class< ? > cls = cl.loadClass( className );
-            int modifiers = cls.getModifiers();
-            if ( Modifier.isPublic( modifiers ) ) {
-                return true;
-            }
-            String packageName = className.substring( 0,
-                                                      className.lastIndexOf( "." ) );
-            if ( !packageName.equals( assetPackageName ) ) {
-                return false;
-            }
-        } catch ( Exception e ) {
-            return false;
-        }
-        return true;
+        return type.isPublic() || type.getPackageName().equals( assetPackageName );
     }
 
     public static String convertPathToName(String name) {
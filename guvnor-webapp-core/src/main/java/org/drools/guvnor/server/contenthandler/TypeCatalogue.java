@@ -0,0 +1,254 @@
+/*
+ * Copyright 2012 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.drools.guvnor.server.contenthandler;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarInputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.drools.guvnor.server.util.LoggingHelper;
+import org.drools.repository.AssetItem;
+
+/**
+ * The types of a model jar: their names, modifiers, super types, fields, methods, generic
+ * signatures and annotations, as read from the class files of the jar without loading
+ * them.
+ *
+ * The catalogue is built when the jar is attached to its asset and is stored with it, so
+ * listing the types of a module does not read its jars again. Assets attached without
+ * a catalogue (before it existed, or through the REST interface) have theirs built from
+ * the jar when it is needed.
+ */
+public class TypeCatalogue
+    implements
+    Serializable {
+
+    private static final long            serialVersionUID = 510l;
+
+    private static final LoggingHelper   log              = LoggingHelper.getLogger( TypeCatalogue.class );
+
+    private final List<TypeInfo>         types            = new ArrayList<TypeInfo>();
+
+    /**
+     * Builds the catalogue of a jar. The stream is closed.
+     */
+    public static TypeCatalogue fromJar(InputStream jar) throws IOException {
+        TypeCatalogue catalogue = new TypeCatalogue();
+        JarInputStream jis = new JarInputStream( jar );
+        try {
+            JarEntry entry;
+            while ( (entry = jis.getNextJarEntry()) != null ) {
+                if ( !entry.isDirectory() && entry.getName().endsWith( ".class" ) ) {
+                    try {
+                        catalogue.types.add( ClassFileReader.read( jis ) );
+                    } catch ( IOException e ) {
+                        log.warn( "Unable to read class file [" + entry.getName() + "]: " + e.getMessage() );
+                        TypeInfo type = new TypeInfo();
+                        type.name = ModelContentHandler.convertPathToName( entry.getName() );
+                        catalogue.types.add( type );
+                    }
+                }
+            }
+        } finally {
+            IOUtils.closeQuietly( jis );
+        }
+        return catalogue;
+    }
+
+    /**
+     * @return the catalogue stored with the asset, or the one of its jar if there is
+     *         none. It is empty if the asset has no jar.
+     */
+    public static TypeCatalogue load(AssetItem asset) throws IOException {
+        InputStream stored = asset.getTypeCatalogue();
+        if ( stored != null ) {
+            try {
+                ObjectInputStream in = new ObjectInputStream( new GZIPInputStream( stored ) );
+                return (TypeCatalogue) in.readObject();
+            } catch ( ClassNotFoundException e ) {
+                log.warn( "Ignoring the type catalogue of [" + asset.getName() + "]: " + e.getMessage() );
+            } catch ( IOException e ) {
+                // from an older version of this class
+                log.warn( "Ignoring the type catalogue of [" + asset.getName() + "]: " + e.getMessage() );
+            } finally {
+                IOUtils.closeQuietly( stored );
+            }
+        }
+        InputStream jar = asset.isBinary() ? asset.getBinaryContentAttachment() : null;
+        if ( jar == null ) {
+            return new TypeCatalogue();
+        }
+        return fromJar( jar );
+    }
+
+    /**
+     * Stores the catalogue with the asset, it is saved along with the asset.
+     */
+    public void store(AssetItem asset) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream( new GZIPOutputStream( bytes ) );
+        out.writeObject( this );
+        out.close();
+        asset.updateTypeCatalogue( new ByteArrayInputStream( bytes.toByteArray() ) );
+    }
+
+    public List<TypeInfo> getTypes() {
+        return Collections.unmodifiableList( types );
+    }
+
+    /**
+     * @return the names of all the classes of the jar, inner classes included.
+     */
+    public List<String> getClassNames() {
+        List<String> names = new ArrayList<String>( types.size() );
+        for ( TypeInfo type : types ) {
+            names.add( type.name );
+        }
+        return names;
+    }
+
+    /**
+     * A class.
+     */
+    public static class TypeInfo
+        implements
+        Serializable {
+
+        private static final long serialVersionUID = 510l;
+
+        String                    name;
+        int                       access;
+        String                    superName;
+        String[]                  interfaces       = new String[0];
+        String                    signature;
+        List<String>              annotations      = new ArrayList<String>();
+        List<MemberInfo>          fields           = new ArrayList<MemberInfo>();
+        List<MemberInfo>          methods          = new ArrayList<MemberInfo>();
+
+        /**
+         * @return the fully qualified name, with a '$' before the name of an inner class.
+         */
+        public String getName() {
+            return name;
+        }
+
+        public String getPackageName() {
+            int index = name.lastIndexOf( '.' );
+            return index == -1 ? "" : name.substring( 0,
+                                                      index );
+        }
+
+        public int getModifiers() {
+            return access;
+        }
+
+        public boolean isPublic() {
+            return Modifier.isPublic( access );
+        }
+
+        public boolean isInnerClass() {
+            return name.indexOf( '$' ) != -1;
+        }
+
+        public String getSuperName() {
+            return superName;
+        }
+
+        public String[] getInterfaces() {
+            return interfaces;
+        }
+
+        /**
+         * @return the generic signature, or null if the class is not generic.
+         */
+        public String getSignature() {
+            return signature;
+        }
+
+        public List<String> getAnnotations() {
+            return annotations;
+        }
+
+        public List<MemberInfo> getFields() {
+            return fields;
+        }
+
+        public List<MemberInfo> getMethods() {
+            return methods;
+        }
+    }
+
+    /**
+     * A field or a method of a class.
+     */
+    public static class MemberInfo
+        implements
+        Serializable {
+
+        private static final long serialVersionUID = 510l;
+
+        String                    name;
+        int                       access;
+        String                    descriptor;
+        String                    signature;
+        List<String>              annotations      = new ArrayList<String>();
+
+        public String getName() {
+            return name;
+        }
+
+        public int getModifiers() {
+            return access;
+        }
+
+        public boolean isPublic() {
+            return Modifier.isPublic( access );
+        }
+
+        /**
+         * @return the type of a field, or the parameter and return types of a method, as
+         *         in the class file ("Ljava/lang/String;", "(I)Z").
+         */
+        public String getDescriptor() {
+            return descriptor;
+        }
+
+        /**
+         * @return the generic signature, or null if the type is not generic.
+         */
+        public String getSignature() {
+            return signature;
+        }
+
+        public List<String> getAnnotations() {
+            return annotations;
+        }
+    }
+}
@@ -28,10 +28,8 @@ import org.drools.repository.AssetItemPageResult;
 import org.drools.repository.ModuleItem;
 import org.drools.repository.RulesRepository;
 import org.jboss.seam.security.AuthorizationException;
-import org.jboss.seam.security.Identity;
 import org.mvel2.templates.TemplateRuntime;
 
-import javax.inject.Inject;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -43,12 +41,6 @@ public class FeedServlet extends RepositoryServlet {
 
     private static final String VIEW_URL = "viewUrl";
 
-    @Inject
-    private RulesRepository rulesRepository;
-
-    @Inject
-    private Identity identity;
-
     @Override
     protected void doGet(final HttpServletRequest request,
                          final HttpServletResponse response) throws ServletException,
@@ -56,29 +48,32 @@ public class FeedServlet extends RepositoryServlet {
         try {
             String url = request.getRequestURI();
             if (url.contains("feed/package")) {
-                doAuthorizedAction(request,
+                doAuthorizedReadAction(request,
                         response,
-                        new Command() {
-                            public void execute() throws Exception {
-                                doPackageFeed(request,
+                        new ReadCommand() {
+                            public void execute(RulesRepository repository) throws Exception {
+                                doPackageFeed(repository,
+                                        request,
                                         response);
                             }
                         });
             } else if (url.contains("feed/category")) {
-                doAuthorizedAction(request,
+                doAuthorizedReadAction(request,
                         response,
-                        new Command() {
-                            public void execute() throws Exception {
-                                doCategoryFeed(request,
+                        new ReadCommand() {
+                            public void execute(RulesRepository repository) throws Exception {
+                                doCategoryFeed(repository,
+                                        request,
                                         response);
                             }
                         });
             } else if (url.contains("feed/discussion")) {
-                doAuthorizedAction(request,
+                doAuthorizedReadAction(request,
                         response,
-                        new Command() {
-                            public void execute() throws Exception {
-                                doDiscussionFeed(request,
+                        new ReadCommand() {
+                            public void execute(RulesRepository repository) throws Exception {
+                                doDiscussionFeed(repository,
+                                        request,
                                         response);
                             }
                         });
@@ -91,7 +86,8 @@ public class FeedServlet extends RepositoryServlet {
 
     }
 
-    private void doDiscussionFeed(HttpServletRequest request,
+    private void doDiscussionFeed(RulesRepository rulesRepository,
+                                  HttpServletRequest request,
                                   HttpServletResponse response) throws IOException {
         String assetName = request.getParameter("assetName");
         String packageName = request.getParameter("package");
@@ -118,7 +114,8 @@ public class FeedServlet extends RepositoryServlet {
         response.getWriter().print(feed.getAtom());
     }
 
-    private void doCategoryFeed(HttpServletRequest request,
+    private void doCategoryFeed(RulesRepository rulesRepository,
+                                HttpServletRequest request,
                                 HttpServletResponse response) throws IOException {
         String cat = request.getParameter("name");
         String status = request.getParameter("status");
@@ -149,7 +146,8 @@ public class FeedServlet extends RepositoryServlet {
                 RoleType.ANALYST_READ.getName());
     }
 
-    private void doPackageFeed(HttpServletRequest request,
+    private void doPackageFeed(RulesRepository rulesRepository,
+                               HttpServletRequest request,
                                HttpServletResponse response) throws IOException {
         String packageName = request.getParameter("name");
         checkPackageReadPermission(packageName);
@@ -16,24 +16,30 @@
 
 package org.drools.guvnor.server.files;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
 import java.util.Iterator;
 import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
 
 import javax.enterprise.context.ApplicationScoped;
 import javax.enterprise.context.RequestScoped;
 import javax.jcr.RepositoryException;
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 
 import org.apache.commons.fileupload.FileItem;
 import org.apache.commons.fileupload.FileItemFactory;
 import org.apache.commons.fileupload.FileUploadException;
 import org.apache.commons.fileupload.disk.DiskFileItemFactory;
 import org.apache.commons.fileupload.servlet.ServletFileUpload;
+import org.apache.commons.io.IOUtils;
 import org.drools.compiler.DroolsParserException;
 import org.drools.guvnor.client.common.HTMLFileManagerFields;
 import org.drools.guvnor.server.builder.BRMSPackageBuilder;
@@ -44,6 +50,7 @@ import org.drools.guvnor.server.contenthandler.ContentHandler;
 import org.drools.guvnor.server.contenthandler.ContentManager;
 import org.drools.guvnor.server.contenthandler.ICanHasAttachment;
 import org.drools.guvnor.server.contenthandler.IRuleAsset;
+import org.drools.guvnor.server.refactoring.ModuleSymbolIndex;
 import org.drools.guvnor.server.repository.MigrateRepository;
 import org.drools.guvnor.server.security.AdminType;
 import org.drools.guvnor.server.security.RoleType;
@@ -178,23 +185,80 @@ public class FileManagerService {
                                     String packageVersion,
                                     boolean isLatest,
                                     OutputStream out) throws IOException {
-        ModuleItem item = null;
-        if ( isLatest ) {
-            item = repository.loadModule( packageName );
-            byte[] data = item.getCompiledPackageBytes();
-            out.write( data );
+        ModuleItem item = loadBinaryPackageModule( packageName,
+                                                   packageVersion,
+                                                   isLatest );
+        InputStream in = item.getCompiledPackageStream();
+        if ( in != null ) {
+            try {
+                IOUtils.copy( in,
+                              out );
+            } finally {
+                in.close();
+            }
+        }
+        out.flush();
+        return getBinaryPackageFileName( packageName,
+                                         packageVersion,
+                                         isLatest );
+    }
+
+    /**
+     * Sends the compiled package to the response as it is read from the repository, with its
+     * length, so it is never held in memory.
+     */
+    public void sendBinaryPackage(String packageName,
+                                  String packageVersion,
+                                  boolean isLatest,
+                                  HttpServletResponse response) throws IOException {
+        ModuleItem item = loadBinaryPackageModule( packageName,
+                                                   packageVersion,
+                                                   isLatest );
+        InputStream in = item.getCompiledPackageStream();
+        if ( in == null ) {
+            response.sendError( HttpServletResponse.SC_NOT_FOUND,
+                                "The package [" + packageName + "] has not been built." );
+            return;
+        }
+        try {
+            response.setContentType( "application/x-download" );
+            response.setHeader( "Content-Disposition",
+                                "attachment; filename=" + getBinaryPackageFileName( packageName,
+                                                                                    packageVersion,
+                                                                                    isLatest ) + ";" );
+            long size = item.getCompiledPackageSize();
+            if ( size >= 0 && size <= Integer.MAX_VALUE ) {
+                response.setContentLength( (int) size );
+            }
+            OutputStream out = response.getOutputStream();
+            IOUtils.copy( in,
+                          out );
             out.flush();
+        } finally {
+            in.close();
+        }
+    }
+
+    private ModuleItem loadBinaryPackageModule(String packageName,
+                                               String packageVersion,
+                                               boolean isLatest) {
+        if ( isLatest ) {
+            return repository.loadModule( packageName );
+        } else {
+            return repository.loadModuleSnapshot( packageName,
+                                                  packageVersion );
+        }
+    }
+
+    private String getBinaryPackageFileName(String packageName,
+                                            String packageVersion,
+                                            boolean isLatest) throws UnsupportedEncodingException {
+        if ( isLatest ) {
             return packageName + ".pkg";
         } else {
-            item = repository.loadModuleSnapshot( packageName,
-                                                   packageVersion );
-            byte[] data = item.getCompiledPackageBytes();
-            out.write( data );
-            out.flush();
             return packageName + "_" + URLEncoder.encode( packageVersion,
                                                           "UTF-8" ) + ".pkg";
         }
-
     }
 
     /**
@@ -239,6 +303,18 @@ public class FileManagerService {
         }
     }
 
+    public void exportPackageFromRepository(String packageName,
+                                            OutputStream out) {
+        try {
+            this.repository.exportModuleFromRepository( packageName,
+                                                        out );
+        } catch ( RepositoryException e ) {
+            throw new RulesRepositoryException( e );
+        } catch ( IOException e ) {
+            throw new RulesRepositoryException( e );
+        }
+    }
+
     public boolean isPackageExist(String packageName) {
         return this.repository.containsModule(packageName);
     }
@@ -247,11 +323,34 @@ public class FileManagerService {
         this.repository.exportRepositoryToStream( out );
     }
 
+    /**
+     * @param since the id of an earlier backup for an incremental backup, or 0 for a full backup.
+     * @param id the id of the backup, the time it is taken at.
+     */
+    public void exportRepositoryBackup(OutputStream out,
+                                       long since,
+                                       long id) {
+        this.repository.exportRepositoryBackup( out,
+                                                since,
+                                                id );
+    }
+
+    @LoggedIn
+    public void importRepositoryBackup(ZipInputStream in,
+                                       ZipEntry firstEntry) {
+        identity.checkPermission( new AdminType(),
+                                  RoleType.ADMIN.getName() );
+        repository.importRepositoryBackup( in,
+                                           firstEntry );
+        ModuleSymbolIndex.getInstance().invalidateAll();
+    }
+
     @LoggedIn
     public void importRulesRepository(InputStream in) {
         identity.checkPermission( new AdminType(),
                                                  RoleType.ADMIN.getName() );
         repository.importRulesRepositoryFromStream( in );
+        ModuleSymbolIndex.getInstance().invalidateAll();
 
         //
         //Migrate v4 ruleflows to v5
@@ -272,9 +371,20 @@ public class FileManagerService {
     @LoggedIn
     public void importPackageToRepository(byte[] data,
                                           boolean importAsNew) {
+        importPackageToRepository( new ByteArrayInputStream( data ),
+                                   importAsNew );
+    }
+
+    /**
+     * Imports the export of a package as it is read from the stream.
+     */
+    @LoggedIn
+    public void importPackageToRepository(InputStream in,
+                                          boolean importAsNew) {
         try {
-            repository.importPackageToRepository( data,
+            repository.importPackageToRepository( in,
                                                   importAsNew );
+            ModuleSymbolIndex.getInstance().invalidateAll();
 
             //
             //Migrate v4 ruleflows to v5
@@ -403,7 +513,7 @@ public class FileManagerService {
         if ( handler.isRuleAsset() ) {
 
             BRMSPackageBuilder builder = new BRMSPackageBuilder();
-            builder.setDSLFiles( DSLLoader.loadDSLMappingFiles( item.getModule() ) );
+            builder.setDSL( DSLLoader.loadCompiledDSL( item.getModule() ) );
             ((IRuleAsset) handler).assembleDRL( builder,
                                                 item,
                                                 stringBuilder );
@@ -128,7 +128,7 @@ public class GuvnorDroolsDocsBuilder extends DroolsDocsBuilder {
 
         StringBuilder stringBuilder = new StringBuilder();
         BRMSPackageBuilder builder = new BRMSPackageBuilder();
-        builder.setDSLFiles(DSLLoader.loadDSLMappingFiles(item.getModule()));
+        builder.setDSL(DSLLoader.loadCompiledDSL(item.getModule()));
         ((IRuleAsset) handler).assembleDRL(builder,
                 item,
                 stringBuilder);
@@ -54,9 +54,6 @@ public class PackageDeploymentServlet extends RepositoryServlet {
     private static final String RFC822DATEFORMAT = "EEE', 'dd' 'MMM' 'yyyy' 'HH:mm:ss' 'Z";
     private static final Locale HEADER_LOCALE = Locale.US;
 
-    @Inject
-    private RulesRepository rulesRepository;
-
     @Inject
     private ServiceImplementation serviceImplementation;
 
@@ -133,13 +130,15 @@ public class PackageDeploymentServlet extends RepositoryServlet {
      * if you pass in "LATEST" it will get the latest (not a snapshot) if it exists.
      * Normally that will only be used when downloading on demand, otherwise you should ONLY
      * use a snapshot as they are always "up to date".
+     * <p/>
+     * The repository session is leased from the pool for the time of the request.
      */
     protected void doGet(final HttpServletRequest req,
                          final HttpServletResponse res) throws ServletException,
             IOException {
 
-        doAuthorizedAction(req, res, new Command() {
-            public void execute() throws Exception {
+        doAuthorizedReadAction(req, res, new ReadCommand() {
+            public void execute(RulesRepository rulesRepository) throws Exception {
                 PackageDeploymentURIHelper helper = new PackageDeploymentURIHelper(req.getRequestURI());
 
                 log.info("PackageName: " + helper.getPackageName());
@@ -187,7 +186,8 @@ public class PackageDeploymentServlet extends RepositoryServlet {
                 } else {
                     if (req.getRequestURI().endsWith("SCENARIOS")) {
                         fileName = "TestScenariosResult.txt";
-                        doRunScenarios(helper,
+                        doRunScenarios(rulesRepository,
+                                helper,
                                 out);
                     } else if (req.getRequestURI().endsWith("ChangeSet.xml")) {
                         String url = req.getRequestURL().toString().replace("/ChangeSet.xml",
@@ -259,10 +259,12 @@ public class PackageDeploymentServlet extends RepositoryServlet {
                         out.write(asset.getBinaryContentAsBytes());
 
                     } else {
-                        fileName = fileManagerService.loadBinaryPackage(helper.getPackageName(),
+                        // unlike the other downloads, the compiled package is not buffered
+                        fileManagerService.sendBinaryPackage(helper.getPackageName(),
                                 helper.getVersion(),
                                 helper.isLatest(),
-                                out);
+                                res);
+                        return;
                     }
 
                 }
@@ -277,7 +279,8 @@ public class PackageDeploymentServlet extends RepositoryServlet {
         });
     }
 
-    private void doRunScenarios(PackageDeploymentURIHelper helper,
+    private void doRunScenarios(RulesRepository rulesRepository,
+                                PackageDeploymentURIHelper helper,
                                 ByteArrayOutputStream out) throws IOException {
         ModuleItem pkg;
         if (helper.isLatest()) {
@@ -20,6 +20,7 @@ import org.apache.commons.fileupload.FileItem;
 import org.drools.RuntimeDroolsException;
 import org.drools.guvnor.server.util.FormData;
 import org.drools.guvnor.server.util.LoggingHelper;
+import org.drools.repository.backup.RepositoryBackupWriter;
 
 import javax.inject.Inject;
 import javax.jcr.PathNotFoundException;
@@ -38,6 +39,11 @@ import java.util.zip.ZipOutputStream;
 
 /**
  * This servlet deals with import and export of the repository to XML/zip files.
+ * With "backup=true" (and optionally "since"), the repository is exported as a
+ * backup that stores every binary once, see {@link RepositoryBackupWriter};
+ * such a backup is recognised and restored when it is uploaded. The id of the
+ * backup, to pass as "since" for the next incremental one, is sent in the
+ * "X-Guvnor-Backup-Id" header (and is in the backup.properties entry).
  */
 public class RepositoryBackupServlet extends RepositoryServlet {
 
@@ -46,6 +52,8 @@ public class RepositoryBackupServlet extends RepositoryServlet {
 
     private static final List<String> zipMimeTypes = new ArrayList<String>();
 
+    public static final String BACKUP_ID_HEADER = "X-Guvnor-Backup-Id";
+
     @Inject
     private FileManagerService fileManagerService;
 
@@ -89,7 +97,12 @@ public class RepositoryBackupServlet extends RepositoryServlet {
                             if (isFileZipped(uploadItem.getFile())) {
                                 ZipInputStream zipInputStream = new ZipInputStream(is);
                                 ZipEntry zipEntry = zipInputStream.getNextEntry();
-                                if (zipEntry != null) {
+                                if (zipEntry != null && RepositoryBackupWriter.PROPERTIES_ENTRY.equals(zipEntry.getName())) {
+                                    response.getWriter().write(processImportRepositoryBackup(zipInputStream,
+                                            zipEntry));
+                                    zipInputStream.close();
+                                    return;
+                                } else if (zipEntry != null) {
                                     is = zipInputStream;
                                 } else {
                                     new RuntimeDroolsException("Invalid compressed reporitory");
@@ -131,7 +144,11 @@ public class RepositoryBackupServlet extends RepositoryServlet {
                         try {
                             String packageName = req.getParameter("packageName");
 
-                            if (packageName == null) {
+                            if (packageName == null && "true".equals(req.getParameter("backup"))) {
+                                String since = req.getParameter("since");
+                                processExportRepositoryBackupDownload(res,
+                                        since == null ? 0 : Long.parseLong(since));
+                            } else if (packageName == null) {
                                 processExportRepositoryDownload(res);
                             } else {
                                 if(fileManagerService.isPackageExist(packageName)) {
@@ -183,6 +200,29 @@ public class RepositoryBackupServlet extends RepositoryServlet {
         log.debug("Done exporting!");
     }
 
+    /**
+     * Streams a backup with the binaries stored once. With "since" set to the id of an earlier
+     * backup, only the modules and snapshots changed since then are in the backup.
+     */
+    private void processExportRepositoryBackupDownload(HttpServletResponse res,
+                                                       long since)
+            throws IOException {
+        log.debug("Exporting repository backup...");
+        res.setContentType("application/zip");
+        res.setHeader("Content-Disposition",
+                "attachment; filename=" + (since > 0 ? "repository_backup_incremental.zip;" : "repository_backup.zip;"));
+
+        //the id is taken before the repository is read, and sent before the backup itself
+        long id = System.currentTimeMillis();
+        res.setHeader(BACKUP_ID_HEADER,
+                String.valueOf(id));
+        fileManagerService.exportRepositoryBackup(res.getOutputStream(),
+                since,
+                id);
+        res.getOutputStream().flush();
+        log.debug("Done exporting repository backup " + id);
+    }
+
     private void processExportPackageFromRepositoryDownload(
             HttpServletResponse res,
             String packageName)
@@ -194,8 +234,8 @@ public class RepositoryBackupServlet extends RepositoryServlet {
                 "inline; filename=" + packageName
                         + ".zip;");
 
-        res.getOutputStream().write(
-                fileManagerService.exportPackageFromRepository(packageName));
+        fileManagerService.exportPackageFromRepository(packageName,
+                res.getOutputStream());
         res.getOutputStream().flush();
     }
 
@@ -204,12 +244,17 @@ public class RepositoryBackupServlet extends RepositoryServlet {
         return "OK";
     }
 
+    private String processImportRepositoryBackup(ZipInputStream file,
+                                                 ZipEntry firstEntry) {
+        fileManagerService.importRepositoryBackup(file,
+                firstEntry);
+        return "OK";
+    }
+
     private String processImportPackage(InputStream file,
                                         boolean importAsNew)
             throws IOException {
-        byte[] byteArray = new byte[file.available()];
-        file.read(byteArray);
-        fileManagerService.importPackageToRepository(byteArray,
+        fileManagerService.importPackageToRepository(file,
                 importAsNew);
         return "OK";
     }
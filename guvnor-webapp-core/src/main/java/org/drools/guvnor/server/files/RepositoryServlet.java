@@ -16,7 +16,10 @@
 
 package org.drools.guvnor.server.files;
 
+import org.drools.guvnor.server.repository.RepositorySessionPool;
+import org.drools.guvnor.server.repository.RulesRepositoryManager;
 import org.drools.repository.RulesRepository;
+import org.jboss.seam.security.Identity;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -41,6 +44,12 @@ public class RepositoryServlet extends HttpServlet {
     @Inject
     protected AuthorizationHeaderChecker authorizationHeaderChecker;
 
+    @Inject
+    protected RepositorySessionPool repositorySessionPool;
+
+    @Inject
+    protected Identity identity;
+
     /**
      * Here we perform the action in the appropriate security context.
      */
@@ -68,8 +77,36 @@ public class RepositoryServlet extends HttpServlet {
         }
     }
 
+    /**
+     * Performs a read only action in the appropriate security context, with
+     * a repository whose session is leased from the pool for the time of the
+     * action.
+     */
+    void doAuthorizedReadAction(HttpServletRequest req,
+                                HttpServletResponse res,
+                                final ReadCommand action) throws IOException {
+        doAuthorizedAction(req,
+                res,
+                new Command() {
+                    public void execute() throws Exception {
+                        String userName = RulesRepositoryManager.getUserName(identity);
+                        RulesRepository repository = new RulesRepository(repositorySessionPool.leaseSession(userName));
+                        try {
+                            action.execute(repository);
+                        } finally {
+                            repositorySessionPool.returnSession(userName,
+                                    repository.getSession());
+                        }
+                    }
+                });
+    }
+
     static interface Command {
         public void execute() throws Exception;
     }
 
+    static interface ReadCommand {
+        public void execute(RulesRepository repository) throws Exception;
+    }
+
 }
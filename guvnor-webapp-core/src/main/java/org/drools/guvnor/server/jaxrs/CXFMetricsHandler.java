@@ -0,0 +1,41 @@
+/*
+ * Copyright 2012 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.drools.guvnor.server.jaxrs;
+
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.Provider;
+
+import org.apache.cxf.jaxrs.ext.ResponseHandler;
+import org.apache.cxf.jaxrs.model.OperationResourceInfo;
+import org.apache.cxf.message.Message;
+import org.drools.guvnor.server.metrics.RequestMetrics;
+
+/**
+ * Names the request measured by the MetricsFilter after the resource method
+ * that served it.
+ */
+@Provider
+public class CXFMetricsHandler implements ResponseHandler {
+
+    public Response handleResponse(Message m, OperationResourceInfo ori, Response response) {
+        if (ori != null) {
+            RequestMetrics.getInstance().setOperation("rest:" + ori.getClassResourceInfo().getServiceClass().getSimpleName()
+                    + "." + ori.getMethodToInvoke().getName());
+        }
+        return null;
+    }
+}
@@ -24,35 +24,47 @@ import org.apache.abdera.model.Entry;
 import org.apache.abdera.model.ExtensibleElement;
 import org.apache.abdera.model.Feed;
 import org.apache.abdera.model.Link;
+import org.apache.commons.io.IOUtils;
+import org.apache.cxf.jaxrs.ext.multipart.Attachment;
+import org.apache.cxf.jaxrs.ext.multipart.MultipartBody;
 import org.drools.guvnor.client.rpc.BuilderResult;
 import org.drools.guvnor.client.rpc.BuilderResultLine;
 import org.drools.guvnor.server.builder.PackageDRLAssembler;
 import org.drools.guvnor.server.jaxrs.jaxb.Asset;
+import org.drools.guvnor.server.jaxrs.jaxb.AssetBatchItem;
+import org.drools.guvnor.server.jaxrs.jaxb.AssetBatchResult;
 import org.drools.guvnor.server.jaxrs.jaxb.Package;
 import org.drools.repository.AssetHistoryIterator;
 import org.drools.repository.AssetItem;
+import org.drools.repository.AssetItemIterator;
 import org.drools.repository.ModuleHistoryIterator;
 import org.drools.repository.ModuleItem;
-import org.drools.repository.ModuleIterator;
+import org.drools.repository.VersionableItem;
 
 import javax.enterprise.context.RequestScoped;
 import javax.inject.Named;
 
+import javax.jcr.RepositoryException;
 import javax.ws.rs.*;
 import javax.ws.rs.core.*;
 
 import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
 import java.net.URI;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
-import java.util.Collection;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.Set;
 import java.util.TimeZone;
 
 import static org.drools.guvnor.server.jaxrs.Translator.*;
@@ -73,6 +85,21 @@ import static org.drools.guvnor.server.jaxrs.Translator.*;
 @RequestScoped
 @Named
 public class PackageResource extends Resource {
+
+    /**
+     * The largest page the listings return, set with the "guvnor.rest.maxPageSize" system
+     * property. 0, the default, does not limit the pages.
+     */
+    private static final int MAX_PAGE_SIZE = Integer.getInteger("guvnor.rest.maxPageSize",
+            0);
+
+    /**
+     * How many assets the bulk update saves at once, set with the "guvnor.rest.batchSize"
+     * system property.
+     */
+    private static final int BATCH_SIZE = Integer.getInteger("guvnor.rest.batchSize",
+            100);
+
     private HttpHeaders headers;
 
     @Context
@@ -82,14 +109,21 @@ public class PackageResource extends Resource {
 
     @GET
     @Produces(MediaType.APPLICATION_ATOM_XML)
-    public Feed getPackagesAsFeed() {
+    public Response getPackagesAsFeed(@QueryParam("cursor") String cursor,
+                                      @QueryParam("limit") Integer limit,
+                                      @Context Request request) {
+        Page<ModuleItem> page = listModules(cursor, limit);
+        EntityTag tag = page.getEntityTag("atom");
+        Response.ResponseBuilder notModified = request.evaluatePreconditions(tag);
+        if (notModified != null) {
+            return notModified.build();
+        }
+
         Factory factory = Abdera.getNewFactory();
         Feed f = factory.getAbdera().newFeed();
         f.setTitle("Packages");
         f.setBaseUri(uriInfo.getBaseUriBuilder().path("packages").build().toString());
-        ModuleIterator iter = rulesRepository.listModules();
-        while (iter.hasNext()) {
-            ModuleItem item = iter.next();
+        for (ModuleItem item : page.items) {
             Entry e = factory.getAbdera().newEntry();
             e.setTitle(item.getName());
             Link l = factory.newLink();
@@ -100,20 +134,38 @@ public class PackageResource extends Resource {
             e.addLink(l);
             f.addEntry(e);
         }
+        if (page.next != null) {
+            f.addLink(page.next.toString(), "next");
+        }
 
-        return f;
+        return page.toResponse(f, tag);
     }
 
     @GET
     @Produces({MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML})
-    public Collection<Package> getPackagesAsJAXB() {
+    public Response getPackagesAsJAXB(@QueryParam("cursor") String cursor,
+                                      @QueryParam("limit") Integer limit,
+                                      @QueryParam("fields") String fields,
+                                      @Context Request request) {
+        Set<String> selectedFields = parseFields(fields, PACKAGE_FIELDS);
+        Page<ModuleItem> page = listModules(cursor, limit);
+        //The assets of the packages are not part of the tag, the listing is only validated without them
+        EntityTag tag = null;
+        if (selectedFields != null && !selectedFields.contains("assets")) {
+            tag = page.getEntityTag("jaxb");
+            Response.ResponseBuilder notModified = request.evaluatePreconditions(tag);
+            if (notModified != null) {
+                return notModified.build();
+            }
+        }
+
         List<Package> ret = new ArrayList<Package>();
-        ModuleIterator iter = rulesRepository.listModules();
-        while (iter.hasNext()) {
-            //REVIST: Do not return detailed package info here. Package title and link should be enough. 
-            ret.add(toPackage(iter.next(), uriInfo));
+        for (ModuleItem item : page.items) {
+            //Only the fields asked for are filled in, the assets of each package are walked unless left out.
+            ret.add(toPackage(item, uriInfo, selectedFields));
         }
-        return ret;
+        return page.toResponse(new GenericEntity<List<Package>>(ret) {
+        }, tag);
     }
 
     @POST
@@ -223,10 +275,7 @@ public class PackageResource extends Resource {
         try {
             ModuleItem p = rulesRepository.loadModule(packageName);
             String fileName = packageName + ".pkg";
-            byte[] result;
-            if (p.isBinaryUpToDate()) {
-                result = p.getCompiledPackageBytes();
-            } else {
+            if (!p.isBinaryUpToDate()) {
                 BuilderResult builderResult = repositoryPackageService.buildPackage(p.getUUID(), true);
                 if (builderResult != null) {
                     StringBuilder errs = new StringBuilder();
@@ -236,10 +285,13 @@ public class PackageResource extends Resource {
                     }
                     return Response.status(500).entity(errs.toString()).build();
                 }
-                result = rulesRepository.loadModule(packageName).getCompiledPackageBytes();
+                p = rulesRepository.loadModule(packageName);
+            }
+            Response.ResponseBuilder result = binaryResponse(p, fileName);
+            if (result == null) {
+                return Response.status(500).entity("This package has no compiled binary").type("text/plain").build();
             }
-            return Response.ok(result).header("Content-Disposition", "attachment; filename=" + fileName).
-                    header("Last-Modified", createDateFormat().format(this.convertToGmt(p.getLastModified()).getTime())).build();
+            return result.build();
         } catch (Exception e) {
             //catch RulesRepositoryException and other exceptions. For example when the package does not exists.
             throw new WebApplicationException(e);
@@ -309,16 +361,30 @@ public class PackageResource extends Resource {
     public Response getHistoricalPackageBinary(@PathParam("packageName") String packageName,
                                                @PathParam("versionNumber") long versionNumber) throws SerializationException {
         ModuleItem p = rulesRepository.loadModule(packageName, versionNumber);
-        byte[] result = p.getCompiledPackageBytes();
+        Response.ResponseBuilder result = binaryResponse(p, packageName + ".pkg");
         if (result != null) {
-            String fileName = packageName + ".pkg";
-            return Response.ok(result).header("Content-Disposition", "attachment; filename=" + fileName).
-                    header("Last-Modified", createDateFormat().format(this.convertToGmt(p.getLastModified()).getTime())).build();
+            return result.build();
         } else {
             return Response.status(500).entity("This package version has no compiled binary").type("text/plain").build();
         }
     }
 
+    /**
+     * The compiled binary of a package is streamed from the repository as the response is
+     * written, rather than read into memory first.
+     *
+     * @return null if the package has no compiled binary.
+     */
+    private Response.ResponseBuilder binaryResponse(ModuleItem p, String fileName) {
+        InputStream result = p.getCompiledPackageStream();
+        if (result == null) {
+            return null;
+        }
+        return Response.ok(result).header("Content-Disposition", "attachment; filename=" + fileName).
+                header("Content-Length", p.getCompiledPackageSize()).
+                header("Last-Modified", createDateFormat().format(this.convertToGmt(p.getLastModified()).getTime()));
+    }
+
     @PUT
     @Path("{packageName}")
     @Consumes(MediaType.APPLICATION_ATOM_XML)
@@ -396,29 +462,33 @@ public class PackageResource extends Resource {
     @GET
     @Path("{packageName}/assets")
     @Produces(MediaType.APPLICATION_ATOM_XML)
-    public Feed getAssetsAsAtom(
+    public Response getAssetsAsAtom(
             @PathParam("packageName") String packageName,
-            @QueryParam("format") List<String> formats) {
+            @QueryParam("format") List<String> formats,
+            @QueryParam("cursor") String cursor,
+            @QueryParam("limit") Integer limit,
+            @Context Request request) {
         try {
+            ModuleItem p = rulesRepository.loadModule(packageName);
+            Page<AssetItem> page = listAssets(p, formats, cursor, limit);
+            EntityTag tag = page.getEntityTag("atom");
+            Response.ResponseBuilder notModified = request.evaluatePreconditions(tag);
+            if (notModified != null) {
+                return notModified.build();
+            }
+
             Factory factory = Abdera.getNewFactory();
             Feed feed = factory.getAbdera().newFeed();
-            ModuleItem p = rulesRepository.loadModule(packageName);
             feed.setTitle(p.getTitle() + "-asset-feed");
-            
-            Iterator<AssetItem> iter = null;
-            
-            if (formats.isEmpty()){
-                //no format specified? Return all assets
-                iter = p.getAssets();
-            }else{
-                //if the format is specified, return only the assets of
-                //the specified formats.
-                iter = p.listAssetsByFormat(formats);
+            for (AssetItem item : page.items) {
+                feed.addEntry(toAssetEntryAbdera(item, uriInfo));
             }
-            
-            while (iter.hasNext())
-                feed.addEntry(toAssetEntryAbdera(iter.next(), uriInfo));
-            return feed;
+            if (page.next != null) {
+                feed.addLink(page.next.toString(), "next");
+            }
+            return page.toResponse(feed, tag);
+        } catch (WebApplicationException e) {
+            throw e;
         } catch (Exception e) {
             throw new WebApplicationException(e);
         }
@@ -427,33 +497,209 @@ public class PackageResource extends Resource {
     @GET
     @Path("{packageName}/assets")
     @Produces({MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML})
-    public Collection<Asset> getAssetsAsJAXB(
+    public Response getAssetsAsJAXB(
             @PathParam("packageName") String packageName,
-            @QueryParam("format") List<String> formats) {
+            @QueryParam("format") List<String> formats,
+            @QueryParam("cursor") String cursor,
+            @QueryParam("limit") Integer limit,
+            @QueryParam("fields") String fields,
+            @Context Request request) {
         try {
-            List<Asset> ret = new ArrayList<Asset>();
+            Set<String> selectedFields = parseFields(fields, ASSET_FIELDS);
             ModuleItem p = rulesRepository.loadModule(packageName);
-            
-            Iterator<AssetItem> iter = null;
-            
-            if (formats.isEmpty()){
-                //no format specified? Return all assets
-                iter = p.getAssets();
-            }else{
-                //if the format is specified, return only the assets of
-                //the specified formats.
-                iter = p.listAssetsByFormat(formats);
+            Page<AssetItem> page = listAssets(p, formats, cursor, limit);
+            EntityTag tag = page.getEntityTag("jaxb");
+            Response.ResponseBuilder notModified = request.evaluatePreconditions(tag);
+            if (notModified != null) {
+                return notModified.build();
             }
-            
-            while (iter.hasNext()) {
-                ret.add(toAsset(iter.next(), uriInfo));
+
+            List<Asset> ret = new ArrayList<Asset>();
+            for (AssetItem item : page.items) {
+                ret.add(toAsset(item, uriInfo, selectedFields));
             }
-            return ret;
+            return page.toResponse(new GenericEntity<List<Asset>>(ret) {
+            }, tag);
+        } catch (WebApplicationException e) {
+            throw e;
         } catch (Exception e) {
             throw new WebApplicationException(e);
         }
     }
 
+    /**
+     * Reads a page of the modules. Only the modules up to the end of the page are walked.
+     */
+    private Page<ModuleItem> listModules(String cursor,
+                                         Integer limit) {
+        Page<ModuleItem> page = new Page<ModuleItem>(parseCursor(cursor), pageSize(limit));
+        return page.read(rulesRepository.listModules());
+    }
+
+    /**
+     * Reads a page of the assets of a module, all of them or those of the given formats. Only
+     * the assets of the page are loaded.
+     */
+    private Page<AssetItem> listAssets(ModuleItem p,
+                                       List<String> formats,
+                                       String cursor,
+                                       Integer limit) {
+        Page<AssetItem> page = new Page<AssetItem>(parseCursor(cursor), pageSize(limit));
+        if (formats.isEmpty()) {
+            //no format specified? Return all assets
+            return page.read(p.getAssets());
+        }
+        //if the format is specified, return only the assets of
+        //the specified formats.
+        return page.read(p.listAssetsByFormat(formats));
+    }
+
+    private int parseCursor(String cursor) {
+        if (cursor == null || cursor.length() == 0) {
+            return 0;
+        }
+        try {
+            int start = Integer.parseInt(cursor);
+            if (start >= 0) {
+                return start;
+            }
+        } catch (NumberFormatException e) {
+            //reported below
+        }
+        throw new WebApplicationException(Response.status(Response.Status.BAD_REQUEST)
+                .entity("Invalid cursor [" + cursor + "]").type(MediaType.TEXT_PLAIN).build());
+    }
+
+    /**
+     * @return the number of items of the page, -1 for all of them. An empty page would
+     *         link to itself as the next one, so the limit must be positive.
+     */
+    private int pageSize(Integer limit) {
+        if (limit != null && limit <= 0) {
+            throw new WebApplicationException(Response.status(Response.Status.BAD_REQUEST)
+                    .entity("Invalid limit [" + limit + "]").type(MediaType.TEXT_PLAIN).build());
+        }
+        if (MAX_PAGE_SIZE > 0 && (limit == null || limit > MAX_PAGE_SIZE)) {
+            return MAX_PAGE_SIZE;
+        }
+        return limit == null ? -1 : limit;
+    }
+
+    /**
+     * @return the fields asked for, or null for all of them.
+     */
+    private Set<String> parseFields(String fields,
+                                    Set<String> supportedFields) {
+        if (fields == null || fields.trim().length() == 0) {
+            return null;
+        }
+        Set<String> selectedFields = new HashSet<String>();
+        for (String field : fields.split(",")) {
+            field = field.trim();
+            if (field.length() == 0) {
+                continue;
+            }
+            if (!supportedFields.contains(field)) {
+                throw new WebApplicationException(Response.status(Response.Status.BAD_REQUEST)
+                        .entity("Unknown field [" + field + "], the supported fields are " + supportedFields)
+                        .type(MediaType.TEXT_PLAIN).build());
+            }
+            selectedFields.add(field);
+        }
+        return selectedFields;
+    }
+
+    /**
+     * A page of a listing: the items, the link to the next page if there is one, and what the
+     * response is validated with. The cursor of a page is the position of its first item.
+     */
+    private class Page<T extends VersionableItem> {
+
+        private final int start;
+        private final int limit;
+        private final List<T> items = new ArrayList<T>();
+        private URI next;
+
+        private Page(int start,
+                     int limit) {
+            this.start = start;
+            this.limit = limit;
+        }
+
+        private Page<T> read(Iterator<T> iter) {
+            if (start > 0) {
+                try {
+                    if (iter instanceof AssetItemIterator) {
+                        ((AssetItemIterator) iter).skip(start);
+                    } else {
+                        for (int i = 0; i < start; i++) {
+                            iter.next();
+                        }
+                    }
+                } catch (NoSuchElementException e) {
+                    //past the last item, the page is empty
+                    return this;
+                }
+            }
+            while (iter.hasNext() && (limit < 0 || items.size() < limit)) {
+                items.add(iter.next());
+            }
+            if (iter.hasNext()) {
+                next = uriInfo.getRequestUriBuilder()
+                        .replaceQueryParam("cursor", start + items.size())
+                        .replaceQueryParam("limit", limit)
+                        .build();
+            }
+            return this;
+        }
+
+        /**
+         * The tag is made of the version and the modification date of each item of the page,
+         * and of whether a page follows, so it changes when an item of the page is added,
+         * changed or removed. It differs between the pages, the representations and the query
+         * parameters of a listing.
+         */
+        private EntityTag getEntityTag(String representation) {
+            StringBuilder key = new StringBuilder(representation);
+            key.append('|').append(uriInfo.getRequestUri().getRawQuery());
+            if (headers != null) {
+                key.append('|').append(headers.getRequestHeaders().getFirst(HttpHeaders.ACCEPT));
+            }
+            for (T item : items) {
+                Calendar lastModified = item.getLastModified();
+                key.append('|').append(item.getUUID())
+                        .append('@').append(item.getVersionNumber())
+                        .append('@').append(lastModified == null ? 0 : lastModified.getTimeInMillis());
+            }
+            key.append('|').append(next != null);
+            try {
+                byte[] digest = MessageDigest.getInstance("SHA-1").digest(key.toString().getBytes("UTF-8"));
+                StringBuilder tag = new StringBuilder();
+                for (byte b : digest) {
+                    tag.append(Character.forDigit((b >> 4) & 0xf, 16));
+                    tag.append(Character.forDigit(b & 0xf, 16));
+                }
+                return new EntityTag(tag.toString());
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            } catch (UnsupportedEncodingException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private Response toResponse(Object entity,
+                                    EntityTag tag) {
+            Response.ResponseBuilder builder = Response.ok(entity);
+            if (tag != null) {
+                builder.tag(tag);
+            }
+            if (next != null) {
+                builder.header("Link", "<" + next + ">; rel=\"next\"");
+            }
+            return builder.build();
+        }
+    }
+
     @GET
     @Path("{packageName}/assets/{assetName}")
     @Produces(MediaType.APPLICATION_ATOM_XML)
@@ -573,6 +819,237 @@ public class PackageResource extends Resource {
         }
     }
 
+    /**
+     * Creates or updates many assets of a package in one request. Each part of the body is
+     * an asset, named (with its format as extension) by its Slug header or the file name of
+     * its Content-Disposition, and described by its Content-Description header if it has one.
+     * Text and XML parts become the content of the asset, other parts its binary attachment.
+     * The assets are checked in with one comment, saved "guvnor.rest.batchSize" at a time
+     * (100 by default), and the package is built once at the end if "build" is true.
+     *
+     * The assets that do not exist yet are created first, empty, so that creating them does
+     * not save the changes of other parts. An asset reported as failed is left as it was
+     * (an asset created for it is removed); an asset whose changes were saved but could not
+     * be versioned is reported as created or updated, with no version and with the error as
+     * message.
+     */
+    @POST
+    @Path("{packageName}/assets")
+    @Consumes("multipart/mixed")
+    @Produces({MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML})
+    public AssetBatchResult createOrUpdateAssets(@PathParam("packageName") String packageName,
+                                                 @QueryParam("comment") @DefaultValue("Bulk update from REST interface") String comment,
+                                                 @QueryParam("build") @DefaultValue("false") boolean build,
+                                                 MultipartBody body) {
+        try {
+            //Throws RulesRepositoryException if the package does not exist
+            ModuleItem module = rulesRepository.loadModule(packageName);
+            AssetBatchResult result = new AssetBatchResult();
+
+            List<Attachment> parts = body.getAllAttachments();
+            List<BatchPart> batchParts = new ArrayList<BatchPart>(parts.size());
+            for (Attachment part : parts) {
+                AssetBatchItem item = new AssetBatchItem();
+                result.getAssets().add(item);
+                try {
+                    batchParts.add(createBatchPart(module, part, item));
+                } catch (Exception e) {
+                    item.setStatus(AssetBatchItem.FAILED);
+                    item.setMessage(e.getMessage());
+                }
+            }
+
+            List<BatchPart> batch = new ArrayList<BatchPart>();
+            for (BatchPart batchPart : batchParts) {
+                try {
+                    applyBatchPart(batchPart);
+                    batch.add(batchPart);
+                } catch (Exception e) {
+                    batchPart.item.setStatus(AssetBatchItem.FAILED);
+                    batchPart.item.setMessage(e.getMessage());
+                    continue;
+                }
+                if (batch.size() >= BATCH_SIZE) {
+                    checkinBatch(module, batch, comment);
+                }
+            }
+            checkinBatch(module, batch, comment);
+            removeFailedCreations(batchParts);
+
+            if (build && hasChanges(result)) {
+                BuilderResult builderResult = repositoryPackageService.buildPackage(module.getUUID(), true);
+                result.setBuilt(!builderResult.hasLines());
+                for (BuilderResultLine line : builderResult.getLines()) {
+                    result.getBuildErrors().add(line.getAssetName() + ": " + line.getMessage());
+                }
+            }
+            return result;
+        } catch (Exception e) {
+            throw new WebApplicationException(e);
+        }
+    }
+
+    /**
+     * Finds the asset of a part, creating it (empty) if it does not exist yet. Creating an
+     * asset saves it, so this is done before any part is applied.
+     */
+    private BatchPart createBatchPart(ModuleItem module, Attachment part, AssetBatchItem item) throws Exception {
+        String partName = part.getHeader("Slug");
+        if (partName != null) {
+            partName = URLDecoder.decode(partName, "UTF-8");
+        } else if (part.getContentDisposition() != null) {
+            partName = part.getContentDisposition().getParameter("filename");
+        }
+        if (partName == null || partName.trim().length() == 0) {
+            throw new IllegalArgumentException("Slug header is missing");
+        }
+        String assetName = partName;
+        String format = null;
+        if (partName.lastIndexOf(".") != -1) {
+            assetName = partName.substring(0, partName.lastIndexOf("."));
+            format = partName.substring(partName.lastIndexOf(".") + 1);
+        }
+        item.setName(assetName);
+        String description = part.getHeader("Content-Description");
+
+        boolean created = !module.containsAsset(assetName);
+        AssetItem asset;
+        if (created) {
+            asset = module.addAsset(assetName, description != null ? description : "", null, format);
+        } else {
+            asset = module.loadAsset(assetName);
+        }
+        return new BatchPart(part, item, asset, format, description, created);
+    }
+
+    /**
+     * Changes the asset of a part, without checking it in. If that fails, what was changed
+     * is undone.
+     */
+    private void applyBatchPart(BatchPart batchPart) throws Exception {
+        AssetItem asset = batchPart.asset;
+        try {
+            asset.checkout();
+            if (!batchPart.created) {
+                if (batchPart.format != null && !batchPart.format.equals(asset.getFormat())) {
+                    asset.updateFormat(batchPart.format);
+                }
+                if (batchPart.description != null) {
+                    asset.updateDescription(batchPart.description);
+                }
+            }
+            MediaType contentType = batchPart.part.getContentType();
+            InputStream content = batchPart.part.getDataHandler().getInputStream();
+            if ("text".equals(contentType.getType()) || MediaType.APPLICATION_XML_TYPE.isCompatible(contentType)) {
+                String charset = contentType.getParameters().get("charset");
+                asset.updateContent(IOUtils.toString(content, charset != null ? charset : "UTF-8"));
+            } else {
+                asset.updateBinaryContentAttachmentFileName(asset.getName());
+                asset.updateBinaryContentAttachment(content);
+            }
+        } catch (Exception e) {
+            asset.getNode().refresh(false);
+            throw e;
+        }
+        batchPart.item.setStatus(batchPart.created ? AssetBatchItem.CREATED : AssetBatchItem.UPDATED);
+    }
+
+    /**
+     * Checks in the assets changed so far, along with the package, which is marked to be
+     * built again. Their changes are saved at once, then each of them is versioned: if the
+     * save fails none of them is changed, if the versioning fails the assets that were not
+     * versioned keep their saved changes.
+     */
+    private void checkinBatch(ModuleItem module, List<BatchPart> batch, String comment) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<AssetItem> assets = new ArrayList<AssetItem>(batch.size());
+        for (BatchPart batchPart : batch) {
+            assets.add(batchPart.asset);
+        }
+        RuntimeException failure = null;
+        try {
+            module.updateBinaryUpToDate(false);
+            rulesRepository.checkinAssets(assets, comment);
+        } catch (RuntimeException e) {
+            failure = e;
+        }
+
+        try {
+            for (BatchPart batchPart : batch) {
+                AssetItem asset = batchPart.asset;
+                AssetBatchItem item = batchPart.item;
+                if (failure != null && asset.getNode().isModified()) {
+                    item.setStatus(AssetBatchItem.FAILED);
+                    item.setMessage(failure.getMessage());
+                } else if (failure != null && asset.getNode().isCheckedOut()) {
+                    item.setMessage("Saved, but not versioned: " + failure.getMessage());
+                } else {
+                    item.setVersion(asset.getVersionNumber());
+                }
+                if (!AssetBatchItem.FAILED.equals(item.getStatus())) {
+                    item.setRefLink(uriInfo.getBaseUriBuilder()
+                            .path("/packages/{packageName}/assets/{assetName}")
+                            .build(module.getName(), item.getName()));
+                }
+            }
+            if (failure != null) {
+                rulesRepository.getSession().refresh(false);
+            }
+        } catch (RepositoryException re) {
+            throw new WebApplicationException(re);
+        }
+        batch.clear();
+    }
+
+    /**
+     * Removes the assets that were created for parts that failed, in one save.
+     */
+    private void removeFailedCreations(List<BatchPart> batchParts) {
+        boolean removed = false;
+        for (BatchPart batchPart : batchParts) {
+            if (batchPart.created && AssetBatchItem.FAILED.equals(batchPart.item.getStatus())) {
+                batchPart.asset.remove();
+                removed = true;
+            }
+        }
+        if (removed) {
+            rulesRepository.save();
+        }
+    }
+
+    /**
+     * A part of a batch, with the asset it applies to.
+     */
+    private static class BatchPart {
+
+        private final Attachment part;
+        private final AssetBatchItem item;
+        private final AssetItem asset;
+        private final String format;
+        private final String description;
+        private final boolean created;
+
+        private BatchPart(Attachment part, AssetBatchItem item, AssetItem asset, String format, String description, boolean created) {
+            this.part = part;
+            this.item = item;
+            this.asset = asset;
+            this.format = format;
+            this.description = description;
+            this.created = created;
+        }
+    }
+
+    private boolean hasChanges(AssetBatchResult result) {
+        for (AssetBatchItem item : result.getAssets()) {
+            if (!AssetBatchItem.FAILED.equals(item.getStatus())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     @PUT
     @Path("{packageName}/assets/{assetName}")
     @Consumes(MediaType.APPLICATION_ATOM_XML)
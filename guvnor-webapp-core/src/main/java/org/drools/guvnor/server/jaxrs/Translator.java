@@ -47,6 +47,14 @@ public class Translator {
     public static final QName FORMAT = new QName(NS, "format");
     public static final QName CATEGORIES = new QName(NS, "categories");
 
+    /**
+     * The fields of an asset or a package that can be selected with the "fields" parameter of the listings.
+     */
+    public static final Set<String> ASSET_FIELDS = new HashSet<String>(Arrays.asList(
+            "metadata", "description", "checkInComment", "binaryLink", "sourceLink"));
+    public static final Set<String> PACKAGE_FIELDS = new HashSet<String>(Arrays.asList(
+            "metadata", "description", "checkInComment", "binaryLink", "sourceLink", "assets"));
+
     public static Category toCategory(CategoryItem categoryItem, UriInfo uriInfo) {
         Category category = new Category();
         category.setPath(categoryItem.getFullPath());
@@ -61,75 +69,118 @@ public class Translator {
     }
 
     public static Asset toAsset(AssetItem a, UriInfo uriInfo) {
-        AssetMetadata metadata = new AssetMetadata();
-        metadata.setUuid(a.getUUID());
-        metadata.setTitle(a.getTitle());
-        metadata.setLastModified(a.getLastModified().getTime());
-        metadata.setCreated(a.getCreatedDate().getTime());
-        metadata.setCreatedBy(a.getCreator());
-        metadata.setDisabled(a.getDisabled());
-        metadata.setFormat(a.getFormat());
-        metadata.setNote("<![CDATA[ " + a.getCheckinComment() + " ]]>");
-        List<CategoryItem> categories = a.getCategories();
-        //TODO: Is this a bug since cat's are never assigned to metadata after this?
-        String[] cats = new String[categories.size()];
-        int counter = 0;
-        for (CategoryItem c : categories) {
-            cats[counter++] = c.getName();
-        }
+        return toAsset(a, uriInfo, null);
+    }
 
+    /**
+     * @param fields the fields to fill in (see {@link #ASSET_FIELDS}), or null for all of them.
+     *               The link to the asset and its version are always filled in.
+     */
+    public static Asset toAsset(AssetItem a, UriInfo uriInfo, Set<String> fields) {
         Asset ret = new Asset();
-        ret.setMetadata(metadata);
-        ret.setCheckInComment(a.getCheckinComment());
-        ret.setDescription(a.getDescription());
+        if (hasField(fields, "metadata")) {
+            AssetMetadata metadata = new AssetMetadata();
+            metadata.setUuid(a.getUUID());
+            metadata.setTitle(a.getTitle());
+            metadata.setLastModified(a.getLastModified().getTime());
+            metadata.setCreated(a.getCreatedDate().getTime());
+            metadata.setCreatedBy(a.getCreator());
+            metadata.setDisabled(a.getDisabled());
+            metadata.setFormat(a.getFormat());
+            metadata.setNote("<![CDATA[ " + a.getCheckinComment() + " ]]>");
+            List<CategoryItem> categories = a.getCategories();
+            //TODO: Is this a bug since cat's are never assigned to metadata after this?
+            String[] cats = new String[categories.size()];
+            int counter = 0;
+            for (CategoryItem c : categories) {
+                cats[counter++] = c.getName();
+            }
+            ret.setMetadata(metadata);
+        }
+
+        if (hasField(fields, "checkInComment")) {
+            ret.setCheckInComment(a.getCheckinComment());
+        }
+        if (hasField(fields, "description")) {
+            ret.setDescription(a.getDescription());
+        }
+        String moduleName = a.getModuleName();
         ret.setRefLink(uriInfo.getBaseUriBuilder()
                 .path("/packages/{packageName}/assets/{assetName}")
-                .build(a.getModule().getName(), a.getName()));
-        ret.setBinaryLink(uriInfo.getBaseUriBuilder()
-                .path("/packages/{packageName}/assets/{assetName}/binary")
-                .build(a.getModule().getName(), a.getName()));
-        ret.setSourceLink(uriInfo.getBaseUriBuilder()
-                .path("/packages/{packageName}/assets/{assetName}/source")
-                .build(a.getModule().getName(), a.getName()));
+                .build(moduleName, a.getName()));
+        if (hasField(fields, "binaryLink")) {
+            ret.setBinaryLink(uriInfo.getBaseUriBuilder()
+                    .path("/packages/{packageName}/assets/{assetName}/binary")
+                    .build(moduleName, a.getName()));
+        }
+        if (hasField(fields, "sourceLink")) {
+            ret.setSourceLink(uriInfo.getBaseUriBuilder()
+                    .path("/packages/{packageName}/assets/{assetName}/source")
+                    .build(moduleName, a.getName()));
+        }
         ret.setVersion(a.getVersionNumber());
         return ret;
     }
 
     public static Package toPackage(ModuleItem p, UriInfo uriInfo) {
-        PackageMetadata metadata = new PackageMetadata();
-        metadata.setUuid(p.getUUID());
-        metadata.setCreated(p.getCreatedDate().getTime());
-        metadata.setLastModified(p.getLastModified().getTime());
-        metadata.setLastContributor(p.getLastContributor());
-        metadata.setState((p.getState() != null) ? p.getState().getName() : "");
+        return toPackage(p, uriInfo, null);
+    }
 
+    /**
+     * @param fields the fields to fill in (see {@link #PACKAGE_FIELDS}), or null for all of them.
+     *               The title and version of the package are always filled in. Leaving out
+     *               "assets" saves walking the assets of the package.
+     */
+    public static Package toPackage(ModuleItem p, UriInfo uriInfo, Set<String> fields) {
         Package ret = new Package();
-        ret.setMetadata(metadata);
+        if (hasField(fields, "metadata")) {
+            PackageMetadata metadata = new PackageMetadata();
+            metadata.setUuid(p.getUUID());
+            metadata.setCreated(p.getCreatedDate().getTime());
+            metadata.setLastModified(p.getLastModified().getTime());
+            metadata.setLastContributor(p.getLastContributor());
+            metadata.setState((p.getState() != null) ? p.getState().getName() : "");
+            ret.setMetadata(metadata);
+        }
+
         ret.setVersion(p.getVersionNumber());
         ret.setTitle(p.getTitle());
-        ret.setCheckInComment(p.getCheckinComment());
-        ret.setDescription(p.getDescription());
-
-        ret.setBinaryLink(uriInfo.getBaseUriBuilder()
-                .path("/packages/{packageName}/binary")
-                .build(p.getName()));
-        ret.setSourceLink(uriInfo.getBaseUriBuilder()
-                .path("/packages/{packageName}/source")
-                .build(p.getName()));
-        //ret.setSnapshot(p.getSnapshotName());
-        ret.setVersion(p.getVersionNumber());
-        Iterator<AssetItem> iter = p.getAssets();
-        Set<URI> assets = new HashSet<URI>();
-        while (iter.hasNext()) {
-            AssetItem a = iter.next();
-            Asset asset = toAsset(a, uriInfo);
-            assets.add(asset.getRefLink());
+        if (hasField(fields, "checkInComment")) {
+            ret.setCheckInComment(p.getCheckinComment());
+        }
+        if (hasField(fields, "description")) {
+            ret.setDescription(p.getDescription());
         }
 
-        ret.setAssets(assets);
+        if (hasField(fields, "binaryLink")) {
+            ret.setBinaryLink(uriInfo.getBaseUriBuilder()
+                    .path("/packages/{packageName}/binary")
+                    .build(p.getName()));
+        }
+        if (hasField(fields, "sourceLink")) {
+            ret.setSourceLink(uriInfo.getBaseUriBuilder()
+                    .path("/packages/{packageName}/source")
+                    .build(p.getName()));
+        }
+        //ret.setSnapshot(p.getSnapshotName());
+        if (hasField(fields, "assets")) {
+            Iterator<AssetItem> iter = p.getAssets();
+            Set<URI> assets = new HashSet<URI>();
+            while (iter.hasNext()) {
+                AssetItem a = iter.next();
+                assets.add(uriInfo.getBaseUriBuilder()
+                        .path("/packages/{packageName}/assets/{assetName}")
+                        .build(p.getName(), a.getName()));
+            }
+            ret.setAssets(assets);
+        }
         return ret;
     }
 
+    private static boolean hasField(Set<String> fields, String field) {
+        return fields == null || fields.contains(field);
+    }
+
     public static Entry toPackageEntryAbdera(ModuleItem p, UriInfo uriInfo) {
         URI baseURL;
         if (p.isHistoricalVersion()) {
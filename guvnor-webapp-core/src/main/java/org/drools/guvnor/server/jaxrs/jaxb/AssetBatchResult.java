@@ -0,0 +1,65 @@
+/*
+ * Copyright 2012 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.drools.guvnor.server.jaxrs.jaxb;
+
+import java.util.ArrayList;
+import java.util.List;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+
+/**
+ * The result of creating or updating the assets of a package in one request: an item per
+ * asset sent, in the order they were sent, and the outcome of the package build if one
+ * was asked for.
+ */
+@XmlRootElement()
+public class AssetBatchResult {
+
+    private List<AssetBatchItem> assets = new ArrayList<AssetBatchItem>();
+
+    private boolean built;
+
+    private List<String> buildErrors = new ArrayList<String>();
+
+    @XmlElement(name = "asset")
+    public List<AssetBatchItem> getAssets() {
+        return assets;
+    }
+
+    public void setAssets(List<AssetBatchItem> assets) {
+        this.assets = assets;
+    }
+
+    @XmlElement
+    public boolean isBuilt() {
+        return built;
+    }
+
+    public void setBuilt(boolean built) {
+        this.built = built;
+    }
+
+    @XmlElement(name = "buildError")
+    public List<String> getBuildErrors() {
+        return buildErrors;
+    }
+
+    public void setBuildErrors(List<String> buildErrors) {
+        this.buildErrors = buildErrors;
+    }
+
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2012 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.drools.guvnor.server.metrics;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+/**
+ * Measures the requests of the servlets it is mapped to (see RequestMetrics):
+ * time, status, and the sizes of the request and of the response.
+ *
+ * The operation is named after the servlet path and the HTTP method, unless
+ * the servlet names it more precisely (GWT-RPC and REST do). Neither the path
+ * info nor the query string are recorded, as they may hold names or credentials.
+ */
+public class MetricsFilter
+    implements
+    Filter {
+
+    public void init(FilterConfig filterConfig) throws ServletException {
+    }
+
+    public void doFilter(ServletRequest request,
+                         ServletResponse response,
+                         FilterChain chain) throws IOException,
+                                           ServletException {
+        if ( !(request instanceof HttpServletRequest) || !(response instanceof HttpServletResponse) ) {
+            chain.doFilter( request,
+                            response );
+            return;
+        }
+        HttpServletRequest httpRequest = (HttpServletRequest) request;
+        RequestMetrics.Measurement measurement = RequestMetrics.getInstance().start( "http:" + httpRequest.getMethod() + " " + httpRequest.getServletPath() );
+        if ( measurement == null ) {
+            chain.doFilter( request,
+                            response );
+            return;
+        }
+
+        CountingResponse countingResponse = new CountingResponse( (HttpServletResponse) response );
+        boolean failed = true;
+        try {
+            chain.doFilter( request,
+                            countingResponse );
+            countingResponse.flushWriter();
+            failed = false;
+        } finally {
+            RequestMetrics.getInstance().stop( measurement,
+                                               failed || countingResponse.status >= HttpServletResponse.SC_INTERNAL_SERVER_ERROR,
+                                               request.getContentLength(),
+                                               countingResponse.getCount() );
+        }
+    }
+
+    public void destroy() {
+    }
+
+    /**
+     * Counts the bytes written to the response, and keeps its status.
+     */
+    private static class CountingResponse extends HttpServletResponseWrapper {
+
+        private int                   status = SC_OK;
+        private CountingOutputStream  outputStream;
+        private PrintWriter           writer;
+
+        private CountingResponse(HttpServletResponse response) {
+            super( response );
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            if ( outputStream == null ) {
+                outputStream = new CountingOutputStream( super.getOutputStream() );
+            }
+            return outputStream;
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            if ( writer == null ) {
+                writer = new PrintWriter( new OutputStreamWriter( getOutputStream(),
+                                                                  getCharacterEncoding() ) );
+            }
+            return writer;
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            flushWriter();
+            super.flushBuffer();
+        }
+
+        private void flushWriter() {
+            if ( writer != null ) {
+                writer.flush();
+            }
+        }
+
+        @Override
+        public void setStatus(int status) {
+            this.status = status;
+            super.setStatus( status );
+        }
+
+        @Override
+        @SuppressWarnings("deprecation")
+        public void setStatus(int status,
+                              String message) {
+            this.status = status;
+            super.setStatus( status,
+                             message );
+        }
+
+        @Override
+        public void sendError(int status) throws IOException {
+            this.status = status;
+            super.sendError( status );
+        }
+
+        @Override
+        public void sendError(int status,
+                              String message) throws IOException {
+            this.status = status;
+            super.sendError( status,
+                             message );
+        }
+
+        private long getCount() {
+            return outputStream == null ? 0 : outputStream.count;
+        }
+    }
+
+    private static class CountingOutputStream extends ServletOutputStream {
+
+        private final ServletOutputStream delegate;
+        private long                      count;
+
+        private CountingOutputStream(ServletOutputStream delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            delegate.write( b );
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b,
+                          int off,
+                          int len) throws IOException {
+            delegate.write( b,
+                            off,
+                            len );
+            count += len;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            delegate.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            delegate.close();
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2012 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.drools.guvnor.server.metrics;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+
+import javax.inject.Inject;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.drools.guvnor.server.files.AuthorizationHeaderChecker;
+import org.drools.guvnor.server.repository.RepositorySessionPool;
+import org.drools.guvnor.server.security.AdminType;
+import org.drools.guvnor.server.security.RoleType;
+import org.drools.guvnor.server.verification.ModuleAnalysisJob;
+import org.drools.guvnor.server.verification.VerifierPool;
+import org.jboss.seam.security.Identity;
+
+/**
+ * Prints the request metrics, the repository session pool and the verifier
+ * pool statistics as plain text. A POST with "action=analyseModules" starts the
+ * background analysis of all the modules. Only administrators are answered
+ * (with BASIC authentication, as for the other repository servlets).
+ */
+public class MetricsServlet extends HttpServlet {
+
+    private static final long serialVersionUID = 510l;
+
+    @Inject
+    private RepositorySessionPool repositorySessionPool;
+
+    @Inject
+    private AuthorizationHeaderChecker authorizationHeaderChecker;
+
+    @Inject
+    private Identity identity;
+
+    @Override
+    protected void doGet(HttpServletRequest request,
+                         HttpServletResponse response) throws ServletException,
+            IOException {
+        if (!checkAdmin(request,
+                response)) {
+            return;
+        }
+
+        RequestMetrics metrics = RequestMetrics.getInstance();
+        response.setContentType("text/plain; charset=UTF-8");
+        PrintWriter writer = response.getWriter();
+        writer.println("requests=" + metrics.getRequestCount() + ", errors=" + metrics.getErrorCount()
+                + ", slowRequestThreshold=" + metrics.getSlowRequestThreshold());
+        if (repositorySessionPool != null) {
+            writer.println("sessionPool: " + repositorySessionPool.getStatistics());
+        }
+        writer.println("verifierPool: " + VerifierPool.getInstance().getStatistics());
+        writer.println("moduleAnalysis: running=" + ModuleAnalysisJob.getInstance().isRunning());
+        writer.println();
+        for (String line : metrics.getStatistics()) {
+            writer.println(line);
+        }
+        writer.println();
+        writer.println("Slow requests:");
+        for (String line : metrics.getSlowRequests()) {
+            writer.println(line);
+        }
+        writer.flush();
+    }
+
+    @Override
+    protected void doPost(HttpServletRequest request,
+                          HttpServletResponse response) throws ServletException,
+            IOException {
+        if (!checkAdmin(request,
+                response)) {
+            return;
+        }
+        if (!"analyseModules".equals(request.getParameter("action"))) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST,
+                    "Unknown action");
+            return;
+        }
+        ModuleAnalysisJob.getInstance().analyseAllModules();
+        response.setStatus(HttpServletResponse.SC_ACCEPTED);
+    }
+
+    private boolean checkAdmin(HttpServletRequest request,
+                               HttpServletResponse response) throws IOException {
+        if (!authorizationHeaderChecker.loginByHeader(request.getHeader("Authorization"))) {
+            response.setHeader("WWW-Authenticate",
+                    "BASIC realm=\"users\"");
+            response.sendError(HttpServletResponse.SC_UNAUTHORIZED);
+            return false;
+        }
+        if (!identity.hasPermission(new AdminType(),
+                RoleType.ADMIN.getName())) {
+            response.sendError(HttpServletResponse.SC_FORBIDDEN);
+            return false;
+        }
+        return true;
+    }
+
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2012 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.drools.guvnor.server.metrics;
+
+/**
+ * The statistics of one operation (an RPC method, a REST resource method or a
+ * servlet request): calls, errors, a latency histogram and the payload sizes.
+ */
+public class OperationStatistics {
+
+    /**
+     * The upper bounds of the latency buckets, in milliseconds; the last
+     * bucket has no upper bound.
+     */
+    static final long[] BUCKETS = {1, 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000};
+
+    private final String operation;
+
+    private long count;
+    private long errors;
+    private long totalTime;
+    private long maxTime;
+    private final long[] histogram = new long[BUCKETS.length + 1];
+
+    private long requestBytes;
+    private long responseBytes;
+    private long maxResponseBytes;
+    private long sessions;
+
+    public OperationStatistics(String operation) {
+        this.operation = operation;
+    }
+
+    public synchronized void record(long time,
+                                    boolean error,
+                                    long requestSize,
+                                    long responseSize,
+                                    int sessionCount) {
+        count++;
+        if (error) {
+            errors++;
+        }
+        totalTime += time;
+        maxTime = Math.max(maxTime,
+                time);
+        histogram[bucketOf(time)]++;
+        requestBytes += Math.max(requestSize,
+                0);
+        responseBytes += Math.max(responseSize,
+                0);
+        maxResponseBytes = Math.max(maxResponseBytes,
+                responseSize);
+        sessions += sessionCount;
+    }
+
+    static int bucketOf(long time) {
+        for (int i = 0; i < BUCKETS.length; i++) {
+            if (time <= BUCKETS[i]) {
+                return i;
+            }
+        }
+        return BUCKETS.length;
+    }
+
+    public String getOperation() {
+        return operation;
+    }
+
+    public synchronized long getCount() {
+        return count;
+    }
+
+    public synchronized long getErrors() {
+        return errors;
+    }
+
+    public synchronized long getTotalTime() {
+        return totalTime;
+    }
+
+    public synchronized long getMaxTime() {
+        return maxTime;
+    }
+
+    public synchronized long[] getHistogram() {
+        return histogram.clone();
+    }
+
+    /**
+     * @return an upper bound of the time under which the given fraction of
+     *         the calls completed, from the histogram, or -1 if it is above the
+     *         last bucket.
+     */
+    public synchronized long getPercentile(double fraction) {
+        long threshold = (long) Math.ceil(count * fraction);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS.length; i++) {
+            seen += histogram[i];
+            if (seen >= threshold) {
+                return BUCKETS[i];
+            }
+        }
+        return -1;
+    }
+
+    public synchronized long getRequestBytes() {
+        return requestBytes;
+    }
+
+    public synchronized long getResponseBytes() {
+        return responseBytes;
+    }
+
+    public synchronized long getMaxResponseBytes() {
+        return maxResponseBytes;
+    }
+
+    public synchronized long getSessions() {
+        return sessions;
+    }
+
+    @Override
+    public synchronized String toString() {
+        StringBuilder buffer = new StringBuilder(operation);
+        buffer.append(": count=").append(count)
+                .append(", errors=").append(errors)
+                .append(", avgMs=").append(count == 0 ? 0 : totalTime / count)
+                .append(", maxMs=").append(maxTime)
+                .append(", p50Ms=").append(describe(getPercentile(0.5)))
+                .append(", p99Ms=").append(describe(getPercentile(0.99)))
+                .append(", requestBytes=").append(requestBytes)
+                .append(", responseBytes=").append(responseBytes)
+                .append(", maxResponseBytes=").append(maxResponseBytes)
+                .append(", sessions=").append(sessions)
+                .append(", histogram=[");
+        for (int i = 0; i < histogram.length; i++) {
+            if (i > 0) {
+                buffer.append(' ');
+            }
+            buffer.append(i < BUCKETS.length ? "<=" + BUCKETS[i] : ">" + BUCKETS[BUCKETS.length - 1])
+                    .append(':').append(histogram[i]);
+        }
+        return buffer.append(']').toString();
+    }
+
+    private static String describe(long bound) {
+        return bound < 0 ? ">" + BUCKETS[BUCKETS.length - 1] : "<=" + bound;
+    }
+}
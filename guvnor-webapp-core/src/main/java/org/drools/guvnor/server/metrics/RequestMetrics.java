@@ -0,0 +1,252 @@
+/*
+ * Copyright 2012 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.drools.guvnor.server.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.drools.guvnor.server.util.LoggingHelper;
+
+/**
+ * Collects the latency, errors and payload sizes of the requests, per
+ * operation: "rpc:" + the RPC method for GWT-RPC, "rest:" + the resource method
+ * for the REST API, and the servlet name and HTTP method for the other
+ * servlets (see MetricsFilter).
+ *
+ * The measurement of the request being served is kept per thread, so the code
+ * that serves it can name the operation, and count the repository sessions it
+ * opens. Requests that take longer than "guvnor.metrics.slowRequestThreshold"
+ * milliseconds (2000 by default) are logged with their operation name and
+ * payload sizes only: parameter values are never recorded, as they may be
+ * credentials (the login method) or content.
+ *
+ * The statistics are available over JMX (see RequestMetricsMBean) and from the
+ * MetricsServlet.
+ */
+public class RequestMetrics
+    implements
+    RequestMetricsMBean {
+
+    private static final LoggingHelper log = LoggingHelper.getLogger( RequestMetrics.class );
+
+    public static final String OBJECT_NAME = "org.drools.guvnor:type=RequestMetrics";
+
+    private static final int MAX_SLOW_REQUESTS = 100;
+
+    private static final RequestMetrics instance = new RequestMetrics( Long.getLong( "guvnor.metrics.slowRequestThreshold",
+                                                                                     2000 ) );
+
+    static {
+        instance.registerMBean();
+    }
+
+    private final ThreadLocal<Measurement> current = new ThreadLocal<Measurement>();
+    private final Map<String, OperationStatistics> statistics = new TreeMap<String, OperationStatistics>();
+    private final LinkedList<String> slowRequests = new LinkedList<String>();
+    private volatile long slowRequestThreshold;
+
+    public RequestMetrics(long slowRequestThreshold) {
+        this.slowRequestThreshold = slowRequestThreshold;
+    }
+
+    public static RequestMetrics getInstance() {
+        return instance;
+    }
+
+    private void registerMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName( OBJECT_NAME );
+            if ( server.isRegistered( name ) ) {
+                // left over by a previous deployment
+                server.unregisterMBean( name );
+            }
+            server.registerMBean( this,
+                                  name );
+        } catch ( Exception e ) {
+            log.warn( "Unable to register the request metrics over JMX: " + e.getMessage() );
+        }
+    }
+
+    /**
+     * Starts measuring the request served by this thread.
+     *
+     * @return the measurement, or null if the request is already measured.
+     */
+    public Measurement start(String operation) {
+        if ( current.get() != null ) {
+            return null;
+        }
+        Measurement measurement = new Measurement( operation );
+        current.set( measurement );
+        return measurement;
+    }
+
+    /**
+     * Names the operation of the request served by this thread, once it is
+     * known (the RPC method, the resource method...).
+     */
+    public void setOperation(String operation) {
+        Measurement measurement = current.get();
+        if ( measurement != null ) {
+            measurement.operation = operation;
+        }
+    }
+
+    /**
+     * Marks the request served by this thread as failed, for the failures
+     * that are reported in the response (like the GWT-RPC exceptions).
+     */
+    public void markError() {
+        Measurement measurement = current.get();
+        if ( measurement != null ) {
+            measurement.error = true;
+        }
+    }
+
+    /**
+     * Counts a repository session opened (or leased) by this thread.
+     */
+    public void recordSession() {
+        Measurement measurement = current.get();
+        if ( measurement != null ) {
+            measurement.sessions++;
+        }
+    }
+
+    public void stop(Measurement measurement,
+                     boolean error,
+                     long requestBytes,
+                     long responseBytes) {
+        if ( measurement == null ) {
+            return;
+        }
+        current.remove();
+
+        long time = (System.nanoTime() - measurement.start) / 1000000;
+        getOperationStatistics( measurement.operation ).record( time,
+                                                                error || measurement.error,
+                                                                requestBytes,
+                                                                responseBytes,
+                                                                measurement.sessions );
+
+        if ( slowRequestThreshold > 0 && time >= slowRequestThreshold ) {
+            String message = "Slow request " + measurement.operation + " took " + time + " ms"
+                             + " (sessions=" + measurement.sessions + ", requestBytes=" + requestBytes
+                             + ", responseBytes=" + responseBytes + ")";
+            log.warn( message );
+            synchronized ( slowRequests ) {
+                slowRequests.addFirst( message );
+                if ( slowRequests.size() > MAX_SLOW_REQUESTS ) {
+                    slowRequests.removeLast();
+                }
+            }
+        }
+    }
+
+    private OperationStatistics getOperationStatistics(String operation) {
+        synchronized ( statistics ) {
+            OperationStatistics operationStatistics = statistics.get( operation );
+            if ( operationStatistics == null ) {
+                operationStatistics = new OperationStatistics( operation );
+                statistics.put( operation,
+                                operationStatistics );
+            }
+            return operationStatistics;
+        }
+    }
+
+    public List<OperationStatistics> getOperations() {
+        synchronized ( statistics ) {
+            return new ArrayList<OperationStatistics>( statistics.values() );
+        }
+    }
+
+    public long getRequestCount() {
+        long count = 0;
+        for ( OperationStatistics operationStatistics : getOperations() ) {
+            count += operationStatistics.getCount();
+        }
+        return count;
+    }
+
+    public long getErrorCount() {
+        long count = 0;
+        for ( OperationStatistics operationStatistics : getOperations() ) {
+            count += operationStatistics.getErrors();
+        }
+        return count;
+    }
+
+    public String[] getStatistics() {
+        List<OperationStatistics> operations = getOperations();
+        String[] lines = new String[operations.size()];
+        for ( int i = 0; i < lines.length; i++ ) {
+            lines[i] = operations.get( i ).toString();
+        }
+        return lines;
+    }
+
+    public String[] getSlowRequests() {
+        synchronized ( slowRequests ) {
+            return slowRequests.toArray( new String[slowRequests.size()] );
+        }
+    }
+
+    public long getSlowRequestThreshold() {
+        return slowRequestThreshold;
+    }
+
+    public void setSlowRequestThreshold(long milliseconds) {
+        this.slowRequestThreshold = milliseconds;
+    }
+
+    public void reset() {
+        synchronized ( statistics ) {
+            statistics.clear();
+        }
+        synchronized ( slowRequests ) {
+            slowRequests.clear();
+        }
+    }
+
+    /**
+     * The measurement of the request being served by a thread.
+     */
+    public static class Measurement {
+
+        private final long start = System.nanoTime();
+        private String     operation;
+        private boolean    error;
+        private int        sessions;
+
+        private Measurement(String operation) {
+            this.operation = operation;
+        }
+
+        public String getOperation() {
+            return operation;
+        }
+    }
+}
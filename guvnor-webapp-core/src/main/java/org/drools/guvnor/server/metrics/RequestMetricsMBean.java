@@ -0,0 +1,46 @@
+/*
+ * Copyright 2012 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.drools.guvnor.server.metrics;
+
+/**
+ * The JMX view of the RequestMetrics, registered as
+ * "org.drools.guvnor:type=RequestMetrics".
+ */
+public interface RequestMetricsMBean {
+
+    long getRequestCount();
+
+    long getErrorCount();
+
+    /**
+     * @return one line per operation, with its calls, errors, latency
+     *         histogram and payload sizes.
+     */
+    String[] getStatistics();
+
+    /**
+     * @return the last slow requests, with their operation and payload sizes.
+     */
+    String[] getSlowRequests();
+
+    long getSlowRequestThreshold();
+
+    void setSlowRequestThreshold(long milliseconds);
+
+    void reset();
+
+}
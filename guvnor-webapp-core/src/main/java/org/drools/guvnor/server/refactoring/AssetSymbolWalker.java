@@ -0,0 +1,230 @@
+/*
+ * Copyright 2012 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.drools.guvnor.server.refactoring;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.StringTokenizer;
+
+import org.drools.compiler.DroolsParserException;
+import org.drools.guvnor.client.common.AssetFormats;
+import org.drools.guvnor.server.builder.CompiledDSL;
+import org.drools.ide.common.client.modeldriven.brl.RuleModel;
+import org.drools.ide.common.client.modeldriven.dt52.GuidedDecisionTable52;
+import org.drools.ide.common.client.modeldriven.testing.Scenario;
+import org.drools.ide.common.server.util.BRDRTXMLPersistence;
+import org.drools.ide.common.server.util.BRXMLPersistence;
+import org.drools.ide.common.server.util.GuidedDTXMLPersistence;
+import org.drools.ide.common.server.util.ScenarioXMLPersistence;
+import org.drools.lang.dsl.DSLMappingEntry;
+import org.drools.lang.dsl.DSLTokenizedMappingFile;
+import org.drools.lang.dsl.DefaultExpander;
+
+/**
+ * Walks the fact types and fields the content of an asset refers to, with the model
+ * of its format: guided rules, rule templates, guided decision tables and test
+ * scenarios are read with their persistence classes, DRL rules, declared models and
+ * functions with the DRL parser.
+ *
+ * DSL rules are only walked to find their symbols: the sentences of the DSLs they
+ * use, and the symbols of the DRL they expand to. They are never changed, their
+ * sentences have to be changed in the DSL instead.
+ */
+public class AssetSymbolWalker {
+
+    public static final Set<String> FORMATS = Collections.unmodifiableSet( new HashSet<String>( Arrays.asList( AssetFormats.BUSINESS_RULE,
+                                                                                                             AssetFormats.RULE_TEMPLATE,
+                                                                                                             AssetFormats.DECISION_TABLE_GUIDED,
+                                                                                                             AssetFormats.TEST_SCENARIO,
+                                                                                                             AssetFormats.DRL,
+                                                                                                             AssetFormats.DRL_MODEL,
+                                                                                                             AssetFormats.FUNCTION,
+                                                                                                             AssetFormats.DSL_TEMPLATE_RULE ) ) );
+
+    private AssetSymbolWalker() {
+    }
+
+    public static boolean isSupported(String format) {
+        return FORMATS.contains( format );
+    }
+
+    /**
+     * @return true if the names the walk returns are set in the content.
+     */
+    public static boolean isRenameSupported(String format) {
+        return isSupported( format ) && !AssetFormats.DSL_TEMPLATE_RULE.equals( format );
+    }
+
+    /**
+     * @return the keys of the symbols the content refers to, see {@link Symbols}. None
+     *         if the format is not supported, only {@link Symbols#UNREADABLE} if the
+     *         content can not be read.
+     */
+    public static Set<String> getSymbols(String format,
+                                         String content) {
+        return getSymbols( format,
+                           content,
+                           SymbolContext.EMPTY );
+    }
+
+    /**
+     * @return the keys of the symbols the content refers to, in the context of its
+     *         module.
+     */
+    public static Set<String> getSymbols(String format,
+                                         String content,
+                                         SymbolContext context) {
+        SymbolCollector collector = new SymbolCollector();
+        try {
+            walk( format,
+                  content,
+                  context,
+                  collector );
+        } catch ( DroolsParserException e ) {
+            return Collections.singleton( Symbols.UNREADABLE );
+        }
+        return collector.getSymbols();
+    }
+
+    /**
+     * @return the content with the names the visitor returned, the same String if none
+     *         of them changed or the format is not supported.
+     * @throws DroolsParserException if the content can not be read, or the changed
+     *         content would not be valid.
+     */
+    public static String walk(String format,
+                              String content,
+                              SymbolVisitor visitor) throws DroolsParserException {
+        return walk( format,
+                     content,
+                     SymbolContext.EMPTY,
+                     visitor );
+    }
+
+    /**
+     * @see #walk(String, String, SymbolVisitor)
+     */
+    public static String walk(String format,
+                              String content,
+                              SymbolContext context,
+                              SymbolVisitor visitor) throws DroolsParserException {
+        if ( content == null || content.trim().length() == 0 || !isSupported( format ) ) {
+            return content;
+        }
+        if ( AssetFormats.DSL_TEMPLATE_RULE.equals( format ) ) {
+            walkDslRule( content,
+                         context,
+                         visitor );
+            return content;
+        }
+        if ( AssetFormats.DRL.equals( format ) && isStandAloneRule( content ) ) {
+            String prefix = "rule 'asset'\n";
+            String suffix = "\nend";
+            String drl = prefix + content + suffix;
+            String renamed = new DrlSymbolWalker( visitor,
+                                                  context.getGlobals() ).walk( drl );
+            return renamed == drl ? content : renamed.substring( prefix.length(),
+                                                                 renamed.length() - suffix.length() );
+        }
+        if ( AssetFormats.DRL.equals( format ) || AssetFormats.DRL_MODEL.equals( format ) || AssetFormats.FUNCTION.equals( format ) ) {
+            return new DrlSymbolWalker( visitor,
+                                        context.getGlobals() ).walk( content );
+        }
+
+        try {
+            ModelSymbolWalker walker = new ModelSymbolWalker( visitor );
+            if ( AssetFormats.BUSINESS_RULE.equals( format ) ) {
+                RuleModel model = BRXMLPersistence.getInstance().unmarshal( content );
+                return walker.walk( model ) ? BRXMLPersistence.getInstance().marshal( model ) : content;
+            } else if ( AssetFormats.RULE_TEMPLATE.equals( format ) ) {
+                RuleModel model = BRDRTXMLPersistence.getInstance().unmarshal( content );
+                return walker.walk( model ) ? BRDRTXMLPersistence.getInstance().marshal( model ) : content;
+            } else if ( AssetFormats.DECISION_TABLE_GUIDED.equals( format ) ) {
+                GuidedDecisionTable52 dt = GuidedDTXMLPersistence.getInstance().unmarshal( content );
+                return walker.walk( dt ) ? GuidedDTXMLPersistence.getInstance().marshal( dt ) : content;
+            } else {
+                Scenario scenario = ScenarioXMLPersistence.getInstance().unmarshal( content );
+                return walker.walk( scenario ) ? ScenarioXMLPersistence.getInstance().marshal( scenario ) : content;
+            }
+        } catch ( RuntimeException e ) {
+            throw new DroolsParserException( "Unable to read the " + format + " content: " + e.getMessage(),
+                                             e );
+        }
+    }
+
+    /**
+     * Visits the sentences of the DSLs a DSL rule uses, and the symbols of the DRL it
+     * expands to.
+     */
+    private static void walkDslRule(String content,
+                                    SymbolContext context,
+                                    SymbolVisitor visitor) throws DroolsParserException {
+        CompiledDSL dsl = context.getDsl();
+        if ( dsl == null || dsl.isEmpty() ) {
+            throw new DroolsParserException( "No DSL to expand the rule with." );
+        }
+        String source = isStandAloneRule( content ) ? "rule 'asset'\n" + content + "\nend" : content;
+
+        StringTokenizer lines = new StringTokenizer( source,
+                                                     "\n\r" );
+        while ( lines.hasMoreTokens() ) {
+            String line = lines.nextToken().trim();
+            if ( line.length() == 0 ) {
+                continue;
+            }
+            for ( DSLTokenizedMappingFile file : dsl.getMappingFiles() ) {
+                for ( DSLMappingEntry entry : file.getMapping().getEntries() ) {
+                    if ( !DSLMappingEntry.KEYWORD.equals( entry.getSection() ) && entry.getKeyPattern() != null
+                         && entry.getKeyPattern().matcher( line ).find() ) {
+                        visitor.visitDslSentence( entry.getMappingKey() );
+                    }
+                }
+            }
+        }
+
+        DefaultExpander expander = dsl.newExpander( source );
+        String drl = expander.expand( source );
+        if ( expander.hasErrors() ) {
+            throw new DroolsParserException( "Unable to expand the DSL rule: " + expander.getErrors() );
+        }
+        new DrlSymbolWalker( visitor,
+                             context.getGlobals() ).walk( drl );
+    }
+
+    /**
+     * @return true if the DRL is the body of one rule, without the "rule" around it, as
+     *         the DRL and DSL rule assets may be.
+     */
+    static boolean isStandAloneRule(String content) {
+        StringTokenizer lines = new StringTokenizer( content,
+                                                     "\n\r" );
+        while ( lines.hasMoreTokens() ) {
+            String line = lines.nextToken().trim();
+            if ( line.startsWith( "when" ) ) {
+                return true;
+            }
+            String firstWord = line.split( "\\s" )[0];
+            if ( "package".equals( firstWord ) || "rule".equals( firstWord ) || "end".equals( firstWord ) || "function".equals( firstWord )
+                 || "query".equals( firstWord ) ) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,727 @@
+/*
+ * Copyright 2012 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.drools.guvnor.server.refactoring;
+
+import java.beans.Introspector;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.drools.compiler.DrlParser;
+import org.drools.compiler.DroolsParserException;
+import org.drools.lang.descr.AccumulateDescr;
+import org.drools.lang.descr.BaseDescr;
+import org.drools.lang.descr.CollectDescr;
+import org.drools.lang.descr.ConditionalElementDescr;
+import org.drools.lang.descr.GlobalDescr;
+import org.drools.lang.descr.PackageDescr;
+import org.drools.lang.descr.PatternDescr;
+import org.drools.lang.descr.RuleDescr;
+
+/**
+ * Walks the fact types and fields a DRL asset (rules, queries, declared types and
+ * functions) refers to, and returns the DRL with the names the {@link SymbolVisitor}
+ * returned.
+ *
+ * The DRL is parsed first, which gives the types of the patterns and the variables
+ * they are bound to. The references are then found in the tokens of the DRL, so string
+ * literals and comments are never changed and everything else is kept as it was
+ * written:
+ * <ul>
+ * <li>the types of the patterns, of the declared types and of their fields, of the
+ * imports and globals, and the types created or declared in consequences and functions;</li>
+ * <li>the fields used in the constraints of a pattern, declared in a type declaration,
+ * read or set through a bound variable ("$p.age", "$p.getAge()", "$p.setAge(..)") and
+ * set in a "modify" block.</li>
+ * </ul>
+ * The globals declared in the DRL, or in the header of the module when they are given,
+ * are visited where they are declared and used.
+ * A DRL that does not parse is not changed, nor is one that would not parse any more.
+ */
+class DrlSymbolWalker {
+
+    private static final Set<String> NOT_FIELDS = new HashSet<String>( Arrays.asList( "true",
+                                                                                    "false",
+                                                                                    "null",
+                                                                                    "this",
+                                                                                    "new",
+                                                                                    "in",
+                                                                                    "not",
+                                                                                    "matches",
+                                                                                    "contains",
+                                                                                    "excludes",
+                                                                                    "memberOf",
+                                                                                    "soundslike",
+                                                                                    "str",
+                                                                                    "instanceof",
+                                                                                    "after",
+                                                                                    "before",
+                                                                                    "coincides",
+                                                                                    "during",
+                                                                                    "finishes",
+                                                                                    "finishedby",
+                                                                                    "includes",
+                                                                                    "meets",
+                                                                                    "metby",
+                                                                                    "overlaps",
+                                                                                    "overlappedby",
+                                                                                    "starts",
+                                                                                    "startedby" ) );
+
+    private final SymbolVisitor       visitor;
+    private final Set<String>         globals      = new HashSet<String>();
+    private final Set<String>         patternTypes = new HashSet<String>();
+    private final Set<String>         variables    = new HashSet<String>();
+    private final Map<String, String> bindings     = new HashMap<String, String>();
+    private final List<Edit>          edits        = new ArrayList<Edit>();
+    private List<Token>               tokens;
+
+    DrlSymbolWalker(SymbolVisitor visitor) {
+        this( visitor,
+              Collections.<String> emptySet() );
+    }
+
+    /**
+     * @param globals the globals of the module, which the DRL does not declare.
+     */
+    DrlSymbolWalker(SymbolVisitor visitor,
+                    Set<String> globals) {
+        this.visitor = visitor;
+        this.globals.addAll( globals );
+    }
+
+    /**
+     * @return the DRL with the names the visitor returned, the same String if none of
+     *         them changed.
+     * @throws DroolsParserException if the DRL does not parse, or would not parse any
+     *         more.
+     */
+    String walk(String drl) throws DroolsParserException {
+        PackageDescr pkg = parse( drl );
+        for ( RuleDescr rule : pkg.getRules() ) {
+            addPatterns( rule.getLhs() );
+        }
+        for ( GlobalDescr global : pkg.getGlobals() ) {
+            globals.add( global.getIdentifier() );
+            visitor.visitGlobal( global.getIdentifier() );
+        }
+        variables.addAll( globals );
+        variables.addAll( bindings.keySet() );
+
+        tokens = tokenize( drl );
+        int i = 0;
+        while ( i < tokens.size() ) {
+            i = walkStatement( i );
+        }
+        if ( edits.isEmpty() ) {
+            return drl;
+        }
+
+        StringBuilder result = new StringBuilder( drl );
+        for ( int j = edits.size() - 1; j >= 0; j-- ) {
+            Edit edit = edits.get( j );
+            result.replace( edit.start,
+                            edit.end,
+                            edit.text );
+        }
+        String renamed = result.toString();
+        parse( renamed );
+        return renamed;
+    }
+
+    private static PackageDescr parse(String drl) throws DroolsParserException {
+        DrlParser parser = new DrlParser();
+        PackageDescr pkg = parser.parse( drl );
+        if ( parser.hasErrors() || pkg == null ) {
+            throw new DroolsParserException( "Unable to parse the DRL: " + parser.getErrors() );
+        }
+        return pkg;
+    }
+
+    private void addPatterns(BaseDescr descr) {
+        if ( descr instanceof PatternDescr ) {
+            PatternDescr pattern = (PatternDescr) descr;
+            String type = Symbols.getSimpleName( pattern.getObjectType() );
+            patternTypes.add( type );
+            if ( pattern.getIdentifier() != null ) {
+                bindings.put( pattern.getIdentifier(),
+                              type );
+            }
+            if ( pattern.getSource() instanceof CollectDescr ) {
+                addPatterns( ((CollectDescr) pattern.getSource()).getInputPattern() );
+            } else if ( pattern.getSource() instanceof AccumulateDescr ) {
+                addPatterns( ((AccumulateDescr) pattern.getSource()).getInput() );
+            }
+        } else if ( descr instanceof ConditionalElementDescr ) {
+            for ( Object child : ((ConditionalElementDescr) descr).getDescrs() ) {
+                addPatterns( (BaseDescr) child );
+            }
+        }
+    }
+
+    /**
+     * Walks the statement starting at the given token.
+     * @return the index of the token after it.
+     */
+    private int walkStatement(int i) {
+        Token token = tokens.get( i );
+        if ( token.is( "import" ) ) {
+            if ( is( i + 1,
+                     "function" ) || is( i + 1,
+                                         "static" ) ) {
+                return skipChain( i + 2 );
+            }
+            int last = skipChain( i + 1 ) - 1;
+            if ( last > i ) {
+                visitFactType( last );
+            }
+            return last + 1;
+        } else if ( token.is( "global" ) ) {
+            int last = skipChain( i + 1 ) - 1;
+            if ( last > i ) {
+                visitFactType( last );
+            }
+            return last + 1;
+        } else if ( token.is( "declare" ) ) {
+            return walkDeclare( i + 1 );
+        } else if ( token.is( "rule" ) ) {
+            return walkRule( i + 1 );
+        } else if ( token.is( "query" ) ) {
+            return walkQuery( i + 1 );
+        } else if ( token.is( "function" ) ) {
+            int end = findClosing( indexOf( i + 1,
+                                            "{" ) );
+            walkCode( i + 1,
+                      end );
+            return end;
+        }
+        return i + 1;
+    }
+
+    private int walkDeclare(int i) {
+        int last = skipChain( i ) - 1;
+        if ( last < i ) {
+            return i;
+        }
+        String factType = tokens.get( last ).text;
+        visitFactType( last );
+        i = last + 1;
+        if ( is( i,
+                 "extends" ) ) {
+            last = skipChain( i + 1 ) - 1;
+            visitFactType( last );
+            i = last + 1;
+        }
+
+        while ( i < tokens.size() && !is( i,
+                                          "end" ) ) {
+            if ( is( i,
+                     "@" ) ) {
+                i += 2;
+                if ( is( i,
+                         "(" ) ) {
+                    i = findClosing( i );
+                }
+            } else if ( tokens.get( i ).isIdentifier() && is( i + 1,
+                                                               ":" ) ) {
+                visitField( factType,
+                            i );
+                i += 2;
+            } else {
+                if ( tokens.get( i ).isIdentifier() && !is( i + 1,
+                                                            "." ) && Character.isUpperCase( tokens.get( i ).text.charAt( 0 ) ) ) {
+                    visitFactType( i );
+                }
+                i++;
+            }
+        }
+        return i + 1;
+    }
+
+    private int walkRule(int i) {
+        while ( i < tokens.size() && !is( i,
+                                          "when" ) && !is( i,
+                                                           "then" ) && !is( i,
+                                                                            "end" ) ) {
+            i++;
+        }
+        if ( is( i,
+                 "when" ) ) {
+            int then = i + 1;
+            while ( then < tokens.size() && !is( then,
+                                                 "then" ) ) {
+                then++;
+            }
+            walkLhs( i + 1,
+                     then );
+            i = then;
+        }
+        if ( is( i,
+                 "then" ) ) {
+            int end = findEnd( i + 1 );
+            walkCode( i + 1,
+                      end );
+            i = end;
+        }
+        return i + 1;
+    }
+
+    private int walkQuery(int i) {
+        i++;
+        if ( is( i,
+                 "(" ) ) {
+            int close = findClosing( i );
+            for ( int j = i + 1; j < close; j++ ) {
+                if ( tokens.get( j ).isIdentifier() && (is( j + 1,
+                                                            "," ) || is( j + 1,
+                                                                         ")" )) ) {
+                    variables.add( tokens.get( j ).text );
+                }
+            }
+            walkCode( i + 1,
+                      close );
+            i = close;
+        }
+        int end = findEnd( i );
+        walkLhs( i,
+                 end );
+        return end + 1;
+    }
+
+    /**
+     * Walks the conditions of a rule or query, between the given tokens.
+     */
+    private void walkLhs(int start,
+                         int end) {
+        int i = start;
+        while ( i < end ) {
+            Token token = tokens.get( i );
+            if ( token.isIdentifier() && !is( i - 1,
+                                              "." ) ) {
+                int last = skipChain( i ) - 1;
+                if ( is( last + 1,
+                         "(" ) && !is( i - 1,
+                                       "new" ) && patternTypes.contains( tokens.get( last ).text ) ) {
+                    String factType = tokens.get( last ).text;
+                    int close = findClosing( last + 1 );
+                    walkConstraints( factType,
+                                     last + 2,
+                                     close );
+                    visitFactType( last );
+                    i = close;
+                    continue;
+                }
+                if ( bindings.containsKey( token.text ) && is( i + 1,
+                                                               "." ) ) {
+                    visitMember( bindings.get( token.text ),
+                                 i + 2 );
+                } else if ( globals.contains( token.text ) && !bindings.containsKey( token.text ) ) {
+                    visitor.visitGlobal( token.text );
+                }
+                i = last + 1;
+                continue;
+            }
+            i++;
+        }
+    }
+
+    /**
+     * Walks the constraints of a pattern of the given type, between the given tokens.
+     */
+    private void walkConstraints(String factType,
+                                 int start,
+                                 int end) {
+        int i = start;
+        while ( i < end ) {
+            Token token = tokens.get( i );
+            if ( !token.isIdentifier() || is( i - 1,
+                                              "." ) ) {
+                i++;
+                continue;
+            }
+            int next = skipChain( i );
+            if ( is( i + 1,
+                     ":" ) || is( i + 1,
+                                  ":=" ) ) {
+                variables.add( token.text );
+            } else if ( bindings.containsKey( token.text ) && is( i + 1,
+                                                                  "." ) ) {
+                visitMember( bindings.get( token.text ),
+                             i + 2 );
+            } else if ( globals.contains( token.text ) && !bindings.containsKey( token.text ) ) {
+                visitor.visitGlobal( token.text );
+            } else if ( is( i + 1,
+                            "(" ) ) {
+                if ( getAccessedField( token.text ) != null ) {
+                    visitMember( factType,
+                                 i );
+                }
+            } else if ( !NOT_FIELDS.contains( token.text ) && !variables.contains( token.text ) && token.text.charAt( 0 ) != '$'
+                        && !(Character.isUpperCase( token.text.charAt( 0 ) ) && is( i + 1,
+                                                                                    "." )) ) {
+                visitField( factType,
+                            i );
+            }
+            i = next;
+        }
+    }
+
+    /**
+     * Walks the code of a consequence or function, between the given tokens. The local
+     * variables declared with a type are known until the end of the code.
+     */
+    private void walkCode(int start,
+                          int end) {
+        Map<String, String> variableTypes = new HashMap<String, String>( bindings );
+        int i = start;
+        while ( i < end ) {
+            Token token = tokens.get( i );
+            if ( !token.isIdentifier() || is( i - 1,
+                                              "." ) ) {
+                i++;
+                continue;
+            }
+            int next = skipChain( i );
+            if ( token.is( "new" ) && next < end && tokens.get( next ).isIdentifier() ) {
+                next = skipChain( next );
+                visitFactType( next - 1 );
+            } else if ( token.is( "modify" ) && is( i + 1,
+                                                    "(" ) && is( i + 3,
+                                                                 ")" ) && is( i + 4,
+                                                                              "{" ) ) {
+                String factType = variableTypes.get( tokens.get( i + 2 ).text );
+                int close = findClosing( i + 4 );
+                if ( factType != null ) {
+                    walkModify( factType,
+                                i + 4,
+                                close );
+                }
+                next = i + 5;
+            } else if ( variableTypes.containsKey( token.text ) && is( i + 1,
+                                                                       "." ) ) {
+                visitMember( variableTypes.get( token.text ),
+                             i + 2 );
+            } else if ( globals.contains( token.text ) && !variableTypes.containsKey( token.text ) ) {
+                visitor.visitGlobal( token.text );
+            } else if ( next < end && tokens.get( next ).isIdentifier() && Character.isUpperCase( tokens.get( next - 1 ).text.charAt( 0 ) ) ) {
+                visitFactType( next - 1 );
+                variableTypes.put( tokens.get( next ).text,
+                                   tokens.get( next - 1 ).text );
+            }
+            i = next;
+        }
+    }
+
+    /**
+     * Walks the fields set in the block of a "modify", the block starting at the given
+     * token.
+     */
+    private void walkModify(String factType,
+                            int open,
+                            int close) {
+        int depth = 0;
+        for ( int i = open + 1; i < close; i++ ) {
+            if ( is( i,
+                     "(" ) || is( i,
+                                  "{" ) || is( i,
+                                               "[" ) ) {
+                depth++;
+            } else if ( is( i,
+                            ")" ) || is( i,
+                                         "}" ) || is( i,
+                                                      "]" ) ) {
+                depth--;
+            } else if ( depth == 0 && tokens.get( i ).isIdentifier() && (i == open + 1 || is( i - 1,
+                                                                                               "," )) ) {
+                if ( is( i + 1,
+                         "=" ) ) {
+                    visitField( factType,
+                                i );
+                } else if ( is( i + 1,
+                                "(" ) ) {
+                    visitMember( factType,
+                                 i );
+                }
+            }
+        }
+    }
+
+    /**
+     * Visits the field, or the accessor of the field, at the given token.
+     */
+    private void visitMember(String factType,
+                             int i) {
+        if ( i >= tokens.size() || !tokens.get( i ).isIdentifier() ) {
+            return;
+        }
+        if ( !is( i + 1,
+                  "(" ) ) {
+            visitField( factType,
+                        i );
+            return;
+        }
+        String name = tokens.get( i ).text;
+        String field = getAccessedField( name );
+        if ( field == null ) {
+            return;
+        }
+        String prefix = name.substring( 0,
+                                        name.length() - field.length() );
+        String renamed = visitor.visitField( factType,
+                                             field );
+        if ( !renamed.equals( field ) ) {
+            addEdit( tokens.get( i ),
+                     prefix + Character.toUpperCase( renamed.charAt( 0 ) ) + renamed.substring( 1 ) );
+        }
+    }
+
+    /**
+     * @return the field a getter or setter is for, "age" for "getAge", null if the
+     *         method is not one.
+     */
+    private static String getAccessedField(String method) {
+        int prefix;
+        if ( method.startsWith( "get" ) || method.startsWith( "set" ) ) {
+            prefix = 3;
+        } else if ( method.startsWith( "is" ) ) {
+            prefix = 2;
+        } else {
+            return null;
+        }
+        if ( method.length() == prefix || !Character.isUpperCase( method.charAt( prefix ) ) ) {
+            return null;
+        }
+        return Introspector.decapitalize( method.substring( prefix ) );
+    }
+
+    private void visitFactType(int i) {
+        Token token = tokens.get( i );
+        String renamed = visitor.visitFactType( token.text );
+        if ( !renamed.equals( token.text ) ) {
+            addEdit( token,
+                     renamed );
+        }
+    }
+
+    private void visitField(String factType,
+                            int i) {
+        Token token = tokens.get( i );
+        String renamed = visitor.visitField( factType,
+                                             token.text );
+        if ( !renamed.equals( token.text ) ) {
+            addEdit( token,
+                     renamed );
+        }
+    }
+
+    private void addEdit(Token token,
+                         String text) {
+        Edit edit = new Edit( token.start,
+                              token.end,
+                              text );
+        int i = edits.size();
+        while ( i > 0 && edits.get( i - 1 ).start > edit.start ) {
+            i--;
+        }
+        if ( i > 0 && edits.get( i - 1 ).start == edit.start ) {
+            return;
+        }
+        edits.add( i,
+                   edit );
+    }
+
+    private boolean is(int i,
+                       String text) {
+        return i >= 0 && i < tokens.size() && tokens.get( i ).is( text );
+    }
+
+    /**
+     * @return the index of the token after the qualified name starting at the given
+     *         token.
+     */
+    private int skipChain(int i) {
+        if ( i >= tokens.size() || !tokens.get( i ).isIdentifier() ) {
+            return i;
+        }
+        i++;
+        while ( is( i,
+                    "." ) && i + 1 < tokens.size() && tokens.get( i + 1 ).isIdentifier() ) {
+            i += 2;
+        }
+        return i;
+    }
+
+    private int indexOf(int i,
+                        String text) {
+        while ( i < tokens.size() && !is( i,
+                                          text ) ) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * @return the index of the token closing the bracket at the given token.
+     */
+    private int findClosing(int open) {
+        int depth = 0;
+        for ( int i = open; i < tokens.size(); i++ ) {
+            Token token = tokens.get( i );
+            if ( token.is( "(" ) || token.is( "{" ) || token.is( "[" ) ) {
+                depth++;
+            } else if ( token.is( ")" ) || token.is( "}" ) || token.is( "]" ) ) {
+                depth--;
+                if ( depth == 0 ) {
+                    return i;
+                }
+            }
+        }
+        return tokens.size();
+    }
+
+    /**
+     * @return the index of the "end" of the rule or query, outside of any bracket.
+     */
+    private int findEnd(int i) {
+        int depth = 0;
+        for ( ; i < tokens.size(); i++ ) {
+            Token token = tokens.get( i );
+            if ( token.is( "(" ) || token.is( "{" ) || token.is( "[" ) ) {
+                depth++;
+            } else if ( token.is( ")" ) || token.is( "}" ) || token.is( "]" ) ) {
+                depth--;
+            } else if ( depth == 0 && token.is( "end" ) ) {
+                return i;
+            }
+        }
+        return i;
+    }
+
+    /**
+     * Splits the DRL in identifiers, literals and symbols, leaving out white space and
+     * comments.
+     */
+    static List<Token> tokenize(String drl) {
+        List<Token> tokens = new ArrayList<Token>();
+        int length = drl.length();
+        int i = 0;
+        while ( i < length ) {
+            char c = drl.charAt( i );
+            int start = i;
+            if ( Character.isWhitespace( c ) ) {
+                i++;
+                continue;
+            } else if ( c == '#' || (c == '/' && i + 1 < length && drl.charAt( i + 1 ) == '/') ) {
+                while ( i < length && drl.charAt( i ) != '\n' ) {
+                    i++;
+                }
+                continue;
+            } else if ( c == '/' && i + 1 < length && drl.charAt( i + 1 ) == '*' ) {
+                int close = drl.indexOf( "*/",
+                                         i + 2 );
+                i = close == -1 ? length : close + 2;
+                continue;
+            } else if ( c == '"' || c == '\'' ) {
+                i++;
+                while ( i < length && drl.charAt( i ) != c ) {
+                    i += drl.charAt( i ) == '\\' ? 2 : 1;
+                }
+                i = Math.min( i + 1,
+                              length );
+                tokens.add( new Token( Token.LITERAL,
+                                       drl.substring( start,
+                                                      i ),
+                                       start ) );
+            } else if ( Character.isJavaIdentifierStart( c ) ) {
+                while ( i < length && Character.isJavaIdentifierPart( drl.charAt( i ) ) ) {
+                    i++;
+                }
+                tokens.add( new Token( Token.IDENTIFIER,
+                                       drl.substring( start,
+                                                      i ),
+                                       start ) );
+            } else if ( Character.isDigit( c ) ) {
+                while ( i < length && (Character.isLetterOrDigit( drl.charAt( i ) ) || drl.charAt( i ) == '.') ) {
+                    i++;
+                }
+                tokens.add( new Token( Token.LITERAL,
+                                       drl.substring( start,
+                                                      i ),
+                                       start ) );
+            } else {
+                i++;
+                if ( i < length && drl.charAt( i ) == '=' && "=!<>:".indexOf( c ) != -1 ) {
+                    i++;
+                }
+                tokens.add( new Token( Token.SYMBOL,
+                                       drl.substring( start,
+                                                      i ),
+                                       start ) );
+            }
+        }
+        return tokens;
+    }
+
+    static class Token {
+
+        static final int     IDENTIFIER = 0;
+        static final int     LITERAL    = 1;
+        static final int     SYMBOL     = 2;
+
+        private final int    kind;
+        private final String text;
+        private final int    start;
+        private final int    end;
+
+        Token(int kind,
+              String text,
+              int start) {
+            this.kind = kind;
+            this.text = text;
+            this.start = start;
+            this.end = start + text.length();
+        }
+
+        boolean isIdentifier() {
+            return kind == IDENTIFIER;
+        }
+
+        boolean is(String text) {
+            return kind != LITERAL && this.text.equals( text );
+        }
+    }
+
+    private static class Edit {
+
+        private final int    start;
+        private final int    end;
+        private final String text;
+
+        private Edit(int start,
+                     int end,
+                     String text) {
+            this.start = start;
+            this.end = end;
+            this.text = text;
+        }
+    }
+}
@@ -0,0 +1,407 @@
+/*
+ * Copyright 2012 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.drools.guvnor.server.refactoring;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.drools.ide.common.client.modeldriven.brl.ActionCallMethod;
+import org.drools.ide.common.client.modeldriven.brl.ActionFieldList;
+import org.drools.ide.common.client.modeldriven.brl.ActionFieldValue;
+import org.drools.ide.common.client.modeldriven.brl.ActionGlobalCollectionAdd;
+import org.drools.ide.common.client.modeldriven.brl.ActionInsertFact;
+import org.drools.ide.common.client.modeldriven.brl.ActionSetField;
+import org.drools.ide.common.client.modeldriven.brl.BaseSingleFieldConstraint;
+import org.drools.ide.common.client.modeldriven.brl.CompositeFactPattern;
+import org.drools.ide.common.client.modeldriven.brl.CompositeFieldConstraint;
+import org.drools.ide.common.client.modeldriven.brl.ConnectiveConstraint;
+import org.drools.ide.common.client.modeldriven.brl.DSLSentence;
+import org.drools.ide.common.client.modeldriven.brl.ExpressionFormLine;
+import org.drools.ide.common.client.modeldriven.brl.ExpressionGlobalVariable;
+import org.drools.ide.common.client.modeldriven.brl.FactPattern;
+import org.drools.ide.common.client.modeldriven.brl.FieldConstraint;
+import org.drools.ide.common.client.modeldriven.brl.FromAccumulateCompositeFactPattern;
+import org.drools.ide.common.client.modeldriven.brl.FromCollectCompositeFactPattern;
+import org.drools.ide.common.client.modeldriven.brl.FromCompositeFactPattern;
+import org.drools.ide.common.client.modeldriven.brl.IAction;
+import org.drools.ide.common.client.modeldriven.brl.IFactPattern;
+import org.drools.ide.common.client.modeldriven.brl.IPattern;
+import org.drools.ide.common.client.modeldriven.brl.RuleModel;
+import org.drools.ide.common.client.modeldriven.brl.SingleFieldConstraint;
+import org.drools.ide.common.client.modeldriven.brl.SingleFieldConstraintEBLeftSide;
+import org.drools.ide.common.client.modeldriven.dt52.ActionCol52;
+import org.drools.ide.common.client.modeldriven.dt52.ActionInsertFactCol52;
+import org.drools.ide.common.client.modeldriven.dt52.ActionSetFieldCol52;
+import org.drools.ide.common.client.modeldriven.dt52.BRLActionColumn;
+import org.drools.ide.common.client.modeldriven.dt52.BRLActionVariableColumn;
+import org.drools.ide.common.client.modeldriven.dt52.BRLConditionColumn;
+import org.drools.ide.common.client.modeldriven.dt52.BRLConditionVariableColumn;
+import org.drools.ide.common.client.modeldriven.dt52.BaseColumn;
+import org.drools.ide.common.client.modeldriven.dt52.CompositeColumn;
+import org.drools.ide.common.client.modeldriven.dt52.ConditionCol52;
+import org.drools.ide.common.client.modeldriven.dt52.GuidedDecisionTable52;
+import org.drools.ide.common.client.modeldriven.dt52.Pattern52;
+import org.drools.ide.common.client.modeldriven.testing.FactData;
+import org.drools.ide.common.client.modeldriven.testing.FieldData;
+import org.drools.ide.common.client.modeldriven.testing.Fixture;
+import org.drools.ide.common.client.modeldriven.testing.Scenario;
+import org.drools.ide.common.client.modeldriven.testing.VerifyFact;
+import org.drools.ide.common.client.modeldriven.testing.VerifyField;
+
+/**
+ * Walks the fact types and fields a guided rule, rule template, guided decision table
+ * or test scenario refers to, and sets the names the {@link SymbolVisitor} returns.
+ *
+ * The fields set through a bound variable are resolved to the type of the variable
+ * before anything is renamed. Free form DRL, DSL sentences and expressions are left as
+ * they are. The DSL sentences are visited, as are the globals: those an action adds
+ * to, sets or calls a method on, and those an expression starts from.
+ */
+class ModelSymbolWalker {
+
+    private final SymbolVisitor       visitor;
+    private final Map<String, String> bindings  = new HashMap<String, String>();
+    private final Set<String>         variables = new HashSet<String>();
+    private boolean                   changed   = false;
+
+    ModelSymbolWalker(SymbolVisitor visitor) {
+        this.visitor = visitor;
+    }
+
+    /**
+     * @return true if any name was changed.
+     */
+    boolean walk(RuleModel model) {
+        if ( model.lhs != null ) {
+            for ( IPattern pattern : model.lhs ) {
+                addBindings( pattern );
+            }
+        }
+        if ( model.rhs != null ) {
+            for ( IAction action : model.rhs ) {
+                addBindings( action );
+            }
+        }
+
+        if ( model.lhs != null ) {
+            for ( IPattern pattern : model.lhs ) {
+                walkPattern( pattern );
+            }
+        }
+        if ( model.rhs != null ) {
+            for ( IAction action : model.rhs ) {
+                walkAction( action );
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * @return true if any name was changed.
+     */
+    boolean walk(GuidedDecisionTable52 dt) {
+        for ( CompositeColumn< ? extends BaseColumn> column : dt.getConditions() ) {
+            if ( column instanceof Pattern52 ) {
+                Pattern52 pattern = (Pattern52) column;
+                if ( pattern.isBound() ) {
+                    bindings.put( pattern.getBoundName(),
+                                  pattern.getFactType() );
+                }
+            } else if ( column instanceof BRLConditionColumn ) {
+                for ( IPattern pattern : ((BRLConditionColumn) column).getDefinition() ) {
+                    addBindings( pattern );
+                }
+            }
+        }
+        for ( ActionCol52 column : dt.getActionCols() ) {
+            if ( column instanceof ActionInsertFactCol52 ) {
+                ActionInsertFactCol52 insert = (ActionInsertFactCol52) column;
+                if ( insert.getBoundName() != null ) {
+                    bindings.put( insert.getBoundName(),
+                                  insert.getFactType() );
+                }
+            } else if ( column instanceof BRLActionColumn ) {
+                for ( IAction action : ((BRLActionColumn) column).getDefinition() ) {
+                    addBindings( action );
+                }
+            }
+        }
+
+        for ( CompositeColumn< ? extends BaseColumn> column : dt.getConditions() ) {
+            if ( column instanceof Pattern52 ) {
+                Pattern52 pattern = (Pattern52) column;
+                for ( ConditionCol52 condition : pattern.getChildColumns() ) {
+                    condition.setFactField( field( pattern.getFactType(),
+                                                   condition.getFactField() ) );
+                }
+                pattern.setFactType( factType( pattern.getFactType() ) );
+            } else if ( column instanceof BRLConditionColumn ) {
+                BRLConditionColumn brl = (BRLConditionColumn) column;
+                for ( IPattern pattern : brl.getDefinition() ) {
+                    walkPattern( pattern );
+                }
+                for ( BRLConditionVariableColumn variable : brl.getChildColumns() ) {
+                    variable.setFactField( field( variable.getFactType(),
+                                                  variable.getFactField() ) );
+                    variable.setFactType( factType( variable.getFactType() ) );
+                }
+            }
+        }
+        for ( ActionCol52 column : dt.getActionCols() ) {
+            if ( column instanceof ActionInsertFactCol52 ) {
+                ActionInsertFactCol52 insert = (ActionInsertFactCol52) column;
+                insert.setFactField( field( insert.getFactType(),
+                                            insert.getFactField() ) );
+                insert.setFactType( factType( insert.getFactType() ) );
+            } else if ( column instanceof ActionSetFieldCol52 ) {
+                ActionSetFieldCol52 set = (ActionSetFieldCol52) column;
+                if ( isGlobal( set.getBoundName() ) ) {
+                    visitor.visitGlobal( set.getBoundName() );
+                }
+                set.setFactField( field( bindings.get( set.getBoundName() ),
+                                         set.getFactField() ) );
+            } else if ( column instanceof BRLActionColumn ) {
+                BRLActionColumn brl = (BRLActionColumn) column;
+                for ( IAction action : brl.getDefinition() ) {
+                    walkAction( action );
+                }
+                for ( BRLActionVariableColumn variable : brl.getChildColumns() ) {
+                    variable.setFactField( field( variable.getFactType(),
+                                                  variable.getFactField() ) );
+                    variable.setFactType( factType( variable.getFactType() ) );
+                }
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * @return true if any name was changed.
+     */
+    boolean walk(Scenario scenario) {
+        Map<String, String> variableTypes = scenario.getVariableTypes();
+
+        for ( FactData global : scenario.getGlobals() ) {
+            visitor.visitGlobal( global.getName() );
+            walkFactData( global );
+        }
+        for ( Fixture fixture : scenario.getFixtures() ) {
+            if ( fixture instanceof FactData ) {
+                walkFactData( (FactData) fixture );
+            } else if ( fixture instanceof VerifyFact ) {
+                VerifyFact verifyFact = (VerifyFact) fixture;
+                String type = verifyFact.anonymous ? verifyFact.getName() : variableTypes.get( verifyFact.getName() );
+                for ( VerifyField verifyField : verifyFact.getFieldValues() ) {
+                    verifyField.setFieldName( field( type,
+                                                     verifyField.getFieldName() ) );
+                }
+                if ( verifyFact.anonymous ) {
+                    verifyFact.setName( factType( type ) );
+                }
+            }
+        }
+        return changed;
+    }
+
+    private void walkFactData(FactData factData) {
+        for ( FieldData fieldData : factData.getFieldData() ) {
+            fieldData.setName( field( factData.getType(),
+                                      fieldData.getName() ) );
+        }
+        factData.setType( factType( factData.getType() ) );
+    }
+
+    private void addBindings(IPattern pattern) {
+        if ( pattern instanceof FactPattern ) {
+            FactPattern factPattern = (FactPattern) pattern;
+            if ( factPattern.isBound() ) {
+                bindings.put( factPattern.getBoundName(),
+                              factPattern.getFactType() );
+            }
+            addFieldBindings( factPattern.getFieldConstraints() );
+        } else if ( pattern instanceof CompositeFactPattern && ((CompositeFactPattern) pattern).getPatterns() != null ) {
+            for ( IFactPattern factPattern : ((CompositeFactPattern) pattern).getPatterns() ) {
+                addBindings( factPattern );
+            }
+        } else if ( pattern instanceof FromCompositeFactPattern ) {
+            addBindings( ((FromCompositeFactPattern) pattern).getFactPattern() );
+            if ( pattern instanceof FromAccumulateCompositeFactPattern ) {
+                addBindings( ((FromAccumulateCompositeFactPattern) pattern).getSourcePattern() );
+            } else if ( pattern instanceof FromCollectCompositeFactPattern ) {
+                addBindings( ((FromCollectCompositeFactPattern) pattern).getRightPattern() );
+            }
+        }
+    }
+
+    private void addFieldBindings(FieldConstraint[] constraints) {
+        if ( constraints == null ) {
+            return;
+        }
+        for ( FieldConstraint constraint : constraints ) {
+            if ( constraint instanceof SingleFieldConstraint && ((SingleFieldConstraint) constraint).isBound() ) {
+                variables.add( ((SingleFieldConstraint) constraint).getFieldBinding() );
+            } else if ( constraint instanceof CompositeFieldConstraint ) {
+                addFieldBindings( ((CompositeFieldConstraint) constraint).constraints );
+            }
+        }
+    }
+
+    private void addBindings(IAction action) {
+        if ( action instanceof ActionInsertFact ) {
+            ActionInsertFact insert = (ActionInsertFact) action;
+            if ( insert.isBound() ) {
+                bindings.put( insert.getBoundName(),
+                              insert.factType );
+            }
+        }
+    }
+
+    private void walkPattern(IPattern pattern) {
+        if ( pattern instanceof FactPattern ) {
+            FactPattern factPattern = (FactPattern) pattern;
+            walkConstraints( factPattern.getFactType(),
+                             factPattern.getFieldConstraints() );
+            factPattern.setFactType( factType( factPattern.getFactType() ) );
+        } else if ( pattern instanceof CompositeFactPattern && ((CompositeFactPattern) pattern).getPatterns() != null ) {
+            for ( IFactPattern factPattern : ((CompositeFactPattern) pattern).getPatterns() ) {
+                walkPattern( factPattern );
+            }
+        } else if ( pattern instanceof FromCompositeFactPattern ) {
+            walkPattern( ((FromCompositeFactPattern) pattern).getFactPattern() );
+            walkExpression( ((FromCompositeFactPattern) pattern).getExpression() );
+            if ( pattern instanceof FromAccumulateCompositeFactPattern ) {
+                walkPattern( ((FromAccumulateCompositeFactPattern) pattern).getSourcePattern() );
+            } else if ( pattern instanceof FromCollectCompositeFactPattern ) {
+                walkPattern( ((FromCollectCompositeFactPattern) pattern).getRightPattern() );
+            }
+        } else if ( pattern instanceof DSLSentence ) {
+            visitor.visitDslSentence( ((DSLSentence) pattern).getDefinition() );
+        }
+    }
+
+    private void walkConstraints(String factType,
+                                 FieldConstraint[] constraints) {
+        if ( constraints == null ) {
+            return;
+        }
+        for ( FieldConstraint constraint : constraints ) {
+            if ( constraint instanceof SingleFieldConstraintEBLeftSide ) {
+                walkExpression( ((SingleFieldConstraintEBLeftSide) constraint).getExpressionLeftSide() );
+                walkValue( (SingleFieldConstraintEBLeftSide) constraint );
+            } else if ( constraint instanceof SingleFieldConstraint ) {
+                SingleFieldConstraint single = (SingleFieldConstraint) constraint;
+                walkValue( single );
+                String owner = factType;
+                if ( single.getParent() instanceof SingleFieldConstraint ) {
+                    owner = ((SingleFieldConstraint) single.getParent()).getFieldType();
+                }
+                single.setFieldName( field( owner,
+                                            single.getFieldName() ) );
+                if ( single.connectives != null ) {
+                    for ( ConnectiveConstraint connective : single.connectives ) {
+                        walkValue( connective );
+                        connective.setFieldName( field( owner,
+                                                        connective.getFieldName() ) );
+                    }
+                }
+            } else if ( constraint instanceof CompositeFieldConstraint ) {
+                walkConstraints( factType,
+                                 ((CompositeFieldConstraint) constraint).constraints );
+            }
+        }
+    }
+
+    /**
+     * Visits the global the value of a constraint is, if it is one.
+     */
+    private void walkValue(BaseSingleFieldConstraint constraint) {
+        if ( constraint.getConstraintValueType() == BaseSingleFieldConstraint.TYPE_VARIABLE && isGlobal( constraint.getValue() ) ) {
+            visitor.visitGlobal( constraint.getValue() );
+        } else if ( constraint.getConstraintValueType() == BaseSingleFieldConstraint.TYPE_EXPR_BUILDER_VALUE ) {
+            walkExpression( constraint.getExpressionValue() );
+        }
+    }
+
+    private void walkExpression(ExpressionFormLine expression) {
+        if ( expression != null && !expression.isEmpty() && expression.getRootExpression() instanceof ExpressionGlobalVariable ) {
+            visitor.visitGlobal( expression.getRootExpression().getName() );
+        }
+    }
+
+    private void walkAction(IAction action) {
+        if ( action instanceof ActionInsertFact ) {
+            ActionInsertFact insert = (ActionInsertFact) action;
+            walkFieldValues( insert.factType,
+                             insert );
+            insert.factType = factType( insert.factType );
+        } else if ( action instanceof ActionSetField ) {
+            ActionSetField set = (ActionSetField) action;
+            if ( isGlobal( set.variable ) ) {
+                visitor.visitGlobal( set.variable );
+            }
+            if ( !(action instanceof ActionCallMethod) ) {
+                walkFieldValues( bindings.get( set.variable ),
+                                 set );
+            }
+        } else if ( action instanceof ActionGlobalCollectionAdd ) {
+            visitor.visitGlobal( ((ActionGlobalCollectionAdd) action).globalName );
+        } else if ( action instanceof DSLSentence ) {
+            visitor.visitDslSentence( ((DSLSentence) action).getDefinition() );
+        }
+    }
+
+    /**
+     * @return true if the name is not one of the variables of the model, so it can only
+     *         be a global.
+     */
+    private boolean isGlobal(String name) {
+        return name != null && name.length() > 0 && !bindings.containsKey( name ) && !variables.contains( name );
+    }
+
+    private void walkFieldValues(String factType,
+                                 ActionFieldList action) {
+        if ( action.fieldValues == null ) {
+            return;
+        }
+        for ( ActionFieldValue fieldValue : action.fieldValues ) {
+            fieldValue.setField( field( factType,
+                                        fieldValue.getField() ) );
+        }
+    }
+
+    private String factType(String factType) {
+        if ( factType == null || factType.length() == 0 ) {
+            return factType;
+        }
+        String name = visitor.visitFactType( factType );
+        changed |= !name.equals( factType );
+        return name;
+    }
+
+    private String field(String factType,
+                         String field) {
+        if ( factType == null || factType.length() == 0 || field == null || field.length() == 0 || "this".equals( field ) ) {
+            return field;
+        }
+        String name = visitor.visitField( factType,
+                                          field );
+        changed |= !name.equals( field );
+        return name;
+    }
+}
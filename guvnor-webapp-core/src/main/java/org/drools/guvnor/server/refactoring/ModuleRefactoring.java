@@ -0,0 +1,201 @@
+/*
+ * Copyright 2012 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.drools.guvnor.server.refactoring;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+
+import org.drools.compiler.DroolsParserException;
+import org.drools.guvnor.client.common.AssetFormats;
+import org.drools.guvnor.server.cache.RuleBaseCache;
+import org.drools.repository.AssetItem;
+import org.drools.repository.ModuleItem;
+import org.drools.repository.RulesRepository;
+import org.drools.repository.RulesRepositoryException;
+
+/**
+ * Renames fact types and fields across the assets of a module.
+ *
+ * A rename is first previewed: the assets referring to the symbol are looked up in the
+ * {@link ModuleSymbolIndex}, and only those are read and changed in memory. The assets
+ * the index could not read are reported as skipped, as they may refer to the symbol.
+ * The resulting {@link RefactoringChangeSet} is then applied as a whole, with one
+ * checkin of all the assets it changes.
+ */
+public class ModuleRefactoring {
+
+    private final RulesRepository   rulesRepository;
+    private final ModuleSymbolIndex symbolIndex;
+
+    public ModuleRefactoring(RulesRepository rulesRepository) {
+        this( rulesRepository,
+              ModuleSymbolIndex.getInstance() );
+    }
+
+    ModuleRefactoring(RulesRepository rulesRepository,
+                      ModuleSymbolIndex symbolIndex) {
+        this.rulesRepository = rulesRepository;
+        this.symbolIndex = symbolIndex;
+    }
+
+    public RefactoringChangeSet previewFactTypeRename(String moduleUuid,
+                                                      String factType,
+                                                      String newName) {
+        checkName( newName );
+        return preview( moduleUuid,
+                        SymbolRename.factType( factType,
+                                               newName ) );
+    }
+
+    public RefactoringChangeSet previewFieldRename(String moduleUuid,
+                                                   String factType,
+                                                   String field,
+                                                   String newName) {
+        checkName( newName );
+        return preview( moduleUuid,
+                        SymbolRename.field( factType,
+                                            field,
+                                            newName ) );
+    }
+
+    private RefactoringChangeSet preview(String moduleUuid,
+                                         SymbolRename rename) {
+        ModuleItem module = rulesRepository.loadModuleByUUID( moduleUuid );
+        RefactoringChangeSet changeSet = new RefactoringChangeSet( moduleUuid,
+                                                                   rename.getSymbol(),
+                                                                   rename.getNewName() );
+
+        for ( AssetItem asset : loadAssets( moduleUuid,
+                                            symbolIndex.getUnreadableAssets( module ) ) ) {
+            changeSet.addSkipped( asset.getName(),
+                                  "Its content can not be read, so it may refer to the symbol." );
+        }
+
+        List<AssetItem> assets = loadAssets( moduleUuid,
+                                             symbolIndex.getAssetsReferringTo( module,
+                                                                               rename.getSymbol() ) );
+        SymbolContext context = assets.isEmpty() ? SymbolContext.EMPTY : SymbolContext.forModule( module );
+        for ( AssetItem asset : assets ) {
+            if ( !AssetSymbolWalker.isRenameSupported( asset.getFormat() ) ) {
+                changeSet.addSkipped( asset.getName(),
+                                      "The sentences of the DSL it uses have to be changed instead." );
+                continue;
+            }
+            String content = asset.getContent();
+            try {
+                String renamed = AssetSymbolWalker.walk( asset.getFormat(),
+                                                         content,
+                                                         context,
+                                                         rename );
+                //The same String is returned when nothing was renamed
+                if ( renamed != content ) {
+                    changeSet.addChange( new RefactoringChangeSet.AssetChange( asset.getUUID(),
+                                                                               asset.getName(),
+                                                                               asset.getFormat(),
+                                                                               asset.getVersionNumber(),
+                                                                               content,
+                                                                               renamed ) );
+                }
+            } catch ( DroolsParserException e ) {
+                changeSet.addSkipped( asset.getName(),
+                                      e.getMessage() );
+            }
+        }
+        return changeSet;
+    }
+
+    /**
+     * @return the assets that are still in the module, by name.
+     */
+    private List<AssetItem> loadAssets(String moduleUuid,
+                                       Set<String> uuids) {
+        List<AssetItem> assets = new ArrayList<AssetItem>();
+        for ( String uuid : uuids ) {
+            try {
+                AssetItem asset = rulesRepository.loadAssetByUUID( uuid );
+                if ( !asset.isArchived() && moduleUuid.equals( asset.getModule().getUUID() ) ) {
+                    assets.add( asset );
+                }
+            } catch ( RulesRepositoryException e ) {
+                //Removed since it was indexed
+            }
+        }
+        Collections.sort( assets,
+                          new Comparator<AssetItem>() {
+                              public int compare(AssetItem first,
+                                                 AssetItem second) {
+                                  return first.getName().compareTo( second.getName() );
+                              }
+                          } );
+        return assets;
+    }
+
+    /**
+     * Checks in the new content of all the assets of the change set, provided none of
+     * them was checked in since the change set was made.
+     * @return the assets that were changed.
+     */
+    public List<AssetItem> apply(RefactoringChangeSet changeSet,
+                                 String comment) {
+        List<AssetItem> assets = new ArrayList<AssetItem>();
+        List<String> outdated = new ArrayList<String>();
+        for ( RefactoringChangeSet.AssetChange change : changeSet.getChanges() ) {
+            AssetItem asset = rulesRepository.loadAssetByUUID( change.getUuid() );
+            if ( !changeSet.getModuleUuid().equals( asset.getModule().getUUID() ) ) {
+                throw new RulesRepositoryException( "Unable to apply the refactoring, as asset [" + change.getName() + "] is not in the module." );
+            }
+            if ( asset.getVersionNumber() != change.getVersion() ) {
+                outdated.add( change.getName() );
+            }
+            assets.add( asset );
+        }
+        if ( !outdated.isEmpty() ) {
+            throw new RulesRepositoryException( "Unable to apply the refactoring, as these assets have been updated since: " + outdated );
+        }
+        if ( assets.isEmpty() ) {
+            return assets;
+        }
+
+        boolean rulesChanged = false;
+        for ( int i = 0; i < assets.size(); i++ ) {
+            AssetItem asset = assets.get( i );
+            asset.updateContent( changeSet.getChanges().get( i ).getContent() );
+            rulesChanged |= !AssetFormats.TEST_SCENARIO.equals( asset.getFormat() );
+        }
+        if ( rulesChanged ) {
+            ModuleItem module = rulesRepository.loadModuleByUUID( changeSet.getModuleUuid() );
+            module.updateBinaryUpToDate( false );
+            RuleBaseCache.getInstance().remove( module.getUUID() );
+        }
+        rulesRepository.checkinAssets( assets,
+                                       comment );
+        return assets;
+    }
+
+    private static void checkName(String newName) {
+        boolean valid = newName != null && newName.length() > 0 && Character.isJavaIdentifierStart( newName.charAt( 0 ) );
+        for ( int i = 1; valid && i < newName.length(); i++ ) {
+            valid = Character.isJavaIdentifierPart( newName.charAt( i ) );
+        }
+        if ( !valid ) {
+            throw new IllegalArgumentException( "[" + newName + "] is not a valid name." );
+        }
+    }
+}
@@ -0,0 +1,671 @@
+/*
+ * Copyright 2012 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.drools.guvnor.server.refactoring;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.drools.guvnor.client.common.AssetFormats;
+import org.drools.guvnor.server.repository.RepositoryStartupService;
+import org.drools.guvnor.server.util.LoggingHelper;
+import org.drools.repository.AssetItem;
+import org.drools.repository.AssetItemIterator;
+import org.drools.repository.ModuleItem;
+import org.drools.repository.RulesRepository;
+import org.drools.repository.RulesRepositoryException;
+import org.drools.repository.events.BatchCheckinEvent;
+
+/**
+ * An inverted index of the symbols the assets of a module refer to: fact types,
+ * fields, globals and DSL sentences, see {@link Symbols}. It tells which assets use a
+ * symbol, which are impacted by a change to it and which of the symbols of a module
+ * are not used, without reading the assets.
+ *
+ * The symbols of an asset are extracted with {@link AssetSymbolWalker} after it is
+ * checked in, and stored with it (see AssetItem.updateSymbols()). The checkin only
+ * records the asset: its symbols are extracted in the background once start() has
+ * been called, or when the index of its module is next asked for, whichever comes
+ * first. The index of a module is built the first time it is asked for, from the
+ * stored symbols, extracting those of the assets that have none yet. As the symbols
+ * of DRL and DSL rules depend on the globals of the header of the module and on its
+ * DSLs, they are extracted again when the header or a DSL is checked in. rebuild()
+ * extracts and stores the symbols of all the assets of a module again, and scan()
+ * extracts them without storing them, to check the index against.
+ *
+ * Callers check the assets they get are still in the module. At most
+ * "guvnor.symbolIndex.cacheSize" modules (100 by default) are kept.
+ */
+public class ModuleSymbolIndex {
+
+    private static final LoggingHelper     log             = LoggingHelper.getLogger( ModuleSymbolIndex.class );
+
+    private static final ModuleSymbolIndex INSTANCE        = new ModuleSymbolIndex( Integer.getInteger( "guvnor.symbolIndex.cacheSize",
+                                                                                                        100 ) );
+
+    /**
+     * The formats whose symbols depend on the header or the DSLs of the module.
+     */
+    private static final String[]          CONTEXT_FORMATS = new String[]{AssetFormats.DRL, AssetFormats.DSL_TEMPLATE_RULE};
+
+    private final Map<String, ModuleSymbols> modules;
+
+    /**
+     * The changes the index has not been brought up to date with, by the UUID of their
+     * module.
+     */
+    private final Map<String, PendingChanges> pending         = new HashMap<String, PendingChanges>();
+
+    /**
+     * Held while the pending changes of a module are applied, so a module asked for
+     * while its changes are applied in the background waits for them.
+     */
+    private final Object                    updateLock      = new Object();
+
+    private final AtomicBoolean             updateScheduled = new AtomicBoolean( false );
+
+    private ExecutorService                 executor;
+    private RepositoryStartupService        repositoryStartupService;
+    private String                          userName;
+    private String                          password;
+
+    private final BatchCheckinEvent         checkinListener = new BatchCheckinEvent() {
+                                                                public void afterCheckin(AssetItem item) {
+                                                                    assetsCheckedIn( Collections.singletonList( item ) );
+                                                                }
+
+                                                                public void afterCheckin(Collection<AssetItem> items) {
+                                                                    assetsCheckedIn( items );
+                                                                }
+                                                            };
+
+    ModuleSymbolIndex(final int cacheSize) {
+        this.modules = new LinkedHashMap<String, ModuleSymbols>( 16,
+                                                                 0.75f,
+                                                                 true ) {
+            private static final long serialVersionUID = 510l;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, ModuleSymbols> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    public static ModuleSymbolIndex getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @return the listener that keeps the index up to date with the assets that are
+     *         checked in. It is registered by the RepositoryStartupService.
+     */
+    public BatchCheckinEvent getCheckinListener() {
+        return checkinListener;
+    }
+
+    /**
+     * Applies the changes of the assets that are checked in from now on in the
+     * background, with sessions of the given user, until stop() is called.
+     */
+    public synchronized void start(RepositoryStartupService repositoryStartupService,
+                                   String userName,
+                                   String password) {
+        stop();
+        this.repositoryStartupService = repositoryStartupService;
+        this.userName = userName;
+        this.password = password;
+        this.executor = Executors.newSingleThreadExecutor();
+        scheduleUpdate();
+    }
+
+    /**
+     * Stops the background updates. The changes that are left are applied when their
+     * module is asked for.
+     */
+    public synchronized void stop() {
+        if ( executor != null ) {
+            executor.shutdownNow();
+            executor = null;
+            repositoryStartupService = null;
+        }
+    }
+
+    /**
+     * @return the UUIDs of the assets of the module that refer to the symbol, see
+     *         {@link Symbols}.
+     */
+    public Set<String> getAssetsReferringTo(ModuleItem module,
+                                            String symbol) {
+        return getModuleSymbols( module ).getAssetsReferringTo( symbol );
+    }
+
+    /**
+     * @return the UUIDs of the assets of the module a change to the symbol impacts: those
+     *         that refer to it and, for a fact type, those that refer to one of its
+     *         fields.
+     */
+    public Set<String> getAssetsImpactedBy(ModuleItem module,
+                                           String symbol) {
+        return getModuleSymbols( module ).getAssetsImpactedBy( symbol );
+    }
+
+    /**
+     * @return the UUIDs of the assets of the module whose content can not be read, so
+     *         the symbols they refer to are not known.
+     */
+    public Set<String> getUnreadableAssets(ModuleItem module) {
+        return getModuleSymbols( module ).getAssetsReferringTo( Symbols.UNREADABLE );
+    }
+
+    /**
+     * @return the symbols at least one asset of the module refers to.
+     */
+    public Set<String> getUsedSymbols(ModuleItem module) {
+        return getModuleSymbols( module ).getSymbols();
+    }
+
+    /**
+     * @param declared the symbols the module declares, see
+     *        {@link Symbols#getDeclaredSymbols(org.drools.ide.common.client.modeldriven.SuggestionCompletionEngine)}.
+     * @return those no asset of the module refers to, but the declarative models that
+     *         declare them.
+     */
+    public Set<String> getUnusedSymbols(ModuleItem module,
+                                        Collection<String> declared) {
+        return getModuleSymbols( module ).getUnusedSymbols( declared );
+    }
+
+    /**
+     * @return the symbols of each asset of the module, by the UUID of the asset.
+     */
+    public Map<String, Set<String>> getSymbolsByAsset(ModuleItem module) {
+        return getModuleSymbols( module ).getSymbolsByAsset();
+    }
+
+    /**
+     * Extracts the symbols of all the assets of the module from their content, as
+     * scan() does, and stores them with the assets.
+     */
+    public void rebuild(ModuleItem module) {
+        synchronized ( updateLock ) {
+            synchronized ( pending ) {
+                pending.remove( module.getUUID() );
+            }
+            long start = System.currentTimeMillis();
+            SymbolContext context = SymbolContext.forModule( module );
+            ModuleSymbols symbols = new ModuleSymbols();
+            AssetItemIterator it = listAssets( module );
+            while ( it.hasNext() ) {
+                AssetItem asset = it.next();
+                Set<String> assetSymbols = extract( asset,
+                                                    context );
+                store( asset,
+                       assetSymbols );
+                symbols.put( asset.getUUID(),
+                             asset.getFormat(),
+                             assetSymbols );
+            }
+            module.getRulesRepository().save();
+            log.info( "Rebuilt the symbol index of module [" + module.getName() + "] in " + (System.currentTimeMillis() - start) + " ms" );
+
+            synchronized ( modules ) {
+                modules.put( module.getUUID(),
+                             symbols );
+            }
+        }
+    }
+
+    /**
+     * @return the symbols of each asset of the module, by the UUID of the asset,
+     *         extracted from their content without the index nor the stored symbols.
+     */
+    public static Map<String, Set<String>> scan(ModuleItem module) {
+        SymbolContext context = SymbolContext.forModule( module );
+        Map<String, Set<String>> symbols = new HashMap<String, Set<String>>();
+        AssetItemIterator it = listAssets( module );
+        while ( it.hasNext() ) {
+            AssetItem asset = it.next();
+            symbols.put( asset.getUUID(),
+                         extract( asset,
+                                  context ) );
+        }
+        return symbols;
+    }
+
+    private ModuleSymbols getModuleSymbols(ModuleItem module) {
+        update( module );
+        String moduleUuid = module.getUUID();
+        synchronized ( modules ) {
+            ModuleSymbols symbols = modules.get( moduleUuid );
+            if ( symbols != null ) {
+                return symbols;
+            }
+        }
+
+        long start = System.currentTimeMillis();
+        ModuleSymbols symbols = new ModuleSymbols();
+        SymbolContext context = null;
+        AssetItemIterator it = listAssets( module );
+        while ( it.hasNext() ) {
+            AssetItem asset = it.next();
+            Set<String> assetSymbols = asset.getSymbols();
+            if ( assetSymbols == null ) {
+                //Not checked in since the index was introduced
+                if ( context == null ) {
+                    context = SymbolContext.forModule( module );
+                }
+                assetSymbols = extract( asset,
+                                        context );
+            }
+            symbols.put( asset.getUUID(),
+                         asset.getFormat(),
+                         assetSymbols );
+        }
+        log.debug( "Indexed the symbols of module [" + module.getName() + "] in " + (System.currentTimeMillis() - start) + " ms" );
+
+        synchronized ( modules ) {
+            ModuleSymbols cached = modules.get( moduleUuid );
+            if ( cached != null ) {
+                return cached;
+            }
+            modules.put( moduleUuid,
+                         symbols );
+        }
+        return symbols;
+    }
+
+    /**
+     * Records the assets that were checked in, so their symbols are extracted and stored
+     * out of the checkin, see update().
+     */
+    void assetsCheckedIn(Collection<AssetItem> items) {
+        boolean changed = false;
+        for ( AssetItem item : items ) {
+            boolean context = isContext( item );
+            if ( !context && !AssetSymbolWalker.isSupported( item.getFormat() ) ) {
+                continue;
+            }
+            String moduleUuid = item.getModule().getUUID();
+            synchronized ( pending ) {
+                PendingChanges changes = pending.get( moduleUuid );
+                if ( changes == null ) {
+                    changes = new PendingChanges();
+                    pending.put( moduleUuid,
+                                 changes );
+                }
+                if ( context ) {
+                    changes.contextChanged = true;
+                } else {
+                    changes.assetUuids.add( item.getUUID() );
+                }
+            }
+            changed = true;
+        }
+        if ( changed ) {
+            scheduleUpdate();
+        }
+    }
+
+    private synchronized void scheduleUpdate() {
+        if ( executor == null || !updateScheduled.compareAndSet( false,
+                                                                 true ) ) {
+            return;
+        }
+        final RepositoryStartupService repositoryStartupService = this.repositoryStartupService;
+        final String userName = this.userName;
+        final String password = this.password;
+        try {
+            executor.execute( new Runnable() {
+                public void run() {
+                    updateScheduled.set( false );
+                    updateAll( repositoryStartupService,
+                               userName,
+                               password );
+                }
+            } );
+        } catch ( RejectedExecutionException e ) {
+            //Stopped: the changes are applied when their module is asked for
+            updateScheduled.set( false );
+        }
+    }
+
+    private void updateAll(RepositoryStartupService repositoryStartupService,
+                           String userName,
+                           String password) {
+        Set<String> moduleUuids;
+        synchronized ( pending ) {
+            if ( pending.isEmpty() ) {
+                return;
+            }
+            moduleUuids = new HashSet<String>( pending.keySet() );
+        }
+        RulesRepository repository = null;
+        try {
+            repository = new RulesRepository( repositoryStartupService.newSession( userName,
+                                                                                   password ) );
+            for ( String moduleUuid : moduleUuids ) {
+                if ( Thread.currentThread().isInterrupted() ) {
+                    return;
+                }
+                ModuleItem module;
+                try {
+                    module = repository.loadModuleByUUID( moduleUuid );
+                } catch ( RulesRepositoryException e ) {
+                    //Removed since
+                    synchronized ( pending ) {
+                        pending.remove( moduleUuid );
+                    }
+                    invalidate( moduleUuid );
+                    continue;
+                }
+                update( module );
+            }
+        } catch ( RuntimeException e ) {
+            log.error( "Unable to update the symbol index",
+                       e );
+        } finally {
+            if ( repository != null ) {
+                repository.logout();
+            }
+        }
+    }
+
+    /**
+     * Extracts and stores the symbols of the assets of the module that were checked in
+     * since the last update. When the header or a DSL of the module was checked in, the
+     * DRL and DSL rules of the module are extracted again.
+     */
+    private void update(ModuleItem module) {
+        synchronized ( updateLock ) {
+            PendingChanges changes;
+            synchronized ( pending ) {
+                changes = pending.remove( module.getUUID() );
+            }
+            if ( changes == null ) {
+                return;
+            }
+
+            String moduleUuid = module.getUUID();
+            SymbolContext context = null;
+            AssetItem saved = null;
+            for ( String assetUuid : changes.assetUuids ) {
+                AssetItem asset;
+                try {
+                    asset = module.getRulesRepository().loadAssetByUUID( assetUuid );
+                } catch ( RulesRepositoryException e ) {
+                    //Removed since
+                    assetRemoved( moduleUuid,
+                                  assetUuid );
+                    continue;
+                }
+                if ( asset.isArchived() ) {
+                    assetRemoved( moduleUuid,
+                                  assetUuid );
+                    continue;
+                }
+                boolean contextFormat = isContextFormat( asset.getFormat() );
+                if ( contextFormat && changes.contextChanged ) {
+                    //Extracted by reindex() below
+                    continue;
+                }
+                Set<String> assetSymbols = asset.getSymbols();
+                if ( assetSymbols == null || contextFormat ) {
+                    if ( context == null ) {
+                        context = SymbolContext.forModule( module );
+                    }
+                    assetSymbols = extract( asset,
+                                            context );
+                    if ( store( asset,
+                                assetSymbols ) ) {
+                        saved = asset;
+                    }
+                }
+                assetExtracted( moduleUuid,
+                                asset,
+                                assetSymbols );
+            }
+            if ( saved != null ) {
+                save( saved );
+            }
+
+            if ( changes.contextChanged ) {
+                reindex( module,
+                         CONTEXT_FORMATS );
+            }
+        }
+    }
+
+    /**
+     * Extracts the symbols of the assets of the given formats again.
+     */
+    private void reindex(ModuleItem module,
+                         String[] formats) {
+        SymbolContext context = SymbolContext.forModule( module );
+        AssetItem saved = null;
+        AssetItemIterator it = module.listAssetsByFormat( formats );
+        while ( it.hasNext() ) {
+            AssetItem asset = it.next();
+            Set<String> assetSymbols = extract( asset,
+                                                context );
+            if ( store( asset,
+                        assetSymbols ) ) {
+                saved = asset;
+            }
+            assetExtracted( module.getUUID(),
+                            asset,
+                            assetSymbols );
+        }
+        if ( saved != null ) {
+            save( saved );
+        }
+    }
+
+    private void assetExtracted(String moduleUuid,
+                                AssetItem asset,
+                                Set<String> symbols) {
+        ModuleSymbols moduleSymbols = getCachedModuleSymbols( moduleUuid );
+        if ( moduleSymbols != null ) {
+            moduleSymbols.put( asset.getUUID(),
+                               asset.getFormat(),
+                               symbols );
+        }
+    }
+
+    private void assetRemoved(String moduleUuid,
+                              String assetUuid) {
+        ModuleSymbols moduleSymbols = getCachedModuleSymbols( moduleUuid );
+        if ( moduleSymbols != null ) {
+            moduleSymbols.remove( assetUuid );
+        }
+    }
+
+    private ModuleSymbols getCachedModuleSymbols(String moduleUuid) {
+        synchronized ( modules ) {
+            return modules.get( moduleUuid );
+        }
+    }
+
+    private static AssetItemIterator listAssets(ModuleItem module) {
+        return module.listAssetsByFormat( AssetSymbolWalker.FORMATS.toArray( new String[AssetSymbolWalker.FORMATS.size()] ) );
+    }
+
+    private static Set<String> extract(AssetItem asset,
+                                       SymbolContext context) {
+        return AssetSymbolWalker.getSymbols( asset.getFormat(),
+                                             asset.getContent(),
+                                             context );
+    }
+
+    /**
+     * @return true if the symbols were changed, and have to be saved.
+     */
+    private static boolean store(AssetItem asset,
+                                 Set<String> symbols) {
+        if ( symbols.equals( asset.getSymbols() ) ) {
+            return false;
+        }
+        try {
+            asset.updateSymbols( symbols );
+            return true;
+        } catch ( RulesRepositoryException e ) {
+            log.warn( "Unable to store the symbols of [" + asset.getName() + "]: " + e.getMessage() );
+            return false;
+        }
+    }
+
+    private static void save(AssetItem asset) {
+        try {
+            asset.getRulesRepository().save();
+        } catch ( RulesRepositoryException e ) {
+            log.warn( "Unable to save the symbols of the assets: " + e.getMessage() );
+        }
+    }
+
+    /**
+     * @return true if the asset is the header or a DSL of its module.
+     */
+    private static boolean isContext(AssetItem item) {
+        return AssetFormats.DSL.equals( item.getFormat() ) || "drools".equals( item.getName() );
+    }
+
+    private static boolean isContextFormat(String format) {
+        for ( String contextFormat : CONTEXT_FORMATS ) {
+            if ( contextFormat.equals( format ) ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public void invalidate(String moduleUuid) {
+        synchronized ( modules ) {
+            modules.remove( moduleUuid );
+        }
+    }
+
+    public void invalidateAll() {
+        synchronized ( modules ) {
+            modules.clear();
+        }
+    }
+
+    /**
+     * The assets of a module checked in since the index was last brought up to date.
+     * Guarded by the pending map.
+     */
+    private static class PendingChanges {
+
+        private final Set<String> assetUuids = new LinkedHashSet<String>();
+        private boolean           contextChanged;
+    }
+
+    /**
+     * The symbols of the assets of a module, and the assets referring to each symbol.
+     */
+    private static class ModuleSymbols {
+
+        private final Map<String, Set<String>>     symbolsByAsset  = new HashMap<String, Set<String>>();
+        private final TreeMap<String, Set<String>> assetsBySymbol  = new TreeMap<String, Set<String>>();
+        private final Set<String>                  declaringAssets = new HashSet<String>();
+
+        private synchronized void put(String assetUuid,
+                                      String format,
+                                      Set<String> symbols) {
+            remove( assetUuid );
+            symbolsByAsset.put( assetUuid,
+                                symbols );
+            if ( AssetFormats.DRL_MODEL.equals( format ) ) {
+                declaringAssets.add( assetUuid );
+            }
+            for ( String symbol : symbols ) {
+                Set<String> assets = assetsBySymbol.get( symbol );
+                if ( assets == null ) {
+                    assets = new HashSet<String>();
+                    assetsBySymbol.put( symbol,
+                                        assets );
+                }
+                assets.add( assetUuid );
+            }
+        }
+
+        private synchronized void remove(String assetUuid) {
+            declaringAssets.remove( assetUuid );
+            Set<String> symbols = symbolsByAsset.remove( assetUuid );
+            if ( symbols == null ) {
+                return;
+            }
+            for ( String symbol : symbols ) {
+                Set<String> assets = assetsBySymbol.get( symbol );
+                assets.remove( assetUuid );
+                if ( assets.isEmpty() ) {
+                    assetsBySymbol.remove( symbol );
+                }
+            }
+        }
+
+        private synchronized Set<String> getAssetsReferringTo(String symbol) {
+            Set<String> assets = assetsBySymbol.get( symbol );
+            return assets == null ? Collections.<String> emptySet() : new HashSet<String>( assets );
+        }
+
+        private synchronized Set<String> getAssetsImpactedBy(String symbol) {
+            Set<String> assets = new HashSet<String>( getAssetsReferringTo( symbol ) );
+            String fieldPrefix = Symbols.getFieldPrefix( symbol );
+            if ( fieldPrefix != null ) {
+                for ( Set<String> fieldAssets : assetsBySymbol.subMap( fieldPrefix,
+                                                                       fieldPrefix + Character.MAX_VALUE ).values() ) {
+                    assets.addAll( fieldAssets );
+                }
+            }
+            return assets;
+        }
+
+        private synchronized Set<String> getUnusedSymbols(Collection<String> declared) {
+            Set<String> unused = new TreeSet<String>();
+            for ( String symbol : declared ) {
+                Set<String> assets = assetsBySymbol.get( symbol );
+                if ( assets == null || declaringAssets.containsAll( assets ) ) {
+                    unused.add( symbol );
+                }
+            }
+            return unused;
+        }
+
+        private synchronized Set<String> getSymbols() {
+            Set<String> symbols = new TreeSet<String>( assetsBySymbol.keySet() );
+            symbols.remove( Symbols.UNREADABLE );
+            return symbols;
+        }
+
+        private synchronized Map<String, Set<String>> getSymbolsByAsset() {
+            return new HashMap<String, Set<String>>( symbolsByAsset );
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2012 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.drools.guvnor.server.refactoring;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The changes a refactoring makes to the assets of a module, to be reviewed before
+ * they are applied together. Each change keeps the version of the asset it was made
+ * from, so it is not applied over a later version.
+ */
+public class RefactoringChangeSet
+    implements
+    Serializable {
+
+    private static final long         serialVersionUID = 510l;
+
+    private final String              moduleUuid;
+    private final String              symbol;
+    private final String              newName;
+    private final List<AssetChange>   changes          = new ArrayList<AssetChange>();
+    private final Map<String, String> skipped          = new LinkedHashMap<String, String>();
+
+    public RefactoringChangeSet(String moduleUuid,
+                                String symbol,
+                                String newName) {
+        this.moduleUuid = moduleUuid;
+        this.symbol = symbol;
+        this.newName = newName;
+    }
+
+    public String getModuleUuid() {
+        return moduleUuid;
+    }
+
+    /**
+     * @return the key of the symbol that is renamed, see {@link Symbols}.
+     */
+    public String getSymbol() {
+        return symbol;
+    }
+
+    public String getNewName() {
+        return newName;
+    }
+
+    public List<AssetChange> getChanges() {
+        return Collections.unmodifiableList( changes );
+    }
+
+    /**
+     * @return the names of the assets that refer to the symbol but can not be changed,
+     *         with the reason.
+     */
+    public Map<String, String> getSkipped() {
+        return Collections.unmodifiableMap( skipped );
+    }
+
+    public boolean isEmpty() {
+        return changes.isEmpty();
+    }
+
+    void addChange(AssetChange change) {
+        changes.add( change );
+    }
+
+    void addSkipped(String assetName,
+                    String reason) {
+        skipped.put( assetName,
+                     reason );
+    }
+
+    /**
+     * The new content of an asset.
+     */
+    public static class AssetChange
+        implements
+        Serializable {
+
+        private static final long serialVersionUID = 510l;
+
+        private final String      uuid;
+        private final String      name;
+        private final String      format;
+        private final long        version;
+        private final String      originalContent;
+        private final String      content;
+
+        AssetChange(String uuid,
+                    String name,
+                    String format,
+                    long version,
+                    String originalContent,
+                    String content) {
+            this.uuid = uuid;
+            this.name = name;
+            this.format = format;
+            this.version = version;
+            this.originalContent = originalContent;
+            this.content = content;
+        }
+
+        public String getUuid() {
+            return uuid;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getFormat() {
+            return format;
+        }
+
+        /**
+         * @return the version of the asset the change was made from.
+         */
+        public long getVersion() {
+            return version;
+        }
+
+        public String getOriginalContent() {
+            return originalContent;
+        }
+
+        public String getContent() {
+            return content;
+        }
+    }
+}
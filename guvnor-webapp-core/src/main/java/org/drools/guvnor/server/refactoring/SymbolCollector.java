@@ -0,0 +1,56 @@
+/*
+ * Copyright 2012 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.drools.guvnor.server.refactoring;
+
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Collects the keys of the symbols an asset refers to, see {@link Symbols}.
+ */
+public class SymbolCollector extends SymbolVisitor {
+
+    private final Set<String> symbols = new TreeSet<String>();
+
+    @Override
+    public String visitFactType(String factType) {
+        symbols.add( Symbols.factType( factType ) );
+        return factType;
+    }
+
+    @Override
+    public String visitField(String factType,
+                             String field) {
+        symbols.add( Symbols.field( factType,
+                                    field ) );
+        return field;
+    }
+
+    @Override
+    public void visitGlobal(String global) {
+        symbols.add( Symbols.global( global ) );
+    }
+
+    @Override
+    public void visitDslSentence(String definition) {
+        symbols.add( Symbols.dslSentence( definition ) );
+    }
+
+    public Set<String> getSymbols() {
+        return symbols;
+    }
+}
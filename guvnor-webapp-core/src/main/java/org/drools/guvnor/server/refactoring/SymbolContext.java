@@ -0,0 +1,94 @@
+/*
+ * Copyright 2012 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.drools.guvnor.server.refactoring;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.drools.compiler.DrlParser;
+import org.drools.compiler.DroolsParserException;
+import org.drools.guvnor.server.builder.CompiledDSL;
+import org.drools.guvnor.server.builder.DSLLoader;
+import org.drools.guvnor.server.util.DroolsHeader;
+import org.drools.guvnor.server.util.LoggingHelper;
+import org.drools.lang.descr.GlobalDescr;
+import org.drools.lang.descr.PackageDescr;
+import org.drools.repository.ModuleItem;
+
+/**
+ * What the symbols of an asset depend on besides its content: the globals declared in
+ * the header of its module, which DRL assets use without declaring them, and the DSLs
+ * of the module, which DSL rules are expanded with.
+ */
+public class SymbolContext {
+
+    private static final LoggingHelper log   = LoggingHelper.getLogger( SymbolContext.class );
+
+    public static final SymbolContext  EMPTY = new SymbolContext( Collections.<String> emptySet(),
+                                                                  null );
+
+    private final Set<String>          globals;
+    private final CompiledDSL          dsl;
+
+    public SymbolContext(Set<String> globals,
+                         CompiledDSL dsl) {
+        this.globals = Collections.unmodifiableSet( new HashSet<String>( globals ) );
+        this.dsl = dsl;
+    }
+
+    public static SymbolContext forModule(ModuleItem module) {
+        return new SymbolContext( getGlobals( DroolsHeader.getDroolsHeader( module ) ),
+                                  DSLLoader.loadCompiledDSL( module ) );
+    }
+
+    /**
+     * @return the names of the globals the header declares, none if it does not parse.
+     */
+    static Set<String> getGlobals(String header) {
+        Set<String> globals = new HashSet<String>();
+        if ( header == null || header.trim().length() == 0 ) {
+            return globals;
+        }
+        try {
+            DrlParser parser = new DrlParser();
+            PackageDescr pkg = parser.parse( header );
+            if ( parser.hasErrors() || pkg == null ) {
+                log.warn( "Unable to parse the header for its globals: " + parser.getErrors() );
+                return globals;
+            }
+            for ( GlobalDescr global : pkg.getGlobals() ) {
+                globals.add( global.getIdentifier() );
+            }
+        } catch ( DroolsParserException e ) {
+            log.warn( "Unable to parse the header for its globals: " + e.getMessage() );
+        }
+        return globals;
+    }
+
+    public Set<String> getGlobals() {
+        return globals;
+    }
+
+    /**
+     * @return the DSLs of the module, null if they are not known.
+     */
+    public CompiledDSL getDsl() {
+        return dsl;
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2012 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.drools.guvnor.server.refactoring;
+
+/**
+ * Renames a fact type, or a field of a fact type, wherever an asset refers to it. A
+ * qualified reference to the type keeps its package.
+ */
+public class SymbolRename extends SymbolVisitor {
+
+    private final String factType;
+    private final String field;
+    private final String newName;
+
+    private SymbolRename(String factType,
+                         String field,
+                         String newName) {
+        this.factType = Symbols.getSimpleName( factType );
+        this.field = field;
+        this.newName = newName;
+    }
+
+    public static SymbolRename factType(String factType,
+                                        String newName) {
+        return new SymbolRename( factType,
+                                 null,
+                                 newName );
+    }
+
+    public static SymbolRename field(String factType,
+                                     String field,
+                                     String newName) {
+        return new SymbolRename( factType,
+                                 field,
+                                 newName );
+    }
+
+    /**
+     * @return the key of the symbol that is renamed.
+     */
+    public String getSymbol() {
+        return field == null ? Symbols.factType( factType ) : Symbols.field( factType,
+                                                                             field );
+    }
+
+    public String getNewName() {
+        return newName;
+    }
+
+    @Override
+    public String visitFactType(String type) {
+        if ( field != null || !factType.equals( Symbols.getSimpleName( type ) ) ) {
+            return type;
+        }
+        return type.substring( 0,
+                               type.length() - factType.length() ) + newName;
+    }
+
+    @Override
+    public String visitField(String type,
+                             String name) {
+        if ( field == null || !field.equals( name ) || !factType.equals( Symbols.getSimpleName( type ) ) ) {
+            return name;
+        }
+        return newName;
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2012 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.drools.guvnor.server.refactoring;
+
+/**
+ * Called back for each reference to a fact type or field an asset has. The name it
+ * returns replaces the one in the asset, so the same walk of an asset finds its
+ * symbols or renames them. The globals and DSL sentences an asset uses are visited
+ * too, but they are never renamed.
+ */
+public abstract class SymbolVisitor {
+
+    /**
+     * @param factType the name of the type, as the asset has it (it may be qualified).
+     * @return the name the reference must have, the given one to leave it as it is.
+     */
+    public abstract String visitFactType(String factType);
+
+    /**
+     * @param factType the type the field belongs to, as the asset has it.
+     * @param field the name of the field.
+     * @return the name the reference must have, the given one to leave it as it is.
+     */
+    public abstract String visitField(String factType,
+                                      String field);
+
+    /**
+     * @param global the name of a global the asset uses.
+     */
+    public void visitGlobal(String global) {
+    }
+
+    /**
+     * @param definition the definition of a DSL sentence the asset uses, as its DSL has it.
+     */
+    public void visitDslSentence(String definition) {
+    }
+}
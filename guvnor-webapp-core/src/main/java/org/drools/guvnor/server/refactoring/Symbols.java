@@ -0,0 +1,117 @@
+/*
+ * Copyright 2012 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.drools.guvnor.server.refactoring;
+
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.drools.ide.common.client.modeldriven.SuggestionCompletionEngine;
+import org.drools.ide.common.client.modeldriven.brl.DSLSentence;
+
+/**
+ * The keys of the symbols the assets refer to. Fact types are known by their simple
+ * name, as the guided editors do: "type:Person" for the fact type and
+ * "field:Person.age" for one of its fields. Globals are known by their name,
+ * "global:list", and DSL sentences by their definition with the variables left
+ * without their type, "dsl:There is a person aged {age}".
+ */
+public final class Symbols {
+
+    public static final String FACT_TYPE    = "type:";
+    public static final String FIELD        = "field:";
+    public static final String GLOBAL       = "global:";
+    public static final String DSL_SENTENCE = "dsl:";
+
+    /**
+     * The key an asset whose content can not be read refers to, in place of the symbols
+     * it may refer to.
+     */
+    public static final String UNREADABLE   = "unreadable:";
+
+    private Symbols() {
+    }
+
+    public static String factType(String factType) {
+        return FACT_TYPE + getSimpleName( factType );
+    }
+
+    public static String field(String factType,
+                               String field) {
+        return FIELD + getSimpleName( factType ) + "." + field;
+    }
+
+    public static String global(String global) {
+        return GLOBAL + global;
+    }
+
+    /**
+     * @param definition the sentence as the DSL has it, "There is a person aged {age:ENUM:Person.age}".
+     */
+    public static String dslSentence(String definition) {
+        DSLSentence sentence = new DSLSentence();
+        sentence.setDefinition( definition );
+        return DSL_SENTENCE + sentence.toString().trim().replaceAll( "\\s+",
+                                                                     " " );
+    }
+
+    /**
+     * @return the symbols a module declares, as its engine has them: its fact types and
+     *         their fields, its globals and the sentences of its DSLs.
+     */
+    public static Set<String> getDeclaredSymbols(SuggestionCompletionEngine engine) {
+        Set<String> symbols = new TreeSet<String>();
+        for ( String factType : engine.getFactTypes() ) {
+            symbols.add( factType( factType ) );
+            for ( String field : engine.getModelFields( factType ) ) {
+                if ( !"this".equals( field ) ) {
+                    symbols.add( field( factType,
+                                        field ) );
+                }
+            }
+        }
+        for ( String global : engine.getGlobalVariables() ) {
+            symbols.add( global( global ) );
+        }
+        for ( DSLSentence[] sentences : new DSLSentence[][]{engine.getDSLConditions(), engine.getDSLActions()} ) {
+            if ( sentences != null ) {
+                for ( DSLSentence sentence : sentences ) {
+                    symbols.add( dslSentence( sentence.getDefinition() ) );
+                }
+            }
+        }
+        return symbols;
+    }
+
+    /**
+     * @return the keys of the fields of the fact type, "field:Person." for "type:Person",
+     *         or null if the symbol is not a fact type.
+     */
+    static String getFieldPrefix(String symbol) {
+        if ( !symbol.startsWith( FACT_TYPE ) ) {
+            return null;
+        }
+        return FIELD + symbol.substring( FACT_TYPE.length() ) + ".";
+    }
+
+    /**
+     * @return the name of the type without its package, "Person" for "org.acme.Person".
+     */
+    public static String getSimpleName(String type) {
+        int lastDot = type.lastIndexOf( '.' );
+        return lastDot == -1 ? type : type.substring( lastDot + 1 );
+    }
+}
@@ -16,6 +16,8 @@
 
 package org.drools.guvnor.server.repository;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -33,7 +35,7 @@ import org.drools.repository.AssetItem;
 import org.drools.repository.RulesRepository;
 import org.drools.repository.UserInfo;
 import org.drools.repository.UserInfo.InboxEntry;
-import org.drools.repository.events.CheckinEvent;
+import org.drools.repository.events.BatchCheckinEvent;
 import org.drools.repository.events.StorageEventManager;
 
 /**
@@ -59,6 +61,19 @@ public class MailboxService {
      */
     private volatile RulesRepository mailmanRulesRepository;
 
+    private final BatchCheckinEvent checkinListener = new BatchCheckinEvent() {
+        public void afterCheckin(AssetItem item) {
+            UserInbox.recordUserEditEvent(item);  //to register that she edited...
+            recordItemUpdated(item);   //for outgoing...
+            wakeUp();
+        }
+
+        public void afterCheckin(Collection<AssetItem> items) {
+            UserInbox.recordUserEditEvents(items);
+            recordItemsUpdated(items);
+        }
+    };
+
     @PostConstruct
     public void setup() {
         mailmanUsername = guvnorBootstrapConfiguration.extractMailmanUsername();
@@ -77,13 +92,7 @@ public class MailboxService {
      * Listen for changes to the repository - for inbox purposes
      */
     public void registerCheckinListener() {
-        StorageEventManager.registerCheckinEvent(new CheckinEvent() {
-            public void afterCheckin(AssetItem item) {
-                UserInbox.recordUserEditEvent(item);  //to register that she edited...
-                recordItemUpdated(item);   //for outgoing...
-                wakeUp();
-            }
-        });
+        StorageEventManager.registerCheckinEvent(checkinListener);
         log.info("CheckinListener registered");
     }
 
@@ -92,8 +101,8 @@ public class MailboxService {
         stopExecutor();
         mailmanRulesRepository.logout();
 
-        log.info( "Removing listeners...." );
-        StorageEventManager.removeListeners();
+        log.info( "Removing the checkin listener...." );
+        StorageEventManager.removeCheckinEvent(checkinListener);
     }
     
     public void stopExecutor() {
@@ -175,5 +184,24 @@ public class MailboxService {
         });
     }
 
+    /**
+     * Same as recordItemUpdated, for assets checked in together: they are all published in one go.
+     */
+    public void recordItemsUpdated(Collection<AssetItem> items) {
+        final List<InboxEntry> entries = new ArrayList<InboxEntry>();
+        for (AssetItem item : items) {
+            entries.add(new InboxEntry(item.getUUID(),
+                    item.getName(),
+                    item.getRulesRepository().getSession().getUserID()));
+        }
+        executor.execute(new Runnable() {
+            public void run() {
+                UserInbox inbox = new UserInbox(mailmanRulesRepository, mailmanUsername);
+                inbox.addToIncoming(entries);
+                processOutgoing();
+            }
+        });
+    }
+
 
 }
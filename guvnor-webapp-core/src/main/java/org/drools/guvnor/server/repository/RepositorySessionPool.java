@@ -0,0 +1,285 @@
+/*
+ * Copyright 2012 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.drools.guvnor.server.repository;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+
+import org.drools.guvnor.server.metrics.RequestMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the JCR sessions of the requests once they are done, so the next
+ * request of the same user does not log in to the repository again (for
+ * instance a KnowledgeAgent polling a package).
+ *
+ * Sessions are pooled per user, as the user ID of a session is used for the
+ * audit information of what it saves. A leased session is refreshed without
+ * keeping its changes, so it sees the latest state of the repository and
+ * none of what the previous request left unsaved.
+ *
+ * Limits are set with system properties:
+ * "guvnor.sessionPool.maxIdlePerUser" (4 sessions, 0 disables the pool),
+ * "guvnor.sessionPool.maxIdle" (50 sessions for all users) and
+ * "guvnor.sessionPool.maxIdleTime" (idle sessions are logged out after 5
+ * minutes).
+ */
+@ApplicationScoped
+public class RepositorySessionPool {
+
+    private static final Logger log = LoggerFactory.getLogger(RepositorySessionPool.class);
+
+    @Inject
+    private RepositoryStartupService repositoryStartupService;
+
+    private final int maxIdlePerUser;
+    private final int maxIdle;
+    private final long maxIdleTime;
+
+    private final Map<String, LinkedList<IdleSession>> idleSessions = new HashMap<String, LinkedList<IdleSession>>();
+    private int idleCount = 0;
+
+    private long leased;
+    private long reused;
+    private long created;
+    private long returned;
+    private long discarded;
+
+    public RepositorySessionPool() {
+        this(Integer.getInteger("guvnor.sessionPool.maxIdlePerUser",
+                4),
+                Integer.getInteger("guvnor.sessionPool.maxIdle",
+                        50),
+                Long.getLong("guvnor.sessionPool.maxIdleTime",
+                        5 * 60 * 1000));
+    }
+
+    RepositorySessionPool(int maxIdlePerUser,
+                          int maxIdle,
+                          long maxIdleTime) {
+        this.maxIdlePerUser = maxIdlePerUser;
+        this.maxIdle = maxIdle;
+        this.maxIdleTime = maxIdleTime;
+    }
+
+    void setRepositoryStartupService(RepositoryStartupService repositoryStartupService) {
+        this.repositoryStartupService = repositoryStartupService;
+    }
+
+    /**
+     * Leases a session for the user: an idle one if there is any, a new one
+     * otherwise. It must be given back with returnSession() once the request
+     * is done.
+     */
+    public Session leaseSession(String userName) {
+        while (true) {
+            Session session = pollIdleSession(userName);
+            if (session == null) {
+                break;
+            }
+            try {
+                session.refresh(false);
+                RequestMetrics.getInstance().recordSession();
+                synchronized (this) {
+                    leased++;
+                    reused++;
+                }
+                return session;
+            } catch (RepositoryException e) {
+                log.warn("Discarding pooled session of [" + userName + "]: " + e.getMessage());
+                discard(session);
+            } catch (RuntimeException e) {
+                log.warn("Discarding pooled session of [" + userName + "]: " + e.getMessage());
+                discard(session);
+            }
+        }
+
+        Session session = repositoryStartupService.newSession(userName);
+        synchronized (this) {
+            leased++;
+            created++;
+        }
+        return session;
+    }
+
+    /**
+     * Gives a leased session back to the pool, or logs it out if the pool
+     * of the user is full.
+     */
+    public void returnSession(String userName,
+                              Session session) {
+        if (session == null) {
+            return;
+        }
+        boolean pooled = false;
+        List<Session> expired;
+        synchronized (this) {
+            returned++;
+            expired = removeExpiredSessions(System.currentTimeMillis());
+            if (session.isLive() && idleCount < maxIdle) {
+                LinkedList<IdleSession> sessions = idleSessions.get(userName);
+                if (sessions == null) {
+                    sessions = new LinkedList<IdleSession>();
+                    idleSessions.put(userName,
+                            sessions);
+                }
+                if (sessions.size() < maxIdlePerUser) {
+                    sessions.addFirst(new IdleSession(session));
+                    idleCount++;
+                    pooled = true;
+                } else if (sessions.isEmpty()) {
+                    idleSessions.remove(userName);
+                }
+            }
+        }
+        if (!pooled) {
+            discard(session);
+        }
+        for (Session expiredSession : expired) {
+            discard(expiredSession);
+        }
+    }
+
+    private Session pollIdleSession(String userName) {
+        List<Session> expired;
+        Session session = null;
+        synchronized (this) {
+            expired = removeExpiredSessions(System.currentTimeMillis());
+            LinkedList<IdleSession> sessions = idleSessions.get(userName);
+            if (sessions != null) {
+                session = sessions.removeFirst().session;
+                idleCount--;
+                if (sessions.isEmpty()) {
+                    idleSessions.remove(userName);
+                }
+            }
+        }
+        for (Session expiredSession : expired) {
+            discard(expiredSession);
+        }
+        return session;
+    }
+
+    private List<Session> removeExpiredSessions(long now) {
+        List<Session> expired = new ArrayList<Session>();
+        for (Iterator<LinkedList<IdleSession>> users = idleSessions.values().iterator(); users.hasNext();) {
+            LinkedList<IdleSession> sessions = users.next();
+            // the oldest sessions are at the end
+            while (!sessions.isEmpty() && now - sessions.getLast().idleSince > maxIdleTime) {
+                expired.add(sessions.removeLast().session);
+                idleCount--;
+            }
+            if (sessions.isEmpty()) {
+                users.remove();
+            }
+        }
+        return expired;
+    }
+
+    private void discard(Session session) {
+        synchronized (this) {
+            discarded++;
+        }
+        try {
+            if (session.isLive()) {
+                session.logout();
+            }
+        } catch (RuntimeException e) {
+            log.warn("Unable to log out a repository session: " + e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        List<Session> sessions = new ArrayList<Session>();
+        synchronized (this) {
+            for (LinkedList<IdleSession> userSessions : idleSessions.values()) {
+                for (IdleSession idleSession : userSessions) {
+                    sessions.add(idleSession.session);
+                }
+            }
+            idleSessions.clear();
+            idleCount = 0;
+        }
+        for (Session session : sessions) {
+            discard(session);
+        }
+    }
+
+    public synchronized int getIdleCount() {
+        return idleCount;
+    }
+
+    /**
+     * @return the number of sessions leased so far.
+     */
+    public synchronized long getLeasedCount() {
+        return leased;
+    }
+
+    /**
+     * @return the number of leases served by an idle session.
+     */
+    public synchronized long getReusedCount() {
+        return reused;
+    }
+
+    /**
+     * @return the number of sessions logged in.
+     */
+    public synchronized long getCreatedCount() {
+        return created;
+    }
+
+    public synchronized long getReturnedCount() {
+        return returned;
+    }
+
+    /**
+     * @return the number of sessions logged out, as the pool was full, they
+     *         were idle for too long or they could not be refreshed.
+     */
+    public synchronized long getDiscardedCount() {
+        return discarded;
+    }
+
+    public synchronized String getStatistics() {
+        return "leased=" + leased + ", reused=" + reused + ", created=" + created + ", returned=" + returned
+                + ", discarded=" + discarded + ", idle=" + idleCount;
+    }
+
+    private static class IdleSession {
+
+        private final Session session;
+        private final long idleSince = System.currentTimeMillis();
+
+        private IdleSession(Session session) {
+            this.session = session;
+        }
+    }
+}
@@ -16,6 +16,8 @@
 
 package org.drools.guvnor.server.repository;
 
+import java.util.Arrays;
+import java.util.List;
 import java.util.Properties;
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
@@ -26,10 +28,19 @@ import javax.jcr.Repository;
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
 
+import org.drools.guvnor.server.metrics.RequestMetrics;
+import org.drools.guvnor.server.refactoring.ModuleSymbolIndex;
+import org.drools.guvnor.server.ruleeditor.workitem.WorkDefinitionsRegistry;
+import org.drools.guvnor.server.util.DropDownExpressionResolver;
+import org.drools.guvnor.server.verification.AnalysisReportStore;
+import org.drools.guvnor.server.verification.ModuleAnalysisJob;
+import org.drools.guvnor.server.verification.VerifierResourceCache;
 import org.drools.repository.RulesRepository;
 import org.drools.repository.RulesRepositoryAdministrator;
 import org.drools.repository.RulesRepositoryConfigurator;
 import org.drools.repository.RulesRepositoryException;
+import org.drools.repository.events.CheckinEvent;
+import org.drools.repository.events.StorageEventManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -48,6 +59,13 @@ public abstract class RepositoryStartupService {
     protected Repository repository;
     protected Session sessionForSetup;
 
+    // The listeners keeping the server caches up to date, registered for as long as the repository is up
+    private final List<CheckinEvent> checkinListeners = Arrays.asList(VerifierResourceCache.getInstance().getCheckinListener(),
+            AnalysisReportStore.getInstance().getCheckinListener(),
+            DropDownExpressionResolver.getInstance().getCheckinListener(),
+            WorkDefinitionsRegistry.getInstance().getCheckinListener(),
+            ModuleSymbolIndex.getInstance().getCheckinListener());
+
     public Repository getRepositoryInstance() {
         try {
             // Convert Map to Properties object
@@ -68,6 +86,11 @@ public abstract class RepositoryStartupService {
         String adminPassword = guvnorBootstrapConfiguration.extractAdminPassword();
         sessionForSetup = newSession(adminUsername, adminPassword);
         setupRepository(sessionForSetup);
+        for (CheckinEvent checkinListener : checkinListeners) {
+            StorageEventManager.registerCheckinEvent(checkinListener);
+        }
+        ModuleSymbolIndex.getInstance().start(this, adminUsername, adminPassword);
+        ModuleAnalysisJob.getInstance().start(this, adminUsername, adminPassword);
     }
 
     private void setupRepository(Session sessionForSetup) {
@@ -98,12 +121,18 @@ public abstract class RepositoryStartupService {
 
     @PreDestroy
     public void close() {
+        for (CheckinEvent checkinListener : checkinListeners) {
+            StorageEventManager.removeCheckinEvent(checkinListener);
+        }
+        ModuleSymbolIndex.getInstance().stop();
+        ModuleAnalysisJob.getInstance().stop();
         sessionForSetup.logout();
         log.info( "Shutting down repository..." );
         configurator.shutdown();
     }
 
     public Session newSession(String userName) {
+        RequestMetrics.getInstance().recordSession();
         try {
             return configurator.login(userName);
         } catch (LoginException e) {
@@ -114,6 +143,7 @@ public abstract class RepositoryStartupService {
     }
 
     public Session newSession(String userName, String password) {
+        RequestMetrics.getInstance().recordSession();
         try {
             return configurator.login(userName, password);
         } catch (LoginException e) {
@@ -23,11 +23,14 @@ import javax.security.auth.Subject;
 import org.drools.repository.ClassUtil;
 import org.drools.repository.RulesRepository;
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 
 import javax.enterprise.context.RequestScoped;
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.enterprise.inject.Produces;
+import javax.enterprise.inject.spi.Bean;
+import javax.enterprise.inject.spi.InjectionPoint;
 import org.jboss.seam.security.Credentials;
 import org.jboss.seam.security.Identity;
 import org.jboss.security.SecurityContext;
@@ -38,7 +41,12 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Request scoped bean that produces the RulesRepository
+ * Request scoped bean that produces the RulesRepository.
+ *
+ * Request scoped beans get a repository whose JCR session is leased from the
+ * RepositorySessionPool, and given back once the request is done. Other
+ * beans (application scoped services, servlets) keep the repository they are
+ * injected with after the request, so they get one with a session of its own.
  */
 @RequestScoped
 public class RulesRepositoryManager {
@@ -50,27 +58,48 @@ public class RulesRepositoryManager {
     @Inject
     private RepositoryStartupService repositoryStartupService;
 
+    @Inject
+    private RepositorySessionPool repositorySessionPool;
+
     @Inject
     private Identity identity;
 
+    private String username;
+
     // Not @Inject: here it is created and outjected
     private RulesRepository rulesRepository;
 
+    // Created and outjected to the request scoped beans, its session is pooled
+    private RulesRepository pooledRulesRepository;
+
     @PostConstruct
     public void createRulesRepository() {
+        username = getUserName(identity);
+        doSecurityContextAssociation();
+    }
+
+    /**
+     * @return the name of the user the JCR sessions are opened for.
+     */
+    public static String getUserName(Identity identity) {
         User user = identity.getUser();
-        String username;
         // TODO user should never be null, weld messes up the identity proxy?
         if (user == null) {
             log.warn("Creating RulesRepository with default username.");
             // Do not use user name "anonymous" as this user is configured in JackRabbit SimpleLoginModule
             // with limited privileges. In Guvnor, access control is done in a higher level.
-            username = DEFAULT_USERNAME;
-        } else {
-            username = user.getId();
+            return DEFAULT_USERNAME;
+        }
+        return user.getId();
+    }
+
+    @PreDestroy
+    public void releaseRulesRepository() {
+        if (pooledRulesRepository != null) {
+            repositorySessionPool.returnSession(username,
+                    pooledRulesRepository.getSession());
+            pooledRulesRepository = null;
         }
-        doSecurityContextAssociation();
-        rulesRepository = new RulesRepository(repositoryStartupService.newSession(username));
     }
 
     private void doSecurityContextAssociation() {
@@ -96,7 +125,17 @@ public class RulesRepositoryManager {
     }
 
     @Produces
-    public RulesRepository getRulesRepository() {
+    public RulesRepository getRulesRepository(InjectionPoint injectionPoint) {
+        Bean<?> bean = injectionPoint.getBean();
+        if (bean != null && RequestScoped.class.equals(bean.getScope())) {
+            if (pooledRulesRepository == null) {
+                pooledRulesRepository = new RulesRepository(repositorySessionPool.leaseSession(username));
+            }
+            return pooledRulesRepository;
+        }
+        if (rulesRepository == null) {
+            rulesRepository = new RulesRepository(repositoryStartupService.newSession(username));
+        }
         return rulesRepository;
     }
 
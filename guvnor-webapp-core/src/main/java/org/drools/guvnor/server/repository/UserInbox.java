@@ -25,6 +25,9 @@ import org.drools.repository.RulesRepository;
 import org.drools.repository.UserInfo;
 import org.drools.repository.UserInfo.InboxEntry;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 
@@ -72,15 +75,28 @@ public class UserInbox {
     }
 
 
+    /**
+     * Adds several entries to the incoming box, reading and writing it only once.
+     */
+    public void addToIncoming(List<InboxEntry> newEntries) {
+        addToInbox(ExplorerNodeConfig.INCOMING_ID, newEntries);
+    }
+
+
     private void addToInbox(String boxName, String assetId, String note, String userFrom) {
+        addToInbox(boxName, Collections.singletonList(new InboxEntry(assetId, note, userFrom)));
+    }
+
+    private void addToInbox(String boxName, List<InboxEntry> newEntries) {
         assert boxName.equals(ExplorerNodeConfig.RECENT_EDITED_ID) || boxName.equals(ExplorerNodeConfig.RECENT_VIEWED_ID) || boxName.equals(ExplorerNodeConfig.INCOMING_ID);
-        List<InboxEntry> entries = removeAnyExisting(assetId, userInfo.readEntries(INBOX, boxName));
+        List<InboxEntry> entries = userInfo.readEntries(INBOX, boxName);
 
-        if (entries.size() >= MAX_RECENT_EDITED) {
-            entries.remove(0);
-            entries.add(new InboxEntry(assetId, note, userFrom));
-        } else {
-            entries.add(new InboxEntry(assetId, note, userFrom));
+        for (InboxEntry newEntry : newEntries) {
+            removeAnyExisting(newEntry.assetUUID, entries);
+            if (entries.size() >= MAX_RECENT_EDITED) {
+                entries.remove(0);
+            }
+            entries.add(newEntry);
         }
         userInfo.writeEntries(INBOX, boxName, entries);
     }
@@ -185,6 +201,23 @@ public class UserInbox {
         ib.save();
     }
 
+    /**
+     * Helper method to note the edition of assets checked in together, which are all
+     * added to the recently edited box of the current user in one save.
+     */
+    public synchronized static void recordUserEditEvents(Collection<AssetItem> items) {
+        if (items.isEmpty()) {
+            return;
+        }
+        UserInbox ib = new UserInbox(items.iterator().next().getRulesRepository());
+        List<InboxEntry> entries = new ArrayList<InboxEntry>();
+        for (AssetItem item : items) {
+            entries.add(new InboxEntry(item.getUUID(), item.getName(), "self"));
+        }
+        ib.addToInbox(ExplorerNodeConfig.RECENT_EDITED_ID, entries);
+        ib.save();
+    }
+
 
     void save() {
         userInfo.save();
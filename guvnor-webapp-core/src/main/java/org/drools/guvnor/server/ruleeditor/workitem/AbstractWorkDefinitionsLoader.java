@@ -72,8 +72,19 @@ public abstract class AbstractWorkDefinitionsLoader
     }
 
     //Parse String into WorkDefinitions
-    @SuppressWarnings({"unchecked", "rawtypes"})
     protected Map<String, WorkDefinition> populateWorkDefinitions(List<String> workItemDefinitions) {
+        workDefinitions.putAll( parseWorkDefinitions( workItemDefinitions ) );
+        return workDefinitions;
+    }
+
+    /**
+     * Parse Work Definitions
+     * 
+     * @return The Work Definitions, by name
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    static Map<String, WorkDefinition> parseWorkDefinitions(List<String> workItemDefinitions) {
+        Map<String, WorkDefinition> workDefinitions = new HashMap<String, WorkDefinition>();
 
         //Add Data-type imports, in-case they are missing from definition
         ParserContext context = new ParserContext();
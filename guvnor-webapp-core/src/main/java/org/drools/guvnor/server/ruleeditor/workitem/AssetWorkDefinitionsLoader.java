@@ -19,6 +19,7 @@ package org.drools.guvnor.server.ruleeditor.workitem;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 
 import org.drools.guvnor.client.rpc.AssetPageRequest;
 import org.drools.guvnor.client.rpc.AssetPageRow;
@@ -26,6 +27,8 @@ import org.drools.guvnor.client.rpc.PageResponse;
 import org.drools.guvnor.client.rpc.Asset;
 import org.drools.guvnor.client.rpc.RuleContentText;
 import org.drools.guvnor.server.RepositoryAssetService;
+import org.drools.process.core.WorkDefinition;
+import org.drools.repository.ModuleItem;
 
 import com.google.gwt.user.client.rpc.SerializationException;
 
@@ -44,6 +47,20 @@ public class AssetWorkDefinitionsLoader extends AbstractWorkDefinitionsLoader {
         this.packageUUID = packageUUID;
     }
 
+    /**
+     * Get the Work Definitions of the package, as kept by the {@link WorkDefinitionsRegistry}.
+     * Users who may not read the whole package only get the definitions of the assets they
+     * may read, loaded one by one as before.
+     */
+    @Override
+    public Map<String, WorkDefinition> getWorkDefinitions() throws Exception {
+        if ( !repositoryAssetService.isModuleReadable( packageUUID ) ) {
+            return super.getWorkDefinitions();
+        }
+        ModuleItem module = repositoryAssetService.getRulesRepository().loadModuleByUUID( packageUUID );
+        return WorkDefinitionsRegistry.getInstance().getWorkDefinitions( module );
+    }
+
     public List<String> loadWorkDefinitions() throws SerializationException {
 
         //Load assets from package
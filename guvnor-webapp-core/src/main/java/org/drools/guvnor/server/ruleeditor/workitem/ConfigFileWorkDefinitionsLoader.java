@@ -16,11 +16,17 @@
 
 package org.drools.guvnor.server.ruleeditor.workitem;
 
+import java.io.File;
 import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
 
+import org.drools.process.core.WorkDefinition;
+
 /**
  * Class to load Work Definitions from configuration file
  * 'workitem-definitions.xml'
@@ -30,10 +36,40 @@ public class ConfigFileWorkDefinitionsLoader extends AbstractWorkDefinitionsLoad
     private static final String                    WORKITEM_DEFINITIONS = "/workitem-definitions.xml";
     private static ConfigFileWorkDefinitionsLoader INSTANCE;
 
+    private long                                   lastModified         = -1;
+
     private ConfigFileWorkDefinitionsLoader() {
         super();
     }
 
+    /**
+     * Get the Work Definitions, parsed again when the configuration file has changed
+     */
+    @Override
+    public synchronized Map<String, WorkDefinition> getWorkDefinitions() throws Exception {
+        long fileLastModified = getFileLastModified();
+        if ( fileLastModified != this.lastModified ) {
+            this.workDefinitions = null;
+            this.lastModified = fileLastModified;
+        }
+        return super.getWorkDefinitions();
+    }
+
+    private long getFileLastModified() throws IOException {
+        URL url = this.getClass().getResource( WORKITEM_DEFINITIONS );
+        if ( url == null ) {
+            return 0;
+        }
+        if ( "file".equals( url.getProtocol() ) ) {
+            try {
+                return new File( url.toURI() ).lastModified();
+            } catch ( URISyntaxException e ) {
+                return 0;
+            }
+        }
+        return url.openConnection().getLastModified();
+    }
+
     public List<String> loadWorkDefinitions() throws IOException {
 
         //Load file into a String
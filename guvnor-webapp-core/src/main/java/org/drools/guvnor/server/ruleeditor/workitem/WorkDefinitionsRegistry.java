@@ -0,0 +1,204 @@
+/*
+ * Copyright 2012 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.drools.guvnor.server.ruleeditor.workitem;
+
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.drools.guvnor.client.common.AssetFormats;
+import org.drools.guvnor.server.util.LoggingHelper;
+import org.drools.process.core.WorkDefinition;
+import org.drools.repository.AssetItem;
+import org.drools.repository.AssetItemIterator;
+import org.drools.repository.ModuleItem;
+import org.drools.repository.events.CheckinEvent;
+
+/**
+ * Keeps the Work Definitions of the modules parsed, so the process and work item
+ * editors do not load and compile the "wid" assets of a module each time they are
+ * opened.
+ *
+ * The definitions of an asset are kept with the version and last modified time they
+ * were parsed from, as content can be saved without a checkin. When the definitions of
+ * a module are asked for, its wid assets are listed, and only those that are new or
+ * have changed are parsed again. The definitions of an asset
+ * are parsed again as soon as it is checked in. At most
+ * "guvnor.workDefinitions.cacheSize" modules (100 by default) are kept.
+ */
+public class WorkDefinitionsRegistry {
+
+    private static final LoggingHelper log = LoggingHelper.getLogger( WorkDefinitionsRegistry.class );
+
+    private static final WorkDefinitionsRegistry INSTANCE = new WorkDefinitionsRegistry( Integer.getInteger( "guvnor.workDefinitions.cacheSize",
+                                                                                                             100 ) );
+
+    private final Map<String, ModuleDefinitions> modules;
+
+    private final CheckinEvent checkinListener = new CheckinEvent() {
+        public void afterCheckin(AssetItem item) {
+            if ( AssetFormats.WORKITEM_DEFINITION.equals( item.getFormat() ) ) {
+                assetCheckedIn( item );
+            }
+        }
+    };
+
+    WorkDefinitionsRegistry(final int cacheSize) {
+        this.modules = new LinkedHashMap<String, ModuleDefinitions>( 16,
+                                                                     0.75f,
+                                                                     true ) {
+            private static final long serialVersionUID = 510l;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, ModuleDefinitions> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    public static WorkDefinitionsRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @return the listener that parses the definitions of a wid asset again when it is
+     *         checked in. It is registered by the RepositoryStartupService.
+     */
+    public CheckinEvent getCheckinListener() {
+        return checkinListener;
+    }
+
+    /**
+     * @return the Work Definitions of the wid assets of the module, by name. It must
+     *         not be changed.
+     */
+    public Map<String, WorkDefinition> getWorkDefinitions(ModuleItem module) {
+        String moduleUuid = module.getUUID();
+        ModuleDefinitions cached;
+        synchronized ( modules ) {
+            cached = modules.get( moduleUuid );
+        }
+
+        Map<String, AssetDefinitions> assets = new LinkedHashMap<String, AssetDefinitions>();
+        boolean changed = cached == null;
+        AssetItemIterator it = module.listAssetsByFormat( AssetFormats.WORKITEM_DEFINITION );
+        while ( it.hasNext() ) {
+            AssetItem asset = it.next();
+            long version = asset.getVersionNumber();
+            long lastModified = getLastModified( asset );
+            AssetDefinitions definitions = cached != null ? cached.assets.get( asset.getUUID() ) : null;
+            if ( definitions == null || definitions.version != version || definitions.lastModified != lastModified ) {
+                definitions = new AssetDefinitions( version,
+                                                    lastModified,
+                                                    AbstractWorkDefinitionsLoader.parseWorkDefinitions( Collections.singletonList( asset.getContent() ) ) );
+                changed = true;
+            }
+            assets.put( asset.getUUID(),
+                        definitions );
+        }
+        if ( !changed && assets.keySet().equals( cached.assets.keySet() ) ) {
+            return cached.workDefinitions;
+        }
+
+        ModuleDefinitions moduleDefinitions = new ModuleDefinitions( assets );
+        synchronized ( modules ) {
+            modules.put( moduleUuid,
+                         moduleDefinitions );
+        }
+        return moduleDefinitions.workDefinitions;
+    }
+
+    /**
+     * Parses the definitions of an asset of a module that is kept, so the next read of
+     * the module does not have to.
+     */
+    void assetCheckedIn(AssetItem item) {
+        String moduleUuid = item.getModule().getUUID();
+        ModuleDefinitions cached;
+        synchronized ( modules ) {
+            cached = modules.get( moduleUuid );
+        }
+        if ( cached == null ) {
+            return;
+        }
+
+        Map<String, AssetDefinitions> assets = new LinkedHashMap<String, AssetDefinitions>( cached.assets );
+        try {
+            assets.put( item.getUUID(),
+                        new AssetDefinitions( item.getVersionNumber(),
+                                              getLastModified( item ),
+                                              AbstractWorkDefinitionsLoader.parseWorkDefinitions( Collections.singletonList( item.getContent() ) ) ) );
+        } catch ( RuntimeException e ) {
+            //Reported when the definitions are read
+            log.debug( "Unable to parse the Work Definitions of [" + item.getName() + "]: " + e.getMessage() );
+            assets.remove( item.getUUID() );
+        }
+        synchronized ( modules ) {
+            modules.put( moduleUuid,
+                         new ModuleDefinitions( assets ) );
+        }
+    }
+
+    private static long getLastModified(AssetItem asset) {
+        Calendar lastModified = asset.getLastModified();
+        return lastModified == null ? 0 : lastModified.getTimeInMillis();
+    }
+
+    public void invalidateAll() {
+        synchronized ( modules ) {
+            modules.clear();
+        }
+    }
+
+    /**
+     * The definitions of an asset, parsed from the given version of it.
+     */
+    private static class AssetDefinitions {
+
+        private final long                        version;
+        private final long                        lastModified;
+        private final Map<String, WorkDefinition> workDefinitions;
+
+        private AssetDefinitions(long version,
+                                 long lastModified,
+                                 Map<String, WorkDefinition> workDefinitions) {
+            this.version = version;
+            this.lastModified = lastModified;
+            this.workDefinitions = workDefinitions;
+        }
+    }
+
+    /**
+     * The definitions of the assets of a module, and all of them merged.
+     */
+    private static class ModuleDefinitions {
+
+        private final Map<String, AssetDefinitions> assets;
+        private final Map<String, WorkDefinition>   workDefinitions;
+
+        private ModuleDefinitions(Map<String, AssetDefinitions> assets) {
+            this.assets = assets;
+            Map<String, WorkDefinition> workDefinitions = new HashMap<String, WorkDefinition>();
+            for ( AssetDefinitions definitions : assets.values() ) {
+                workDefinitions.putAll( definitions.workDefinitions );
+            }
+            this.workDefinitions = Collections.unmodifiableMap( workDefinitions );
+        }
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2012 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.drools.guvnor.server.selector;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.List;
+
+import org.drools.repository.AssetItem;
+import org.drools.repository.CategoryItem;
+
+/**
+ * The properties of an asset that selector rules can use, read once from the
+ * repository. Rule files that import this class get these facts instead of
+ * the AssetItem itself, eg:
+ *
+ * <pre>
+ * rule "non draft"
+ *     when
+ *         AssetMetadata(statusDescription != "Draft")
+ *     then
+ *         insert(new Allow())
+ * end
+ * </pre>
+ *
+ * Two metadata are equal when all their properties are, which makes them the
+ * key of the selector decision for an asset version.
+ */
+public class AssetMetadata {
+
+    private final String uuid;
+    private final String name;
+    private final String format;
+    private final String moduleName;
+    private final String statusDescription;
+    private final List<String> categories;
+    private final String creator;
+    private final String lastContributor;
+    private final String description;
+    private final String externalSource;
+    private final long lastModified;
+    private final long versionNumber;
+    private final boolean archived;
+
+    public AssetMetadata(AssetItem asset) {
+        this.uuid = asset.getUUID();
+        this.name = asset.getName();
+        this.format = asset.getFormat();
+        this.moduleName = asset.getModuleName();
+        this.statusDescription = asset.getStateDescription();
+        List<String> categoryPaths = new ArrayList<String>();
+        for ( CategoryItem category : asset.getCategories() ) {
+            categoryPaths.add( category.getFullPath() );
+        }
+        this.categories = Collections.unmodifiableList( categoryPaths );
+        this.creator = asset.getCreator();
+        this.lastContributor = asset.getLastContributor();
+        this.description = asset.getDescription();
+        this.externalSource = asset.getExternalSource();
+        Calendar lastModifiedDate = asset.getLastModified();
+        this.lastModified = lastModifiedDate == null ? 0 : lastModifiedDate.getTimeInMillis();
+        this.versionNumber = asset.getVersionNumber();
+        this.archived = asset.isArchived();
+    }
+
+    public String getUuid() {
+        return uuid;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getFormat() {
+        return format;
+    }
+
+    public String getModuleName() {
+        return moduleName;
+    }
+
+    public String getStatusDescription() {
+        return statusDescription;
+    }
+
+    /**
+     * @return the full paths of the categories of the asset.
+     */
+    public List<String> getCategories() {
+        return categories;
+    }
+
+    public boolean hasCategory(String categoryPath) {
+        return categories.contains( categoryPath );
+    }
+
+    public String getCreator() {
+        return creator;
+    }
+
+    public String getLastContributor() {
+        return lastContributor;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public String getExternalSource() {
+        return externalSource;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    public long getVersionNumber() {
+        return versionNumber;
+    }
+
+    public boolean isArchived() {
+        return archived;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if ( this == o ) {
+            return true;
+        }
+        if ( !(o instanceof AssetMetadata) ) {
+            return false;
+        }
+        AssetMetadata other = (AssetMetadata) o;
+        return lastModified == other.lastModified
+                && versionNumber == other.versionNumber
+                && archived == other.archived
+                && equal( uuid,
+                          other.uuid )
+                && equal( name,
+                          other.name )
+                && equal( format,
+                          other.format )
+                && equal( moduleName,
+                          other.moduleName )
+                && equal( statusDescription,
+                          other.statusDescription )
+                && categories.equals( other.categories )
+                && equal( creator,
+                          other.creator )
+                && equal( lastContributor,
+                          other.lastContributor )
+                && equal( description,
+                          other.description )
+                && equal( externalSource,
+                          other.externalSource );
+    }
+
+    @Override
+    public int hashCode() {
+        int result = uuid == null ? 0 : uuid.hashCode();
+        result = 31 * result + (int) (versionNumber ^ (versionNumber >>> 32));
+        result = 31 * result + (int) (lastModified ^ (lastModified >>> 32));
+        result = 31 * result + (statusDescription == null ? 0 : statusDescription.hashCode());
+        result = 31 * result + categories.hashCode();
+        return result;
+    }
+
+    private static boolean equal(Object o1,
+                                 Object o2) {
+        return o1 == null ? o2 == null : o1.equals( o2 );
+    }
+
+    @Override
+    public String toString() {
+        return "AssetMetadata[" + name + ", version " + versionNumber + "]";
+    }
+}
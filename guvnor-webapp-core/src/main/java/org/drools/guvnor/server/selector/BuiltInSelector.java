@@ -19,65 +19,68 @@ package org.drools.guvnor.server.selector;
 import org.drools.repository.AssetItem;
 import org.drools.repository.CategoryItem;
 
+/**
+ * Selects assets on their status and category, as set up for a build.
+ * Instances are immutable, each build creates its own.
+ */
 public class BuiltInSelector implements AssetSelector {
-    private String  status;
-    private String  statusOperator;
-    private String  category;
-    private String  categoryOperator;
-    private boolean enableStatusSelector;
-    private boolean enableCategorySelector;
-
+    private final String  status;
+    private final String  statusOperator;
+    private final String  category;
+    private final String  categoryOperator;
+    private final boolean enableStatusSelector;
+    private final boolean enableCategorySelector;
+
+    /**
+     * A selector with no criteria enabled, it allows everything.
+     */
     public BuiltInSelector() {
+        this( null,
+              null,
+              false,
+              null,
+              null,
+              false );
+    }
+
+    public BuiltInSelector(String statusOperator,
+                           String status,
+                           boolean enableStatusSelector,
+                           String categoryOperator,
+                           String category,
+                           boolean enableCategorySelector) {
+        this.statusOperator = statusOperator;
+        this.status = status;
+        this.enableStatusSelector = enableStatusSelector;
+        this.categoryOperator = categoryOperator;
+        this.category = category;
+        this.enableCategorySelector = enableCategorySelector;
     }
 
     public boolean isEnableStatusSelector() {
         return enableStatusSelector;
     }
 
-    public void setEnableStatusSelector(boolean enableStatusSelector) {
-        this.enableStatusSelector = enableStatusSelector;
-    }
-
     public boolean isEnableCategorySelector() {
         return enableCategorySelector;
     }
 
-    public void setEnableCategorySelector(boolean enableCategorySelector) {
-        this.enableCategorySelector = enableCategorySelector;
-    }
-
     public String getCategory() {
         return category;
     }
 
-    public void setCategory(String category) {
-        this.category = category;
-    }
-
     public String getCategoryOperator() {
         return categoryOperator;
     }
 
-    public void setCategoryOperator(String categoryOperator) {
-        this.categoryOperator = categoryOperator;
-    }
-
     public String getStatus() {
         return status;
     }
 
-    public void setStatus(String status) {
-        this.status = status;
-    }
-
     public String getStatusOperator() {
         return statusOperator;
     }
 
-    public void setStatusOperator(String statusOperator) {
-        this.statusOperator = statusOperator;
-    }
-
     public boolean isAssetAllowed(AssetItem item) {
         if ( enableStatusSelector && enableCategorySelector ) {
             return (isStatusAllowed( item ) && isCategoryAllowed( item ));
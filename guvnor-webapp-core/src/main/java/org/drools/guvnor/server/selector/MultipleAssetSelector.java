@@ -0,0 +1,36 @@
+/*
+ * Copyright 2012 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.drools.guvnor.server.selector;
+
+import java.util.Collection;
+import java.util.Set;
+
+import org.drools.repository.AssetItem;
+
+/**
+ * A selector that is asked once for all the assets of a build, so it can skip
+ * the assets it has already decided for.
+ */
+public interface MultipleAssetSelector extends AssetSelector {
+
+    /**
+     * @param assets The assets to be tested.
+     * @return the UUIDs of the allowed assets.
+     */
+    Set<String> getAllowedAssets(Collection<AssetItem> assets);
+
+}
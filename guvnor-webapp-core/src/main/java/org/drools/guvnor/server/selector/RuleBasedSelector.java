@@ -17,25 +17,59 @@
 package org.drools.guvnor.server.selector;
 
 import org.drools.*;
+import org.drools.base.ClassObjectType;
 import org.drools.compiler.RuleBaseLoader;
 import org.drools.repository.AssetItem;
+import org.drools.rule.Package;
+import org.drools.rule.Pattern;
+import org.drools.rule.Rule;
+import org.drools.rule.RuleConditionElement;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * This uses rules to decide if an asset is to be included in a build.
+ *
+ * Each asset is evaluated on its own, as the rules only insert an {@link Allow}
+ * that does not tell which asset it is for: one stateless session is executed once
+ * per asset. The facts are {@link AssetMetadata},
+ * unless the rules match AssetItem, in which case the assets themselves are inserted
+ * as before.
+ * Decisions are kept per asset version (see {@link AssetMetadata}), so assets that
+ * did not change are not evaluated again by the next build. The number of decisions
+ * kept is set with "guvnor.selector.cacheSize" (10000 by default).
  */
-public class RuleBasedSelector implements AssetSelector {
+public class RuleBasedSelector implements MultipleAssetSelector {
 
     private static final Logger log = LoggerFactory.getLogger(RuleBasedSelector.class);
 
+    private static final int CACHE_SIZE = Integer.getInteger("guvnor.selector.cacheSize",
+            10000);
 
     final String ruleFile;
     private RuleBase ruleBase;
+    private final boolean assetItemFacts;
+
+    private final Map<AssetMetadata, Boolean> decisions = Collections.synchronizedMap(new LinkedHashMap<AssetMetadata, Boolean>(16,
+            0.75f,
+            true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<AssetMetadata, Boolean> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    });
 
     public RuleBasedSelector(String val) {
         this.ruleFile = val;
@@ -53,25 +87,97 @@ public class RuleBasedSelector implements AssetSelector {
             log.error("Unable to load rule base.", e);
             throw new RuntimeDroolsException(e);
         }
+        this.assetItemFacts = matchesAssetItems();
+    }
+
+    /**
+     * @return true if a pattern of the rules matches AssetItem (or one of its super
+     *         classes) but not AssetMetadata.
+     */
+    private boolean matchesAssetItems() {
+        for (Package pkg : ruleBase.getPackages()) {
+            for (Rule rule : pkg.getRules()) {
+                if (matchesAssetItems(rule.getLhs())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
 
+    private boolean matchesAssetItems(RuleConditionElement element) {
+        if (element instanceof Pattern && ((Pattern) element).getObjectType() instanceof ClassObjectType) {
+            Class<?> type = ((ClassObjectType) ((Pattern) element).getObjectType()).getClassType();
+            if (type.isAssignableFrom(AssetItem.class) && !type.isAssignableFrom(AssetMetadata.class)) {
+                return true;
+            }
+        }
+        for (RuleConditionElement nested : element.getNestedElements()) {
+            if (matchesAssetItems(nested)) {
+                return true;
+            }
+        }
+        return false;
     }
 
     public boolean isAssetAllowed(AssetItem asset) {
-        return evalRules(asset);
+        return !getAllowedAssets(Collections.singletonList(asset)).isEmpty();
+    }
+
+    public Set<String> getAllowedAssets(Collection<AssetItem> assets) {
+        Set<String> allowed = new HashSet<String>();
+        List<AssetMetadata> toEvaluate = new ArrayList<AssetMetadata>();
+        List<Object> facts = new ArrayList<Object>();
+        for (AssetItem asset : assets) {
+            AssetMetadata metadata = new AssetMetadata(asset);
+            Boolean decision = decisions.get(metadata);
+            if (decision == null) {
+                toEvaluate.add(metadata);
+                facts.add(assetItemFacts ? asset : metadata);
+            } else if (decision) {
+                allowed.add(asset.getUUID());
+            }
+        }
+
+        if (!facts.isEmpty()) {
+            boolean[] results = evalRules(facts);
+            for (int i = 0; i < results.length; i++) {
+                AssetMetadata metadata = toEvaluate.get(i);
+                decisions.put(metadata,
+                        results[i]);
+                if (results[i]) {
+                    allowed.add(metadata.getUuid());
+                }
+            }
+        }
+        return allowed;
     }
 
-    @SuppressWarnings("rawtypes")
     boolean evalRules(Object asset) {
-        StatelessSession session = ruleBase.newStatelessSession();
-        StatelessSessionResult result = session.executeWithResults(asset);
+        return evalRules(Collections.singletonList(asset))[0];
+    }
 
-        java.util.Iterator objects = result.iterateObjects();
-        while (objects.hasNext()) {
-            if (objects.next() instanceof Allow) {
-                return true;
+    /**
+     * Executes the stateless session once per fact: each execution has a working
+     * memory of its own, so nothing a rule left behind for one asset decides for the
+     * next one.
+     */
+    @SuppressWarnings("rawtypes")
+    boolean[] evalRules(List<?> facts) {
+        StatelessSession session = ruleBase.newStatelessSession();
+        boolean[] results = new boolean[facts.size()];
+        for (int i = 0; i < results.length; i++) {
+            StatelessSessionResult result = session.executeWithResults(facts.get(i));
+
+            java.util.Iterator objects = result.iterateObjects();
+            while (objects.hasNext()) {
+                if (objects.next() instanceof Allow) {
+                    results[i] = true;
+                    break;
+                }
             }
         }
-        return false;
+        return results;
     }
 
 }
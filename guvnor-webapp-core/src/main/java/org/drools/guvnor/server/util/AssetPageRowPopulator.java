@@ -18,6 +18,7 @@ package org.drools.guvnor.server.util;
 import org.apache.commons.lang.StringUtils;
 import org.drools.guvnor.client.rpc.AssetPageRow;
 import org.drools.repository.AssetItem;
+import org.drools.repository.AssetRow;
 
 public class AssetPageRowPopulator {
     public AssetPageRow populateFrom(AssetItem assetItem) {
@@ -37,4 +38,22 @@ public class AssetPageRowPopulator {
         row.setDisabled( assetItem.getDisabled() );
         return row;
     }
+
+    public AssetPageRow populateFrom(AssetRow assetRow) {
+        AssetPageRow row = new AssetPageRow();
+        row.setUuid( assetRow.getUUID() );
+        row.setFormat( assetRow.getFormat() );
+        row.setName( assetRow.getName() );
+        row.setDescription( assetRow.getDescription() );
+        row.setAbbreviatedDescription( StringUtils.abbreviate( assetRow.getDescription(), 80 ) );
+        row.setStateName( assetRow.getStateName() );
+        row.setCreator( assetRow.getCreator() );
+        row.setCreatedDate( assetRow.getCreatedDate() == null ? null : assetRow.getCreatedDate().getTime() );
+        row.setLastContributor( assetRow.getLastContributor() );
+        row.setLastModified( assetRow.getLastModified() == null ? null : assetRow.getLastModified().getTime() );
+        row.setCategorySummary( assetRow.getCategorySummary() );
+        row.setExternalSource( assetRow.getExternalSource() );
+        row.setDisabled( assetRow.isDisabled() );
+        return row;
+    }
 }
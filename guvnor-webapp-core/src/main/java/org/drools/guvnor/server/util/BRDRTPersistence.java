@@ -34,15 +34,17 @@ import org.slf4j.LoggerFactory;
  */
 public class BRDRTPersistence extends BRDRLPersistence {
     private static final Logger log = LoggerFactory.getLogger(BRDRTPersistence.class);
-    private static final BRLPersistence INSTANCE = new BRDRTPersistence();
     private static final String PACKAGE_DECLARATION = "\npackage __template_dummy_package__\n";
 
     private BRDRTPersistence() {
         super();
     }
 
+    /**
+     * As for BRDRLPersistence, each call returns a new instance, not to be shared between threads.
+     */
     public static BRLPersistence getInstance() {
-        return INSTANCE;
+        return new BRDRTPersistence();
     }
 
     @Override
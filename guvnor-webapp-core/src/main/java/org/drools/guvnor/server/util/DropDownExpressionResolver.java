@@ -0,0 +1,253 @@
+/*
+ * Copyright 2012 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.drools.guvnor.server.util;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+import org.drools.guvnor.client.common.AssetFormats;
+import org.drools.repository.AssetItem;
+import org.drools.repository.events.CheckinEvent;
+import org.mvel2.MVEL;
+import org.mvel2.templates.CompiledTemplate;
+import org.mvel2.templates.TemplateCompiler;
+import org.mvel2.templates.TemplateRuntime;
+
+/**
+ * Resolves the expressions of dependent enums ("Fact.field[dependency]" :
+ * "(new Lookup()).values('@{dependency}')"), for the drop downs of the guided
+ * editors.
+ *
+ * The expressions are kept compiled, keyed by the expression as written. When
+ * every "@{dependency}" is a whole quoted literal, it is compiled once as a
+ * variable and the values of the fields are passed in when it is evaluated.
+ * Otherwise the expression is interpolated with the values first, and the
+ * result is evaluated without being kept.
+ *
+ * The values can also be cached for "guvnor.enum.resultTTL" milliseconds (0,
+ * the default, disables it), keyed by the expression and the dependency
+ * values. They are dropped as soon as an enumeration is checked in, as the
+ * expressions that use a lookup may then have changed.
+ *
+ * The sizes of the caches are set with "guvnor.enum.expressionCacheSize" (500
+ * templates and expressions) and "guvnor.enum.resultCacheSize" (1000 results).
+ */
+public class DropDownExpressionResolver {
+
+    private static final DropDownExpressionResolver instance = new DropDownExpressionResolver( Integer.getInteger( "guvnor.enum.expressionCacheSize",
+                                                                                                                     500 ),
+                                                                                                 Integer.getInteger( "guvnor.enum.resultCacheSize",
+                                                                                                                     1000 ),
+                                                                                                 Long.getLong( "guvnor.enum.resultTTL",
+                                                                                                               0 ) );
+
+    private static final Pattern QUOTED_DEPENDENCY = Pattern.compile( "(?<=^|[\\s(\\[,=])(['\"])@\\{(\\w+)\\}\\1(?=$|[\\s)\\],;])" );
+
+    private final Map<String, CompiledTemplate> templates;
+    private final Map<String, Expression>       expressions;
+    private final Map<String, Result>           results;
+    private final long                          resultTTL;
+
+    private final CheckinEvent                  checkinListener = new CheckinEvent() {
+                                                    public void afterCheckin(AssetItem item) {
+                                                        if ( AssetFormats.ENUMERATION.equals( item.getFormat() ) ) {
+                                                            clearResults();
+                                                        }
+                                                    }
+                                                };
+
+    public DropDownExpressionResolver(int expressionCacheSize,
+                                      int resultCacheSize,
+                                      long resultTTL) {
+        this.templates = newLruMap( expressionCacheSize );
+        this.expressions = newLruMap( expressionCacheSize );
+        this.results = newLruMap( resultCacheSize );
+        this.resultTTL = resultTTL;
+    }
+
+    public static DropDownExpressionResolver getInstance() {
+        return instance;
+    }
+
+    /**
+     * @return the listener that drops the values when an enumeration is checked in. It is
+     *         registered by the RepositoryStartupService.
+     */
+    public CheckinEvent getCheckinListener() {
+        return checkinListener;
+    }
+
+    /**
+     * @param valuePairs
+     *            key=value pairs to be interpolated into the expression.
+     * @param expression
+     *            The expression, which will then be eval'ed to generate a
+     *            String[]
+     * @return the values, an empty array if a dependency has no value, or null
+     *         if the expression does not evaluate to a list.
+     */
+    public String[] resolve(String[] valuePairs,
+                            String expression) {
+        Map<String, String> context = new TreeMap<String, String>();
+
+        for ( String valuePair : valuePairs ) {
+            if ( valuePair == null ) {
+                return new String[0];
+            }
+            String[] pair = valuePair.split( "=" );
+            context.put( pair[0],
+                         pair[1] );
+        }
+
+        String key = expression + context;
+        long now = System.currentTimeMillis();
+        if ( resultTTL > 0 ) {
+            synchronized ( results ) {
+                Result result = results.get( key );
+                if ( result != null && result.expires > now ) {
+                    return copy( result.values );
+                }
+            }
+        }
+
+        String[] values = evaluate( expression,
+                                    context );
+
+        if ( resultTTL > 0 ) {
+            synchronized ( results ) {
+                results.put( key,
+                             new Result( copy( values ),
+                                         now + resultTTL ) );
+            }
+        }
+        return values;
+    }
+
+    private String[] evaluate(String expression,
+                              Map<String, String> context) {
+        Object result;
+        Expression compiled = getExpression( expression );
+        if ( compiled.compiled != null ) {
+            result = MVEL.executeExpression( compiled.compiled,
+                                             new HashMap<String, Object>( context ) );
+        } else {
+            // first interpolate the pairs, then eval it for real...
+            String interpolated = (String) TemplateRuntime.execute( getTemplate( expression ),
+                                                                    context );
+            result = MVEL.eval( interpolated );
+        }
+
+        if ( result instanceof String[] ) {
+            return (String[]) result;
+        } else if ( result instanceof List ) {
+            List< ? > l = (List< ? >) result;
+            String[] xs = new String[l.size()];
+            for ( int i = 0; i < xs.length; i++ ) {
+                Object el = l.get( i );
+                xs[i] = el.toString();
+            }
+            return xs;
+        } else {
+            return null;
+        }
+    }
+
+    private CompiledTemplate getTemplate(String expression) {
+        synchronized ( templates ) {
+            CompiledTemplate template = templates.get( expression );
+            if ( template == null ) {
+                template = TemplateCompiler.compileTemplate( expression );
+                templates.put( expression,
+                               template );
+            }
+            return template;
+        }
+    }
+
+    private Expression getExpression(String expression) {
+        synchronized ( expressions ) {
+            Expression compiled = expressions.get( expression );
+            if ( compiled == null ) {
+                String variables = QUOTED_DEPENDENCY.matcher( expression ).replaceAll( "$2" );
+                compiled = new Expression( variables.contains( "@{" ) ? null : MVEL.compileExpression( variables ) );
+                expressions.put( expression,
+                                 compiled );
+            }
+            return compiled;
+        }
+    }
+
+    public void clearResults() {
+        synchronized ( results ) {
+            results.clear();
+        }
+    }
+
+    public void clearCache() {
+        synchronized ( templates ) {
+            templates.clear();
+        }
+        synchronized ( expressions ) {
+            expressions.clear();
+        }
+        clearResults();
+    }
+
+    private static String[] copy(String[] values) {
+        return values == null ? null : values.clone();
+    }
+
+    private static <V> Map<String, V> newLruMap(final int maxSize) {
+        return new LinkedHashMap<String, V>( 16,
+                                             0.75f,
+                                             true ) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * The compiled expression, or null if it has to be interpolated first.
+     */
+    private static class Expression {
+
+        private final Serializable compiled;
+
+        private Expression(Serializable compiled) {
+            this.compiled = compiled;
+        }
+    }
+
+    private static class Result {
+
+        private final String[] values;
+        private final long     expires;
+
+        private Result(String[] values,
+                       long expires) {
+            this.values = values;
+            this.expires = expires;
+        }
+    }
+}
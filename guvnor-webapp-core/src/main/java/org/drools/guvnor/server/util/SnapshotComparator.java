@@ -0,0 +1,127 @@
+/*
+ * Copyright 2012 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.drools.guvnor.server.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.drools.guvnor.client.rpc.SnapshotDiff;
+import org.drools.repository.SnapshotManifest;
+
+/**
+ * Compares the asset manifests of two snapshots. Both manifests are sorted by
+ * asset name and walked once side by side, so no asset has to be loaded.
+ * The UUIDs in the resulting diffs are the content node identifiers of the
+ * manifest entries, which are the ones the assets of the snapshots are opened with.
+ */
+public class SnapshotComparator {
+
+    private static final Comparator<SnapshotManifest.Entry> BY_NAME = new Comparator<SnapshotManifest.Entry>() {
+        public int compare(SnapshotManifest.Entry e1,
+                           SnapshotManifest.Entry e2) {
+            return e1.getName().compareTo( e2.getName() );
+        }
+    };
+
+    /**
+     * @param left  the manifest of the older snapshot.
+     * @param right the manifest of the newer snapshot.
+     * @return the differences, sorted by asset name.
+     */
+    public List<SnapshotDiff> compare(SnapshotManifest left,
+                                      SnapshotManifest right) {
+        List<SnapshotManifest.Entry> leftEntries = sortByName( left );
+        List<SnapshotManifest.Entry> rightEntries = sortByName( right );
+
+        List<SnapshotDiff> result = new ArrayList<SnapshotDiff>();
+        int l = 0;
+        int r = 0;
+        while ( l < leftEntries.size() || r < rightEntries.size() ) {
+            SnapshotManifest.Entry leftEntry = l < leftEntries.size() ? leftEntries.get( l ) : null;
+            SnapshotManifest.Entry rightEntry = r < rightEntries.size() ? rightEntries.get( r ) : null;
+
+            int order;
+            if ( leftEntry == null ) {
+                order = 1;
+            } else if ( rightEntry == null ) {
+                order = -1;
+            } else {
+                order = BY_NAME.compare( leftEntry,
+                                         rightEntry );
+            }
+
+            if ( order < 0 ) {
+                result.add( createDiff( SnapshotDiff.TYPE_DELETED,
+                                        leftEntry,
+                                        null ) );
+                l++;
+            } else if ( order > 0 ) {
+                result.add( createDiff( SnapshotDiff.TYPE_ADDED,
+                                        null,
+                                        rightEntry ) );
+                r++;
+            } else {
+                if ( leftEntry.isArchived() != rightEntry.isArchived() ) {
+                    result.add( createDiff( leftEntry.isArchived() ? SnapshotDiff.TYPE_RESTORED : SnapshotDiff.TYPE_ARCHIVED,
+                                            leftEntry,
+                                            rightEntry ) );
+                } else if ( isUpdated( leftEntry,
+                                       rightEntry ) ) {
+                    result.add( createDiff( SnapshotDiff.TYPE_UPDATED,
+                                            leftEntry,
+                                            rightEntry ) );
+                }
+                l++;
+                r++;
+            }
+        }
+        return result;
+    }
+
+    private List<SnapshotManifest.Entry> sortByName(SnapshotManifest manifest) {
+        List<SnapshotManifest.Entry> entries = new ArrayList<SnapshotManifest.Entry>( manifest.getEntries() );
+        Collections.sort( entries,
+                          BY_NAME );
+        return entries;
+    }
+
+    private boolean isUpdated(SnapshotManifest.Entry left,
+                              SnapshotManifest.Entry right) {
+        if ( left.getLastModified() == 0 && right.getLastModified() == 0 ) {
+            // Manifests written before the last modified date was recorded
+            return left.getVersionNumber() != right.getVersionNumber();
+        }
+        return left.getLastModified() != right.getLastModified();
+    }
+
+    private SnapshotDiff createDiff(String diffType,
+                                    SnapshotManifest.Entry left,
+                                    SnapshotManifest.Entry right) {
+        SnapshotDiff diff = new SnapshotDiff();
+        diff.diffType = diffType;
+        diff.name = right == null ? left.getName() : right.getName();
+        if ( left != null ) {
+            diff.leftUuid = left.getNodeIdentifier();
+        }
+        if ( right != null ) {
+            diff.rightUuid = right.getNodeIdentifier();
+        }
+        return diff;
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2012 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.drools.guvnor.server.verification;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.drools.guvnor.client.rpc.AnalysisReport;
+import org.drools.repository.AssetItem;
+import org.drools.repository.ModuleItem;
+import org.drools.repository.events.CheckinEvent;
+
+/**
+ * Keeps the last package analysis report of each module, so the QA screen
+ * can show a report that was computed earlier (on request or by the
+ * background analysis) instead of analysing the module again.
+ * A report is only returned for the module version it was computed for,
+ * and it is dropped when any asset of the module is checked in. A report is
+ * not stored if an asset of the module was checked in while it was computed,
+ * see {@link #getGeneration(ModuleItem)}.
+ */
+public class AnalysisReportStore {
+
+    private static final AnalysisReportStore instance = new AnalysisReportStore();
+
+    // Module UUID, report
+    private final Map<String, StoredReport> reports = new ConcurrentHashMap<String, StoredReport>();
+
+    // Module UUID, number of times the reports of the module were dropped
+    private final Map<String, Long> generations = new HashMap<String, Long>();
+
+    private final CheckinEvent checkinListener = new CheckinEvent() {
+        public void afterCheckin(AssetItem item) {
+            invalidate( item.getModule().getUUID() );
+        }
+    };
+
+    public static AnalysisReportStore getInstance() {
+        return instance;
+    }
+
+    /**
+     * @return the listener that drops the report of a module when one of its assets is
+     *         checked in. It is registered by the RepositoryStartupService.
+     */
+    public CheckinEvent getCheckinListener() {
+        return checkinListener;
+    }
+
+    /**
+     * @return the stored report for the current version of the module, or null if there is none.
+     */
+    public AnalysisReport get(ModuleItem moduleItem) {
+        if ( moduleItem.getUUID() == null ) {
+            return null;
+        }
+        StoredReport storedReport = reports.get( moduleItem.getUUID() );
+        if ( storedReport == null || storedReport.versionNumber != moduleItem.getVersionNumber() ) {
+            return null;
+        }
+        return storedReport.report;
+    }
+
+    /**
+     * @return the generation of the reports of the module, to be taken before it is analysed
+     *         and given back to {@link #put(ModuleItem, long, AnalysisReport)}.
+     */
+    public synchronized long getGeneration(ModuleItem moduleItem) {
+        Long generation = generations.get( moduleItem.getUUID() );
+        return generation == null ? 0 : generation;
+    }
+
+    /**
+     * Stores the report of an analysis that started at the given generation, unless an
+     * asset of the module was checked in since, as the report may not cover it.
+     *
+     * @return true if the report was stored.
+     */
+    public synchronized boolean put(ModuleItem moduleItem,
+                                    long generation,
+                                    AnalysisReport report) {
+        if ( moduleItem.getUUID() == null || getGeneration( moduleItem ) != generation ) {
+            return false;
+        }
+        reports.put( moduleItem.getUUID(),
+                     new StoredReport( moduleItem.getVersionNumber(),
+                                       report ) );
+        return true;
+    }
+
+    public boolean contains(ModuleItem moduleItem) {
+        return get( moduleItem ) != null;
+    }
+
+    public synchronized void invalidate(String moduleUUID) {
+        if ( moduleUUID != null ) {
+            Long generation = generations.get( moduleUUID );
+            generations.put( moduleUUID,
+                             generation == null ? 1 : generation + 1 );
+            reports.remove( moduleUUID );
+        }
+    }
+
+    public void clear() {
+        reports.clear();
+    }
+
+    private static class StoredReport {
+        private final long versionNumber;
+        private final AnalysisReport report;
+
+        private StoredReport(long versionNumber,
+                             AnalysisReport report) {
+            this.versionNumber = versionNumber;
+            this.report = report;
+        }
+    }
+}
@@ -11,7 +11,11 @@ public class AssetVerifier extends VerifierRunner {
     private final AssetItem assetItem;
 
     public AssetVerifier(Verifier verifier, AssetItem assetItem) {
-        super(verifier, assetItem.getModule());
+        this(verifier, assetItem, null);
+    }
+
+    public AssetVerifier(Verifier verifier, AssetItem assetItem, VerifierResourceCache resourceCache) {
+        super(verifier, assetItem.getModule(), resourceCache);
         this.assetItem = assetItem;
     }
 
@@ -28,6 +32,12 @@ public class AssetVerifier extends VerifierRunner {
         return AssetFormats.DECISION_TABLE_GUIDED.equals(assetItem.getFormat()) || AssetFormats.DECISION_SPREADSHEET_XLS.equals(assetItem.getFormat());
     }
 
+    @Override
+    protected boolean isCacheable(AssetItem item) {
+        // The asset under verification carries unsaved content.
+        return !item.getUUID().equals(assetItem.getUUID());
+    }
+
     @Override
     protected AssetValidationIterator listAssetsByFormat(String format) {
         AssetValidationIterator assetValidationIterator = new AssetValidationIterator(packageItem.listAssetsByFormat(format));
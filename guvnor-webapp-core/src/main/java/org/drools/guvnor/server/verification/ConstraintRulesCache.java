@@ -0,0 +1,171 @@
+/*
+ * Copyright 2012 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.drools.guvnor.server.verification;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import org.drools.compiler.DroolsParserException;
+import org.drools.compiler.PackageBuilder;
+import org.drools.core.util.DroolsStreamUtils;
+import org.drools.guvnor.server.util.LoggingHelper;
+import org.drools.ide.common.client.factconstraints.ConstraintConfiguration;
+import org.drools.ide.common.server.factconstraints.factory.ConstraintsFactory;
+import org.drools.rule.Package;
+
+/**
+ * Keeps the verifier rules of the working set constraints compiled, so a verification
+ * run merges a compiled package instead of generating and compiling the rule of every
+ * constraint again.
+ *
+ * The compiled packages are keyed by a digest of the constraints (name, fact type, field
+ * and arguments of each, in order), so any change to the constraints of the active
+ * working sets compiles them again. They are kept serialized, each run reads its own
+ * copy. At most "guvnor.verifier.constraintRules.cacheSize" sets of constraints (50 by
+ * default) are kept.
+ */
+public class ConstraintRulesCache {
+
+    private static final LoggingHelper log = LoggingHelper.getLogger( ConstraintRulesCache.class );
+
+    private static final ConstraintRulesCache INSTANCE = new ConstraintRulesCache( Integer.getInteger( "guvnor.verifier.constraintRules.cacheSize",
+                                                                                                       50 ) );
+
+    private final Map<String, List<byte[]>> packages;
+    private long compileCount = 0;
+
+    ConstraintRulesCache(final int cacheSize) {
+        this.packages = new LinkedHashMap<String, List<byte[]>>( 16,
+                                                                 0.75f,
+                                                                 true ) {
+            private static final long serialVersionUID = 510l;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, List<byte[]>> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    public static ConstraintRulesCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @return the verifier rules of the constraints, one serialized {@link Package} per
+     *         package they declare, or null if they do not compile.
+     */
+    public List<byte[]> getCompiledRules(Collection<ConstraintConfiguration> constraints) {
+        String key = getKey( constraints );
+        synchronized ( packages ) {
+            List<byte[]> compiled = packages.get( key );
+            if ( compiled != null ) {
+                return compiled;
+            }
+        }
+
+        List<byte[]> compiled = compile( constraints );
+        if ( compiled != null ) {
+            synchronized ( packages ) {
+                packages.put( key,
+                              compiled );
+            }
+        }
+        return compiled;
+    }
+
+    private List<byte[]> compile(Collection<ConstraintConfiguration> constraints) {
+        long start = System.currentTimeMillis();
+        try {
+            PackageBuilder builder = new PackageBuilder();
+            for ( ConstraintConfiguration constraint : constraints ) {
+                builder.addPackageFromDrl( new StringReader( ConstraintsFactory.getInstance().getVerifierRule( constraint ) ) );
+            }
+            if ( builder.hasErrors() ) {
+                log.warn( "Unable to compile the working set constraints: " + builder.getErrors() );
+                return null;
+            }
+
+            List<byte[]> compiled = new ArrayList<byte[]>();
+            for ( Package pkg : builder.getPackages() ) {
+                compiled.add( DroolsStreamUtils.streamOut( pkg ) );
+            }
+            synchronized ( this ) {
+                compileCount++;
+            }
+            log.debug( "Compiled " + constraints.size() + " working set constraints in " + (System.currentTimeMillis() - start) + " ms" );
+            return Collections.unmodifiableList( compiled );
+        } catch ( DroolsParserException e ) {
+            log.warn( "Unable to compile the working set constraints: " + e.getMessage() );
+            return null;
+        } catch ( IOException e ) {
+            log.warn( "Unable to compile the working set constraints: " + e.getMessage() );
+            return null;
+        }
+    }
+
+    static String getKey(Collection<ConstraintConfiguration> constraints) {
+        StringBuilder content = new StringBuilder();
+        for ( ConstraintConfiguration constraint : constraints ) {
+            content.append( constraint.getConstraintName() ).append( '\u0000' );
+            content.append( constraint.getFactType() ).append( '\u0000' );
+            content.append( constraint.getFieldName() ).append( '\u0000' );
+            for ( String argument : new TreeSet<String>( constraint.getArgumentKeys() ) ) {
+                content.append( argument ).append( '=' ).append( constraint.getArgumentValue( argument ) ).append( '\u0000' );
+            }
+            content.append( '\n' );
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance( "SHA-1" ).digest( content.toString().getBytes( "UTF-8" ) );
+            StringBuilder key = new StringBuilder();
+            for ( byte b : digest ) {
+                key.append( Character.forDigit( (b >> 4) & 0xf,
+                                                16 ) );
+                key.append( Character.forDigit( b & 0xf,
+                                                16 ) );
+            }
+            return key.toString();
+        } catch ( NoSuchAlgorithmException e ) {
+            throw new IllegalStateException( e );
+        } catch ( UnsupportedEncodingException e ) {
+            throw new IllegalStateException( e );
+        }
+    }
+
+    /**
+     * @return how many sets of constraints were compiled so far.
+     */
+    public synchronized long getCompileCount() {
+        return compileCount;
+    }
+
+    public void clearCache() {
+        synchronized ( packages ) {
+            packages.clear();
+        }
+    }
+}
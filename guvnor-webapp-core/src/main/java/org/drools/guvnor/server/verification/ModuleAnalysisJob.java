@@ -0,0 +1,176 @@
+/*
+ * Copyright 2012 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.drools.guvnor.server.verification;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.drools.guvnor.client.rpc.AnalysisReport;
+import org.drools.guvnor.server.repository.RepositoryStartupService;
+import org.drools.guvnor.server.util.LoggingHelper;
+import org.drools.repository.ModuleItem;
+import org.drools.repository.ModuleIterator;
+import org.drools.repository.RulesRepository;
+import org.drools.verifier.Verifier;
+
+/**
+ * Analyses every module in the background and keeps the reports in the
+ * {@link AnalysisReportStore}, so the QA screen does not have to wait for an
+ * analysis. Modules that already have a report for their current version are
+ * skipped.
+ *
+ * The job is started by the RepositoryStartupService. It runs every
+ * "guvnor.verifier.analysis.interval" minutes (disabled when 0, the default)
+ * and can be started at any time with {@link #analyseAllModules()}, which the
+ * MetricsServlet offers to administrators.
+ */
+public class ModuleAnalysisJob {
+
+    private static final LoggingHelper     log      = LoggingHelper.getLogger( ModuleAnalysisJob.class );
+
+    private static final ModuleAnalysisJob INSTANCE = new ModuleAnalysisJob( Long.getLong( "guvnor.verifier.analysis.interval",
+                                                                                            0 ) );
+
+    private final long                     interval;
+
+    private final AtomicBoolean            running  = new AtomicBoolean( false );
+
+    private ScheduledExecutorService       executor;
+    private RepositoryStartupService       repositoryStartupService;
+    private String                         userName;
+    private String                         password;
+
+    ModuleAnalysisJob(long interval) {
+        this.interval = interval;
+    }
+
+    public static ModuleAnalysisJob getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Schedules the analysis, with sessions of the given user, until stop() is
+     * called.
+     */
+    public synchronized void start(RepositoryStartupService repositoryStartupService,
+                                   String userName,
+                                   String password) {
+        stop();
+        this.repositoryStartupService = repositoryStartupService;
+        this.userName = userName;
+        this.password = password;
+        this.executor = Executors.newSingleThreadScheduledExecutor();
+        if ( interval > 0 ) {
+            executor.scheduleWithFixedDelay( new Runnable() {
+                                                 public void run() {
+                                                     doAnalyseAllModules();
+                                                 }
+                                             },
+                                             interval,
+                                             interval,
+                                             TimeUnit.MINUTES );
+            log.info( "Background module analysis scheduled every " + interval + " minutes" );
+        }
+    }
+
+    public synchronized void stop() {
+        if ( executor != null ) {
+            executor.shutdownNow();
+            executor = null;
+            repositoryStartupService = null;
+        }
+    }
+
+    /**
+     * Queues an analysis of all the modules, unless one is already running.
+     */
+    public synchronized void analyseAllModules() {
+        if ( executor == null ) {
+            throw new IllegalStateException( "The module analysis is not started" );
+        }
+        executor.execute( new Runnable() {
+            public void run() {
+                doAnalyseAllModules();
+            }
+        } );
+    }
+
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    void doAnalyseAllModules() {
+        if ( !running.compareAndSet( false,
+                                     true ) ) {
+            return;
+        }
+        RulesRepository rulesRepository;
+        synchronized ( this ) {
+            if ( repositoryStartupService == null ) {
+                running.set( false );
+                return;
+            }
+            rulesRepository = new RulesRepository( repositoryStartupService.newSession( userName,
+                                                                                        password ) );
+        }
+        long startTime = System.currentTimeMillis();
+        int analysed = 0;
+        try {
+            ModuleIterator modules = rulesRepository.listModules();
+            while ( modules.hasNext() && !Thread.currentThread().isInterrupted() ) {
+                ModuleItem moduleItem = modules.next();
+                if ( moduleItem.isArchived() || AnalysisReportStore.getInstance().contains( moduleItem ) ) {
+                    continue;
+                }
+                try {
+                    analyse( moduleItem );
+                    analysed++;
+                } catch ( InterruptedException e ) {
+                    Thread.currentThread().interrupt();
+                } catch ( RuntimeException e ) {
+                    log.error( "Unable to analyse module " + moduleItem.getName(),
+                               e );
+                }
+            }
+        } finally {
+            rulesRepository.logout();
+            running.set( false );
+        }
+        log.info( "Background analysis of " + analysed + " modules took " + (System.currentTimeMillis() - startTime) + " ms" );
+    }
+
+    private void analyse(ModuleItem moduleItem) throws InterruptedException {
+        long generation = AnalysisReportStore.getInstance().getGeneration( moduleItem );
+        VerifierPool verifierPool = VerifierPool.getInstance();
+        Verifier verifier = verifierPool.checkout();
+        AnalysisReport report;
+        try {
+            report = new PackageVerifier( verifier,
+                                          moduleItem,
+                                          VerifierResourceCache.getInstance() ).verify();
+        } catch ( RuntimeException e ) {
+            verifierPool.discard( verifier );
+            throw e;
+        }
+        verifierPool.release( verifier );
+        AnalysisReportStore.getInstance().put( moduleItem,
+                                               generation,
+                                               report );
+    }
+}
@@ -13,6 +13,13 @@ public class PackageVerifier extends VerifierRunner {
                 packageItem);
     }
 
+    public PackageVerifier(Verifier verifier, ModuleItem packageItem, VerifierResourceCache resourceCache) {
+        super(
+                verifier,
+                packageItem,
+                resourceCache);
+    }
+
     @Override
     protected ScopesAgendaFilter getScopesAgendaFilter() {
         return new ScopesAgendaFilter(
@@ -11,8 +11,7 @@ import org.drools.verifier.DefaultVerifierConfiguration;
 import org.drools.verifier.VerifierConfiguration;
 import org.drools.verifier.VerifierConfigurationImpl;
 
-import java.util.Collection;
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
 
@@ -20,65 +19,76 @@ public class VerifierConfigurationFactory {
 
     public static VerifierConfiguration getDefaultConfigurationWithWorkingSetConstraints(Asset[] workingSets) throws SerializationException {
         return addWorkingSetConstraints(
-                getConstraintRulesFromWorkingSets(workingSets),
+                getConstraintsFromWorkingSets(workingSets),
                 new DefaultVerifierConfiguration());
     }
 
     public static VerifierConfiguration getPlainWorkingSetVerifierConfiguration(Asset[] workingSets) throws SerializationException {
         return addWorkingSetConstraints(
-                getConstraintRulesFromWorkingSets(workingSets),
+                getConstraintsFromWorkingSets(workingSets),
                 new VerifierConfigurationImpl());
     }
     
     public static VerifierConfiguration getPlainWorkingSetVerifierConfiguration(Set<WorkingSetConfigData> workingSets) throws SerializationException {
         return addWorkingSetConstraints(
-                getConstraintRulesFromWorkingSets(workingSets),
+                getConstraintsFromWorkingSets(workingSets),
                 new VerifierConfigurationImpl());
     }
 
 
-    private static VerifierConfiguration addWorkingSetConstraints(Collection<String> additionalVerifierRules,
+    /**
+     * The verifier rules of the constraints are merged as compiled packages (see
+     * {@link ConstraintRulesCache}), or added as DRL if they do not compile, so the
+     * verifier reports the errors.
+     */
+    private static VerifierConfiguration addWorkingSetConstraints(List<ConstraintConfiguration> constraints,
                                                                   VerifierConfiguration configuration) {
-        if (additionalVerifierRules != null) {
-            for (String rule : additionalVerifierRules) {
+        if (constraints.isEmpty()) {
+            return configuration;
+        }
+        List<byte[]> compiledRules = ConstraintRulesCache.getInstance().getCompiledRules(constraints);
+        if (compiledRules != null) {
+            for (byte[] compiledPackage : compiledRules) {
+                configuration.getVerifyingResources().put(
+                        ResourceFactory.newByteArrayResource(compiledPackage),
+                        ResourceType.PKG);
+            }
+        } else {
+            for (ConstraintConfiguration config : constraints) {
                 configuration.getVerifyingResources().put(
-                        ResourceFactory.newByteArrayResource(rule.getBytes()),
+                        ResourceFactory.newByteArrayResource(ConstraintsFactory.getInstance().getVerifierRule(config).getBytes()),
                         ResourceType.DRL);
             }
         }
         return configuration;
     }
 
-    private static List<String> getConstraintRulesFromWorkingSets(Asset[] workingSets) {
-        List<String> constraintRules = new LinkedList<String>();
+    private static List<ConstraintConfiguration> getConstraintsFromWorkingSets(Asset[] workingSets) {
+        List<ConstraintConfiguration> constraints = new ArrayList<ConstraintConfiguration>();
 
         if (workingSets != null) {
             for (Asset workingSet : workingSets) {
                 WorkingSetConfigData wsConfig = (WorkingSetConfigData) workingSet.content;
                 if (wsConfig.constraints != null) {
-                    for (ConstraintConfiguration config : wsConfig.constraints) {
-                        constraintRules.add(ConstraintsFactory.getInstance().getVerifierRule(config));
-                    }
+                    constraints.addAll(wsConfig.constraints);
                 }
             }
         }
 
-        return constraintRules;
+        return constraints;
     }
     
-    private static List<String> getConstraintRulesFromWorkingSets(Set<WorkingSetConfigData> workingSets) {
-        List<String> constraintRules = new LinkedList<String>();
+    private static List<ConstraintConfiguration> getConstraintsFromWorkingSets(Set<WorkingSetConfigData> workingSets) {
+        List<ConstraintConfiguration> constraints = new ArrayList<ConstraintConfiguration>();
 
         if (workingSets != null) {
             for (WorkingSetConfigData workingSet : workingSets) {
                 if (workingSet.constraints != null) {
-                    for (ConstraintConfiguration config : workingSet.constraints) {
-                        constraintRules.add(ConstraintsFactory.getInstance().getVerifierRule(config));
-                    }
+                    constraints.addAll(workingSet.constraints);
                 }
             }
         }
 
-        return constraintRules;
+        return constraints;
     }
 }
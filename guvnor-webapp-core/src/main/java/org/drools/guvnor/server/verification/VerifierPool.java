@@ -0,0 +1,187 @@
+/*
+ * Copyright 2012 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.drools.guvnor.server.verification;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.drools.guvnor.server.util.LoggingHelper;
+import org.drools.verifier.Verifier;
+import org.drools.verifier.builder.VerifierBuilderFactory;
+
+/**
+ * A bounded pool of default configured verifiers for package analysis.
+ * A verifier is checked out for the duration of one analysis, so concurrent
+ * analyses never share a knowledge session; requests that find the pool
+ * exhausted wait in line, and the time they spent waiting is recorded.
+ */
+public class VerifierPool {
+
+    private static final LoggingHelper log = LoggingHelper.getLogger( VerifierPool.class );
+
+    private static final VerifierPool instance = new VerifierPool( Integer.getInteger( "guvnor.verifier.pool.size",
+                                                                                       Runtime.getRuntime().availableProcessors() ) );
+
+    private final int maxSize;
+
+    private final LinkedBlockingQueue<Verifier> available = new LinkedBlockingQueue<Verifier>();
+    private final AtomicInteger created = new AtomicInteger();
+
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final AtomicLong checkouts = new AtomicLong();
+    private final AtomicLong totalWaitTime = new AtomicLong();
+    private final AtomicLong maxWaitTime = new AtomicLong();
+
+    public VerifierPool(int maxSize) {
+        if ( maxSize < 1 ) {
+            throw new IllegalArgumentException( "The verifier pool size must be at least 1, was " + maxSize );
+        }
+        this.maxSize = maxSize;
+    }
+
+    public static VerifierPool getInstance() {
+        return instance;
+    }
+
+    /**
+     * Takes a verifier out of the pool, creating one if the pool is not full yet,
+     * or waiting for one to be released otherwise.
+     * Every checked out verifier must be given back with {@link #release(Verifier)}.
+     */
+    public Verifier checkout() throws InterruptedException {
+        Verifier verifier = available.poll();
+        if ( verifier == null ) {
+            verifier = createIfBelowMaxSize();
+        }
+        if ( verifier == null ) {
+            long startTime = System.currentTimeMillis();
+            waiting.incrementAndGet();
+            try {
+                verifier = available.take();
+            } finally {
+                waiting.decrementAndGet();
+            }
+            recordWaitTime( System.currentTimeMillis() - startTime );
+        }
+        checkouts.incrementAndGet();
+        return verifier;
+    }
+
+    /**
+     * Gives a verifier back to the pool, after clearing its knowledge session.
+     * If the session can not be cleared the verifier is dropped and replaced by a new one
+     * on a later checkout.
+     */
+    public void release(Verifier verifier) {
+        try {
+            verifier.flushKnowledgeSession();
+        } catch ( RuntimeException e ) {
+            log.warn( "Unable to reset a pooled verifier, dropping it: " + e.getMessage() );
+            discard( verifier );
+            return;
+        }
+        available.offer( verifier );
+    }
+
+    /**
+     * Drops a checked out verifier that is no longer in a usable state.
+     */
+    public void discard(Verifier verifier) {
+        created.decrementAndGet();
+    }
+
+    protected Verifier createVerifier() {
+        return VerifierBuilderFactory.newVerifierBuilder().newVerifier();
+    }
+
+    private Verifier createIfBelowMaxSize() {
+        while ( true ) {
+            int current = created.get();
+            if ( current >= maxSize ) {
+                return null;
+            }
+            if ( created.compareAndSet( current,
+                                        current + 1 ) ) {
+                try {
+                    return createVerifier();
+                } catch ( RuntimeException e ) {
+                    created.decrementAndGet();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private void recordWaitTime(long waitTime) {
+        totalWaitTime.addAndGet( waitTime );
+        long max = maxWaitTime.get();
+        while ( waitTime > max && !maxWaitTime.compareAndSet( max,
+                                                              waitTime ) ) {
+            max = maxWaitTime.get();
+        }
+        log.debug( "Waited " + waitTime + " ms for a verifier" );
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @return the number of verifiers created so far and not discarded.
+     */
+    public int getSize() {
+        return created.get();
+    }
+
+    public int getAvailableCount() {
+        return available.size();
+    }
+
+    /**
+     * @return the number of requests currently queued for a verifier.
+     */
+    public int getWaitingCount() {
+        return waiting.get();
+    }
+
+    public long getCheckoutCount() {
+        return checkouts.get();
+    }
+
+    public long getTotalWaitTime() {
+        return totalWaitTime.get();
+    }
+
+    public long getMaxWaitTime() {
+        return maxWaitTime.get();
+    }
+
+    public long getAverageWaitTime() {
+        long count = checkouts.get();
+        if ( count == 0 ) {
+            return 0;
+        }
+        return totalWaitTime.get() / count;
+    }
+
+    public String getStatistics() {
+        return "size=" + getSize() + ", maxSize=" + maxSize + ", available=" + getAvailableCount()
+               + ", waiting=" + getWaitingCount() + ", checkouts=" + getCheckoutCount()
+               + ", maxWaitTime=" + getMaxWaitTime() + " ms, averageWaitTime=" + getAverageWaitTime() + " ms";
+    }
+}
@@ -0,0 +1,262 @@
+/*
+ * Copyright 2012 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.drools.guvnor.server.verification;
+
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.drools.guvnor.server.util.LoggingHelper;
+import org.drools.repository.AssetItem;
+import org.drools.repository.ModuleItem;
+import org.drools.repository.events.CheckinEvent;
+
+/**
+ * Keeps, per module, the verifier resources (plain content or generated DRL)
+ * of every asset that has already been fed to a verifier, so verifying one
+ * asset does not regenerate the DRL of all the others.
+ *
+ * An entry is only reused while the asset's version number and last modified
+ * date are unchanged, and it is dropped as soon as the asset is checked in.
+ * Modules that have not been used for the idle timeout are evicted, as are
+ * the least recently used modules once the total cached size (in characters)
+ * goes over the configured bound.
+ */
+public class VerifierResourceCache {
+
+    private static final LoggingHelper log = LoggingHelper.getLogger( VerifierResourceCache.class );
+
+    public static final long DEFAULT_MAX_SIZE = 32 * 1024 * 1024;
+    public static final long DEFAULT_IDLE_TIMEOUT = 30 * 60 * 1000;
+
+    private static final VerifierResourceCache instance = new VerifierResourceCache(
+            Long.getLong( "guvnor.verifier.cache.maxSize",
+                          DEFAULT_MAX_SIZE ),
+            Long.getLong( "guvnor.verifier.cache.idleTimeout",
+                          DEFAULT_IDLE_TIMEOUT ) );
+
+    /**
+     * Produces the verifier resource for an asset when it is not cached.
+     */
+    public interface ResourceRenderer {
+        String render(AssetItem assetItem);
+    }
+
+    private final long maxSize;
+    private final long idleTimeout;
+
+    // Module UUID, resources. Access ordered so the eldest entry is the least recently used.
+    private final LinkedHashMap<String, ModuleResources> modules = new LinkedHashMap<String, ModuleResources>( 16,
+                                                                                                               0.75f,
+                                                                                                               true );
+    private long size = 0;
+
+    private final CheckinEvent checkinListener = new CheckinEvent() {
+        public void afterCheckin(AssetItem item) {
+            invalidate( item.getUUID() );
+        }
+    };
+
+    public VerifierResourceCache(long maxSize,
+                                 long idleTimeout) {
+        this.maxSize = maxSize;
+        this.idleTimeout = idleTimeout;
+    }
+
+    public static VerifierResourceCache getInstance() {
+        return instance;
+    }
+
+    /**
+     * @return the listener that drops the entry of an asset when it is checked in. It is
+     *         registered by the RepositoryStartupService.
+     */
+    public CheckinEvent getCheckinListener() {
+        return checkinListener;
+    }
+
+    /**
+     * Returns the cached resource for the asset, rendering (and caching) it
+     * if there is no entry for the asset's current version.
+     */
+    public String getResource(ModuleItem moduleItem,
+                              AssetItem assetItem,
+                              ResourceRenderer renderer) {
+        String moduleUUID = moduleItem.getUUID();
+        String assetUUID = assetItem.getUUID();
+
+        // Drafts that were never checked in have no stable version to key on.
+        if ( moduleUUID == null || assetUUID == null || assetItem.getVersionNumber() <= 0 ) {
+            return renderer.render( assetItem );
+        }
+
+        long versionNumber = assetItem.getVersionNumber();
+        long lastModified = getTime( assetItem.getLastModified() );
+
+        synchronized ( this ) {
+            ModuleResources moduleResources = modules.get( moduleUUID );
+            if ( moduleResources != null ) {
+                moduleResources.lastAccess = System.currentTimeMillis();
+                Resource resource = moduleResources.resources.get( assetUUID );
+                if ( resource != null && resource.isFor( versionNumber,
+                                                         lastModified ) ) {
+                    return resource.content;
+                }
+            }
+        }
+
+        // Rendering is done outside the lock, it can be slow for model driven assets.
+        String content = renderer.render( assetItem );
+        if ( content != null ) {
+            put( moduleUUID,
+                 assetUUID,
+                 new Resource( versionNumber,
+                               lastModified,
+                               content ) );
+        }
+        return content;
+    }
+
+    /**
+     * Drops the cached resource of the given asset, in whatever module it is.
+     */
+    public synchronized void invalidate(String assetUUID) {
+        for ( ModuleResources moduleResources : modules.values() ) {
+            Resource removed = moduleResources.resources.remove( assetUUID );
+            if ( removed != null ) {
+                size -= removed.content.length();
+            }
+        }
+    }
+
+    public synchronized void invalidateModule(String moduleUUID) {
+        ModuleResources removed = modules.remove( moduleUUID );
+        if ( removed != null ) {
+            size -= removed.size();
+        }
+    }
+
+    public synchronized void clearCache() {
+        modules.clear();
+        size = 0;
+    }
+
+    public synchronized boolean contains(String moduleUUID,
+                                         String assetUUID) {
+        ModuleResources moduleResources = modules.get( moduleUUID );
+        return moduleResources != null && moduleResources.resources.containsKey( assetUUID );
+    }
+
+    public synchronized long getSize() {
+        return size;
+    }
+
+    private synchronized void put(String moduleUUID,
+                                  String assetUUID,
+                                  Resource resource) {
+        evictIdleModules();
+
+        ModuleResources moduleResources = modules.get( moduleUUID );
+        if ( moduleResources == null ) {
+            moduleResources = new ModuleResources();
+            modules.put( moduleUUID,
+                         moduleResources );
+        }
+        moduleResources.lastAccess = System.currentTimeMillis();
+
+        Resource previous = moduleResources.resources.put( assetUUID,
+                                                           resource );
+        if ( previous != null ) {
+            size -= previous.content.length();
+        }
+        size += resource.content.length();
+
+        evictLeastRecentlyUsedModules( moduleUUID );
+    }
+
+    private void evictIdleModules() {
+        long now = System.currentTimeMillis();
+        Iterator<Map.Entry<String, ModuleResources>> iterator = modules.entrySet().iterator();
+        while ( iterator.hasNext() ) {
+            Map.Entry<String, ModuleResources> entry = iterator.next();
+            if ( now - entry.getValue().lastAccess > idleTimeout ) {
+                log.debug( "Evicting idle verifier resources of module " + entry.getKey() );
+                size -= entry.getValue().size();
+                iterator.remove();
+            }
+        }
+    }
+
+    private void evictLeastRecentlyUsedModules(String currentModuleUUID) {
+        Iterator<Map.Entry<String, ModuleResources>> iterator = modules.entrySet().iterator();
+        while ( size > maxSize && iterator.hasNext() ) {
+            Map.Entry<String, ModuleResources> entry = iterator.next();
+            if ( !entry.getKey().equals( currentModuleUUID ) ) {
+                log.debug( "Evicting verifier resources of module " + entry.getKey() );
+                size -= entry.getValue().size();
+                iterator.remove();
+            }
+        }
+
+        // A single module larger than the bound is not kept at all.
+        if ( size > maxSize ) {
+            invalidateModule( currentModuleUUID );
+        }
+    }
+
+    private static long getTime(Calendar calendar) {
+        if ( calendar == null ) {
+            return 0;
+        }
+        return calendar.getTimeInMillis();
+    }
+
+    private static class ModuleResources {
+        // Asset UUID, resource
+        private final Map<String, Resource> resources = new HashMap<String, Resource>();
+        private long lastAccess;
+
+        private long size() {
+            long result = 0;
+            for ( Resource resource : resources.values() ) {
+                result += resource.content.length();
+            }
+            return result;
+        }
+    }
+
+    private static class Resource {
+        private final long versionNumber;
+        private final long lastModified;
+        private final String content;
+
+        private Resource(long versionNumber,
+                         long lastModified,
+                         String content) {
+            this.versionNumber = versionNumber;
+            this.lastModified = lastModified;
+            this.content = content;
+        }
+
+        private boolean isFor(long versionNumber,
+                              long lastModified) {
+            return this.versionNumber == versionNumber && this.lastModified == lastModified;
+        }
+    }
+}
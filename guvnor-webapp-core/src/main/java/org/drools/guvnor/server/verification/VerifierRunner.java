@@ -39,13 +39,40 @@ import java.io.StringReader;
 
 public abstract class VerifierRunner {
 
+    private static final VerifierResourceCache.ResourceRenderer CONTENT_RENDERER = new VerifierResourceCache.ResourceRenderer() {
+        public String render(AssetItem assetItem) {
+            return assetItem.getContent();
+        }
+    };
+
+    private static final VerifierResourceCache.ResourceRenderer RAW_DRL_RENDERER = new VerifierResourceCache.ResourceRenderer() {
+        public String render(AssetItem assetItem) {
+            IRuleAsset ruleAsset = (IRuleAsset) ContentManager.getHandler(assetItem.getFormat());
+            return ruleAsset.getRawDRL(assetItem);
+        }
+    };
+
     private final Verifier verifier;
     protected final ModuleItem packageItem;
+    private final VerifierResourceCache resourceCache;
 
     public VerifierRunner(Verifier verifier,
                           ModuleItem packageItem) {
+        this(verifier,
+                packageItem,
+                null);
+    }
+
+    /**
+     * @param resourceCache if not null, the resources of the assets that are not under
+     *                      verification are taken from this cache instead of being regenerated.
+     */
+    public VerifierRunner(Verifier verifier,
+                          ModuleItem packageItem,
+                          VerifierResourceCache resourceCache) {
         this.verifier = verifier;
         this.packageItem = packageItem;
+        this.resourceCache = resourceCache;
     }
 
     public AnalysisReport verify() {
@@ -142,7 +169,7 @@ public abstract class VerifierRunner {
                             dtableconfiguration);
                 } else {
                     verifier.addResourcesToVerify(
-                            ResourceFactory.newReaderResource(new StringReader(asset.getContent())),
+                            ResourceFactory.newReaderResource(new StringReader(getResource(asset, CONTENT_RENDERER))),
                             resourceType);
                 }
             }
@@ -155,8 +182,7 @@ public abstract class VerifierRunner {
 
             ContentHandler contentHandler = ContentManager.getHandler(assetItem.getFormat());
             if (contentHandler.isRuleAsset()) {
-                IRuleAsset ruleAsset = (IRuleAsset) contentHandler;
-                String drl = ruleAsset.getRawDRL(assetItem);
+                String drl = getResource(assetItem, RAW_DRL_RENDERER);
                 verifier.addResourcesToVerify(
                         ResourceFactory.newReaderResource(new StringReader(drl)),
                         ResourceType.DRL);
@@ -164,4 +190,21 @@ public abstract class VerifierRunner {
             }
         }
     }
+
+    /**
+     * Override to keep assets out of the resource cache, for example the asset being edited.
+     */
+    protected boolean isCacheable(AssetItem assetItem) {
+        return true;
+    }
+
+    private String getResource(AssetItem assetItem,
+                               VerifierResourceCache.ResourceRenderer renderer) {
+        if (resourceCache == null || !isCacheable(assetItem)) {
+            return renderer.render(assetItem);
+        }
+        return resourceCache.getResource(packageItem,
+                assetItem,
+                renderer);
+    }
 }
@@ -30,6 +30,9 @@ public abstract class ModuleServiceAsyncMock implements ModuleServiceAsync {
     public void listModules(AsyncCallback<Module[]> cb) {
     }
 
+    public void listModules(String p0, int p1, int p2, AsyncCallback<Module[]> cb) {
+    }
+
     public void listArchivedModules(AsyncCallback<Module[]> cb) {
     }
 
@@ -21,6 +21,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import org.drools.ide.common.client.modeldriven.FactTypeCompletions;
 import org.drools.ide.common.client.modeldriven.SuggestionCompletionEngine;
 import org.drools.ide.common.shared.workitems.PortableWorkDefinition;
 
@@ -123,6 +124,14 @@ public class RepositoryServiceAsyncMock implements RepositoryServiceAsync {
         
     }
 
+    public void loadSuggestionCompletionEngineSummary(String p0, AsyncCallback<SuggestionCompletionEngine> cb) {
+
+    }
+
+    public void loadFactTypeCompletions(String p0, String[] p1, AsyncCallback<FactTypeCompletions[]> cb) {
+
+    }
+
     public void getCustomSelectors(AsyncCallback<String[]> cb) {
         
     }
@@ -143,6 +152,10 @@ public class RepositoryServiceAsyncMock implements RepositoryServiceAsync {
         
     }
 
+    public void loadDropDownExpressions(String[][] p0, String[] p1, AsyncCallback<String[][]> cb) {
+        
+    }
+
     public void queryFullText(QueryPageRequest p0, AsyncCallback<PageResponse<QueryPageRow>> cb) {
         
     }
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2012 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.drools.guvnor.server.builder;
+
+import org.drools.lang.dsl.DSLTokenizedMappingFile;
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class CompiledDSLTest {
+
+    private static final String DSL = "[when]There is a Person=Person()\n"
+            + "[when]There is a Driver=Driver()\n"
+            + "[when]- older than {age}=age > {age}\n"
+            + "[then]Log {message}=System.out.println({message});\n"
+            + "[then]Notify the driver=Log \"driver\"\n"
+            + "[when]{name} is known=Known(name == \"{name}\")\n";
+
+    @Test
+    public void testFirstWord() {
+        assertEquals("there",
+                CompiledDSL.firstWord("There is a {thing}"));
+        assertEquals("older",
+                CompiledDSL.firstWord("- older than {age}"));
+        assertNull(CompiledDSL.firstWord("{name} is known"));
+        assertNull(CompiledDSL.firstWord("(?i)something"));
+    }
+
+    @Test
+    public void testCandidatesIncludeExpansionsAndVariableSentences() throws Exception {
+        CompiledDSL dsl = new CompiledDSL(parse(DSL));
+        assertEquals(6,
+                dsl.getEntryCount());
+
+        BitSet candidates = dsl.selectCandidates("when\nThere is a Person\nthen\nNotify the driver\n");
+        assertTrue(candidates.get(0));
+        assertTrue(candidates.get(1));
+        assertFalse(candidates.get(2));
+        // "Notify the driver" expands to a "Log" sentence
+        assertTrue(candidates.get(3));
+        assertTrue(candidates.get(4));
+        assertTrue(candidates.get(5));
+    }
+
+    @Test
+    public void testExpansionIsTheSameWithTheCandidatesOnly() throws Exception {
+        CompiledDSL dsl = new CompiledDSL(parse(DSL));
+        String source = "rule \"test\"\nwhen\nThere is a Person\n- older than 42\nthen\nNotify the driver\nend\n";
+
+        assertEquals(dsl.newExpander().expand(source),
+                dsl.newExpander(source).expand(source));
+    }
+
+    private List<DSLTokenizedMappingFile> parse(String dsl) throws Exception {
+        DSLTokenizedMappingFile file = new DSLTokenizedMappingFile();
+        assertTrue(file.parseAndLoad(new StringReader(dsl)));
+        List<DSLTokenizedMappingFile> files = new ArrayList<DSLTokenizedMappingFile>();
+        files.add(file);
+        return files;
+    }
+}
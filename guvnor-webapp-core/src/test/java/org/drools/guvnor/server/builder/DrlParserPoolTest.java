@@ -0,0 +1,81 @@
+/*
+ * Copyright 2012 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.drools.guvnor.server.builder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.drools.guvnor.server.builder.DrlParserPool.ParsedDrl;
+import org.junit.Test;
+
+public class DrlParserPoolTest {
+
+    @Test
+    public void testResultsAreInTheOrderOfTheDrl() {
+        List<String> drls = new ArrayList<String>();
+        for ( int i = 0; i < 40; i++ ) {
+            drls.add( i == 17 ? "rule 'broken' when then" : "rule 'rule" + i + "'\nwhen\n    String()\nthen\nend" );
+        }
+
+        checkResults( new DrlParserPool( 4,
+                                         8 ).parse( drls ) );
+        checkResults( new DrlParserPool( 1,
+                                         8 ).parse( drls ) );
+    }
+
+    @Test
+    public void testWorkersAreStoppedAfterParsing() throws Exception {
+        List<String> drls = new ArrayList<String>();
+        for ( int i = 0; i < 10; i++ ) {
+            drls.add( "rule 'rule" + i + "'\nwhen\n    String()\nthen\nend" );
+        }
+        new DrlParserPool( 4,
+                           8 ).parse( drls );
+
+        for ( Thread thread : Thread.getAllStackTraces().keySet() ) {
+            if ( thread.getName().startsWith( "guvnor-drl-parser-" ) ) {
+                thread.join( 5000 );
+                assertFalse( thread.isAlive() );
+            }
+        }
+    }
+
+    private void checkResults(List<ParsedDrl> results) {
+        assertEquals( 40,
+                      results.size() );
+        for ( int i = 0; i < results.size(); i++ ) {
+            ParsedDrl parsed = results.get( i );
+            assertNull( parsed.getException() );
+            if ( i == 17 ) {
+                assertFalse( parsed.getErrors().isEmpty() );
+            } else {
+                assertTrue( parsed.getErrors().isEmpty() );
+                assertEquals( 1,
+                              parsed.getDescr().getRules().size() );
+                assertEquals( "rule" + i,
+                              parsed.getDescr().getRules().get( 0 ).getName() );
+            }
+        }
+    }
+
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2012 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.drools.guvnor.server.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+
+public class RequestMetricsTest {
+
+    @Test
+    public void testMeasurementsAreRecordedPerOperation() {
+        RequestMetrics metrics = new RequestMetrics( 0 );
+
+        RequestMetrics.Measurement measurement = metrics.start( "http:POST /guvnorService" );
+        assertNotNull( measurement );
+        // nested measurements are ignored
+        assertNull( metrics.start( "http:POST /other" ) );
+        metrics.setOperation( "rpc:RepositoryService.loadRuleAsset" );
+        metrics.recordSession();
+        metrics.stop( measurement,
+                      false,
+                      100,
+                      2000 );
+
+        measurement = metrics.start( "http:POST /guvnorService" );
+        metrics.setOperation( "rpc:RepositoryService.loadRuleAsset" );
+        metrics.markError();
+        metrics.stop( measurement,
+                      false,
+                      50,
+                      10 );
+
+        List<OperationStatistics> operations = metrics.getOperations();
+        assertEquals( 1,
+                      operations.size() );
+        OperationStatistics statistics = operations.get( 0 );
+        assertEquals( "rpc:RepositoryService.loadRuleAsset",
+                      statistics.getOperation() );
+        assertEquals( 2,
+                      statistics.getCount() );
+        assertEquals( 1,
+                      statistics.getErrors() );
+        assertEquals( 150,
+                      statistics.getRequestBytes() );
+        assertEquals( 2010,
+                      statistics.getResponseBytes() );
+        assertEquals( 2000,
+                      statistics.getMaxResponseBytes() );
+        assertEquals( 1,
+                      statistics.getSessions() );
+        assertEquals( 2,
+                      metrics.getRequestCount() );
+        assertEquals( 1,
+                      metrics.getErrorCount() );
+
+        metrics.reset();
+        assertEquals( 0,
+                      metrics.getOperations().size() );
+    }
+
+    @Test
+    public void testSlowRequestsAreLoggedWithTheirSizesOnly() {
+        RequestMetrics metrics = new RequestMetrics( 1 );
+        metrics.setSlowRequestThreshold( -1 );
+        assertEquals( 0,
+                      metrics.getSlowRequests().length );
+
+        metrics.setSlowRequestThreshold( 1 );
+        RequestMetrics.Measurement measurement = metrics.start( "rpc:SecurityService.login" );
+        long end = System.currentTimeMillis() + 20;
+        while ( System.currentTimeMillis() < end ) {
+            // busy waiting, to be over the threshold
+        }
+        metrics.stop( measurement,
+                      false,
+                      42,
+                      7 );
+
+        String[] slowRequests = metrics.getSlowRequests();
+        assertEquals( 1,
+                      slowRequests.length );
+        assertTrue( slowRequests[0],
+                    slowRequests[0].contains( "rpc:SecurityService.login" ) );
+        assertTrue( slowRequests[0],
+                    slowRequests[0].contains( "requestBytes=42, responseBytes=7)" ) );
+        assertTrue( slowRequests[0],
+                    slowRequests[0].endsWith( ")" ) );
+    }
+
+    @Test
+    public void testHistogram() {
+        OperationStatistics statistics = new OperationStatistics( "test" );
+        for ( int i = 0; i < 99; i++ ) {
+            statistics.record( 3,
+                               false,
+                               0,
+                               0,
+                               0 );
+        }
+        statistics.record( 20000,
+                           false,
+                           0,
+                           0,
+                           0 );
+
+        assertEquals( 99,
+                      statistics.getHistogram()[OperationStatistics.bucketOf( 3 )] );
+        assertEquals( 1,
+                      statistics.getHistogram()[OperationStatistics.BUCKETS.length] );
+        assertEquals( 5,
+                      statistics.getPercentile( 0.5 ) );
+        assertEquals( 5,
+                      statistics.getPercentile( 0.99 ) );
+        assertEquals( -1,
+                      statistics.getPercentile( 1 ) );
+    }
+}
@@ -0,0 +1,460 @@
+/*
+ * Copyright 2012 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.drools.guvnor.server.refactoring;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.drools.compiler.DroolsParserException;
+import org.drools.guvnor.client.common.AssetFormats;
+import org.drools.guvnor.server.builder.CompiledDSL;
+import org.drools.ide.common.client.modeldriven.brl.ActionCallMethod;
+import org.drools.ide.common.client.modeldriven.brl.ActionFieldValue;
+import org.drools.ide.common.client.modeldriven.brl.ActionGlobalCollectionAdd;
+import org.drools.ide.common.client.modeldriven.brl.ActionInsertFact;
+import org.drools.ide.common.client.modeldriven.brl.ActionSetField;
+import org.drools.ide.common.client.modeldriven.brl.ConnectiveConstraint;
+import org.drools.ide.common.client.modeldriven.brl.DSLSentence;
+import org.drools.ide.common.client.modeldriven.brl.FactPattern;
+import org.drools.ide.common.client.modeldriven.brl.RuleModel;
+import org.drools.ide.common.client.modeldriven.brl.SingleFieldConstraint;
+import org.drools.ide.common.client.modeldriven.dt52.ActionInsertFactCol52;
+import org.drools.ide.common.client.modeldriven.dt52.ActionSetFieldCol52;
+import org.drools.ide.common.client.modeldriven.dt52.ConditionCol52;
+import org.drools.ide.common.client.modeldriven.dt52.GuidedDecisionTable52;
+import org.drools.ide.common.client.modeldriven.dt52.Pattern52;
+import org.drools.ide.common.client.modeldriven.testing.FactData;
+import org.drools.ide.common.client.modeldriven.testing.FieldData;
+import org.drools.ide.common.client.modeldriven.testing.Scenario;
+import org.drools.ide.common.client.modeldriven.testing.VerifyFact;
+import org.drools.ide.common.client.modeldriven.testing.VerifyField;
+import org.drools.ide.common.server.util.BRXMLPersistence;
+import org.drools.ide.common.server.util.GuidedDTXMLPersistence;
+import org.drools.ide.common.server.util.ScenarioXMLPersistence;
+import org.drools.lang.dsl.DSLTokenizedMappingFile;
+import org.junit.Test;
+
+public class AssetSymbolWalkerTest {
+
+    private static final String DRL = "package org.acme\n"
+                                      + "import org.acme.Person\n"
+                                      + "rule \"Person age\" // age of a Person\n"
+                                      + "when\n"
+                                      + "  $p : Person( age > 18, $n : name, address.city == \"age\" )\n"
+                                      + "  not Person( age > $p.age )\n"
+                                      + "then\n"
+                                      + "  Person older = new Person();\n"
+                                      + "  older.setAge( $p.getAge() + 1 );\n"
+                                      + "  modify( $p ) { setAge( 20 ) }\n"
+                                      + "end\n";
+
+    @Test
+    public void testRenameFieldInDrl() throws Exception {
+        String renamed = AssetSymbolWalker.walk( AssetFormats.DRL,
+                                                 DRL,
+                                                 SymbolRename.field( "Person",
+                                                                     "age",
+                                                                     "years" ) );
+
+        assertEquals( "package org.acme\n"
+                              + "import org.acme.Person\n"
+                              + "rule \"Person age\" // age of a Person\n"
+                              + "when\n"
+                              + "  $p : Person( years > 18, $n : name, address.city == \"age\" )\n"
+                              + "  not Person( years > $p.years )\n"
+                              + "then\n"
+                              + "  Person older = new Person();\n"
+                              + "  older.setYears( $p.getYears() + 1 );\n"
+                              + "  modify( $p ) { setYears( 20 ) }\n"
+                              + "end\n",
+                      renamed );
+    }
+
+    @Test
+    public void testRenameFactTypeInDrl() throws Exception {
+        String renamed = AssetSymbolWalker.walk( AssetFormats.DRL,
+                                                 DRL,
+                                                 SymbolRename.factType( "org.acme.Person",
+                                                                        "Customer" ) );
+
+        assertTrue( renamed.contains( "import org.acme.Customer\n" ) );
+        assertTrue( renamed.contains( "$p : Customer( age > 18" ) );
+        assertTrue( renamed.contains( "not Customer( age > $p.age )" ) );
+        assertTrue( renamed.contains( "Customer older = new Customer();" ) );
+        assertTrue( renamed.contains( "rule \"Person age\" // age of a Person" ) );
+    }
+
+    @Test
+    public void testRenameFieldInDeclaredModel() throws Exception {
+        String model = "declare Person\n  age : int\n  owner : Person\nend\n";
+
+        assertEquals( "declare Person\n  years : int\n  owner : Person\nend\n",
+                      AssetSymbolWalker.walk( AssetFormats.DRL_MODEL,
+                                              model,
+                                              SymbolRename.field( "Person",
+                                                                  "age",
+                                                                  "years" ) ) );
+        assertEquals( "declare Customer\n  age : int\n  owner : Customer\nend\n",
+                      AssetSymbolWalker.walk( AssetFormats.DRL_MODEL,
+                                              model,
+                                              SymbolRename.factType( "Person",
+                                                                     "Customer" ) ) );
+    }
+
+    @Test
+    public void testGetSymbolsOfDrl() {
+        Set<String> symbols = AssetSymbolWalker.getSymbols( AssetFormats.DRL,
+                                                            DRL );
+
+        assertTrue( symbols.contains( Symbols.factType( "Person" ) ) );
+        assertTrue( symbols.contains( Symbols.field( "Person",
+                                                     "age" ) ) );
+        assertTrue( symbols.contains( Symbols.field( "Person",
+                                                     "name" ) ) );
+        assertTrue( symbols.contains( Symbols.field( "Person",
+                                                     "address" ) ) );
+        assertFalse( symbols.contains( Symbols.field( "Person",
+                                                      "city" ) ) );
+    }
+
+    @Test
+    public void testUnchangedContentIsReturnedAsIs() throws Exception {
+        assertSame( DRL,
+                    AssetSymbolWalker.walk( AssetFormats.DRL,
+                                            DRL,
+                                            SymbolRename.field( "Cheese",
+                                                                "age",
+                                                                "years" ) ) );
+
+        String xml = BRXMLPersistence.getInstance().marshal( createRuleModel() );
+        assertSame( xml,
+                    AssetSymbolWalker.walk( AssetFormats.BUSINESS_RULE,
+                                            xml,
+                                            SymbolRename.factType( "Driver",
+                                                                   "Pilot" ) ) );
+    }
+
+    @Test
+    public void testInvalidDrlIsNotRenamed() {
+        try {
+            AssetSymbolWalker.walk( AssetFormats.DRL,
+                                    "rule x when Person( age > ) then end",
+                                    SymbolRename.field( "Person",
+                                                        "age",
+                                                        "years" ) );
+            fail( "The DRL does not parse" );
+        } catch ( DroolsParserException e ) {
+            //Expected
+        }
+        assertEquals( Collections.singleton( Symbols.UNREADABLE ),
+                      AssetSymbolWalker.getSymbols( AssetFormats.DRL,
+                                                    "rule x when Person( age > ) then end" ) );
+    }
+
+    @Test
+    public void testRenameFieldInGuidedRule() throws Exception {
+        String xml = AssetSymbolWalker.walk( AssetFormats.BUSINESS_RULE,
+                                             BRXMLPersistence.getInstance().marshal( createRuleModel() ),
+                                             SymbolRename.field( "Person",
+                                                                 "age",
+                                                                 "years" ) );
+        RuleModel model = BRXMLPersistence.getInstance().unmarshal( xml );
+
+        FactPattern person = (FactPattern) model.lhs[0];
+        SingleFieldConstraint age = (SingleFieldConstraint) person.getFieldConstraints()[0];
+        assertEquals( "years",
+                      age.getFieldName() );
+        assertEquals( "years",
+                      age.connectives[0].getFieldName() );
+        FactPattern cheese = (FactPattern) model.lhs[1];
+        assertEquals( "age",
+                      ((SingleFieldConstraint) cheese.getFieldConstraints()[0]).getFieldName() );
+        assertEquals( "years",
+                      ((ActionSetField) model.rhs[0]).fieldValues[0].getField() );
+        assertEquals( "years",
+                      ((ActionInsertFact) model.rhs[1]).fieldValues[0].getField() );
+    }
+
+    @Test
+    public void testRenameFactTypeInGuidedRule() throws Exception {
+        String xml = AssetSymbolWalker.walk( AssetFormats.BUSINESS_RULE,
+                                             BRXMLPersistence.getInstance().marshal( createRuleModel() ),
+                                             SymbolRename.factType( "Person",
+                                                                    "Customer" ) );
+        RuleModel model = BRXMLPersistence.getInstance().unmarshal( xml );
+
+        assertEquals( "Customer",
+                      ((FactPattern) model.lhs[0]).getFactType() );
+        assertEquals( "Cheese",
+                      ((FactPattern) model.lhs[1]).getFactType() );
+        assertEquals( "Customer",
+                      ((ActionInsertFact) model.rhs[1]).factType );
+    }
+
+    @Test
+    public void testGetSymbolsOfGuidedRule() {
+        Set<String> symbols = AssetSymbolWalker.getSymbols( AssetFormats.BUSINESS_RULE,
+                                                            BRXMLPersistence.getInstance().marshal( createRuleModel() ) );
+
+        assertEquals( 4,
+                      symbols.size() );
+        assertTrue( symbols.contains( Symbols.factType( "Person" ) ) );
+        assertTrue( symbols.contains( Symbols.field( "Person",
+                                                     "age" ) ) );
+        assertTrue( symbols.contains( Symbols.factType( "Cheese" ) ) );
+        assertTrue( symbols.contains( Symbols.field( "Cheese",
+                                                     "age" ) ) );
+    }
+
+    @Test
+    public void testGetGlobalsAndDslSentencesOfGuidedRule() {
+        RuleModel model = createRuleModel();
+        DSLSentence sentence = new DSLSentence();
+        sentence.setDefinition( "There is a person aged {age:ENUM:Person.age}" );
+        model.addLhsItem( sentence );
+        ActionGlobalCollectionAdd add = new ActionGlobalCollectionAdd();
+        add.globalName = "results";
+        add.factName = "$p";
+        model.addRhsItem( add );
+        model.addRhsItem( new ActionCallMethod( "mailer" ) );
+
+        Set<String> symbols = AssetSymbolWalker.getSymbols( AssetFormats.BUSINESS_RULE,
+                                                            BRXMLPersistence.getInstance().marshal( model ) );
+
+        assertTrue( symbols.contains( Symbols.dslSentence( "There is a person aged {age}" ) ) );
+        assertTrue( symbols.contains( Symbols.global( "results" ) ) );
+        assertTrue( symbols.contains( Symbols.global( "mailer" ) ) );
+        assertFalse( symbols.contains( Symbols.global( "$p" ) ) );
+    }
+
+    @Test
+    public void testGetGlobalsOfDrl() {
+        String drl = "rule 'adults'\n"
+                     + "when\n"
+                     + "  $p : Person( age > limit )\n"
+                     + "then\n"
+                     + "  results.add( $p );\n"
+                     + "end\n";
+        SymbolContext context = new SymbolContext( new HashSet<String>( Arrays.asList( "results",
+                                                                                       "limit" ) ),
+                                                   null );
+
+        Set<String> symbols = AssetSymbolWalker.getSymbols( AssetFormats.DRL,
+                                                            drl,
+                                                            context );
+        assertTrue( symbols.contains( Symbols.global( "results" ) ) );
+        assertTrue( symbols.contains( Symbols.global( "limit" ) ) );
+        assertFalse( symbols.contains( Symbols.field( "Person",
+                                                      "limit" ) ) );
+
+        //Without the header, a global of the module looks like a field
+        symbols = AssetSymbolWalker.getSymbols( AssetFormats.DRL,
+                                                drl );
+        assertTrue( symbols.contains( Symbols.field( "Person",
+                                                     "limit" ) ) );
+    }
+
+    @Test
+    public void testRenameFieldInStandAloneRule() throws Exception {
+        String drl = "when\n  $p : Person( age > 18 )\nthen\n  retract( $p );";
+        assertEquals( "when\n  $p : Person( years > 18 )\nthen\n  retract( $p );",
+                      AssetSymbolWalker.walk( AssetFormats.DRL,
+                                              drl,
+                                              SymbolRename.field( "Person",
+                                                                  "age",
+                                                                  "years" ) ) );
+        assertSame( drl,
+                    AssetSymbolWalker.walk( AssetFormats.DRL,
+                                            drl,
+                                            SymbolRename.field( "Person",
+                                                                "name",
+                                                                "fullName" ) ) );
+    }
+
+    @Test
+    public void testGetSymbolsOfDslRule() throws Exception {
+        DSLTokenizedMappingFile file = new DSLTokenizedMappingFile();
+        assertTrue( file.parseAndLoad( new StringReader( "[when]There is a person aged {age}=Person( age == {age} )\n"
+                                                         + "[then]Log {message}=results.add( {message} );\n"
+                                                         + "[then]Forget {message}=results.remove( {message} );\n" ) ) );
+        SymbolContext context = new SymbolContext( Collections.singleton( "results" ),
+                                                   new CompiledDSL( Collections.singletonList( file ) ) );
+        String dslr = "when\n"
+                      + "  There is a person aged 42\n"
+                      + "then\n"
+                      + "  Log \"found\"\n";
+
+        Set<String> symbols = AssetSymbolWalker.getSymbols( AssetFormats.DSL_TEMPLATE_RULE,
+                                                            dslr,
+                                                            context );
+        assertTrue( symbols.contains( Symbols.dslSentence( "There is a person aged {age}" ) ) );
+        assertTrue( symbols.contains( Symbols.dslSentence( "Log {message}" ) ) );
+        assertFalse( symbols.contains( Symbols.dslSentence( "Forget {message}" ) ) );
+        assertTrue( symbols.contains( Symbols.factType( "Person" ) ) );
+        assertTrue( symbols.contains( Symbols.field( "Person",
+                                                     "age" ) ) );
+        assertTrue( symbols.contains( Symbols.global( "results" ) ) );
+
+        //DSL rules are not renamed
+        assertSame( dslr,
+                    AssetSymbolWalker.walk( AssetFormats.DSL_TEMPLATE_RULE,
+                                            dslr,
+                                            context,
+                                            SymbolRename.field( "Person",
+                                                                "age",
+                                                                "years" ) ) );
+        assertFalse( AssetSymbolWalker.isRenameSupported( AssetFormats.DSL_TEMPLATE_RULE ) );
+        //Without its DSL
+        assertEquals( Collections.singleton( Symbols.UNREADABLE ),
+                      AssetSymbolWalker.getSymbols( AssetFormats.DSL_TEMPLATE_RULE,
+                                                    dslr ) );
+    }
+
+    @Test
+    public void testDslSentenceKeyIgnoresTheTypesOfVariables() {
+        assertEquals( "dsl:There is a person aged {age}",
+                      Symbols.dslSentence( "There is a person  aged {age:ENUM:Person.age} " ) );
+    }
+
+    @Test
+    public void testRenameFieldInDecisionTable() throws Exception {
+        GuidedDecisionTable52 dt = new GuidedDecisionTable52();
+        Pattern52 person = new Pattern52();
+        person.setFactType( "Person" );
+        person.setBoundName( "$p" );
+        ConditionCol52 age = new ConditionCol52();
+        age.setFactField( "age" );
+        person.getChildColumns().add( age );
+        dt.getConditions().add( person );
+        ActionSetFieldCol52 setAge = new ActionSetFieldCol52();
+        setAge.setBoundName( "$p" );
+        setAge.setFactField( "age" );
+        dt.getActionCols().add( setAge );
+        ActionInsertFactCol52 insert = new ActionInsertFactCol52();
+        insert.setFactType( "Person" );
+        insert.setFactField( "age" );
+        dt.getActionCols().add( insert );
+
+        String xml = AssetSymbolWalker.walk( AssetFormats.DECISION_TABLE_GUIDED,
+                                             GuidedDTXMLPersistence.getInstance().marshal( dt ),
+                                             SymbolRename.field( "Person",
+                                                                 "age",
+                                                                 "years" ) );
+        dt = GuidedDTXMLPersistence.getInstance().unmarshal( xml );
+
+        assertEquals( "years",
+                      ((Pattern52) dt.getConditions().get( 0 )).getChildColumns().get( 0 ).getFactField() );
+        assertEquals( "years",
+                      ((ActionSetFieldCol52) dt.getActionCols().get( 0 )).getFactField() );
+        assertEquals( "years",
+                      ((ActionInsertFactCol52) dt.getActionCols().get( 1 )).getFactField() );
+    }
+
+    @Test
+    public void testRenameInScenario() throws Exception {
+        Scenario scenario = new Scenario();
+        FactData person = new FactData( "Person",
+                                        "p",
+                                        new ArrayList<FieldData>(),
+                                        false );
+        person.getFieldData().add( new FieldData( "age",
+                                                  "42" ) );
+        scenario.getFixtures().add( person );
+        VerifyFact verifyPerson = new VerifyFact( "p",
+                                                  new ArrayList<VerifyField>() );
+        verifyPerson.getFieldValues().add( new VerifyField( "age",
+                                                            "43",
+                                                            "==" ) );
+        scenario.getFixtures().add( verifyPerson );
+        VerifyFact anyPerson = new VerifyFact( "Person",
+                                               new ArrayList<VerifyField>(),
+                                               true );
+        anyPerson.getFieldValues().add( new VerifyField( "age",
+                                                         "43",
+                                                         "==" ) );
+        scenario.getFixtures().add( anyPerson );
+        String xml = ScenarioXMLPersistence.getInstance().marshal( scenario );
+
+        Scenario renamed = ScenarioXMLPersistence.getInstance().unmarshal( AssetSymbolWalker.walk( AssetFormats.TEST_SCENARIO,
+                                                                                                   xml,
+                                                                                                   SymbolRename.field( "Person",
+                                                                                                                       "age",
+                                                                                                                       "years" ) ) );
+        assertEquals( "years",
+                      ((FactData) renamed.getFixtures().get( 0 )).getFieldData().get( 0 ).getName() );
+        assertEquals( "years",
+                      ((VerifyFact) renamed.getFixtures().get( 1 )).getFieldValues().get( 0 ).getFieldName() );
+        assertEquals( "years",
+                      ((VerifyFact) renamed.getFixtures().get( 2 )).getFieldValues().get( 0 ).getFieldName() );
+
+        renamed = ScenarioXMLPersistence.getInstance().unmarshal( AssetSymbolWalker.walk( AssetFormats.TEST_SCENARIO,
+                                                                                          xml,
+                                                                                          SymbolRename.factType( "Person",
+                                                                                                                 "Customer" ) ) );
+        assertEquals( "Customer",
+                      ((FactData) renamed.getFixtures().get( 0 )).getType() );
+        assertEquals( "p",
+                      ((VerifyFact) renamed.getFixtures().get( 1 )).getName() );
+        assertEquals( "Customer",
+                      ((VerifyFact) renamed.getFixtures().get( 2 )).getName() );
+    }
+
+    private RuleModel createRuleModel() {
+        RuleModel model = new RuleModel();
+        FactPattern person = new FactPattern( "Person" );
+        person.setBoundName( "$p" );
+        SingleFieldConstraint age = new SingleFieldConstraint( "age",
+                                                               "Integer",
+                                                               null );
+        age.setOperator( ">" );
+        age.setValue( "18" );
+        age.connectives = new ConnectiveConstraint[]{new ConnectiveConstraint( "age",
+                                                                               "Integer",
+                                                                               "|| <",
+                                                                               "10" )};
+        person.addConstraint( age );
+        model.addLhsItem( person );
+
+        FactPattern cheese = new FactPattern( "Cheese" );
+        cheese.addConstraint( new SingleFieldConstraint( "age",
+                                                         "Integer",
+                                                         null ) );
+        model.addLhsItem( cheese );
+
+        ActionSetField setAge = new ActionSetField( "$p" );
+        setAge.addFieldValue( new ActionFieldValue( "age",
+                                                    "20",
+                                                    "Integer" ) );
+        model.addRhsItem( setAge );
+        ActionInsertFact insert = new ActionInsertFact( "Person" );
+        insert.addFieldValue( new ActionFieldValue( "age",
+                                                    "1",
+                                                    "Integer" ) );
+        model.addRhsItem( insert );
+        return model;
+    }
+}
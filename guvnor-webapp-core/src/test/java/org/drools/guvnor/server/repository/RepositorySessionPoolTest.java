@@ -0,0 +1,177 @@
+/*
+ * Copyright 2012 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.drools.guvnor.server.repository;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class RepositorySessionPoolTest {
+
+    private RepositoryStartupService repositoryStartupService;
+
+    @Before
+    public void setUp() {
+        repositoryStartupService = mock(RepositoryStartupService.class);
+    }
+
+    private Session newSession(String userName) {
+        Session session = mock(Session.class);
+        when(session.isLive()).thenReturn(true);
+        when(repositoryStartupService.newSession(userName)).thenReturn(session);
+        return session;
+    }
+
+    private RepositorySessionPool newPool(int maxIdlePerUser,
+                                          int maxIdle,
+                                          long maxIdleTime) {
+        RepositorySessionPool pool = new RepositorySessionPool(maxIdlePerUser,
+                maxIdle,
+                maxIdleTime);
+        pool.setRepositoryStartupService(repositoryStartupService);
+        return pool;
+    }
+
+    @Test
+    public void testReturnedSessionsAreRefreshedAndReused() throws Exception {
+        RepositorySessionPool pool = newPool(4,
+                50,
+                60000);
+        Session session = newSession("mic");
+
+        assertSame(session,
+                pool.leaseSession("mic"));
+        pool.returnSession("mic",
+                session);
+        assertEquals(1,
+                pool.getIdleCount());
+
+        assertSame(session,
+                pool.leaseSession("mic"));
+        verify(session).refresh(false);
+        verify(session,
+                never()).logout();
+
+        assertEquals(2,
+                pool.getLeasedCount());
+        assertEquals(1,
+                pool.getReusedCount());
+        assertEquals(1,
+                pool.getCreatedCount());
+        assertEquals(0,
+                pool.getIdleCount());
+    }
+
+    @Test
+    public void testSessionsArePooledPerUser() {
+        RepositorySessionPool pool = newPool(4,
+                50,
+                60000);
+        Session micSession = newSession("mic");
+        pool.returnSession("mic",
+                pool.leaseSession("mic"));
+
+        Session janeSession = newSession("jane");
+        assertSame(janeSession,
+                pool.leaseSession("jane"));
+        assertNotSame(micSession,
+                janeSession);
+    }
+
+    @Test
+    public void testSessionsAreLoggedOutWhenThePoolIsFull() {
+        RepositorySessionPool pool = newPool(1,
+                50,
+                60000);
+        Session first = newSession("mic");
+        pool.leaseSession("mic");
+        Session second = newSession("mic");
+        pool.leaseSession("mic");
+
+        pool.returnSession("mic",
+                first);
+        pool.returnSession("mic",
+                second);
+
+        verify(first,
+                never()).logout();
+        verify(second).logout();
+        assertEquals(1,
+                pool.getIdleCount());
+        assertEquals(1,
+                pool.getDiscardedCount());
+    }
+
+    @Test
+    public void testExpiredSessionsAreLoggedOut() throws Exception {
+        RepositorySessionPool pool = newPool(4,
+                50,
+                -1);
+        Session expired = newSession("mic");
+        pool.returnSession("mic",
+                pool.leaseSession("mic"));
+
+        Session session = newSession("mic");
+        assertSame(session,
+                pool.leaseSession("mic"));
+        verify(expired).logout();
+        verify(expired,
+                never()).refresh(false);
+    }
+
+    @Test
+    public void testSessionsThatCannotBeRefreshedAreDiscarded() throws Exception {
+        RepositorySessionPool pool = newPool(4,
+                50,
+                60000);
+        Session broken = newSession("mic");
+        doThrow(new RepositoryException("broken")).when(broken).refresh(false);
+        pool.returnSession("mic",
+                pool.leaseSession("mic"));
+
+        Session session = newSession("mic");
+        assertSame(session,
+                pool.leaseSession("mic"));
+        verify(broken).logout();
+    }
+
+    @Test
+    public void testCloseLogsOutIdleSessions() {
+        RepositorySessionPool pool = newPool(4,
+                50,
+                60000);
+        Session session = newSession("mic");
+        pool.returnSession("mic",
+                pool.leaseSession("mic"));
+
+        pool.close();
+        verify(session).logout();
+        assertEquals(0,
+                pool.getIdleCount());
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2012 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.drools.guvnor.server.selector;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import org.drools.repository.AssetItem;
+import org.junit.Test;
+
+public class RuleBasedSelectorTest {
+
+    @Test
+    public void testAssetsAreEvaluatedTogether() {
+        CountingSelector selector = new CountingSelector( "TestMetadataSelector.drl" );
+
+        AssetItem draft = mockAsset( "uuid1", "Draft", 1 );
+        AssetItem production = mockAsset( "uuid2", "Production", 1 );
+        AssetItem dev = mockAsset( "uuid3", "Dev", 1 );
+
+        Set<String> allowed = selector.getAllowedAssets( Arrays.asList( draft,
+                                                                        production,
+                                                                        dev ) );
+        assertEquals( 2,
+                      allowed.size() );
+        assertTrue( allowed.contains( "uuid2" ) );
+        assertTrue( allowed.contains( "uuid3" ) );
+        assertEquals( 1,
+                      selector.evaluations );
+        assertEquals( 3,
+                      selector.evaluatedFacts );
+
+        assertFalse( selector.isAssetAllowed( draft ) );
+        assertTrue( selector.isAssetAllowed( dev ) );
+    }
+
+    @Test
+    public void testDecisionsAreCachedPerAssetVersion() {
+        CountingSelector selector = new CountingSelector( "TestMetadataSelector.drl" );
+
+        AssetItem asset = mockAsset( "uuid1", "Draft", 1 );
+        assertFalse( selector.isAssetAllowed( asset ) );
+        assertFalse( selector.isAssetAllowed( asset ) );
+        assertEquals( 1,
+                      selector.evaluations );
+
+        AssetItem newVersion = mockAsset( "uuid1", "Production", 2 );
+        assertTrue( selector.isAssetAllowed( newVersion ) );
+        assertEquals( 2,
+                      selector.evaluations );
+    }
+
+    @Test
+    public void testAssetItemsAreInsertedForRulesOnAssetItem() {
+        RuleBasedSelector selector = new RuleBasedSelector( "TestSelector.drl" );
+
+        AssetItem asset = mockAsset( "uuid1", "Draft", 1 );
+        assertTrue( selector.isAssetAllowed( asset ) );
+    }
+
+    @Test
+    public void testAssetItemsAreInsertedForRulesOnQualifiedAssetItem() {
+        RuleBasedSelector selector = new RuleBasedSelector( "TestQualifiedAssetItemSelector.drl" );
+
+        AssetItem production = mockAsset( "uuid1", "Production", 1 );
+        AssetItem draft = mockAsset( "uuid2", "Draft", 1 );
+        Set<String> allowed = selector.getAllowedAssets( Arrays.asList( production,
+                                                                        draft ) );
+        assertEquals( 1,
+                      allowed.size() );
+        assertTrue( allowed.contains( "uuid1" ) );
+    }
+
+    private AssetItem mockAsset(String uuid,
+                                String status,
+                                long versionNumber) {
+        AssetItem asset = mock( AssetItem.class );
+        when( asset.getUUID() ).thenReturn( uuid );
+        when( asset.getName() ).thenReturn( "name" + uuid );
+        when( asset.getStateDescription() ).thenReturn( status );
+        when( asset.getVersionNumber() ).thenReturn( versionNumber );
+        return asset;
+    }
+
+    private static class CountingSelector extends RuleBasedSelector {
+
+        private int evaluations = 0;
+        private int evaluatedFacts = 0;
+
+        private CountingSelector(String ruleFile) {
+            super( ruleFile );
+        }
+
+        @Override
+        boolean[] evalRules(List< ? > facts) {
+            evaluations++;
+            evaluatedFacts += facts.size();
+            return super.evalRules( facts );
+        }
+    }
+}
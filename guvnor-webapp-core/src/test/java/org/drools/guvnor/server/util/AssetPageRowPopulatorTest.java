@@ -24,6 +24,7 @@ import java.util.GregorianCalendar;
 
 import org.drools.guvnor.client.rpc.AssetPageRow;
 import org.drools.repository.AssetItem;
+import org.drools.repository.AssetRow;
 import org.junit.Test;
 
 public class AssetPageRowPopulatorTest {
@@ -76,4 +77,52 @@ public class AssetPageRowPopulatorTest {
                           assetItem.getExternalSource() );
     
         }
+
+    @Test
+    public void testPopulateFromRow() {
+        AssetRow assetRow = mock( AssetRow.class );
+        Calendar createdDate = GregorianCalendar.getInstance();
+        createdDate.add( Calendar.MONTH,
+                         -1 );
+        Calendar lastModified = GregorianCalendar.getInstance();
+
+        when( assetRow.getUUID() ).thenReturn( "UUID" );
+        when( assetRow.getFormat() ).thenReturn( "format" );
+        when( assetRow.getName() ).thenReturn( "name" );
+        when( assetRow.getDescription() ).thenReturn( "descriptiondescriptiondescriptiondescriptiondescriptiondescriptiondescriptiondescriptiondescription" );
+        when( assetRow.getStateName() ).thenReturn( "statedescription" );
+        when( assetRow.getCreator() ).thenReturn( "creator" );
+        when( assetRow.getCreatedDate() ).thenReturn( createdDate );
+        when( assetRow.getLastContributor() ).thenReturn( "lastcontributor" );
+        when( assetRow.getLastModified() ).thenReturn( lastModified );
+        when( assetRow.getCategorySummary() ).thenReturn( "categorysummary" );
+        when( assetRow.getExternalSource() ).thenReturn( "externalsource" );
+        when( assetRow.isDisabled() ).thenReturn( true );
+
+        AssetPageRow row = new AssetPageRowPopulator().populateFrom( assetRow );
+        assertEquals( "UUID",
+                      row.getUuid() );
+        assertEquals( "format",
+                      row.getFormat() );
+        assertEquals( "name",
+                      row.getName() );
+        assertEquals( 80,
+                      row.getAbbreviatedDescription().length() );
+        assertEquals( "statedescription",
+                      row.getStateName() );
+        assertEquals( "creator",
+                      row.getCreator() );
+        assertEquals( createdDate.getTime(),
+                      row.getCreatedDate() );
+        assertEquals( "lastcontributor",
+                      row.getLastContributor() );
+        assertEquals( lastModified.getTime(),
+                      row.getLastModified() );
+        assertEquals( "categorysummary",
+                      row.getCategorySummary() );
+        assertEquals( "externalsource",
+                      row.getExternalSource() );
+        assertEquals( true,
+                      row.isDisabled() );
+    }
 }
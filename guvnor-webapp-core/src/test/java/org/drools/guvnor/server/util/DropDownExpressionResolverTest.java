@@ -0,0 +1,100 @@
+/*
+ * Copyright 2012 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.drools.guvnor.server.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+public class DropDownExpressionResolverTest {
+
+    private static final String TIMED = "[ '@{f1}', '' + java.lang.System.nanoTime() ]";
+
+    @Test
+    public void testResolve() {
+        DropDownExpressionResolver resolver = new DropDownExpressionResolver( 10,
+                                                                              10,
+                                                                              60000 );
+        assertArrayEquals( new String[]{"x", "2"},
+                           resolver.resolve( new String[]{"f1=x", "f2=2"},
+                                             "['@{f1}', '@{f2}']" ) );
+        assertArrayEquals( new String[]{"y", "3"},
+                           resolver.resolve( new String[]{"f1=y", "f2=3"},
+                                             "['@{f1}', '@{f2}']" ) );
+        assertEquals( 0,
+                      resolver.resolve( new String[]{null},
+                                        "['@{f1}']" ).length );
+        assertNull( resolver.resolve( new String[0],
+                                      "'not a list'" ) );
+    }
+
+    @Test
+    public void testQuotedDependenciesArePassedAsValues() {
+        DropDownExpressionResolver resolver = new DropDownExpressionResolver( 10,
+                                                                              10,
+                                                                              0 );
+        assertArrayEquals( new String[]{"O'Brien"},
+                           resolver.resolve( new String[]{"f1=O'Brien"},
+                                             "['@{f1}']" ) );
+    }
+
+    @Test
+    public void testOtherDependenciesAreInterpolated() {
+        DropDownExpressionResolver resolver = new DropDownExpressionResolver( 10,
+                                                                              10,
+                                                                              0 );
+        assertArrayEquals( new String[]{"3"},
+                           resolver.resolve( new String[]{"f1=2"},
+                                             "[ '' + (@{f1} + 1) ]" ) );
+        assertArrayEquals( new String[]{"a-x"},
+                           resolver.resolve( new String[]{"f1=x"},
+                                             "[ 'a-@{f1}' ]" ) );
+    }
+
+    @Test
+    public void testResultsAreCachedUntilCleared() {
+        DropDownExpressionResolver resolver = new DropDownExpressionResolver( 10,
+                                                                              10,
+                                                                              60000 );
+        String[] first = resolver.resolve( new String[]{"f1=x"},
+                                           TIMED );
+        assertArrayEquals( first,
+                           resolver.resolve( new String[]{"f1=x"},
+                                             TIMED ) );
+        assertEquals( "y",
+                      resolver.resolve( new String[]{"f1=y"},
+                                        TIMED )[0] );
+
+        resolver.clearResults();
+        assertFalse( first[1].equals( resolver.resolve( new String[]{"f1=x"},
+                                                        TIMED )[1] ) );
+    }
+
+    @Test
+    public void testResultsAreNotCachedWithoutTTL() {
+        DropDownExpressionResolver resolver = new DropDownExpressionResolver( 10,
+                                                                              10,
+                                                                              0 );
+        String[] first = resolver.resolve( new String[]{"f1=x"},
+                                           TIMED );
+        assertFalse( first[1].equals( resolver.resolve( new String[]{"f1=x"},
+                                                        TIMED )[1] ) );
+    }
+}
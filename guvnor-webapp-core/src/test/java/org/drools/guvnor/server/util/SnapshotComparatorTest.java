@@ -0,0 +1,125 @@
+/*
+ * Copyright 2012 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.drools.guvnor.server.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.drools.guvnor.client.rpc.SnapshotDiff;
+import org.drools.repository.SnapshotManifest;
+import org.junit.Test;
+
+public class SnapshotComparatorTest {
+
+    @Test
+    public void testCompare() {
+        SnapshotManifest left = new SnapshotManifest();
+        left.add( entry( "unchanged", "l1", 1000, false ) );
+        left.add( entry( "deleted", "l2", 1000, false ) );
+        left.add( entry( "updated", "l3", 1000, false ) );
+        left.add( entry( "archived", "l4", 1000, false ) );
+        left.add( entry( "restored", "l5", 1000, true ) );
+
+        SnapshotManifest right = new SnapshotManifest();
+        right.add( entry( "restored", "r5", 2000, false ) );
+        right.add( entry( "added", "r6", 2000, false ) );
+        right.add( entry( "archived", "r4", 2000, true ) );
+        right.add( entry( "updated", "r3", 2000, false ) );
+        right.add( entry( "unchanged", "r1", 1000, false ) );
+
+        List<SnapshotDiff> diffs = new SnapshotComparator().compare( left,
+                                                                     right );
+
+        assertEquals( 5,
+                      diffs.size() );
+        assertDiff( diffs.get( 0 ), "added", SnapshotDiff.TYPE_ADDED, null, "r6" );
+        assertDiff( diffs.get( 1 ), "archived", SnapshotDiff.TYPE_ARCHIVED, "l4", "r4" );
+        assertDiff( diffs.get( 2 ), "deleted", SnapshotDiff.TYPE_DELETED, "l2", null );
+        assertDiff( diffs.get( 3 ), "restored", SnapshotDiff.TYPE_RESTORED, "l5", "r5" );
+        assertDiff( diffs.get( 4 ), "updated", SnapshotDiff.TYPE_UPDATED, "l3", "r3" );
+    }
+
+    @Test
+    public void testCompareEmpty() {
+        SnapshotManifest left = new SnapshotManifest();
+        SnapshotManifest right = new SnapshotManifest();
+        assertTrue( new SnapshotComparator().compare( left,
+                                                      right ).isEmpty() );
+
+        right.add( entry( "added", "r1", 1000, false ) );
+        List<SnapshotDiff> diffs = new SnapshotComparator().compare( left,
+                                                                     right );
+        assertEquals( 1,
+                      diffs.size() );
+        assertDiff( diffs.get( 0 ), "added", SnapshotDiff.TYPE_ADDED, null, "r1" );
+    }
+
+    @Test
+    public void testVersionNumberIsUsedWithoutLastModified() {
+        SnapshotManifest left = new SnapshotManifest();
+        left.add( new SnapshotManifest.Entry( "a", "uuid", "l1", "drl", 1, 0, false ) );
+        left.add( new SnapshotManifest.Entry( "b", "uuid", "l2", "drl", 1, 0, false ) );
+        SnapshotManifest right = new SnapshotManifest();
+        right.add( new SnapshotManifest.Entry( "a", "uuid", "r1", "drl", 1, 0, false ) );
+        right.add( new SnapshotManifest.Entry( "b", "uuid", "r2", "drl", 2, 0, false ) );
+
+        List<SnapshotDiff> diffs = new SnapshotComparator().compare( left,
+                                                                     right );
+        assertEquals( 1,
+                      diffs.size() );
+        assertDiff( diffs.get( 0 ), "b", SnapshotDiff.TYPE_UPDATED, "l2", "r2" );
+    }
+
+    private SnapshotManifest.Entry entry(String name,
+                                         String nodeIdentifier,
+                                         long lastModified,
+                                         boolean archived) {
+        return new SnapshotManifest.Entry( name,
+                                           name + "-uuid",
+                                           nodeIdentifier,
+                                           "drl",
+                                           1,
+                                           lastModified,
+                                           archived );
+    }
+
+    private void assertDiff(SnapshotDiff diff,
+                            String name,
+                            String diffType,
+                            String leftUuid,
+                            String rightUuid) {
+        assertEquals( name,
+                      diff.name );
+        assertEquals( diffType,
+                      diff.diffType );
+        if ( leftUuid == null ) {
+            assertNull( diff.leftUuid );
+        } else {
+            assertEquals( leftUuid,
+                          diff.leftUuid );
+        }
+        if ( rightUuid == null ) {
+            assertNull( diff.rightUuid );
+        } else {
+            assertEquals( rightUuid,
+                          diff.rightUuid );
+        }
+    }
+}
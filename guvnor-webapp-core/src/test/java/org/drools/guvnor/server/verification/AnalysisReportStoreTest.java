@@ -0,0 +1,76 @@
+/*
+ * Copyright 2012 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.drools.guvnor.server.verification;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import org.drools.guvnor.client.rpc.AnalysisReport;
+import org.drools.repository.AssetItem;
+import org.drools.repository.ModuleItem;
+import org.junit.Test;
+
+public class AnalysisReportStoreTest {
+
+    @Test
+    public void testReportIsStoredForTheModuleVersion() {
+        AnalysisReportStore store = new AnalysisReportStore();
+        ModuleItem moduleItem = createModule( "module1" );
+        AnalysisReport report = new AnalysisReport();
+
+        assertTrue( store.put( moduleItem,
+                               store.getGeneration( moduleItem ),
+                               report ) );
+        assertSame( report,
+                    store.get( moduleItem ) );
+
+        when( moduleItem.getVersionNumber() ).thenReturn( 2L );
+        assertNull( store.get( moduleItem ) );
+    }
+
+    @Test
+    public void testReportOfAnAnalysisOverlappingACheckinIsNotStored() {
+        AnalysisReportStore store = new AnalysisReportStore();
+        ModuleItem moduleItem = createModule( "module1" );
+        long generation = store.getGeneration( moduleItem );
+
+        // An asset of the module is checked in while it is analysed
+        AssetItem assetItem = mock( AssetItem.class );
+        when( assetItem.getModule() ).thenReturn( moduleItem );
+        store.getCheckinListener().afterCheckin( assetItem );
+
+        assertFalse( store.put( moduleItem,
+                                generation,
+                                new AnalysisReport() ) );
+        assertNull( store.get( moduleItem ) );
+
+        assertTrue( store.put( moduleItem,
+                               store.getGeneration( moduleItem ),
+                               new AnalysisReport() ) );
+    }
+
+    private ModuleItem createModule(String uuid) {
+        ModuleItem moduleItem = mock( ModuleItem.class );
+        when( moduleItem.getUUID() ).thenReturn( uuid );
+        when( moduleItem.getVersionNumber() ).thenReturn( 1L );
+        return moduleItem;
+    }
+}
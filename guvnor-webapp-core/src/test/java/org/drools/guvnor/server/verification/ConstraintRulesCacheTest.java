@@ -0,0 +1,108 @@
+/*
+ * Copyright 2012 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.drools.guvnor.server.verification;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.drools.core.util.DroolsStreamUtils;
+import org.drools.ide.common.client.factconstraints.ConstraintConfiguration;
+import org.drools.ide.common.client.factconstraints.config.SimpleConstraintConfigurationImpl;
+import org.drools.ide.common.server.factconstraints.predefined.NotNullConstraint;
+import org.drools.ide.common.server.factconstraints.predefined.RangeConstraint;
+import org.drools.rule.Package;
+import org.junit.Test;
+
+public class ConstraintRulesCacheTest {
+
+    @Test
+    public void testConstraintsAreCompiledOncePerContent() throws Exception {
+        ConstraintRulesCache cache = new ConstraintRulesCache( 10 );
+
+        List<byte[]> compiled = cache.getCompiledRules( createConstraints( "10" ) );
+        assertNotNull( compiled );
+        assertEquals( 1,
+                      compiled.size() );
+        Package pkg = (Package) DroolsStreamUtils.streamIn( compiled.get( 0 ) );
+        assertEquals( "org.drools.verifier.consequence",
+                      pkg.getName() );
+        assertFalse( pkg.getRules().length == 0 );
+
+        assertSame( compiled,
+                    cache.getCompiledRules( createConstraints( "10" ) ) );
+        assertEquals( 1,
+                      cache.getCompileCount() );
+
+        cache.getCompiledRules( createConstraints( "20" ) );
+        assertEquals( 2,
+                      cache.getCompileCount() );
+    }
+
+    @Test
+    public void testKeyDependsOnContentOnly() {
+        SimpleConstraintConfigurationImpl range1 = createRange( "0",
+                                                                "10" );
+        SimpleConstraintConfigurationImpl range2 = new SimpleConstraintConfigurationImpl();
+        range2.setConstraintName( RangeConstraint.NAME );
+        range2.setFactType( "Person" );
+        range2.setFieldName( "age" );
+        range2.setArgumentValue( RangeConstraint.RANGE_CONSTRAINT_MAX,
+                                 "10" );
+        range2.setArgumentValue( RangeConstraint.RANGE_CONSTRAINT_MIN,
+                                 "0" );
+
+        List<ConstraintConfiguration> constraints1 = new ArrayList<ConstraintConfiguration>();
+        constraints1.add( range1 );
+        List<ConstraintConfiguration> constraints2 = new ArrayList<ConstraintConfiguration>();
+        constraints2.add( range2 );
+        assertEquals( ConstraintRulesCache.getKey( constraints1 ),
+                      ConstraintRulesCache.getKey( constraints2 ) );
+
+        range2.setFieldName( "height" );
+        assertFalse( ConstraintRulesCache.getKey( constraints1 ).equals( ConstraintRulesCache.getKey( constraints2 ) ) );
+    }
+
+    private List<ConstraintConfiguration> createConstraints(String max) {
+        List<ConstraintConfiguration> constraints = new ArrayList<ConstraintConfiguration>();
+        SimpleConstraintConfigurationImpl notNull = new SimpleConstraintConfigurationImpl();
+        notNull.setConstraintName( NotNullConstraint.NAME );
+        notNull.setFactType( "Person" );
+        notNull.setFieldName( "name" );
+        constraints.add( notNull );
+        constraints.add( createRange( "0",
+                                      max ) );
+        return constraints;
+    }
+
+    private SimpleConstraintConfigurationImpl createRange(String min,
+                                                          String max) {
+        SimpleConstraintConfigurationImpl range = new SimpleConstraintConfigurationImpl();
+        range.setConstraintName( RangeConstraint.NAME );
+        range.setFactType( "Person" );
+        range.setFieldName( "age" );
+        range.setArgumentValue( RangeConstraint.RANGE_CONSTRAINT_MIN,
+                                min );
+        range.setArgumentValue( RangeConstraint.RANGE_CONSTRAINT_MAX,
+                                max );
+        return range;
+    }
+}
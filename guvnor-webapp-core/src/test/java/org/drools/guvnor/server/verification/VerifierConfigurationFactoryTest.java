@@ -0,0 +1,87 @@
+/*
+ * Copyright 2012 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.drools.guvnor.server.verification;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+
+import org.drools.builder.ResourceType;
+import org.drools.guvnor.client.rpc.WorkingSetConfigData;
+import org.drools.ide.common.client.factconstraints.ConstraintConfiguration;
+import org.drools.ide.common.client.factconstraints.config.SimpleConstraintConfigurationImpl;
+import org.drools.ide.common.server.factconstraints.predefined.RangeConstraint;
+import org.drools.io.ResourceFactory;
+import org.drools.verifier.Verifier;
+import org.drools.verifier.VerifierConfiguration;
+import org.drools.verifier.builder.VerifierBuilderFactory;
+import org.drools.verifier.report.components.Severity;
+import org.drools.verifier.report.components.VerifierMessageBase;
+import org.junit.Test;
+
+public class VerifierConfigurationFactoryTest {
+
+    private static final String DRL = "package org.drools.guvnor.test\n"
+                                      + "rule \"too old\"\n"
+                                      + "when\n"
+                                      + "    Person( age == 130 )\n"
+                                      + "then\n"
+                                      + "end\n";
+
+    @Test
+    public void testWorkingSetConstraintsAreReported() throws Exception {
+        WorkingSetConfigData workingSet = new WorkingSetConfigData();
+        workingSet.name = "adults";
+        workingSet.constraints = new ArrayList<ConstraintConfiguration>();
+        SimpleConstraintConfigurationImpl range = new SimpleConstraintConfigurationImpl();
+        range.setConstraintName( RangeConstraint.NAME );
+        range.setFactType( "Person" );
+        range.setFieldName( "age" );
+        range.setArgumentValue( RangeConstraint.RANGE_CONSTRAINT_MIN,
+                                "0" );
+        range.setArgumentValue( RangeConstraint.RANGE_CONSTRAINT_MAX,
+                                "120" );
+        workingSet.constraints.add( range );
+
+        // The second run uses the rules compiled by the first one
+        for ( int i = 0; i < 2; i++ ) {
+            Collection<VerifierMessageBase> errors = verify( VerifierConfigurationFactory.getPlainWorkingSetVerifierConfiguration( Collections.singleton( workingSet ) ) );
+            assertEquals( 1,
+                          errors.size() );
+            assertEquals( "The value must be between 0 and 120",
+                          errors.iterator().next().getMessage() );
+        }
+    }
+
+    private Collection<VerifierMessageBase> verify(VerifierConfiguration configuration) {
+        Verifier verifier = VerifierBuilderFactory.newVerifierBuilder().newVerifier( configuration );
+        try {
+            verifier.addResourcesToVerify( ResourceFactory.newByteArrayResource( DRL.getBytes() ),
+                                           ResourceType.DRL );
+            assertTrue( verifier.fireAnalysis() );
+            assertFalse( verifier.hasErrors() );
+            return verifier.getResult().getBySeverity( Severity.ERROR );
+        } finally {
+            verifier.dispose();
+        }
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2012 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.drools.guvnor.server.verification;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.drools.verifier.Verifier;
+import org.junit.Test;
+
+public class VerifierPoolTest {
+
+    @Test
+    public void testVerifiersAreReused() throws Exception {
+        VerifierPool pool = new MockVerifierPool( 2 );
+
+        Verifier first = pool.checkout();
+        Verifier second = pool.checkout();
+        assertNotSame( first,
+                       second );
+        assertEquals( 2,
+                      pool.getSize() );
+
+        pool.release( first );
+        verify( first ).flushKnowledgeSession();
+        assertSame( first,
+                    pool.checkout() );
+        assertEquals( 2,
+                      pool.getSize() );
+        assertEquals( 3,
+                      pool.getCheckoutCount() );
+    }
+
+    @Test
+    public void testCheckoutWaitsForRelease() throws Exception {
+        final VerifierPool pool = new MockVerifierPool( 1 );
+        final Verifier verifier = pool.checkout();
+
+        final CountDownLatch checkedOut = new CountDownLatch( 1 );
+        Thread waitingThread = new Thread( new Runnable() {
+            public void run() {
+                try {
+                    pool.checkout();
+                    checkedOut.countDown();
+                } catch ( InterruptedException e ) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        } );
+        waitingThread.start();
+
+        while ( pool.getWaitingCount() == 0 ) {
+            Thread.sleep( 5 );
+        }
+        Thread.sleep( 20 );
+        pool.release( verifier );
+
+        assertTrue( checkedOut.await( 5,
+                                      TimeUnit.SECONDS ) );
+        assertEquals( 0,
+                      pool.getWaitingCount() );
+        assertTrue( pool.getMaxWaitTime() > 0 );
+    }
+
+    @Test
+    public void testDiscardedVerifierIsReplaced() throws Exception {
+        VerifierPool pool = new MockVerifierPool( 1 );
+
+        Verifier verifier = pool.checkout();
+        pool.discard( verifier );
+
+        assertEquals( 0,
+                      pool.getSize() );
+        assertNotSame( verifier,
+                       pool.checkout() );
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPoolSizeMustBePositive() {
+        new VerifierPool( 0 );
+    }
+
+    private static class MockVerifierPool extends VerifierPool {
+
+        private MockVerifierPool(int maxSize) {
+            super( maxSize );
+        }
+
+        @Override
+        protected Verifier createVerifier() {
+            return mock( Verifier.class );
+        }
+    }
+}
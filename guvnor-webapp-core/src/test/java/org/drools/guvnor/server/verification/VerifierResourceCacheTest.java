@@ -0,0 +1,179 @@
+/*
+ * Copyright 2012 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.drools.guvnor.server.verification;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Calendar;
+
+import org.drools.repository.AssetItem;
+import org.drools.repository.ModuleItem;
+import org.junit.Test;
+
+public class VerifierResourceCacheTest {
+
+    @Test
+    public void testResourceIsRenderedOncePerVersion() {
+        VerifierResourceCache cache = new VerifierResourceCache( 1000,
+                                                                 60000 );
+        ModuleItem moduleItem = createModule( "module1" );
+        AssetItem assetItem = createAsset( "asset1",
+                                           1 );
+        CountingRenderer renderer = new CountingRenderer( "rule A" );
+
+        assertEquals( "rule A",
+                      cache.getResource( moduleItem,
+                                         assetItem,
+                                         renderer ) );
+        assertEquals( "rule A",
+                      cache.getResource( moduleItem,
+                                         assetItem,
+                                         renderer ) );
+        assertEquals( 1,
+                      renderer.count );
+
+        when( assetItem.getVersionNumber() ).thenReturn( 2L );
+        cache.getResource( moduleItem,
+                           assetItem,
+                           renderer );
+        assertEquals( 2,
+                      renderer.count );
+    }
+
+    @Test
+    public void testUnversionedAssetsAreNotCached() {
+        VerifierResourceCache cache = new VerifierResourceCache( 1000,
+                                                                 60000 );
+        ModuleItem moduleItem = createModule( "module1" );
+        AssetItem assetItem = createAsset( "asset1",
+                                           0 );
+        CountingRenderer renderer = new CountingRenderer( "rule A" );
+
+        cache.getResource( moduleItem,
+                           assetItem,
+                           renderer );
+        cache.getResource( moduleItem,
+                           assetItem,
+                           renderer );
+
+        assertEquals( 2,
+                      renderer.count );
+        assertFalse( cache.contains( "module1",
+                                     "asset1" ) );
+    }
+
+    @Test
+    public void testInvalidate() {
+        VerifierResourceCache cache = new VerifierResourceCache( 1000,
+                                                                 60000 );
+        ModuleItem moduleItem = createModule( "module1" );
+        cache.getResource( moduleItem,
+                           createAsset( "asset1",
+                                        1 ),
+                           new CountingRenderer( "rule A" ) );
+        cache.getResource( moduleItem,
+                           createAsset( "asset2",
+                                        1 ),
+                           new CountingRenderer( "rule B" ) );
+        assertEquals( 12,
+                      cache.getSize() );
+
+        cache.invalidate( "asset1" );
+
+        assertFalse( cache.contains( "module1",
+                                     "asset1" ) );
+        assertTrue( cache.contains( "module1",
+                                    "asset2" ) );
+        assertEquals( 6,
+                      cache.getSize() );
+    }
+
+    @Test
+    public void testLeastRecentlyUsedModuleIsEvicted() {
+        VerifierResourceCache cache = new VerifierResourceCache( 10,
+                                                                 60000 );
+        cache.getResource( createModule( "module1" ),
+                           createAsset( "asset1",
+                                        1 ),
+                           new CountingRenderer( "rule A" ) );
+        cache.getResource( createModule( "module2" ),
+                           createAsset( "asset2",
+                                        1 ),
+                           new CountingRenderer( "rule B" ) );
+
+        assertFalse( cache.contains( "module1",
+                                     "asset1" ) );
+        assertTrue( cache.contains( "module2",
+                                    "asset2" ) );
+    }
+
+    @Test
+    public void testIdleModuleIsEvicted() throws Exception {
+        VerifierResourceCache cache = new VerifierResourceCache( 1000,
+                                                                 0 );
+        cache.getResource( createModule( "module1" ),
+                           createAsset( "asset1",
+                                        1 ),
+                           new CountingRenderer( "rule A" ) );
+        Thread.sleep( 5 );
+        cache.getResource( createModule( "module2" ),
+                           createAsset( "asset2",
+                                        1 ),
+                           new CountingRenderer( "rule B" ) );
+
+        assertFalse( cache.contains( "module1",
+                                     "asset1" ) );
+        assertTrue( cache.contains( "module2",
+                                    "asset2" ) );
+    }
+
+    private ModuleItem createModule(String uuid) {
+        ModuleItem moduleItem = mock( ModuleItem.class );
+        when( moduleItem.getUUID() ).thenReturn( uuid );
+        return moduleItem;
+    }
+
+    private AssetItem createAsset(String uuid,
+                                  long versionNumber) {
+        AssetItem assetItem = mock( AssetItem.class );
+        when( assetItem.getUUID() ).thenReturn( uuid );
+        when( assetItem.getVersionNumber() ).thenReturn( versionNumber );
+        when( assetItem.getLastModified() ).thenReturn( Calendar.getInstance() );
+        return assetItem;
+    }
+
+    private static class CountingRenderer
+        implements
+        VerifierResourceCache.ResourceRenderer {
+
+        private final String content;
+        private int count = 0;
+
+        private CountingRenderer(String content) {
+            this.content = content;
+        }
+
+        public String render(AssetItem assetItem) {
+            count++;
+            return content;
+        }
+    }
+}
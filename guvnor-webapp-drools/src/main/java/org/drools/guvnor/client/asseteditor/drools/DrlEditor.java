@@ -54,7 +54,8 @@ public class DrlEditor extends Composite
         Grid layout = new Grid( 1,
                                 2 );
 
-        FactTypeBrowser browser = new FactTypeBrowser( SuggestionCompletionCache.getInstance().getEngineFromCache( a.getMetaData().getModuleName() ),
+        FactTypeBrowser browser = new FactTypeBrowser( a.getMetaData().getModuleName(),
+                                                       SuggestionCompletionCache.getInstance().getEngineFromCache( a.getMetaData().getModuleName() ),
                                                        ce );
         layout.setWidget( 0,
                           0,
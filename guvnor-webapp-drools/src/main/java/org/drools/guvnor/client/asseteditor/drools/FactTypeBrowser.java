@@ -18,13 +18,19 @@ package org.drools.guvnor.client.asseteditor.drools;
 
 import com.google.gwt.core.client.GWT;
 import com.google.gwt.event.dom.client.ClickHandler;
+import com.google.gwt.event.logical.shared.OpenEvent;
+import com.google.gwt.event.logical.shared.OpenHandler;
 import com.google.gwt.event.logical.shared.SelectionEvent;
 import com.google.gwt.event.logical.shared.SelectionHandler;
+import com.google.gwt.user.client.Command;
 import com.google.gwt.user.client.ui.*;
 
+import java.util.Collections;
+
 import org.drools.guvnor.client.common.ClickableLabel;
 import org.drools.guvnor.client.common.SmallLabel;
 import org.drools.guvnor.client.messages.Constants;
+import org.drools.guvnor.client.moduleeditor.drools.SuggestionCompletionCache;
 import org.drools.guvnor.client.resources.Images;
 import org.drools.ide.common.client.modeldriven.SuggestionCompletionEngine;
 
@@ -34,6 +40,18 @@ public class FactTypeBrowser extends Composite {
 
     public FactTypeBrowser(SuggestionCompletionEngine sce,
                            final ClickEvent ev) {
+        this(null,
+                sce,
+                ev);
+    }
+
+    /**
+     * The fields of the fact types that are not in the SCE yet are loaded
+     * when the fact type is opened.
+     */
+    public FactTypeBrowser(final String packageName,
+                           final SuggestionCompletionEngine sce,
+                           final ClickEvent ev) {
         Tree tree = new Tree();
 
         final VerticalPanel panel = new VerticalPanel();
@@ -60,20 +78,37 @@ public class FactTypeBrowser extends Composite {
                 it.setUserObject(type + "( )");
                 tree.addItem(it);
 
-                String[] fields = (String[]) sce.getModelFields(type);
-                if (fields != null) {
-                    for (String field : fields) {
-                        TreeItem fi = new TreeItem();
-                        fi.setHTML(AbstractImagePrototype.create(images.field()).getHTML() 
-                                + "<small>"
-                                + field + "</small>");
-                        fi.setUserObject(field);
-                        it.addItem(fi);
-                    }
+                if (packageName != null && sce.isFactTypeSummarised(type)) {
+                    //a place holder, so the fact type can be opened
+                    it.addItem(new TreeItem());
+                } else {
+                    addFields(it,
+                            type,
+                            sce);
                 }
             }
         }
 
+        tree.addOpenHandler(new OpenHandler<TreeItem>() {
+
+            public void onOpen(OpenEvent<TreeItem> event) {
+                final TreeItem item = event.getTarget();
+                final String type = getFactType(item);
+                if (packageName != null && type != null && sce.isFactTypeSummarised(type)) {
+                    SuggestionCompletionCache.getInstance().loadFactTypes(packageName,
+                            Collections.singletonList(type),
+                            new Command() {
+                                public void execute() {
+                                    item.removeItems();
+                                    addFields(item,
+                                            type,
+                                            sce);
+                                }
+                            });
+                }
+            }
+        });
+
         tree.setStyleName("category-explorer-Tree"); //NON-NLS
         tree.addSelectionHandler(new SelectionHandler<TreeItem>() {
 
@@ -88,6 +123,32 @@ public class FactTypeBrowser extends Composite {
         initWidget(panel);
     }
 
+    private String getFactType(TreeItem item) {
+        Object o = item.getUserObject();
+        if (!(o instanceof String) || !((String) o).endsWith("( )")) {
+            return null;
+        }
+        String type = (String) o;
+        return type.substring(0,
+                type.length() - 3);
+    }
+
+    private void addFields(TreeItem it,
+                           String type,
+                           SuggestionCompletionEngine sce) {
+        String[] fields = (String[]) sce.getModelFields(type);
+        if (fields != null) {
+            for (String field : fields) {
+                TreeItem fi = new TreeItem();
+                fi.setHTML(AbstractImagePrototype.create(images.field()).getHTML() 
+                        + "<small>"
+                        + field + "</small>");
+                fi.setUserObject(field);
+                it.addItem(fi);
+            }
+        }
+    }
+
     public static interface ClickEvent {
         public void selected(String text);
     }
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2012 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.drools.guvnor.client.asseteditor.drools.modeldriven.ui;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.drools.guvnor.client.common.GenericCallback;
+import org.drools.guvnor.client.common.LoadingPopup;
+import org.drools.guvnor.client.messages.Constants;
+import org.drools.guvnor.client.rpc.RepositoryServiceFactory;
+import org.drools.ide.common.client.modeldriven.DropDownData;
+
+import com.google.gwt.core.client.GWT;
+import com.google.gwt.core.client.Scheduler;
+import com.google.gwt.user.client.Command;
+import com.google.gwt.user.client.rpc.AsyncCallback;
+
+/**
+ * Collects the drop down expressions that the EnumDropDowns of an editor need
+ * while it is drawn, and resolves them with a single call to the server once
+ * the editor is drawn. Drop downs with the same expression and values share
+ * the same result.
+ */
+public class DropDownExpressionBatch {
+
+    private static final Constants      constants = GWT.create( Constants.class );
+
+    private static Map<String, Request> pending   = new LinkedHashMap<String, Request>();
+
+    public static void load(final DropDownData dropData,
+                            final AsyncCallback<String[]> callback) {
+        String key = getKey( dropData );
+        Request request = pending.get( key );
+        if ( request == null ) {
+            request = new Request( dropData );
+            pending.put( key,
+                         request );
+            if ( pending.size() == 1 ) {
+                Scheduler.get().scheduleDeferred( new Command() {
+                    public void execute() {
+                        flush();
+                    }
+                } );
+            }
+        }
+        request.callbacks.add( callback );
+    }
+
+    private static String getKey(DropDownData dropData) {
+        StringBuilder key = new StringBuilder( dropData.queryExpression );
+        for ( String valuePair : dropData.valuePairs ) {
+            key.append( '\n' ).append( valuePair );
+        }
+        return key.toString();
+    }
+
+    private static void flush() {
+        final List<Request> requests = new ArrayList<Request>( pending.values() );
+        pending = new LinkedHashMap<String, Request>();
+
+        String[][] valuePairs = new String[requests.size()][];
+        String[] expressions = new String[requests.size()];
+        for ( int i = 0; i < requests.size(); i++ ) {
+            valuePairs[i] = requests.get( i ).dropData.valuePairs;
+            expressions[i] = requests.get( i ).dropData.queryExpression;
+        }
+
+        LoadingPopup.showMessage( constants.RefreshingList() );
+        RepositoryServiceFactory.getService().loadDropDownExpressions( valuePairs,
+                                                                       expressions,
+                                                                       new GenericCallback<String[][]>() {
+                                                                           public void onSuccess(String[][] data) {
+                                                                               LoadingPopup.close();
+                                                                               for ( int i = 0; i < requests.size(); i++ ) {
+                                                                                   for ( AsyncCallback<String[]> callback : requests.get( i ).callbacks ) {
+                                                                                       callback.onSuccess( data[i] );
+                                                                                   }
+                                                                               }
+                                                                           }
+
+                                                                           public void onFailure(Throwable t) {
+                                                                               LoadingPopup.close();
+                                                                               for ( Request request : requests ) {
+                                                                                   for ( AsyncCallback<String[]> callback : request.callbacks ) {
+                                                                                       callback.onFailure( t );
+                                                                                   }
+                                                                               }
+                                                                           }
+                                                                       } );
+    }
+
+    private static class Request {
+
+        private final DropDownData                   dropData;
+        private final List<AsyncCallback<String[]>> callbacks = new ArrayList<AsyncCallback<String[]>>();
+
+        private Request(DropDownData dropData) {
+            this.dropData = dropData;
+        }
+    }
+}
@@ -20,19 +20,15 @@ import java.util.Arrays;
 import java.util.HashSet;
 
 import org.drools.guvnor.client.common.DropDownValueChanged;
-import org.drools.guvnor.client.common.GenericCallback;
 import org.drools.guvnor.client.common.IDirtyable;
-import org.drools.guvnor.client.common.LoadingPopup;
 import org.drools.guvnor.client.messages.Constants;
-import org.drools.guvnor.client.rpc.RepositoryServiceFactory;
 import org.drools.ide.common.client.modeldriven.DropDownData;
 import org.drools.ide.common.client.modeldriven.ui.ConstraintValueEditorHelper;
 
 import com.google.gwt.core.client.GWT;
-import com.google.gwt.core.client.Scheduler;
 import com.google.gwt.event.dom.client.ChangeEvent;
 import com.google.gwt.event.dom.client.ChangeHandler;
-import com.google.gwt.user.client.Command;
+import com.google.gwt.user.client.rpc.AsyncCallback;
 import com.google.gwt.user.client.ui.ListBox;
 
 /**
@@ -114,32 +110,23 @@ public class EnumDropDown extends ListBox
 
         //if we have to do it lazy, we will hit up the server when the widget gets focus
         if ( dropData != null && dropData.fixedList == null && dropData.queryExpression != null ) {
-            Scheduler.get().scheduleDeferred( new Command() {
-                public void execute() {
-                    LoadingPopup.showMessage( constants.RefreshingList() );
-                    RepositoryServiceFactory.getService().loadDropDownExpression( dropData.valuePairs,
-                                                                                  dropData.queryExpression,
-                                                                                  new GenericCallback<String[]>() {
-                                                                                      public void onSuccess(String[] data) {
-                                                                                          LoadingPopup.close();
-
-                                                                                          if ( data.length == 0 ) {
-                                                                                              data = new String[]{constants.UnableToLoadList()};
-                                                                                          }
-
-                                                                                          fillDropDown( currentValue,
-                                                                                                        data );
-                                                                                      }
-
-                                                                                      public void onFailure(Throwable t) {
-                                                                                          LoadingPopup.close();
-                                                                                          //just do an empty drop down...
-                                                                                          fillDropDown( currentValue,
-                                                                                                        new String[]{constants.UnableToLoadList()} );
-                                                                                      }
-                                                                                  } );
-                }
-            } );
+            DropDownExpressionBatch.load( dropData,
+                                          new AsyncCallback<String[]>() {
+                                              public void onSuccess(String[] data) {
+                                                  if ( data.length == 0 ) {
+                                                      data = new String[]{constants.UnableToLoadList()};
+                                                  }
+
+                                                  fillDropDown( currentValue,
+                                                                data );
+                                              }
+
+                                              public void onFailure(Throwable t) {
+                                                  //just do an empty drop down...
+                                                  fillDropDown( currentValue,
+                                                                new String[]{constants.UnableToLoadList()} );
+                                              }
+                                          } );
 
         } else {
             //otherwise its just a normal one...
@@ -47,6 +47,7 @@ import com.google.gwt.event.dom.client.ClickEvent;
 import com.google.gwt.event.dom.client.ClickHandler;
 import com.google.gwt.event.shared.EventBus;
 import com.google.gwt.event.shared.HandlerRegistration;
+import com.google.gwt.user.client.Command;
 import com.google.gwt.user.client.Window;
 import com.google.gwt.user.client.ui.Button;
 import com.google.gwt.user.client.ui.HasVerticalAlignment;
@@ -119,7 +120,7 @@ public class ExpressionBuilder extends RuleModellerWidget
             } else {
                 bindingLabel.append( "." );
                 panel.add( createWidgetForExpression( bindingLabel.toString() ) );
-                panel.add( getWidgetForCurrentType() );
+                addWidgetForCurrentType();
             }
         }
         initWidget( panel );
@@ -178,7 +179,6 @@ public class ExpressionBuilder extends RuleModellerWidget
     private void startPointChange(String value) {
         setModified( true );
         panel.clear();
-        Widget w;
         int dotPos = value.indexOf( '.' );
         String prefix = value.substring( 0,
                                          dotPos );
@@ -198,18 +198,39 @@ public class ExpressionBuilder extends RuleModellerWidget
             expression.appendPart( getExpressionPartForGlobalVariable( getCompletionEngine(),
                                                                        attrib ) );
         }
-        w = getWidgetForCurrentType();
 
         if ( !expression.isEmpty() ) {
             panel.add( createWidgetForExpression( expression.getText() + "." ) );
         }
-        if ( w != null ) {
-            panel.add( w );
-        }
+        addWidgetForCurrentType();
         fireExpressionChangeEvent();
         fireExpressionTypeChangeEvent();
     }
 
+    /**
+     * Adds the widget for the current type, once the fields of its fact type
+     * are in the SCE: they are loaded first when the package only has a
+     * summary, however deep the expression is.
+     */
+    private void addWidgetForCurrentType() {
+        String factName = expression.isEmpty() ? null : getCompletionEngine().getFactNameFromType( getCurrentClassType() );
+        if ( factName == null || !getCompletionEngine().isFactTypeSummarised( factName ) ) {
+            panel.add( getWidgetForCurrentType() );
+            return;
+        }
+
+        final int parts = expression.getParts().size();
+        getModeller().loadFactType( factName,
+                                    new Command() {
+                                        public void execute() {
+                                            //the expression may have been changed in the mean time
+                                            if ( expression.getParts().size() == parts ) {
+                                                panel.add( getWidgetForCurrentType() );
+                                            }
+                                        }
+                                    } );
+    }
+
     private Widget getWidgetForCurrentType() {
         if ( expression.isEmpty() ) {
             return createStartPointWidget();
@@ -314,15 +335,11 @@ public class ExpressionBuilder extends RuleModellerWidget
                                                                    attrib ) );
             }
         }
-        Widget w = getWidgetForCurrentType();
-
         panel.clear();
         if ( !expression.isEmpty() ) {
             panel.add( createWidgetForExpression( expression.getText() + "." ) );
         }
-        if ( w != null ) {
-            panel.add( w );
-        }
+        addWidgetForCurrentType();
         fireExpressionChangeEvent();
         fireExpressionTypeChangeEvent( oldType );
     }
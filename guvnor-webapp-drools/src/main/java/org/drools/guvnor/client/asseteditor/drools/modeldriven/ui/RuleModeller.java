@@ -18,6 +18,7 @@ package org.drools.guvnor.client.asseteditor.drools.modeldriven.ui;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Set;
 
@@ -310,9 +311,16 @@ public class RuleModeller extends DirtyableComposite
     }
 
     public void refreshWidget() {
-        initWidget();
-        showWarningsAndErrors();
-        makeDirty();
+        //loads the fact types added to the rule when the package data model is a summary
+        SuggestionCompletionCache.getInstance().loadFactTypes( packageName,
+                                                               model.getFactTypes(),
+                                                               new Command() {
+                                                                   public void execute() {
+                                                                       initWidget();
+                                                                       showWarningsAndErrors();
+                                                                       makeDirty();
+                                                                   }
+                                                               } );
     }
 
     private Widget getAddAttribute() {
@@ -702,6 +710,17 @@ public class RuleModeller extends DirtyableComposite
         return SuggestionCompletionCache.getInstance().getEngineFromCache( packageName );
     }
 
+    /**
+     * Makes sure the fields of a fact type are in the SCE of the package, and
+     * then executes the command. See SuggestionCompletionCache.loadFactTypes().
+     */
+    public void loadFactType(String factType,
+                             Command done) {
+        SuggestionCompletionCache.getInstance().loadFactTypes( packageName,
+                                                               Collections.singletonList( factType ),
+                                                               done );
+    }
+
     private List<AnalysisReportLine> errors;
     private List<AnalysisReportLine> warnings;
 
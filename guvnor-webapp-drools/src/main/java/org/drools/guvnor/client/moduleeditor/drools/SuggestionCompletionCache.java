@@ -18,17 +18,27 @@ package org.drools.guvnor.client.moduleeditor.drools;
 
 
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
+import org.drools.guvnor.client.common.AssetFormats;
 import org.drools.guvnor.client.common.ErrorPopup;
 import org.drools.guvnor.client.common.GenericCallback;
 import org.drools.guvnor.client.common.LoadingPopup;
 import org.drools.guvnor.client.explorer.RefreshModuleDataModelEvent;
 import org.drools.guvnor.client.messages.Constants;
+import org.drools.guvnor.client.rpc.Asset;
 import org.drools.guvnor.client.rpc.RepositoryServiceFactory;
+import org.drools.ide.common.client.modeldriven.FactTypeCompletions;
 import org.drools.ide.common.client.modeldriven.FactTypeFilter;
 import org.drools.ide.common.client.modeldriven.SuggestionCompletionEngine;
+import org.drools.ide.common.client.modeldriven.brl.RuleModel;
 
 import com.google.gwt.core.client.GWT;
 import com.google.gwt.event.shared.EventBus;
@@ -49,6 +59,25 @@ public class SuggestionCompletionCache implements RefreshModuleDataModelEvent.Ha
      * Fact Type Filter per package. A package can only have 1 filter at a time. 
      */
     Map<String, FactTypeFilter> filters = new HashMap<String, FactTypeFilter>();
+
+    private static final int MAX_LOADED_FACT_TYPES = 300;
+
+    private static final Command NO_OP = new Command() {
+        public void execute() {
+        }
+    };
+
+    /**
+     * The fact types with completions in the SCE of a package, least recently
+     * used first. Only used when the SCE is a summary.
+     */
+    Map<String, Map<String, Boolean>> loadedFactTypes = new HashMap<String, Map<String, Boolean>>();
+
+    /**
+     * The packages whose fact types were all loaded, and are kept.
+     */
+    Set<String> allFactTypesLoaded = new HashSet<String>();
+
     private final Constants constants;
     private EventBus eventBus;
 
@@ -76,7 +105,34 @@ public class SuggestionCompletionCache implements RefreshModuleDataModelEvent.Ha
     }
     
     public void onRefreshModuleDataModel(RefreshModuleDataModelEvent refreshModuleDataModelEvent) {
-        loadPackage(refreshModuleDataModelEvent.getModuleName(), refreshModuleDataModelEvent.getCallbackCommand());
+        final String packageName = refreshModuleDataModelEvent.getModuleName();
+        final Asset asset = refreshModuleDataModelEvent.getAsset();
+        final Command done = refreshModuleDataModelEvent.getCallbackCommand();
+        loadPackage(packageName, new Command() {
+            public void execute() {
+                loadFactTypesFor( packageName, asset, done == null ? NO_OP : done );
+            }
+        });
+    }
+
+    /**
+     * Loads the fact types an asset editor needs: the guided rule editors load
+     * the fact types of their rule (and those the user adds, see RuleModeller),
+     * the DRL editors load fact types when they are browsed, and the other
+     * model driven editors load them all.
+     */
+    private void loadFactTypesFor(final String packageName, final Asset asset, final Command done) {
+        if ( asset == null ) {
+            done.execute();
+        } else if ( asset.getContent() instanceof RuleModel ) {
+            loadFactTypes( packageName, ((RuleModel) asset.getContent()).getFactTypes(), done );
+        } else if ( AssetFormats.DECISION_TABLE_GUIDED.equals( asset.getFormat() )
+                || AssetFormats.TEST_SCENARIO.equals( asset.getFormat() )
+                || AssetFormats.WORKING_SET.equals( asset.getFormat() ) ) {
+            loadAllFactTypes( packageName, done );
+        } else {
+            done.execute();
+        }
     }
     
     public SuggestionCompletionEngine getEngineFromCache(String packageName) {
@@ -102,10 +158,20 @@ public class SuggestionCompletionCache implements RefreshModuleDataModelEvent.Ha
         //removes any existing filter
         this.filters.remove(packageName);
         
-        RepositoryServiceFactory.getService().loadSuggestionCompletionEngine( packageName, new GenericCallback<SuggestionCompletionEngine>() {
+        //large packages only come with the names of their fact types, see loadFactTypes()
+        RepositoryServiceFactory.getService().loadSuggestionCompletionEngineSummary( packageName, new GenericCallback<SuggestionCompletionEngine>() {
             public void onSuccess(SuggestionCompletionEngine engine) {
                 cache.put( packageName, engine );
-                done.execute();
+
+                //the open editors still need the fact types they had
+                Map<String, Boolean> previouslyLoaded = loadedFactTypes.remove( packageName );
+                if ( allFactTypesLoaded.remove( packageName ) ) {
+                    loadAllFactTypes( packageName, done );
+                } else if ( previouslyLoaded != null ) {
+                    loadFactTypes( packageName, new ArrayList<String>( previouslyLoaded.keySet() ), done );
+                } else {
+                    done.execute();
+                }
             }
 
             public void onFailure(Throwable t) {
@@ -116,6 +182,99 @@ public class SuggestionCompletionCache implements RefreshModuleDataModelEvent.Ha
         });
     }
     
+    /**
+     * Makes sure the fields, methods and enums of the given fact types are in
+     * the SCE of a package, loading them if the SCE is a summary, and then
+     * executes the command. Editors call this before showing fact types.
+     * The completions of the fact types that were not used for a while are
+     * dropped again, to keep the engine small.
+     * @param packageName
+     * @param factTypes
+     * @param done
+     */
+    public void loadFactTypes(final String packageName, final Collection<String> factTypes, final Command done) {
+        final SuggestionCompletionEngine engine = cache.get( packageName );
+        if ( engine == null || !engine.isSummary() ) {
+            done.execute();
+            return;
+        }
+
+        //the fields of the globals are always shown
+        List<String> needed = new ArrayList<String>( factTypes );
+        for ( String global : engine.getGlobalVariables() ) {
+            needed.add( engine.getGlobalVariable( global ) );
+        }
+
+        final Map<String, Boolean> loaded = getLoadedFactTypes( packageName );
+        List<String> missing = new ArrayList<String>();
+        for ( String factType : needed ) {
+            if ( engine.isFactTypeSummarised( factType ) ) {
+                missing.add( factType );
+            } else {
+                loaded.put( factType, Boolean.TRUE );
+            }
+        }
+        if ( missing.isEmpty() ) {
+            done.execute();
+            return;
+        }
+
+        RepositoryServiceFactory.getService().loadFactTypeCompletions( packageName, missing.toArray( new String[missing.size()] ), new GenericCallback<FactTypeCompletions[]>() {
+            public void onSuccess(FactTypeCompletions[] completions) {
+                for ( FactTypeCompletions factTypeCompletions : completions ) {
+                    engine.addFactTypeCompletions( factTypeCompletions );
+                    loaded.put( factTypeCompletions.getFactType(), Boolean.TRUE );
+                }
+                done.execute();
+            }
+
+            public void onFailure(Throwable t) {
+                ErrorPopup.showMessage( constants.UnableToGetContentAssistanceForThisRule() );
+                done.execute();
+            }
+        } );
+    }
+
+    /**
+     * Makes sure all the fact types of the SCE of a package are loaded, for
+     * the editors that do not know which fact types they need.
+     * @param packageName
+     * @param done
+     */
+    public void loadAllFactTypes(final String packageName, final Command done) {
+        SuggestionCompletionEngine engine = cache.get( packageName );
+        if ( engine == null || !engine.isSummary() ) {
+            done.execute();
+            return;
+        }
+        //fact types loaded for an editor that uses them all are never dropped
+        allFactTypesLoaded.add( packageName );
+        List<String> factTypes = new ArrayList<String>( engine.getModelFields().keySet() );
+        loadFactTypes( packageName, factTypes, done );
+    }
+
+
+    private Map<String, Boolean> getLoadedFactTypes(final String packageName) {
+        Map<String, Boolean> loaded = loadedFactTypes.get( packageName );
+        if ( loaded == null ) {
+            loaded = new LinkedHashMap<String, Boolean>( 16, 0.75f, true ) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                    if ( size() > MAX_LOADED_FACT_TYPES && !allFactTypesLoaded.contains( packageName ) ) {
+                        SuggestionCompletionEngine engine = cache.get( packageName );
+                        if ( engine != null ) {
+                            engine.removeFactTypeCompletions( eldest.getKey() );
+                        }
+                        return true;
+                    }
+                    return false;
+                }
+            };
+            loadedFactTypes.put( packageName, loaded );
+        }
+        return loaded;
+    }
+
     /**
      * Gets the last version of SCE for a package and then applies any pre-existing
      * filter to it.
@@ -97,17 +97,27 @@ public class NewGuidedDecisionTableWizard
 
         dtable.setTableFormat( context.getTableFormat() );
 
+        final Command initialisePages = new Command() {
+
+            public void execute() {
+                LoadingPopup.close();
+                sce = SuggestionCompletionCache.getInstance().getEngineFromCache( context.getPackageName() );
+                for ( WizardPage page : pages ) {
+                    AbstractGuidedDecisionTableWizardPage dtp = (AbstractGuidedDecisionTableWizardPage) page;
+                    dtp.setSuggestionCompletionEngine( sce );
+                    dtp.initialise();
+                }
+            }
+
+        };
+
+        //the wizard pages show the fields of any fact type
         SuggestionCompletionCache.getInstance().loadPackage( context.getPackageName(),
                                                                  new Command() {
 
                                                                      public void execute() {
-                                                                         LoadingPopup.close();
-                                                                         sce = SuggestionCompletionCache.getInstance().getEngineFromCache( context.getPackageName() );
-                                                                         for ( WizardPage page : pages ) {
-                                                                             AbstractGuidedDecisionTableWizardPage dtp = (AbstractGuidedDecisionTableWizardPage) page;
-                                                                             dtp.setSuggestionCompletionEngine( sce );
-                                                                             dtp.initialise();
-                                                                         }
+                                                                         SuggestionCompletionCache.getInstance().loadAllFactTypes( context.getPackageName(),
+                                                                                                                                   initialisePages );
                                                                      }
 
                                                                  } );
@@ -22,6 +22,7 @@ import org.drools.guvnor.client.rpc.Asset;
 import org.drools.guvnor.server.builder.AssemblyErrorLogger;
 import org.drools.guvnor.server.builder.BRMSPackageBuilder;
 import org.drools.guvnor.server.contenthandler.ContentHandler;
+import org.drools.guvnor.server.contenthandler.ICompilableAsDRL;
 import org.drools.guvnor.server.contenthandler.IRuleAsset;
 import org.drools.ide.common.client.modeldriven.brl.RuleModel;
 import org.drools.ide.common.server.util.BRDRLPersistence;
@@ -34,7 +35,8 @@ import java.io.StringReader;
 
 public class BRLContentHandler extends ContentHandler
     implements
-    IRuleAsset {
+    IRuleAsset,
+    ICompilableAsDRL {
 
     public void retrieveAssetContent(Asset asset,
                                      AssetItem item) throws SerializationException {
@@ -58,8 +60,14 @@ public class BRLContentHandler extends ContentHandler
                         AssetItem asset,
                         AssemblyErrorLogger logger) throws DroolsParserException,
                                                                    IOException {
-        builder.addPackageFromDrl( new StringReader( getSourceDRL( buildModelFromAsset( asset ),
-                                                                   builder ) ) );
+        builder.addPackageFromDrl( new StringReader( getCompiledDRL( builder,
+                                                                     asset ) ) );
+    }
+
+    public String getCompiledDRL(BRMSPackageBuilder builder,
+                                 AssetItem asset) {
+        return getSourceDRL( buildModelFromAsset( asset ),
+                             builder );
     }
 
     public void assembleDRL(BRMSPackageBuilder builder,
@@ -83,7 +91,7 @@ public class BRLContentHandler extends ContentHandler
 
         String drl = getBrlDrlPersistence().marshal( model );
         if ( builder.hasDSL() && model.hasDSLSentences() ) {
-            drl = builder.getDSLExpander().expand( drl );
+            drl = builder.getDSLExpander( drl ).expand( drl );
         }
         return drl;
     }
@@ -21,6 +21,7 @@ import org.drools.guvnor.client.rpc.Asset;
 import org.drools.guvnor.client.rpc.RuleContentText;
 import org.drools.guvnor.server.builder.AssemblyErrorLogger;
 import org.drools.guvnor.server.builder.BRMSPackageBuilder;
+import org.drools.guvnor.server.contenthandler.ICompilableAsDRL;
 import org.drools.guvnor.server.contenthandler.IRuleAsset;
 import org.drools.guvnor.server.contenthandler.PlainTextContentHandler;
 import org.drools.repository.AssetItem;
@@ -31,18 +32,25 @@ import java.util.StringTokenizer;
 
 public class DRLFileContentHandler extends PlainTextContentHandler
     implements
-    IRuleAsset {
+    IRuleAsset,
+    ICompilableAsDRL {
 
     public void compile(BRMSPackageBuilder builder,
                         AssetItem asset,
                         AssemblyErrorLogger logger) throws DroolsParserException,
                                                                    IOException {
-        String content = getRawDRL( asset );
+        String content = getCompiledDRL( builder,
+                                         asset );
         if ( content != null && !content.trim().equals( "" ) ) {
             builder.addPackageFromDrl( new StringReader( content ) );
         }
     }
 
+    public String getCompiledDRL(BRMSPackageBuilder builder,
+                                 AssetItem asset) {
+        return getRawDRL( asset );
+    }
+
     String wrapRuleDeclaration(String name,
                                String parentName,
                                String content) {
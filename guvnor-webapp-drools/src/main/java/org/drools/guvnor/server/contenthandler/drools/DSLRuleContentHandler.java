@@ -58,12 +58,13 @@ public class DSLRuleContentHandler extends ContentHandler
                         AssetItem asset,
                         AssemblyErrorLogger logger) throws DroolsParserException,
             IOException {
+        String source = getRawDRL(asset);
+
         DefaultExpander expander = getExpander(builder,
                 asset,
+                source,
                 logger);
 
-        String source = getRawDRL(asset);
-
         //expand and check for errors
         String drl = expander.expand(source);
 
@@ -81,6 +82,7 @@ public class DSLRuleContentHandler extends ContentHandler
 
     private DefaultExpander getExpander(BRMSPackageBuilder builder,
                                         AssetItem asset,
+                                        String source,
                                         AssemblyErrorLogger logger) {
 
         if (!builder.hasDSL()) {
@@ -88,7 +90,7 @@ public class DSLRuleContentHandler extends ContentHandler
                     "This rule asset requires a DSL, yet none were configured in the package.", asset.getFormat(), asset.getName(), asset.getUUID(), false, true));
         }
 
-        return builder.getDSLExpander();
+        return builder.getDSLExpander(source);
     }
 
     public void assembleDRL(BRMSPackageBuilder builder,
@@ -101,7 +103,7 @@ public class DSLRuleContentHandler extends ContentHandler
                 asset.getName(),
                 null);
 
-        DefaultExpander expander = builder.getDSLExpander();
+        DefaultExpander expander = builder.getDSLExpander(source);
         stringBuilder.append(expander.expand(source));
     }
 
@@ -111,7 +113,7 @@ public class DSLRuleContentHandler extends ContentHandler
         //add the rule keyword if its 'stand alone'
         String source = getRawDRL(asset);
 
-        DefaultExpander expander = builder.getDSLExpander();
+        DefaultExpander expander = builder.getDSLExpander(source);
         stringBuilder.append(expander.expand(source));
 
     }
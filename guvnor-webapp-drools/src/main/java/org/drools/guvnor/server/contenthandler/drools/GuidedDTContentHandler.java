@@ -24,6 +24,7 @@ import org.drools.guvnor.client.rpc.Asset;
 import org.drools.guvnor.server.builder.AssemblyErrorLogger;
 import org.drools.guvnor.server.builder.BRMSPackageBuilder;
 import org.drools.guvnor.server.contenthandler.ContentHandler;
+import org.drools.guvnor.server.contenthandler.ICompilableAsDRL;
 import org.drools.guvnor.server.contenthandler.IRuleAsset;
 import org.drools.ide.common.client.modeldriven.dt52.GuidedDecisionTable52;
 import org.drools.ide.common.server.util.GuidedDTDRLPersistence;
@@ -37,7 +38,8 @@ import com.google.gwt.user.client.rpc.SerializationException;
  */
 public class GuidedDTContentHandler extends ContentHandler
     implements
-    IRuleAsset {
+    IRuleAsset,
+    ICompilableAsDRL {
 
     public void retrieveAssetContent(Asset asset,
                                      AssetItem item) throws SerializationException {
@@ -60,11 +62,17 @@ public class GuidedDTContentHandler extends ContentHandler
                         AssetItem asset,
                         AssemblyErrorLogger logger) throws DroolsParserException,
                                                                    IOException {
-        String drl = getRawDRL( asset );
+        String drl = getCompiledDRL( builder,
+                                     asset );
         if ( drl.equals( "" ) ) return;
         builder.addPackageFromDrl( new StringReader( drl ) );
     }
 
+    public String getCompiledDRL(BRMSPackageBuilder builder,
+                                 AssetItem asset) {
+        return getRawDRL( asset );
+    }
+
     public void assembleDRL(BRMSPackageBuilder builder,
                             Asset asset,
                             StringBuilder stringBuilder) {
@@ -85,7 +93,7 @@ public class GuidedDTContentHandler extends ContentHandler
                                 BRMSPackageBuilder builder) {
         String drl = GuidedDTDRLPersistence.getInstance().marshal( model );
         if ( builder.hasDSL() && model.hasDSLSentences() ) {
-            drl = builder.getDSLExpander().expand( drl );
+            drl = builder.getDSLExpander( drl ).expand( drl );
         }
         return drl;
     }
@@ -30,6 +30,7 @@ import com.google.gwt.user.client.Command;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
+import java.util.Arrays;
 
 public class SuggestionCompletionCacheTest {
 
@@ -89,6 +90,27 @@ public class SuggestionCompletionCacheTest {
 
 
 
+    }
+
+    @Test
+    public void testFactTypesOfAFullEngineAreNotLoaded() throws Exception {
+        Constants cs = (Constants) Proxy.newProxyInstance(this.getClass().getClassLoader(), new Class[] {Constants.class}, new ConstantsProxy());
+        SuggestionCompletionCache cache = new SuggestionCompletionCache(cs);
+
+        SuggestionCompletionEngine eng = new SuggestionCompletionEngine();
+        eng.setFactTypes( new String[]{"Person"} );
+        cache.cache.put( "foo",  eng);
+
+        cache.loadFactTypes( "foo", Arrays.asList( "Person" ), new Command() {
+
+            public void execute() {
+                executed = true;
+            }
+
+        });
+
+        assertTrue(executed);
+        assertTrue(cache.loadedFactTypes.isEmpty());
     }
 
     class ConstantsProxy implements InvocationHandler {
@@ -16,7 +16,9 @@
 package org.drools.guvnor.server;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -36,6 +38,7 @@ import org.drools.guvnor.server.util.AssetEditorConfigurationParser;
 import org.drools.repository.AssetHistoryIterator;
 import org.drools.repository.AssetItem;
 import org.drools.repository.AssetItemIterator;
+import org.drools.repository.AssetRow;
 import org.drools.repository.ModuleItem;
 import org.drools.repository.RulesRepository;
 import org.junit.Test;
@@ -223,17 +226,17 @@ public class RepositoryAssetOperationsTest {
         ModuleItem packageItem = mock( ModuleItem.class );
         when( rulesRepository.loadModuleByUUID( Mockito.anyString() ) ).thenReturn( packageItem );
 
-        AssetItemIterator assetItemIterator = mock( AssetItemIterator.class );
-        when( packageItem.listAssetsByFormat( assetPageRequest.getFormatInList() ) )
-                .thenReturn( assetItemIterator );
-
         PageResponse<AssetPageRow> pageResponse = repositoryAssetOperations.findAssetPage( assetPageRequest );
 
         assertNotNull( pageResponse );
         assertEquals( pageResponse.getStartRowIndex(),
                       1 );
-        verify( packageItem ).listAssetsByFormat(
-                                                  assetPageRequest.getFormatInList() );
+        verify( packageItem ).getAssetCount( new String[]{"formatInList"},
+                                             false );
+        verify( packageItem ).listAssetRows( new String[]{"formatInList"},
+                                             false,
+                                             1,
+                                             2 );
     }
 
     @Test
@@ -250,17 +253,17 @@ public class RepositoryAssetOperationsTest {
         when( rulesRepository.loadModuleByUUID( Mockito.anyString() ) )
                 .thenReturn( packageItem );
 
-        AssetItem a1 = mock( AssetItem.class );
+        AssetRow a1 = mock( AssetRow.class );
         when( a1.getFormat() ).thenReturn( "formatInList" );
         when( a1.getCreatedDate() ).thenReturn( Calendar.getInstance() );
         when( a1.getLastModified() ).thenReturn( Calendar.getInstance() );
 
-        AssetItemIterator assetItemIterator = mock( AssetItemIterator.class );
-        when( assetItemIterator.hasNext() ).thenReturn( true,
-                                                        false );
-        when( assetItemIterator.next() ).thenReturn( a1 );
-
-        when( packageItem.listAssetsByFormat( assetPageRequest.getFormatInList() ) ).thenReturn( assetItemIterator );
+        when( packageItem.getAssetCount( new String[]{"formatInList"},
+                                         false ) ).thenReturn( 2l );
+        when( packageItem.listAssetRows( new String[]{"formatInList"},
+                                         false,
+                                         1,
+                                         10 ) ).thenReturn( Arrays.asList( a1 ) );
 
         PageResponse<AssetPageRow> pageResponse = repositoryAssetOperations.findAssetPage( assetPageRequest );
 
@@ -269,8 +272,9 @@ public class RepositoryAssetOperationsTest {
                       1 );
         assertEquals( 1,
                       pageResponse.getPageRowList().size() );
-
-        verify( packageItem ).listAssetsByFormat( assetPageRequest.getFormatInList() );
+        assertEquals( 2,
+                      pageResponse.getTotalRowSize() );
+        assertTrue( pageResponse.isLastPage() );
     }
 
     @Test
@@ -287,20 +291,19 @@ public class RepositoryAssetOperationsTest {
         when( rulesRepository.loadModuleByUUID( Mockito.anyString() ) )
                 .thenReturn( packageItem );
 
-        AssetItem a1 = mock( AssetItem.class );
+        AssetRow a1 = mock( AssetRow.class );
         when( a1.getFormat() ).thenReturn( "formatNotInList" );
         when( a1.getCreatedDate() ).thenReturn( Calendar.getInstance() );
         when( a1.getLastModified() ).thenReturn( Calendar.getInstance() );
 
-        AssetItemIterator assetItemIterator = mock( AssetItemIterator.class );
-        when( assetItemIterator.hasNext() ).thenReturn( true,
-                                                        false );
-        when( assetItemIterator.next() ).thenReturn( a1 );
-
         String[] registeredFormats = registeredFormats();
 
-        when( packageItem.listAssetsNotOfFormat( registeredFormats ) )
-                .thenReturn( assetItemIterator );
+        when( packageItem.getAssetCount( registeredFormats,
+                                         true ) ).thenReturn( 20l );
+        when( packageItem.listAssetRows( registeredFormats,
+                                         true,
+                                         1,
+                                         10 ) ).thenReturn( Arrays.asList( a1 ) );
 
         PageResponse<AssetPageRow> pageResponse = repositoryAssetOperations.findAssetPage( assetPageRequest );
 
@@ -309,8 +312,12 @@ public class RepositoryAssetOperationsTest {
                       1 );
         assertEquals( 1,
                       pageResponse.getPageRowList().size() );
+        assertFalse( pageResponse.isLastPage() );
 
-        verify( packageItem ).listAssetsNotOfFormat( registeredFormats );
+        verify( packageItem ).listAssetRows( registeredFormats,
+                                             true,
+                                             1,
+                                             10 );
     }
 
     private String[] registeredFormats() {
@@ -345,16 +352,15 @@ public class RepositoryAssetOperationsTest {
                                                                   null );
         ModuleItem packageItem = mock( ModuleItem.class );
         when( rulesRepository.loadModuleByUUID( Mockito.anyString() ) ).thenReturn( packageItem );
+        when( packageItem.getAssetCount( new String[]{"formatInList"},
+                                         false ) ).thenReturn( 0l );
 
-        AssetItemIterator assetItemIterator = mock( AssetItemIterator.class );
-        when( packageItem.listAssetsByFormat( assetPageRequest.getFormatInList() ) ).thenReturn( assetItemIterator );
-        when( assetItemIterator.getSize() ).thenReturn( 0l );
-        
         long count = repositoryAssetOperations.getAssetCount( assetPageRequest );
 
         assertEquals( 0,
                       count );
-        verify( packageItem ).listAssetsByFormat( assetPageRequest.getFormatInList() );
+        verify( packageItem ).getAssetCount( new String[]{"formatInList"},
+                                             false );
     }
 
     @Test
@@ -367,22 +373,13 @@ public class RepositoryAssetOperationsTest {
                                                                   null );
         ModuleItem packageItem = mock( ModuleItem.class );
         when( rulesRepository.loadModuleByUUID( Mockito.anyString() ) ).thenReturn( packageItem );
-
-        AssetItem a1 = mock( AssetItem.class );
-        when( a1.getFormat() ).thenReturn( "formatInList" );
-        when( a1.getCreatedDate() ).thenReturn( Calendar.getInstance() );
-        when( a1.getLastModified() ).thenReturn( Calendar.getInstance() );
-
-        AssetItemIterator assetItemIterator = mock( AssetItemIterator.class );
-        when( packageItem.listAssetsByFormat( assetPageRequest.getFormatInList() ) ).thenReturn( assetItemIterator );
-        when( assetItemIterator.getSize() ).thenReturn( 1l );
+        when( packageItem.getAssetCount( new String[]{"formatInList"},
+                                         false ) ).thenReturn( 1l );
 
         long count = repositoryAssetOperations.getAssetCount( assetPageRequest );
 
         assertEquals( 1,
                       count );
-
-        verify( packageItem ).listAssetsByFormat( assetPageRequest.getFormatInList() );
     }
 
     @Test
@@ -396,27 +393,17 @@ public class RepositoryAssetOperationsTest {
         ModuleItem packageItem = mock( ModuleItem.class );
         when( rulesRepository.loadModuleByUUID( Mockito.anyString() ) ).thenReturn( packageItem );
 
-        AssetItem a1 = mock( AssetItem.class );
-        when( a1.getFormat() ).thenReturn( "formatNotInList" );
-        when( a1.getCreatedDate() ).thenReturn( Calendar.getInstance() );
-        when( a1.getLastModified() ).thenReturn( Calendar.getInstance() );
-
-        AssetItemIterator assetItemIterator = mock( AssetItemIterator.class );
-        when( assetItemIterator.hasNext() ).thenReturn( true,
-                                                        false );
-        when( assetItemIterator.next() ).thenReturn( a1 );
-
         String[] registeredFormats = registeredFormats();
-
-        when( packageItem.listAssetsNotOfFormat( registeredFormats ) ).thenReturn( assetItemIterator );
-        when( assetItemIterator.getSize() ).thenReturn( 0l );
+        when( packageItem.getAssetCount( registeredFormats,
+                                         true ) ).thenReturn( 0l );
 
         long count = repositoryAssetOperations.getAssetCount( assetPageRequest );
 
         assertEquals( 0,
                       count );
 
-        verify( packageItem ).listAssetsNotOfFormat( registeredFormats );
+        verify( packageItem ).getAssetCount( registeredFormats,
+                                             true );
     }
 
 }
@@ -609,6 +609,48 @@ public class RepositoryPackageServiceTest extends GuvnorTestBase {
                       arch.length );
     }
 
+    @Test
+    public void testListModulesPaged() throws Exception {
+        repositoryPackageService.createModule( "testListModulesPaged1",
+                                               "desc",
+                                               "package" );
+        repositoryPackageService.createModule( "testListModulesPaged2",
+                                               "desc",
+                                               "package" );
+        rulesRepository.loadModule( "testListModulesPaged1" ).addWorkspace( "testListModulesPagedWs" );
+        rulesRepository.loadModule( "testListModulesPaged2" ).addWorkspace( "testListModulesPagedWs" );
+        rulesRepository.save();
+
+        Module[] all = repositoryPackageService.listModules();
+        Module[] page = repositoryPackageService.listModules( null,
+                                                             1,
+                                                             2 );
+        assertEquals( 2,
+                      page.length );
+        assertEquals( all[1].getUuid(),
+                      page[0].getUuid() );
+        assertEquals( all[2].getUuid(),
+                      page[1].getUuid() );
+
+        Module[] workspace = repositoryPackageService.listModules( "testListModulesPagedWs",
+                                                                  0,
+                                                                  -1 );
+        assertEquals( 2,
+                      workspace.length );
+        assertEquals( "testListModulesPaged1",
+                      workspace[0].getName() );
+        assertEquals( "testListModulesPaged2",
+                      workspace[1].getName() );
+
+        workspace = repositoryPackageService.listModules( "testListModulesPagedWs",
+                                                         1,
+                                                         5 );
+        assertEquals( 1,
+                      workspace.length );
+        assertEquals( "testListModulesPaged2",
+                      workspace[0].getName() );
+    }
+
     @Test
     public void testCreatePackage() throws Exception {
         Module[] pkgs = repositoryPackageService.listModules();
@@ -0,0 +1,221 @@
+/*
+ * Copyright 2012 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.drools.guvnor.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Collections;
+
+import javax.inject.Inject;
+
+import org.drools.guvnor.client.common.AssetFormats;
+import org.drools.guvnor.server.refactoring.RefactoringChangeSet;
+import org.drools.ide.common.client.modeldriven.SuggestionCompletionEngine;
+import org.drools.ide.common.client.modeldriven.brl.FactPattern;
+import org.drools.ide.common.client.modeldriven.brl.RuleModel;
+import org.drools.ide.common.client.modeldriven.brl.SingleFieldConstraint;
+import org.drools.ide.common.server.util.BRXMLPersistence;
+import org.drools.repository.AssetItem;
+import org.drools.repository.ModuleItem;
+import org.junit.Test;
+
+import com.google.gwt.user.client.rpc.SerializationException;
+
+public class RepositoryRefactoringServiceTest extends GuvnorTestBase {
+
+    @Inject
+    private RepositoryRefactoringService repositoryRefactoringService;
+
+    @Test
+    public void testRenameFieldAcrossModule() throws Exception {
+        ModuleItem module = rulesRepository.createModule( "testRenameFieldAcrossModule",
+                                                          "" );
+        String drl = "rule 'personRule' \n when \n p : Person( age > 18 ) \n then \n p.setAge( 42 ); \n end";
+        AssetItem personRule = addAsset( module,
+                                         "personRule",
+                                         AssetFormats.DRL,
+                                         drl );
+        AssetItem guidedRule = addAsset( module,
+                                         "guidedRule",
+                                         AssetFormats.BUSINESS_RULE,
+                                         createGuidedRule() );
+        AssetItem cheeseRule = addAsset( module,
+                                         "cheeseRule",
+                                         AssetFormats.DRL,
+                                         "rule 'cheeseRule' \n when \n Cheese( age > 1 ) \n then \n end" );
+
+        RefactoringChangeSet changeSet = repositoryRefactoringService.previewFieldRename( module.getUUID(),
+                                                                                          "Person",
+                                                                                          "age",
+                                                                                          "years" );
+        assertEquals( 2,
+                      changeSet.getChanges().size() );
+        assertEquals( "guidedRule",
+                      changeSet.getChanges().get( 0 ).getName() );
+        assertEquals( "personRule",
+                      changeSet.getChanges().get( 1 ).getName() );
+        assertEquals( drl,
+                      rulesRepository.loadAssetByUUID( personRule.getUUID() ).getContent() );
+
+        long version = personRule.getVersionNumber();
+        repositoryRefactoringService.applyChangeSet( changeSet,
+                                                     "Renamed Person.age" );
+
+        AssetItem renamed = rulesRepository.loadAssetByUUID( personRule.getUUID() );
+        assertEquals( "rule 'personRule' \n when \n p : Person( years > 18 ) \n then \n p.setYears( 42 ); \n end",
+                      renamed.getContent() );
+        assertEquals( "Renamed Person.age",
+                      renamed.getCheckinComment() );
+        assertEquals( version + 1,
+                      renamed.getVersionNumber() );
+        RuleModel model = BRXMLPersistence.getInstance().unmarshal( rulesRepository.loadAssetByUUID( guidedRule.getUUID() ).getContent() );
+        assertEquals( "years",
+                      ((SingleFieldConstraint) ((FactPattern) model.lhs[0]).getFieldConstraints()[0]).getFieldName() );
+        assertEquals( cheeseRule.getVersionNumber(),
+                      rulesRepository.loadAssetByUUID( cheeseRule.getUUID() ).getVersionNumber() );
+
+        //The index follows the checkin
+        assertTrue( repositoryRefactoringService.previewFieldRename( module.getUUID(),
+                                                                     "Person",
+                                                                     "age",
+                                                                     "old" ).isEmpty() );
+        assertEquals( 2,
+                      repositoryRefactoringService.previewFieldRename( module.getUUID(),
+                                                                       "Person",
+                                                                       "years",
+                                                                       "age" ).getChanges().size() );
+    }
+
+    @Test
+    public void testRenameFactTypeAcrossModule() throws Exception {
+        ModuleItem module = rulesRepository.createModule( "testRenameFactTypeAcrossModule",
+                                                          "" );
+        AssetItem model = addAsset( module,
+                                    "model",
+                                    AssetFormats.DRL_MODEL,
+                                    "declare Person\n  age : int\nend\n" );
+        AssetItem personRule = addAsset( module,
+                                         "personRule",
+                                         AssetFormats.DRL,
+                                         "rule 'personRule' \n when \n Person( age > 18 ) \n then \n insert( new Person() ); \n end" );
+
+        RefactoringChangeSet changeSet = repositoryRefactoringService.previewFactTypeRename( module.getUUID(),
+                                                                                             "Person",
+                                                                                             "Customer" );
+        assertEquals( 2,
+                      changeSet.getChanges().size() );
+        repositoryRefactoringService.applyChangeSet( changeSet,
+                                                     "Renamed Person" );
+
+        assertEquals( "declare Customer\n  age : int\nend\n",
+                      rulesRepository.loadAssetByUUID( model.getUUID() ).getContent() );
+        assertEquals( "rule 'personRule' \n when \n Customer( age > 18 ) \n then \n insert( new Customer() ); \n end",
+                      rulesRepository.loadAssetByUUID( personRule.getUUID() ).getContent() );
+    }
+
+    @Test
+    public void testUnreadableAssetsAreSkipped() throws Exception {
+        ModuleItem module = rulesRepository.createModule( "testUnreadableAssetsAreSkipped",
+                                                          "" );
+        AssetItem personRule = addAsset( module,
+                                         "personRule",
+                                         AssetFormats.DRL,
+                                         "rule 'personRule' \n when \n Person( age > 18 ) \n then \n end" );
+        String broken = "rule 'broken' \n when \n Person( age > ) \n then \n end";
+        AssetItem brokenRule = addAsset( module,
+                                         "brokenRule",
+                                         AssetFormats.DRL,
+                                         broken );
+
+        RefactoringChangeSet changeSet = repositoryRefactoringService.previewFactTypeRename( module.getUUID(),
+                                                                                             "Person",
+                                                                                             "Customer" );
+        assertEquals( 1,
+                      changeSet.getChanges().size() );
+        assertEquals( personRule.getUUID(),
+                      changeSet.getChanges().get( 0 ).getUuid() );
+        assertEquals( Collections.singleton( "brokenRule" ),
+                      changeSet.getSkipped().keySet() );
+
+        repositoryRefactoringService.applyChangeSet( changeSet,
+                                                     "Renamed Person" );
+        assertEquals( broken,
+                      rulesRepository.loadAssetByUUID( brokenRule.getUUID() ).getContent() );
+    }
+
+    @Test
+    public void testOutdatedChangeSetIsNotApplied() throws Exception {
+        ModuleItem module = rulesRepository.createModule( "testOutdatedChangeSetIsNotApplied",
+                                                          "" );
+        AssetItem first = addAsset( module,
+                                    "first",
+                                    AssetFormats.DRL,
+                                    "rule 'first' \n when \n Person( age > 18 ) \n then \n end" );
+        AssetItem second = addAsset( module,
+                                     "second",
+                                     AssetFormats.DRL,
+                                     "rule 'second' \n when \n Person( age < 18 ) \n then \n end" );
+
+        RefactoringChangeSet changeSet = repositoryRefactoringService.previewFieldRename( module.getUUID(),
+                                                                                          "Person",
+                                                                                          "age",
+                                                                                          "years" );
+        assertEquals( 2,
+                      changeSet.getChanges().size() );
+
+        second.updateContent( "rule 'second' \n when \n Person( age < 21 ) \n then \n end" );
+        second.checkin( "Changed meanwhile" );
+
+        try {
+            repositoryRefactoringService.applyChangeSet( changeSet,
+                                                         "Renamed Person.age" );
+            fail( "The change set is outdated" );
+        } catch ( SerializationException e ) {
+            assertTrue( e.getMessage().contains( "second" ) );
+        }
+        assertEquals( "rule 'first' \n when \n Person( age > 18 ) \n then \n end",
+                      rulesRepository.loadAssetByUUID( first.getUUID() ).getContent() );
+    }
+
+    private AssetItem addAsset(ModuleItem module,
+                               String name,
+                               String format,
+                               String content) {
+        AssetItem asset = module.addAsset( name,
+                                           "" );
+        asset.updateFormat( format );
+        asset.updateContent( content );
+        asset.checkin( "" );
+        return asset;
+    }
+
+    private String createGuidedRule() {
+        RuleModel model = new RuleModel();
+        model.name = "guidedRule";
+        FactPattern person = new FactPattern( "Person" );
+        SingleFieldConstraint age = new SingleFieldConstraint( "age",
+                                                               SuggestionCompletionEngine.TYPE_NUMERIC,
+                                                               null );
+        age.setOperator( ">" );
+        age.setValue( "18" );
+        person.addConstraint( age );
+        model.addLhsItem( person );
+        return BRXMLPersistence.getInstance().marshal( model );
+    }
+}
@@ -0,0 +1,231 @@
+/*
+ * Copyright 2012 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.drools.guvnor.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.inject.Inject;
+
+import org.drools.guvnor.client.common.AssetFormats;
+import org.drools.guvnor.server.refactoring.ModuleSymbolIndex;
+import org.drools.guvnor.server.refactoring.Symbols;
+import org.drools.guvnor.server.util.DroolsHeader;
+import org.drools.ide.common.client.modeldriven.SuggestionCompletionEngine;
+import org.drools.ide.common.client.modeldriven.brl.ActionGlobalCollectionAdd;
+import org.drools.ide.common.client.modeldriven.brl.DSLSentence;
+import org.drools.ide.common.client.modeldriven.brl.FactPattern;
+import org.drools.ide.common.client.modeldriven.brl.RuleModel;
+import org.drools.ide.common.client.modeldriven.brl.SingleFieldConstraint;
+import org.drools.ide.common.server.util.BRXMLPersistence;
+import org.drools.repository.AssetItem;
+import org.drools.repository.ModuleItem;
+import org.junit.Test;
+
+public class RepositorySymbolServiceTest extends GuvnorTestBase {
+
+    private static final String     AGED = "There is a person aged {age}";
+    private static final String     LOG  = "Log {message}";
+
+    @Inject
+    private RepositorySymbolService repositorySymbolService;
+
+    @Test
+    public void testUsageImpactAndUnusedSymbols() throws Exception {
+        ModuleItem module = createModule( "testUsageImpactAndUnusedSymbols" );
+        AssetItem model = addAsset( module,
+                                    "model",
+                                    AssetFormats.DRL_MODEL,
+                                    "declare Person\n  age : int\n  name : String\nend\n" );
+        AssetItem adults = addAsset( module,
+                                     "adults",
+                                     AssetFormats.DRL,
+                                     "rule 'adults'\nwhen\n  $p : Person( age > 18 )\nthen\n  results.add( $p );\nend\n" );
+        AssetItem dslRule = addAsset( module,
+                                      "dslRule",
+                                      AssetFormats.DSL_TEMPLATE_RULE,
+                                      "when\n  There is a person aged 42\nthen\n  Log \"found\"\n" );
+        AssetItem guidedRule = addAsset( module,
+                                         "guidedRule",
+                                         AssetFormats.BUSINESS_RULE,
+                                         createGuidedRule() );
+
+        assertUsage( module,
+                     Symbols.field( "Person",
+                                    "age" ),
+                     model,
+                     adults,
+                     dslRule,
+                     guidedRule );
+        assertUsage( module,
+                     Symbols.global( "results" ),
+                     adults,
+                     dslRule,
+                     guidedRule );
+        assertUsage( module,
+                     Symbols.dslSentence( AGED ),
+                     dslRule,
+                     guidedRule );
+        assertUsage( module,
+                     Symbols.dslSentence( LOG ),
+                     dslRule );
+
+        Set<String> impact = new HashSet<String>( Arrays.asList( repositorySymbolService.findSymbolImpact( module.getUUID(),
+                                                                                                            Symbols.factType( "Person" ) ) ) );
+        assertEquals( new HashSet<String>( Arrays.asList( model.getUUID(),
+                                                          adults.getUUID(),
+                                                          dslRule.getUUID(),
+                                                          guidedRule.getUUID() ) ),
+                      impact );
+
+        List<String> unused = Arrays.asList( repositorySymbolService.findUnusedSymbols( module.getUUID() ) );
+        assertTrue( unused.contains( Symbols.field( "Person",
+                                                    "name" ) ) );
+        assertTrue( unused.contains( Symbols.global( "archive" ) ) );
+        assertTrue( unused.contains( Symbols.dslSentence( "Forget {message}" ) ) );
+        assertFalse( unused.contains( Symbols.field( "Person",
+                                                     "age" ) ) );
+        assertFalse( unused.contains( Symbols.global( "results" ) ) );
+        assertFalse( unused.contains( Symbols.dslSentence( AGED ) ) );
+    }
+
+    @Test
+    public void testIndexMatchesFullScan() throws Exception {
+        ModuleItem module = createModule( "testIndexMatchesFullScan" );
+        ModuleSymbolIndex index = ModuleSymbolIndex.getInstance();
+        AssetItem adults = addAsset( module,
+                                     "adults",
+                                     AssetFormats.DRL,
+                                     "rule 'adults'\nwhen\n  $p : Person( age > 18 )\nthen\n  results.add( $p );\nend\n" );
+        assertIndexMatchesScan( module );
+
+        AssetItem dslRule = addAsset( module,
+                                      "dslRule",
+                                      AssetFormats.DSL_TEMPLATE_RULE,
+                                      "when\n  There is a person aged 42\nthen\n  Log \"found\"\n" );
+        AssetItem guidedRule = addAsset( module,
+                                         "guidedRule",
+                                         AssetFormats.BUSINESS_RULE,
+                                         createGuidedRule() );
+        adults.updateContent( "rule 'adults'\nwhen\n  $p : Person( name == \"adult\" )\nthen\nend\n" );
+        adults.checkin( "Changed" );
+        assertIndexMatchesScan( module );
+        assertFalse( index.getAssetsReferringTo( module,
+                                                 Symbols.global( "results" ) ).contains( adults.getUUID() ) );
+
+        //The DSL rule follows its DSL
+        AssetItem dsl = module.loadAsset( "dsl" );
+        dsl.updateContent( "[when]There is a person aged {age}=Person( name == \"{age}\" )\n[then]Log {message}=results.add( {message} );\n" );
+        dsl.checkin( "Changed" );
+        assertIndexMatchesScan( module );
+        assertTrue( index.getAssetsReferringTo( module,
+                                                Symbols.field( "Person",
+                                                               "name" ) ).contains( dslRule.getUUID() ) );
+
+        guidedRule.archiveItem( true );
+        guidedRule.checkin( "Archived" );
+        assertIndexMatchesScan( module );
+        assertEquals( new HashSet<String>( Arrays.asList( dslRule.getUUID() ) ),
+                      index.getAssetsReferringTo( module,
+                                                  Symbols.dslSentence( AGED ) ) );
+
+        index.invalidate( module.getUUID() );
+        assertIndexMatchesScan( module );
+
+        repositorySymbolService.rebuildSymbolIndex( module.getUUID() );
+        Map<String, Set<String>> scan = assertIndexMatchesScan( module );
+        for ( Map.Entry<String, Set<String>> entry : scan.entrySet() ) {
+            assertEquals( entry.getValue(),
+                          rulesRepository.loadAssetByUUID( entry.getKey() ).getSymbols() );
+        }
+    }
+
+    private Map<String, Set<String>> assertIndexMatchesScan(ModuleItem module) {
+        Map<String, Set<String>> scan = ModuleSymbolIndex.scan( module );
+        assertEquals( scan,
+                      ModuleSymbolIndex.getInstance().getSymbolsByAsset( module ) );
+        return scan;
+    }
+
+    private void assertUsage(ModuleItem module,
+                             String symbol,
+                             AssetItem... assets) {
+        Set<String> expected = new HashSet<String>();
+        for ( AssetItem asset : assets ) {
+            expected.add( asset.getUUID() );
+        }
+        assertEquals( expected,
+                      new HashSet<String>( Arrays.asList( repositorySymbolService.findSymbolUsage( module.getUUID(),
+                                                                                                   symbol ) ) ) );
+    }
+
+    private ModuleItem createModule(String name) {
+        ModuleItem module = rulesRepository.createModule( name,
+                                                          "" );
+        DroolsHeader.updateDroolsHeader( "global java.util.List results\nglobal java.util.List archive\n",
+                                         module );
+        addAsset( module,
+                  "dsl",
+                  AssetFormats.DSL,
+                  "[when]There is a person aged {age}=Person( age == {age} )\n"
+                          + "[then]Log {message}=results.add( {message} );\n"
+                          + "[then]Forget {message}=results.remove( {message} );\n" );
+        return module;
+    }
+
+    private AssetItem addAsset(ModuleItem module,
+                               String name,
+                               String format,
+                               String content) {
+        AssetItem asset = module.addAsset( name,
+                                           "" );
+        asset.updateFormat( format );
+        asset.updateContent( content );
+        asset.checkin( "" );
+        return asset;
+    }
+
+    private String createGuidedRule() {
+        RuleModel model = new RuleModel();
+        model.name = "guidedRule";
+        FactPattern person = new FactPattern( "Person" );
+        person.setBoundName( "$p" );
+        SingleFieldConstraint age = new SingleFieldConstraint( "age",
+                                                               SuggestionCompletionEngine.TYPE_NUMERIC,
+                                                               null );
+        age.setOperator( ">" );
+        age.setValue( "18" );
+        person.addConstraint( age );
+        model.addLhsItem( person );
+        DSLSentence sentence = new DSLSentence();
+        sentence.setDefinition( AGED );
+        model.addLhsItem( sentence );
+        ActionGlobalCollectionAdd add = new ActionGlobalCollectionAdd();
+        add.globalName = "results";
+        add.factName = "$p";
+        model.addRhsItem( add );
+        return BRXMLPersistence.getInstance().marshal( model );
+    }
+}
@@ -952,6 +952,52 @@ public class ServiceImplSecurityTest extends GuvnorTestBase {
         }
     }
 
+    @Test
+    public void testListModulesPackageReadonly() throws Exception {
+        String package1Name = "testListModulesPackageReadonlyPack1";
+        String package2Name = "testListModulesPackageReadonlyPack2";
+        String archived1Name = "testListModulesPackageReadonlyArchived1";
+        String archived2Name = "testListModulesPackageReadonlyArchived2";
+        rulesRepository.createModule( package1Name,
+                                      "desc" );
+        rulesRepository.createModule( package2Name,
+                                      "desc" );
+        for ( String archivedName : new String[]{archived1Name, archived2Name} ) {
+            ModuleItem archived = rulesRepository.createModule( archivedName,
+                                                                "desc" );
+            archived.archiveItem( true );
+            archived.checkin( "archived" );
+        }
+
+        roleBasedPermissionResolver.setEnableRoleBasedAuthorization(true);
+        roleBasedPermissionStore.addRoleBasedPermissionForTesting(USER_NAME, new RoleBasedPermission( USER_NAME,
+                                           RoleType.PACKAGE_READONLY.getName(),
+                                           package1Name,
+                                           null ) );
+        roleBasedPermissionStore.addRoleBasedPermissionForTesting(USER_NAME, new RoleBasedPermission( USER_NAME,
+                                           RoleType.PACKAGE_READONLY.getName(),
+                                           archived1Name,
+                                           null ) );
+        roleBasedPermissionManager.create(); // HACK flushes the permission cache
+
+        try {
+            Module[] res = repositoryPackageService.listModules();
+            assertEquals( 1,
+                          res.length );
+            assertEquals( package1Name,
+                          res[0].getName() );
+
+            Module[] archived = repositoryPackageService.listArchivedModules();
+            assertEquals( 1,
+                          archived.length );
+            assertEquals( archived1Name,
+                          archived[0].getName() );
+        } finally {
+            roleBasedPermissionStore.clearAllRoleBasedPermissionsForTesting(USER_NAME);
+            roleBasedPermissionResolver.setEnableRoleBasedAuthorization(false);
+        }
+    }
+
     @Test
     public void testLoadChildCategories() throws Exception {
         String package1Name = "testLoadChildCategoriesPack1";
@@ -16,10 +16,12 @@
 
 package org.drools.guvnor.server;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -1314,6 +1316,20 @@ public class ServiceImplementationTest extends GuvnorTestBase {
 
     }
 
+    @Test
+    public void testLoadDropDowns() throws Exception {
+        String[][] pairs = new String[][]{new String[]{"f1=x"}, new String[]{null}};
+        String[] expressions = new String[]{"['@{f1}', 'y']", "['@{f1}']"};
+        String[][] r = serviceImplementation.loadDropDownExpressions( pairs,
+                                                                      expressions );
+        assertEquals( 2,
+                      r.length );
+        assertArrayEquals( new String[]{"x", "y"},
+                           r[0] );
+        assertEquals( 0,
+                      r[1].length );
+    }
+
     @Test
     @Deprecated
     public void testListUserPermisisons() throws Exception {
@@ -2023,4 +2039,46 @@ public class ServiceImplementationTest extends GuvnorTestBase {
         }
     }
 
+    @Test
+    public void testWorkDefinitionsFromPackageAssetsAreKeptUntilCheckin() throws Exception {
+        repositoryCategoryService.createCategory( "",
+                                                  "testWorkDefinitionsAreKeptCategory",
+                                                  "testWorkDefinitionsAreKeptCategory" );
+        String packageUUID = repositoryPackageService.createModule( "testWorkDefinitionsAreKept",
+                                                                     "testWorkDefinitionsAreKept",
+                                                                     "package" );
+        String uuid = serviceImplementation.createNewRule( "workItem",
+                                                           "workItemdescription",
+                                                           "testWorkDefinitionsAreKeptCategory",
+                                                           "testWorkDefinitionsAreKept",
+                                                           "wid" );
+        Asset asset = repositoryAssetService.loadRuleAsset( uuid );
+        RuleContentText content = new RuleContentText();
+        content.content = "[ [ \"name\" : \"MyTask\", \"displayName\" : \"My Task\" ] ]";
+        asset.setContent( content );
+        repositoryAssetService.checkinVersion( asset );
+
+        AssetWorkDefinitionsLoader loader = new AssetWorkDefinitionsLoader( repositoryAssetService,
+                                                                            packageUUID );
+        Map<String, WorkDefinition> wids = loader.getWorkDefinitions();
+        assertEquals( "My Task",
+                      ((WorkDefinitionImpl) wids.get( "MyTask" )).getDisplayName() );
+        //Nothing changed, so the same definitions are returned
+        assertSame( wids,
+                    new AssetWorkDefinitionsLoader( repositoryAssetService,
+                                                    packageUUID ).getWorkDefinitions() );
+
+        asset = repositoryAssetService.loadRuleAsset( uuid );
+        content = new RuleContentText();
+        content.content = "[ [ \"name\" : \"MyTask\", \"displayName\" : \"My Changed Task\" ] ]";
+        asset.setContent( content );
+        repositoryAssetService.checkinVersion( asset );
+
+        wids = loader.getWorkDefinitions();
+        assertEquals( 1,
+                      wids.size() );
+        assertEquals( "My Changed Task",
+                      ((WorkDefinitionImpl) wids.get( "MyTask" )).getDisplayName() );
+    }
+
 }
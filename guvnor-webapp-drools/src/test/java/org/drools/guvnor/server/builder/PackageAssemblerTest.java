@@ -493,6 +493,103 @@ public class PackageAssemblerTest extends GuvnorTestBase {
 
     }
 
+    @Test
+    public void testManyDrlAssetsAreCompiledTogether() throws Exception {
+        RulesRepository repo = rulesRepository;
+
+        ModuleItem pkg = repo.createModule( "testManyDrlAssetsAreCompiledTogether",
+                                            "" );
+        AssetItem model = pkg.addAsset( "model",
+                                        "qed" );
+        model.updateFormat( AssetFormats.MODEL );
+        model.updateBinaryContentAttachment( this.getClass().getResourceAsStream( "/billasurf.jar" ) );
+        model.checkin( "" );
+        DroolsHeader.updateDroolsHeader( "import com.billasurf.Board\n global com.billasurf.Person customer",
+                                         pkg );
+
+        for ( int i = 0; i < 12; i++ ) {
+            AssetItem rule = pkg.addAsset( "rule" + i,
+                                           "" );
+            rule.updateFormat( AssetFormats.DRL );
+            rule.updateContent( "rule 'rule" + i + "' \n when \n Board() \n then \n customer.setAge(" + i + "); \n end" );
+            rule.checkin( "" );
+        }
+
+        AssetItem noLoop = pkg.addAsset( "noLoop",
+                                         "" );
+        noLoop.updateFormat( AssetFormats.DRL );
+        noLoop.updateContent( "package testManyDrlAssetsAreCompiledTogether\nno-loop true\nrule 'noLoop' \n when \n Board() \n then \n end" );
+        noLoop.checkin( "" );
+
+        AssetItem unknownType = pkg.addAsset( "unknownType",
+                                              "" );
+        unknownType.updateFormat( AssetFormats.DRL );
+        unknownType.updateContent( "rule 'unknownType' \n when \n Surfboard() \n then \n end" );
+        unknownType.checkin( "" );
+
+        AssetItem badSyntax = pkg.addAsset( "badSyntax",
+                                            "" );
+        badSyntax.updateFormat( AssetFormats.DRL );
+        badSyntax.updateContent( "if something then another" );
+        badSyntax.checkin( "" );
+        repo.save();
+
+        PackageAssembler asm = new PackageAssembler( pkg );
+        asm.compile();
+        assertTrue( asm.hasErrors() );
+        assertFalse( asm.isModuleConfigurationInError() );
+        for ( ContentAssemblyError err : asm.getErrors() ) {
+            assertTrue( err.getUUID().equals( unknownType.getUUID() ) || err.getUUID().equals( badSyntax.getUUID() ) );
+        }
+
+        unknownType.archiveItem( true );
+        badSyntax.archiveItem( true );
+        repo.save();
+
+        asm = new PackageAssembler( pkg );
+        asm.compile();
+        assertFalse( asm.getErrors().toString(),
+                     asm.hasErrors() );
+        Package bin = (Package) DroolsStreamUtils.streamIn( asm.getCompiledBinary() );
+        assertEquals( 13,
+                      bin.getRules().length );
+        assertTrue( bin.getRule( "noLoop" ).isNoLoop() );
+        assertFalse( bin.getRule( "rule0" ).isNoLoop() );
+    }
+
+    @Test
+    public void testDrlAssetsWithTheSameRuleNameAreCompiledTogether() throws Exception {
+        RulesRepository repo = rulesRepository;
+
+        ModuleItem pkg = repo.createModule( "testDrlAssetsWithTheSameRuleNameAreCompiledTogether",
+                                            "" );
+        AssetItem model = pkg.addAsset( "model",
+                                        "qed" );
+        model.updateFormat( AssetFormats.MODEL );
+        model.updateBinaryContentAttachment( this.getClass().getResourceAsStream( "/billasurf.jar" ) );
+        model.checkin( "" );
+        DroolsHeader.updateDroolsHeader( "import com.billasurf.Board",
+                                         pkg );
+
+        for ( int i = 0; i < 3; i++ ) {
+            AssetItem rule = pkg.addAsset( "rule" + i,
+                                           "" );
+            rule.updateFormat( AssetFormats.DRL );
+            rule.updateContent( "rule 'sameName' \n when \n Board() \n then \n end\n"
+                                + "rule 'rule" + i + "' \n when \n Board() \n then \n end" );
+            rule.checkin( "" );
+        }
+        repo.save();
+
+        PackageAssembler asm = new PackageAssembler( pkg );
+        asm.compile();
+        assertFalse( asm.getErrors().toString(),
+                     asm.hasErrors() );
+        Package bin = (Package) DroolsStreamUtils.streamIn( asm.getCompiledBinary() );
+        assertEquals( 4,
+                      bin.getRules().length );
+    }
+
     @Test
     public void testIgnoreArchivedItems() throws Exception {
         RulesRepository repo = rulesRepository;
@@ -17,12 +17,16 @@
 package org.drools.guvnor.server.contenthandler;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.InputStream;
 
 import org.drools.guvnor.server.GuvnorTestBase;
 import org.drools.guvnor.server.ServiceImplementation;
+import org.drools.guvnor.server.contenthandler.TypeCatalogue.TypeInfo;
 import org.drools.guvnor.server.util.DroolsHeader;
 import org.drools.repository.AssetItem;
 import org.drools.repository.ModuleItem;
@@ -80,4 +84,40 @@ public class ModelContentHandlerTest extends GuvnorTestBase {
 
     }
 
+    @Test
+    public void testTypeCatalogueStoredWithModel() throws Exception {
+
+        RulesRepository repo = rulesRepository;
+
+        ModuleItem pkg = repo.createModule( "testTypeCatalogueStoredWithModelPackage",
+                                            "for test" );
+        AssetItem asset = pkg.addAsset( "testTypeCatalogueStoredWithModelAsset",
+                                        "description" );
+
+        asset.updateBinaryContentAttachment( this.getClass().getResourceAsStream( "domain.objects-1.1.8.jar" ) );
+        assertNull( asset.getTypeCatalogue() );
+
+        ModelContentHandler modelContentHandler = new ModelContentHandler();
+        modelContentHandler.onAttachmentAdded( asset );
+        assertNotNull( asset.getTypeCatalogue() );
+
+        TypeCatalogue catalogue = TypeCatalogue.load( asset );
+        assertEquals( TypeCatalogue.fromJar( this.getClass().getResourceAsStream( "domain.objects-1.1.8.jar" ) ).getClassNames(),
+                      catalogue.getClassNames() );
+        TypeInfo contract = null;
+        for ( TypeInfo type : catalogue.getTypes() ) {
+            if ( type.getName().equals( "gov.gsa.fas.contract.v1.Contract" ) ) {
+                contract = type;
+            }
+        }
+        assertNotNull( contract );
+        assertTrue( contract.isPublic() );
+        assertFalse( contract.getFields().isEmpty() );
+        assertTrue( contract.getAnnotations().contains( "javax.xml.bind.annotation.XmlRootElement" ) );
+
+        //A new jar makes the catalogue stale
+        asset.updateBinaryContentAttachment( this.getClass().getResourceAsStream( "domain.objects-1.1.8.jar" ) );
+        assertNull( asset.getTypeCatalogue() );
+    }
+
 }
@@ -16,14 +16,52 @@
 
 package org.drools.guvnor.server.contenthandler.drools;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import org.drools.guvnor.client.common.AssetFormats;
+import org.drools.guvnor.client.rpc.Asset;
+import org.drools.guvnor.client.rpc.RuleContentText;
+import org.drools.guvnor.client.rpc.WorkingSetConfigData;
+import org.drools.guvnor.server.builder.AssemblyErrorLogger;
+import org.drools.guvnor.server.builder.BRMSPackageBuilder;
+import org.drools.guvnor.server.contenthandler.BaseXStreamContentHandler;
+import org.drools.guvnor.server.contenthandler.ContentHandler;
 import org.drools.guvnor.server.contenthandler.ContentManager;
+import org.drools.guvnor.server.contenthandler.DefaultContentHandler;
+import org.drools.guvnor.server.contenthandler.IRuleAsset;
+import org.drools.guvnor.server.contenthandler.PlainTextContentHandler;
 import org.drools.guvnor.server.contenthandler.drools.DRLFileContentHandler;
 import org.drools.guvnor.server.contenthandler.drools.ScenarioContentHandler;
+import org.drools.ide.common.client.modeldriven.brl.ActionRetractFact;
+import org.drools.ide.common.client.modeldriven.brl.FactPattern;
+import org.drools.ide.common.client.modeldriven.brl.PortableObject;
+import org.drools.ide.common.client.modeldriven.brl.RuleModel;
+import org.drools.ide.common.client.modeldriven.brl.templates.TemplateModel;
+import org.drools.ide.common.client.modeldriven.dt52.DTCellValue52;
+import org.drools.ide.common.client.modeldriven.dt52.GuidedDecisionTable52;
+import org.drools.ide.common.client.modeldriven.testing.Scenario;
+import org.drools.lang.descr.PackageDescr;
+import org.drools.repository.AssetItem;
+import org.drools.repository.ModuleItem;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 
 public class ContentManagerTest {
 
@@ -41,4 +79,236 @@ public class ContentManagerTest {
 
     }
 
+    @Test
+    public void testTheRegistryCanNotBeChanged() throws Exception {
+        Map<String, ContentHandler> handlers = ContentManager.getInstance().getContentHandlers();
+        try {
+            handlers.put("xxx", new DefaultContentHandler());
+            fail("The registry should not be modifiable");
+        } catch (UnsupportedOperationException e) {
+            //expected
+        }
+        assertFalse(handlers.containsValue(null));
+        assertSame(ContentManager.getHandler("xxx"), ContentManager.getHandler("yyy"));
+    }
+
+    @Test
+    public void testHandlersAreSharedBetweenThreads() throws Exception {
+        final String[] formats = ContentManager.getInstance().getContentHandlers().keySet().toArray(new String[0]);
+        List<Callable<ContentHandler[]>> tasks = new ArrayList<Callable<ContentHandler[]>>();
+        for (int i = 0; i < 32; i++) {
+            tasks.add(new Callable<ContentHandler[]>() {
+                public ContentHandler[] call() throws Exception {
+                    ContentHandler[] handlers = new ContentHandler[formats.length];
+                    for (int j = 0; j < formats.length; j++) {
+                        handlers[j] = ContentManager.getHandler(formats[j]);
+                    }
+                    return handlers;
+                }
+            });
+        }
+
+        for (ContentHandler[] handlers : runAll(tasks)) {
+            for (int j = 0; j < formats.length; j++) {
+                assertSame(ContentManager.getInstance().getContentHandlers().get(formats[j]), handlers[j]);
+            }
+        }
+    }
+
+    @Test
+    public void testLoadStoreAndCompileFromManyThreads() throws Exception {
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        for (int i = 0; i < 16; i++) {
+            for (final Map.Entry<String, ContentHandler> entry : ContentManager.getInstance().getContentHandlers().entrySet()) {
+                final String name = entry.getKey() + i;
+                final ContentHandler handler = entry.getValue();
+                tasks.add(new Callable<Void>() {
+                    public Void call() throws Exception {
+                        // Each format with content of its own type, subclasses first
+                        if (handler instanceof RuleTemplateHandler) {
+                            checkTemplate(handler, name);
+                        } else if (handler instanceof BRLContentHandler) {
+                            checkBrl(handler, name);
+                        } else if (handler instanceof GuidedDTContentHandler) {
+                            checkGuidedDT(handler, name);
+                        } else if (handler instanceof ScenarioContentHandler) {
+                            checkScenario(handler, name);
+                        } else if (handler instanceof PlainTextContentHandler || handler instanceof DSLRuleContentHandler) {
+                            checkText(handler, name);
+                        } else if (handler instanceof BaseXStreamContentHandler) {
+                            checkXStream(handler, name);
+                        }
+                        return null;
+                    }
+                });
+            }
+            final String name = "rule" + i;
+            tasks.add(new Callable<Void>() {
+                public Void call() throws Exception {
+                    checkCompile(name);
+                    return null;
+                }
+            });
+        }
+
+        runAll(tasks);
+    }
+
+    private void checkBrl(ContentHandler handler,
+                          String name) throws Exception {
+        String xml = store(handler, newRuleModel(new RuleModel(), name));
+
+        RuleModel loaded = (RuleModel) load(handler, xml);
+        assertEquals("$" + name, ((FactPattern) loaded.lhs[0]).getBoundName());
+
+        assertEquals(name, compile(handler, name, xml));
+    }
+
+    private void checkTemplate(ContentHandler handler,
+                               String name) throws Exception {
+        String xml = store(handler, newRuleModel(new TemplateModel(), name));
+
+        TemplateModel loaded = (TemplateModel) load(handler, xml);
+        assertEquals("$" + name, ((FactPattern) loaded.lhs[0]).getBoundName());
+
+        String ruleName = compile(handler, name, xml);
+        assertTrue(ruleName, ruleName.startsWith(name + "_"));
+    }
+
+    private RuleModel newRuleModel(RuleModel model,
+                                   String name) {
+        model.name = name;
+        FactPattern pattern = new FactPattern("String");
+        pattern.setBoundName("$" + name);
+        model.addLhsItem(pattern);
+        model.addRhsItem(new ActionRetractFact("$" + name));
+        return model;
+    }
+
+    private void checkGuidedDT(ContentHandler handler,
+                               String name) throws Exception {
+        GuidedDecisionTable52 dt = new GuidedDecisionTable52();
+        dt.setTableName(name);
+        List<DTCellValue52> row = new ArrayList<DTCellValue52>();
+        row.add(new DTCellValue52(new BigDecimal(1)));
+        row.add(new DTCellValue52(name));
+        List<List<DTCellValue52>> data = new ArrayList<List<DTCellValue52>>();
+        data.add(row);
+        dt.setData(data);
+        String xml = store(handler, dt);
+
+        GuidedDecisionTable52 loaded = (GuidedDecisionTable52) load(handler, xml);
+        assertEquals(name, loaded.getData().get(0).get(1).getStringValue());
+
+        assertEquals("Row 1 " + name, compile(handler, name, xml));
+    }
+
+    private void checkScenario(ContentHandler handler,
+                               String name) throws Exception {
+        Scenario scenario = new Scenario();
+        scenario.getRules().add(name);
+        String xml = store(handler, scenario);
+
+        Scenario loaded = (Scenario) load(handler, xml);
+        assertEquals(name, loaded.getRules().get(0));
+    }
+
+    private String store(ContentHandler handler,
+                         PortableObject content) throws Exception {
+        Asset asset = new Asset();
+        asset.setContent(content);
+        AssetItem item = mock(AssetItem.class);
+        handler.storeAssetContent(asset, item);
+        ArgumentCaptor<String> stored = ArgumentCaptor.forClass(String.class);
+        verify(item).updateContent(stored.capture());
+        return stored.getValue();
+    }
+
+    private PortableObject load(ContentHandler handler,
+                                String content) throws Exception {
+        AssetItem item = mock(AssetItem.class);
+        when(item.getContent()).thenReturn(content);
+        Asset loaded = new Asset();
+        handler.retrieveAssetContent(loaded, item);
+        return loaded.getContent();
+    }
+
+    /**
+     * @return the name of the rule compiled from the content.
+     */
+    private String compile(ContentHandler handler,
+                           String name,
+                           String content) throws Exception {
+        AssetItem item = mock(AssetItem.class);
+        when(item.getName()).thenReturn(name);
+        when(item.getContent()).thenReturn(content);
+        when(item.getModule()).thenReturn(mock(ModuleItem.class));
+        BRMSPackageBuilder builder = new BRMSPackageBuilder();
+        // As the package assembler does, the rules without a package go to the module package
+        builder.addPackage(new PackageDescr("org.test"));
+        ((IRuleAsset) handler).compile(builder, item, new AssemblyErrorLogger());
+        assertFalse(builder.getErrors().toString(), builder.hasErrors());
+        assertEquals(1, builder.getPackage().getRules().length);
+        return builder.getPackage().getRules()[0].getName();
+    }
+
+    private void checkText(ContentHandler handler,
+                           String name) throws Exception {
+        Asset asset = new Asset();
+        RuleContentText text = new RuleContentText();
+        text.content = name;
+        asset.setContent(text);
+        AssetItem item = mock(AssetItem.class);
+        handler.storeAssetContent(asset, item);
+        verify(item).updateContent(name);
+
+        when(item.getContent()).thenReturn(name);
+        Asset loaded = new Asset();
+        handler.retrieveAssetContent(loaded, item);
+        assertEquals(name, ((RuleContentText) loaded.getContent()).content);
+    }
+
+    private void checkXStream(ContentHandler handler,
+                              String name) throws Exception {
+        Asset asset = new Asset();
+        WorkingSetConfigData config = new WorkingSetConfigData();
+        config.name = name;
+        config.validFacts = new String[]{name};
+        asset.setContent(config);
+        AssetItem item = mock(AssetItem.class);
+        handler.storeAssetContent(asset, item);
+        ArgumentCaptor<String> xml = ArgumentCaptor.forClass(String.class);
+        verify(item).updateContent(xml.capture());
+
+        when(item.getContent()).thenReturn(xml.getValue());
+        Asset loaded = new Asset();
+        handler.retrieveAssetContent(loaded, item);
+        assertEquals(name, ((WorkingSetConfigData) loaded.getContent()).name);
+        assertEquals(name, ((WorkingSetConfigData) loaded.getContent()).validFacts[0]);
+    }
+
+    private void checkCompile(String name) throws Exception {
+        AssetItem item = mock(AssetItem.class);
+        when(item.getName()).thenReturn(name);
+        when(item.getContent()).thenReturn("package org.test\nrule '" + name + "'\nwhen\n    String()\nthen\nend");
+        BRMSPackageBuilder builder = new BRMSPackageBuilder();
+        ((DRLFileContentHandler) ContentManager.getHandler(AssetFormats.DRL)).compile(builder, item, new AssemblyErrorLogger());
+        assertFalse(builder.getErrors().toString(), builder.hasErrors());
+        assertEquals(name, builder.getPackage().getRules()[0].getName());
+    }
+
+    private <T> List<T> runAll(List<Callable<T>> tasks) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<T> results = new ArrayList<T>();
+            for (Future<T> future : executor.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+            return results;
+        } finally {
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+        }
+    }
+
 }
@@ -205,6 +205,70 @@ public class AssetPackageResourceTest extends GuvnorTestBase {
         //logger.log(LogLevel, getContent(connection));
     }
     
+    @Test @RunAsClient
+    public void testGetAssetsAsAtomInPages(@ArquillianResource URL baseURL) throws Exception {
+        AbderaClient client = new AbderaClient(abdera);
+        client.addCredentials(baseURL.toExternalForm(), null, null,
+                new org.apache.commons.httpclient.UsernamePasswordCredentials("admin", "admin"));
+
+        RequestOptions options = client.getDefaultRequestOptions();
+        options.setAccept(MediaType.APPLICATION_ATOM_XML);
+
+        int assetsCount = 0;
+        int pages = 0;
+        String next = new URL(baseURL, "rest/packages/restPackage1/assets?limit=3").toExternalForm();
+        while (next != null) {
+            ClientResponse resp = client.get(next, options);
+            if (resp.getType() != ResponseType.SUCCESS){
+                fail("Couldn't retrieve assets-> "+resp.getStatus()+": "+resp.getStatusText());
+            }
+            Feed feed = resp.<Feed>getDocument().getRoot();
+            assertTrue(feed.getEntries().size() <= 3);
+            assetsCount += feed.getEntries().size();
+            pages++;
+            next = feed.getLink("next") == null ? null : feed.getLink("next").getHref().toString();
+        }
+        assertEquals(totalAssets, assetsCount);
+        assertEquals((totalAssets + 2) / 3, pages);
+    }
+
+    @Test @RunAsClient
+    public void testGetAssetsWithZeroLimit(@ArquillianResource URL baseURL) throws Exception {
+        URL url = new URL(baseURL, "rest/packages/restPackage1/assets?limit=0");
+        HttpURLConnection connection = (HttpURLConnection)url.openConnection();
+        connection.setRequestProperty("Authorization",
+                "Basic " + new Base64().encodeToString(( "admin:admin".getBytes() )));
+        connection.setRequestMethod("GET");
+        connection.setRequestProperty("Accept", MediaType.APPLICATION_ATOM_XML);
+        connection.connect();
+        assertEquals (400, connection.getResponseCode());
+    }
+
+    @Test @RunAsClient
+    public void testGetAssetsAsJaxBNotModified(@ArquillianResource URL baseURL) throws Exception {
+        URL url = new URL(baseURL, "rest/packages/restPackage1/assets?fields=description");
+        HttpURLConnection connection = (HttpURLConnection)url.openConnection();
+        connection.setRequestProperty("Authorization",
+                "Basic " + new Base64().encodeToString(( "admin:admin".getBytes() )));
+        connection.setRequestMethod("GET");
+        connection.setRequestProperty("Accept", MediaType.APPLICATION_XML);
+        connection.connect();
+        assertEquals (200, connection.getResponseCode());
+        String etag = connection.getHeaderField("ETag");
+        assertNotNull(etag);
+        String content = IOUtils.toString(connection.getInputStream());
+        assertFalse(content.contains("metadata"));
+
+        connection = (HttpURLConnection)url.openConnection();
+        connection.setRequestProperty("Authorization",
+                "Basic " + new Base64().encodeToString(( "admin:admin".getBytes() )));
+        connection.setRequestMethod("GET");
+        connection.setRequestProperty("Accept", MediaType.APPLICATION_XML);
+        connection.setRequestProperty("If-None-Match", etag);
+        connection.connect();
+        assertEquals (304, connection.getResponseCode());
+    }
+
     @Test @RunAsClient
     public void testGetDRLAssetsAsAtom(@ArquillianResource URL baseURL) throws Exception {
         AbderaClient client = new AbderaClient(abdera);
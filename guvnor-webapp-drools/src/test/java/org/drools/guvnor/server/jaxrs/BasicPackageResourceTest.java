@@ -25,6 +25,8 @@ import org.apache.cxf.testutil.common.AbstractBusClientServerTestBase;
 import org.drools.guvnor.client.common.AssetFormats;
 import org.drools.guvnor.server.GuvnorTestBase;
 import org.drools.guvnor.server.ServiceImplementation;
+import org.drools.guvnor.server.jaxrs.jaxb.AssetBatchItem;
+import org.drools.guvnor.server.jaxrs.jaxb.AssetBatchResult;
 import org.drools.guvnor.server.jaxrs.jaxb.Package;
 import org.drools.guvnor.server.jaxrs.jaxb.PackageMetadata;
 import org.drools.guvnor.server.util.DroolsHeader;
@@ -1388,6 +1390,95 @@ public class BasicPackageResourceTest extends GuvnorTestBase {
         assertEquals(500, connection.getResponseCode());
     }
 
+    @Test @RunAsClient
+    public void testCreateOrUpdateAssetsInBatch(@ArquillianResource URL baseURL) throws Exception {
+        String boundary = "batch-boundary";
+        String body = "--" + boundary + "\r\n"
+                + "Content-Type: text/plain; charset=UTF-8\r\n"
+                + "Slug: batchRule1.drl\r\n"
+                + "Content-Description: created in a batch\r\n\r\n"
+                + "rule 'batchRule1' when Goo1() then end\r\n"
+                + "--" + boundary + "\r\n"
+                + "Content-Type: text/plain\r\n\r\n"
+                + "rule 'noName' when Goo1() then end\r\n"
+                + "--" + boundary + "--\r\n";
+
+        AssetBatchResult result = postAssetBatch(baseURL, boundary, body);
+        assertEquals(2, result.getAssets().size());
+        AssetBatchItem created = result.getAssets().get(0);
+        assertEquals("batchRule1", created.getName());
+        assertEquals(AssetBatchItem.CREATED, created.getStatus());
+        assertEquals(1, created.getVersion());
+        assertEquals(AssetBatchItem.FAILED, result.getAssets().get(1).getStatus());
+
+        //Update the asset created above
+        body = "--" + boundary + "\r\n"
+                + "Content-Type: text/plain\r\n"
+                + "Slug: batchRule1.drl\r\n\r\n"
+                + "rule 'batchRule1' when Goo2() then end\r\n"
+                + "--" + boundary + "--\r\n";
+        result = postAssetBatch(baseURL, boundary, body);
+        assertEquals(1, result.getAssets().size());
+        assertEquals(AssetBatchItem.UPDATED, result.getAssets().get(0).getStatus());
+        assertEquals(2, result.getAssets().get(0).getVersion());
+
+        URL url = new URL(baseURL, "rest/packages/restPackage1/assets/batchRule1/source");
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestProperty("Authorization",
+                "Basic " + new Base64().encodeToString(( "admin:admin".getBytes() )));
+        connection.setRequestMethod("GET");
+        connection.setRequestProperty("Accept", MediaType.TEXT_PLAIN);
+        connection.connect();
+        assertEquals(200, connection.getResponseCode());
+        assertEquals("rule 'batchRule1' when Goo2() then end", IOUtils.toString(connection.getInputStream()));
+    }
+
+    @Test @RunAsClient
+    public void testFailedBatchPartsLeaveNoAsset(@ArquillianResource URL baseURL) throws Exception {
+        String boundary = "batch-boundary";
+        String body = "--" + boundary + "\r\n"
+                + "Content-Type: text/plain; charset=UTF-8\r\n"
+                + "Slug: batchRule3.drl\r\n\r\n"
+                + "rule 'batchRule3' when Goo1() then end\r\n"
+                + "--" + boundary + "\r\n"
+                + "Content-Type: text/plain; charset=no-such-charset\r\n"
+                + "Slug: batchRule4.drl\r\n\r\n"
+                + "rule 'batchRule4' when Goo1() then end\r\n"
+                + "--" + boundary + "--\r\n";
+
+        AssetBatchResult result = postAssetBatch(baseURL, boundary, body);
+        assertEquals(2, result.getAssets().size());
+        assertEquals(AssetBatchItem.CREATED, result.getAssets().get(0).getStatus());
+        assertEquals(1, result.getAssets().get(0).getVersion());
+        assertEquals(AssetBatchItem.FAILED, result.getAssets().get(1).getStatus());
+
+        //The asset created for the failed part is removed
+        URL url = new URL(baseURL, "rest/packages/restPackage1/assets/batchRule4/source");
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestProperty("Authorization",
+                "Basic " + new Base64().encodeToString(( "admin:admin".getBytes() )));
+        connection.setRequestMethod("GET");
+        connection.setRequestProperty("Accept", MediaType.TEXT_PLAIN);
+        connection.connect();
+        assertEquals(500, connection.getResponseCode());
+    }
+
+    private AssetBatchResult postAssetBatch(URL baseURL, String boundary, String body) throws Exception {
+        URL url = new URL(baseURL, "rest/packages/restPackage1/assets?comment=batch");
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestProperty("Authorization",
+                "Basic " + new Base64().encodeToString(( "admin:admin".getBytes() )));
+        connection.setRequestMethod("POST");
+        connection.setRequestProperty("Content-Type", "multipart/mixed; boundary=" + boundary);
+        connection.setRequestProperty("Accept", MediaType.APPLICATION_XML);
+        connection.setDoOutput(true);
+        connection.getOutputStream().write(body.getBytes("UTF-8"));
+        assertEquals(200, connection.getResponseCode());
+        JAXBContext c = JAXBContext.newInstance(new Class[]{AssetBatchResult.class});
+        Unmarshaller u = c.createUnmarshaller();
+        return (AssetBatchResult) u.unmarshal(connection.getInputStream());
+    }
+
     protected Package createTestPackage(String title) {
         Package p = new Package();
         PackageMetadata metadata = new PackageMetadata();
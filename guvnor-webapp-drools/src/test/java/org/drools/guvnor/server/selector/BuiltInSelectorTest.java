@@ -71,13 +71,12 @@ public class BuiltInSelectorTest extends GuvnorTestBase {
         item4.updateState( "QA" );
 
         //Select asset using "category =" 
-        BuiltInSelector selector1 = (BuiltInSelector) SelectorManager.getInstance().getSelector( "BuiltInSelector" );
-        selector1.setCategory( "testBuiltInSelectorCat1" );
-        selector1.setCategoryOperator( "=" );
-        selector1.setEnableCategorySelector( true );
-        selector1.setStatus( "Dev" );
-        selector1.setStatusOperator( "=" );
-        selector1.setEnableStatusSelector( false );
+        BuiltInSelector selector1 = new BuiltInSelector( "=",
+                                                         "Dev",
+                                                         false,
+                                                         "=",
+                                                         "testBuiltInSelectorCat1",
+                                                         true );
 
         assertTrue( selector1.isAssetAllowed( item1 ) );
         assertTrue( selector1.isAssetAllowed( item2 ) );
@@ -85,13 +84,12 @@ public class BuiltInSelectorTest extends GuvnorTestBase {
         assertFalse( selector1.isAssetAllowed( item4 ) );
 
         //Select asset using "category !=" 
-        BuiltInSelector selector2 = (BuiltInSelector) SelectorManager.getInstance().getSelector( "BuiltInSelector" );
-        selector2.setCategory( "testBuiltInSelectorCat1" );
-        selector2.setCategoryOperator( "!=" );
-        selector2.setEnableCategorySelector( true );
-        selector2.setStatus( "Dev" );
-        selector2.setStatusOperator( "=" );
-        selector2.setEnableStatusSelector( false );
+        BuiltInSelector selector2 = new BuiltInSelector( "=",
+                                                         "Dev",
+                                                         false,
+                                                         "!=",
+                                                         "testBuiltInSelectorCat1",
+                                                         true );
 
         assertFalse( selector2.isAssetAllowed( item1 ) );
         assertFalse( selector2.isAssetAllowed( item2 ) );
@@ -99,13 +97,12 @@ public class BuiltInSelectorTest extends GuvnorTestBase {
         assertTrue( selector2.isAssetAllowed( item4 ) );
 
         //Select asset using "status =" 
-        BuiltInSelector selector3 = (BuiltInSelector) SelectorManager.getInstance().getSelector( "BuiltInSelector" );
-        selector3.setCategory( "testBuiltInSelectorCat1" );
-        selector3.setCategoryOperator( "!=" );
-        selector3.setEnableCategorySelector( false );
-        selector3.setStatus( "Dev" );
-        selector3.setStatusOperator( "=" );
-        selector3.setEnableStatusSelector( true );
+        BuiltInSelector selector3 = new BuiltInSelector( "=",
+                                                         "Dev",
+                                                         true,
+                                                         "!=",
+                                                         "testBuiltInSelectorCat1",
+                                                         false );
 
         assertTrue( selector3.isAssetAllowed( item1 ) );
         assertFalse( selector3.isAssetAllowed( item2 ) );
@@ -113,13 +110,12 @@ public class BuiltInSelectorTest extends GuvnorTestBase {
         assertFalse( selector3.isAssetAllowed( item4 ) );
 
         //Select asset using "status !=" 
-        BuiltInSelector selector4 = (BuiltInSelector) SelectorManager.getInstance().getSelector( "BuiltInSelector" );
-        selector4.setCategory( "testBuiltInSelectorCat1" );
-        selector4.setCategoryOperator( "!=" );
-        selector4.setEnableCategorySelector( false );
-        selector4.setStatus( "Dev" );
-        selector4.setStatusOperator( "!=" );
-        selector4.setEnableStatusSelector( true );
+        BuiltInSelector selector4 = new BuiltInSelector( "!=",
+                                                         "Dev",
+                                                         true,
+                                                         "!=",
+                                                         "testBuiltInSelectorCat1",
+                                                         false );
 
         assertFalse( selector4.isAssetAllowed( item1 ) );
         assertTrue( selector4.isAssetAllowed( item2 ) );
@@ -127,13 +123,12 @@ public class BuiltInSelectorTest extends GuvnorTestBase {
         assertTrue( selector4.isAssetAllowed( item4 ) );
 
         //Select asset using "status =" AND "category ="
-        BuiltInSelector selector5 = (BuiltInSelector) SelectorManager.getInstance().getSelector( "BuiltInSelector" );
-        selector5.setCategory( "testBuiltInSelectorCat1" );
-        selector5.setCategoryOperator( "=" );
-        selector5.setEnableCategorySelector( true );
-        selector5.setStatus( "Dev" );
-        selector5.setStatusOperator( "=" );
-        selector5.setEnableStatusSelector( true );
+        BuiltInSelector selector5 = new BuiltInSelector( "=",
+                                                         "Dev",
+                                                         true,
+                                                         "=",
+                                                         "testBuiltInSelectorCat1",
+                                                         true );
 
         assertTrue( selector5.isAssetAllowed( item1 ) );
         assertFalse( selector5.isAssetAllowed( item2 ) );
@@ -141,13 +136,12 @@ public class BuiltInSelectorTest extends GuvnorTestBase {
         assertFalse( selector5.isAssetAllowed( item4 ) );
 
         //Select asset using "status =" AND "category !="
-        BuiltInSelector selector6 = (BuiltInSelector) SelectorManager.getInstance().getSelector( "BuiltInSelector" );
-        selector6.setCategory( "testBuiltInSelectorCat1" );
-        selector6.setCategoryOperator( "!=" );
-        selector6.setEnableCategorySelector( true );
-        selector6.setStatus( "Dev" );
-        selector6.setStatusOperator( "=" );
-        selector6.setEnableStatusSelector( true );
+        BuiltInSelector selector6 = new BuiltInSelector( "=",
+                                                         "Dev",
+                                                         true,
+                                                         "!=",
+                                                         "testBuiltInSelectorCat1",
+                                                         true );
 
         assertFalse( selector6.isAssetAllowed( item1 ) );
         assertFalse( selector6.isAssetAllowed( item2 ) );
@@ -155,18 +149,17 @@ public class BuiltInSelectorTest extends GuvnorTestBase {
         assertFalse( selector6.isAssetAllowed( item4 ) );
 
         //Allow everything if both selectors are disabled
-        BuiltInSelector selector7 = (BuiltInSelector) SelectorManager.getInstance().getSelector( "BuiltInSelector" );
-        selector7.setCategory( "testBuiltInSelectorCat1" );
-        selector7.setCategoryOperator( "!=" );
-        selector7.setEnableCategorySelector( false );
-        selector7.setStatus( "Dev" );
-        selector7.setStatusOperator( "=" );
-        selector7.setEnableStatusSelector( false );
-
-        assertTrue( selector6.isAssetAllowed( item1 ) );
-        assertTrue( selector6.isAssetAllowed( item2 ) );
-        assertTrue( selector6.isAssetAllowed( item3 ) );
-        assertTrue( selector6.isAssetAllowed( item4 ) );
+        BuiltInSelector selector7 = new BuiltInSelector( "=",
+                                                         "Dev",
+                                                         false,
+                                                         "!=",
+                                                         "testBuiltInSelectorCat1",
+                                                         false );
+
+        assertTrue( selector7.isAssetAllowed( item1 ) );
+        assertTrue( selector7.isAssetAllowed( item2 ) );
+        assertTrue( selector7.isAssetAllowed( item3 ) );
+        assertTrue( selector7.isAssetAllowed( item4 ) );
     }
 
 }
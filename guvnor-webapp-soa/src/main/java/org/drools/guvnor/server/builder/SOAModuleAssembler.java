@@ -16,6 +16,8 @@
 
 package org.drools.guvnor.server.builder;
 
+import java.io.OutputStream;
+
 import org.drools.guvnor.server.util.LoggingHelper;
 
 import org.drools.repository.ModuleItem;
@@ -57,4 +59,8 @@ public class SOAModuleAssembler extends AssemblerBase {
         //NOT_IMPLEMENTED
         return null;
     }
+
+    public void writeCompiledBinary(OutputStream out) {
+        //NOT_IMPLEMENTED
+    }
 }